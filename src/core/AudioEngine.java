@@ -14,13 +14,26 @@ import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Mixer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 public class AudioEngine {
 
+    private static final double CPU_CLOCK_RATE = 5369318.0 / 3; // Number of CPU cycles per second
+    private static final double TARGET_LATENCY = 0.05; // Fill level of the sample ring the emulation aims for, in seconds
+    private static final double MAX_RATE_ADJUST = 0.005; // Maximum deviation of the sample rate applied to correct the fill level
+    private static final long MAX_CHUNK_CYCLES = 1790; // Maximum number of CPU cycles emulated while holding the NES, about 1ms
+    private static final long MAX_LAG_CYCLES = 178977; // If the emulation is more than 100ms late, it is resynchronized instead of catching up
+
     private final AudioContext ac; // Encapsulation: Manages audio processing context
     private final JavaSoundAudioIO jsaIO; // Encapsulation: Handles audio I/O interface
     private final List<AudioOutput> validOutputs; // Encapsulation: List of valid audio outputs
     private AudioOutput selectedOutput; // Encapsulation: Currently selected audio output
+    private final AudioRingBuffer sample_ring; // Encapsulation: Samples produced by the emulation thread, drained by the audio callback
+    private final int target_fill; // Encapsulation: Number of samples the ring should hold
+    private final float[] audio_block; // Encapsulation: Samples read from the NES after each chunk
+    private final Thread emulation_thread; // Encapsulation: Runs the emulation, paced by the wall clock
+    private volatile boolean emulation_thread_alive = true; // Encapsulation: Should the emulation thread keep running
+    private volatile double rate_ratio = 1.0; // Encapsulation: Current correction of the sample rate
 
     public AudioEngine(NEmuSContext emulatorContext) {
         jsaIO = new JavaSoundAudioIO(); // Encapsulation: Initialize audio I/O
@@ -35,21 +48,71 @@ public class AudioEngine {
 
         ac = new AudioContext(jsaIO); // Encapsulation: Initialize the audio context
         emulatorContext.nes.setSampleFreq((int) ac.getSampleRate()); // Bridge Pattern: Connect NES context with audio settings
+        target_fill = (int) (ac.getSampleRate() * TARGET_LATENCY);
+        sample_ring = new AudioRingBuffer(target_fill * 4);
+        audio_block = new float[(int) Math.ceil(ac.getSampleRate() * MAX_CHUNK_CYCLES / CPU_CLOCK_RATE) + 1]; // Room for the samples of a whole chunk, about 1ms
 
+        // The audio callback only drains the ring, it never waits for the emulation
         Function audioProcessor = new Function(new WaveShaper(ac)) {
             public float calculate() {
-                if (emulatorContext.emulation_running) {
-                    boolean sample_ready = false;
-                    while (!sample_ready)
-                        sample_ready = emulatorContext.nes.clock(APUViewer.hasInstance());
-                }
-                return emulatorContext.emulation_running ? (float) emulatorContext.nes.final_audio_sample : 0;
+                return emulatorContext.emulation_running ? sample_ring.poll() : 0;
             }
         };
         ac.out.addInput(audioProcessor); // Decorator Pattern: Add functionality to audio context output
+
+        emulation_thread = new Thread(() -> emulate(emulatorContext), "NES Emulation");
+        emulation_thread.setDaemon(true);
         ac.start(); // Start audio processing
     }
 
+    /**
+     * The loop of the emulation thread, the NES is run in small chunks to keep up with the wall clock
+     * and the samples of each chunk are pushed to the ring as a block
+     * the sample rate is nudged to keep the ring around its target fill level
+     *
+     * @param emulatorContext the context holding the NES to run
+     */
+    private void emulate(NEmuSContext emulatorContext) {
+        NES nes = emulatorContext.nes;
+        long start = System.nanoTime();
+        long cycles = 0;
+        while (emulation_thread_alive) {
+            if (!emulatorContext.emulation_running) {
+                LockSupport.parkNanos(1_000_000);
+                start = System.nanoTime(); // The pause doesn't need to be caught up
+                cycles = 0;
+                continue;
+            }
+            long due = (long) ((System.nanoTime() - start) * (CPU_CLOCK_RATE / 1e9));
+            if (due - cycles > MAX_LAG_CYCLES) { // Too late (breakpoint, heavy GC...), we drop the lost time
+                start = System.nanoTime();
+                cycles = 0;
+                continue;
+            }
+            if (cycles >= due) {
+                LockSupport.parkNanos(500_000);
+                continue;
+            }
+            long chunk = Math.min(due - cycles, MAX_CHUNK_CYCLES);
+            synchronized (nes) { // The GUI thread loads ROMs and resets the NES while holding it
+                if (emulatorContext.emulation_running) {
+                    nes.getApu().enableVisualizer(APUViewer.hasInstance());
+                    nes.runCycles(chunk);
+                    int count;
+                    do {
+                        count = nes.readAudio(audio_block, 0, audio_block.length);
+                        sample_ring.offer(audio_block, 0, count);
+                    } while (count == audio_block.length);
+                    // Dynamic rate control : produce slightly less samples when the ring is filling up, more when it is draining
+                    double error = (sample_ring.size() - target_fill) / (double) target_fill;
+                    rate_ratio = 1.0 - MAX_RATE_ADJUST * Math.max(-1.0, Math.min(1.0, error));
+                    nes.adjustSampleFreq(rate_ratio);
+                }
+            }
+            cycles += chunk;
+        }
+    }
+
     private void verifyValidOutputs() {
         AudioContext checker = new AudioContext(jsaIO); // Encapsulation: Temporary audio context for checking
 
@@ -86,10 +149,55 @@ public class AudioEngine {
 
     public void start() {
         ac.start(); // Facade Pattern: Simplified method to start audio processing
+        if (!emulation_thread.isAlive() && emulation_thread_alive)
+            emulation_thread.start(); // The emulation is only started once, pausing is done through the context
     }
 
     public void stop() {
-        ac.stop(); // Facade Pattern: Simplified method to stop audio processing
+        ac.stop(); // Facade Pattern: Simplified method to stop audio processing, the emulation keeps running
+    }
+
+    /**
+     * Stop the audio processing and the emulation thread for good
+     */
+    public void close() {
+        emulation_thread_alive = false; // The emulation thread exits after its current chunk
+        ac.stop();
+    }
+
+    /**
+     * @return the number of samples waiting in the ring for the audio callback
+     */
+    public int getBufferFill() {
+        return sample_ring.size();
+    }
+
+    /**
+     * @return the number of samples the ring can hold
+     */
+    public int getBufferCapacity() {
+        return sample_ring.capacity();
+    }
+
+    /**
+     * @return the number of samples the ring is kept around
+     */
+    public int getTargetBufferFill() {
+        return target_fill;
+    }
+
+    /**
+     * @return the number of times the audio callback found the ring empty
+     */
+    public long getUnderruns() {
+        return sample_ring.getUnderruns();
+    }
+
+    /**
+     * @return the current correction applied to the sample rate by the dynamic rate control
+     */
+    public double getRateRatio() {
+        return rate_ratio;
     }
 
     public AudioOutput getSelectedOutput() {
@@ -0,0 +1,111 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class hands the audio samples of the emulation thread over to the audio callback without locking
+ * It is a single producer / single consumer ring : only the emulation thread writes and only the audio thread reads
+ * Each side owns its position and only publishes it, a sample is never overwritten before being read
+ */
+public class AudioRingBuffer {
+
+    private final float[] samples;
+    private final int mask;
+    private final AtomicLong write_pos = new AtomicLong(0);
+    private final AtomicLong read_pos = new AtomicLong(0);
+
+    private volatile long underruns = 0;
+    private float last_sample = 0;
+
+    /**
+     * Create a new ring
+     *
+     * @param capacity the minimum number of samples the ring can hold, rounded up to a power of 2
+     */
+    public AudioRingBuffer(int capacity) {
+        samples = new float[Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1];
+        mask = samples.length - 1;
+    }
+
+    /**
+     * Add a sample at the end of the ring
+     * Called by the producer
+     *
+     * @param sample the sample to add
+     * @return false if the ring is full and the sample has been dropped
+     */
+    public boolean offer(float sample) {
+        long write = write_pos.get();
+        if (write - read_pos.get() >= samples.length)
+            return false;
+        samples[(int) write & mask] = sample;
+        write_pos.lazySet(write + 1);
+        return true;
+    }
+
+    /**
+     * Add a block of samples at the end of the ring
+     * Called by the producer
+     *
+     * @param block  the samples to add
+     * @param offset the index of the first sample to add
+     * @param length the number of samples to add
+     * @return the number of samples added, the samples that don't fit in the ring are dropped
+     */
+    public int offer(float[] block, int offset, int length) {
+        long write = write_pos.get();
+        int count = (int) Math.min(length, samples.length - (write - read_pos.get()));
+        for (int i = 0; i < count; i++)
+            samples[(int) (write + i) & mask] = block[offset + i];
+        write_pos.lazySet(write + count);
+        return count;
+    }
+
+    /**
+     * Take the oldest sample of the ring, if the ring is empty an underrun is counted
+     * and the last sample is repeated to avoid a click
+     * Called by the consumer
+     *
+     * @return the oldest sample of the ring
+     */
+    public float poll() {
+        long read = read_pos.get();
+        if (read == write_pos.get()) {
+            underruns++;
+            return last_sample;
+        }
+        last_sample = samples[(int) read & mask];
+        read_pos.lazySet(read + 1);
+        return last_sample;
+    }
+
+    /**
+     * Drop every sample of the ring
+     * Called by the consumer
+     */
+    public void clear() {
+        read_pos.lazySet(write_pos.get());
+        last_sample = 0;
+    }
+
+    /**
+     * @return the number of samples waiting to be read
+     */
+    public int size() {
+        return (int) (write_pos.get() - read_pos.get());
+    }
+
+    /**
+     * @return the number of samples the ring can hold
+     */
+    public int capacity() {
+        return samples.length;
+    }
+
+    /**
+     * @return the number of times the consumer found the ring empty
+     */
+    public long getUnderruns() {
+        return underruns;
+    }
+}
@@ -0,0 +1,82 @@
+package core;
+
+/**
+ * This class latches the events the main loop of the console has to handle
+ * A component raising an interrupt line, starting a DMA or stalling the CPU sets the flag of its event
+ * the flag stays set until the console has handled the event and released it
+ * The main loop only checks whether any flag is set instead of polling every component every cycle
+ * An IRQ held while the CPU ignores it (I flag set) is masked, so it doesn't stop the main loop until the flag is cleared
+ * No deadline is kept, an event is raised by its source at the exact tick it happens
+ * the next event of the PPU and the APU is already their sync limit, which bounds the idle loop skipping
+ */
+public class EventLatch {
+
+    public static final int NMI = 0; // The PPU requested a Non Maskable Interrupt
+    public static final int IRQ = 1; // The APU (frame counter or DMC) or the Mapper raised the IRQ line
+    public static final int DMA = 2; // An OAM DMA transfer is running
+    public static final int CPU_STALL = 3; // The CPU is stalled by the DMC
+
+    private int raised = 0;
+    private int masked = 0;
+
+    /**
+     * Set the flag of an event
+     *
+     * @param event the event to raise
+     */
+    public void raise(int event) {
+        raised |= 1 << event;
+    }
+
+    /**
+     * Clear the flag of an event once it has been handled
+     *
+     * @param event the event to release
+     */
+    public void release(int event) {
+        raised &= ~(1 << event);
+    }
+
+    /**
+     * Ignore the flag of an event until it is unmasked, the flag itself is kept
+     *
+     * @param event the event to mask
+     */
+    public void mask(int event) {
+        masked |= 1 << event;
+    }
+
+    /**
+     * Stop ignoring the flag of an event
+     *
+     * @param event the event to unmask
+     */
+    public void unmask(int event) {
+        masked &= ~(1 << event);
+    }
+
+    /**
+     * Clear the flag and the mask of every event
+     */
+    public void clear() {
+        raised = 0;
+        masked = 0;
+    }
+
+    /**
+     * Return whether the flag of an event is set
+     *
+     * @param event the event to check
+     * @return is the event raised
+     */
+    public boolean isRaised(int event) {
+        return (raised & (1 << event)) != 0;
+    }
+
+    /**
+     * @return is any unmasked event waiting to be handled
+     */
+    public boolean anyRaised() {
+        return (raised & ~masked) != 0;
+    }
+}
@@ -2,9 +2,13 @@ package core;
 
 import core.apu.APU_2A03;
 import core.cartridge.Cartridge;
+import core.cartridge.mappers.Mapper;
 import core.cpu.CPU_6502;
+import core.cpu.CoreType;
 import core.ppu.PPU_2C02;
-import utils.IntegerWrapper;
+
+import java.nio.FloatBuffer;
+import java.util.function.BooleanSupplier;
 
 /**
  * This class represents the Bus of the NES
@@ -13,48 +17,85 @@ import utils.IntegerWrapper;
 public class NES {
 
     private static final long SAVE_INTERVAL = 20000; // Constant for the save interval
+    private static final long TICKS_PER_SAVE_CHECK = 89342; // Number of system ticks between two checks of the save timer (about one frame)
 
     public final int[] controller; // State variable for controller input states
-    public double final_audio_sample = 0.0; // State variable for the final audio sample output
 
     private final byte[] ram; // Encapsulation: Memory for the system RAM
     private final CPU_6502 cpu; // Encapsulation: CPU component
     private final PPU_2C02 ppu; // Encapsulation: PPU component
     private final APU_2A03 apu; // Encapsulation: APU component
     private final int[] controller_state; // Encapsulation: Current state of controllers
+    private final byte[][] read_pages; // Encapsulation: Array backing each 256 bytes page of the CPU addressable range, null if the page needs a dispatch
+    private final int[] read_pages_offset; // Encapsulation: Offset of each page inside its backing array
+    private final byte[][] write_pages; // Encapsulation: Array backing each writable 256 bytes page, null if the page needs a dispatch
+    private final int[] write_pages_offset; // Encapsulation: Offset of each writable page inside its backing array
+    private final EventLatch events; // Encapsulation: Events (interrupts, DMA, CPU stall) raised and not yet handled by the main loop
 
     private long next_save = 0; // Encapsulation: Next time to save state
     private long system_ticks = 0; // Encapsulation: System tick counter
+    private long next_save_check = 0; // Encapsulation: System tick at which the save timer will be checked
+    private int cpu_phase = 0; // Encapsulation: Position of the current tick inside the CPU cycle (the CPU is clocked on phase 0)
     private Cartridge cartridge; // Encapsulation: The currently inserted cartridge
     private int dma_page = 0x00; // Encapsulation: DMA page for transfer
     private int dma_addr = 0x00; // Encapsulation: DMA address for transfer
     private int dma_data = 0x00; // Encapsulation: DMA data buffer
     private boolean dma_transfer = false; // Encapsulation: DMA transfer state
     private boolean dma_dummy = true; // Encapsulation: DMA dummy cycle state
-    private double audio_time = 0.0; // Encapsulation: Time accumulator for audio processing
-    private double time_per_NES_cycle = 0.0; // Encapsulation: Time per NES clock cycle
-    private double time_per_system_sample = 0.0; // Encapsulation: Time per audio sample
+    private int sample_freq = 44100; // Encapsulation: Nominal rate of the audio samples
     private boolean sound_rendering = true; // Encapsulation: Sound rendering state
     private int dummy_cycle_left = 0; // Encapsulation: Dummy cycles left for the CPU
+    private boolean instruction_stepping = true; // Encapsulation: Should the batches run the CPU by whole instructions
+    private boolean idle_loop_skipping = true; // Encapsulation: Should the idle loops of the CPU be fast forwarded
+    private boolean page_tables = true; // Encapsulation: Should the pages of RAM, Program ROM and Cartridge RAM be accessed directly
+    private long idle_cycles_skipped = 0; // Encapsulation: CPU cycles skipped in idle loops since the last completed frame
+    private long last_frame_idle_cycles_skipped = 0; // Encapsulation: CPU cycles skipped in idle loops during the last frame
+    private long total_idle_cycles_skipped = 0; // Encapsulation: CPU cycles skipped in idle loops since the creation of the console
 
     /**
      * Create a new Instance of Bus ready to be started
      */
     public NES() {
+        this(CoreType.SWITCH);
+    }
+
+    /**
+     * Create a new Instance of Bus ready to be started
+     *
+     * @param cpu_core the execution core used by the CPU
+     */
+    public NES(CoreType cpu_core) {
         ram = new byte[2048]; // Initialize RAM with 2KB size
         for (int i = 0; i < 2048; i++)
             ram[i] = 0x0000;
-        cpu = new CPU_6502(); // Initialize the CPU
+        events = new EventLatch(); // Initialize the EventLatch before the components raising events
+        cpu = new CPU_6502(cpu_core); // Strategy Pattern: Initialize the CPU with the requested execution core
         ppu = new PPU_2C02(); // Initialize the PPU
+        ppu.connectEventLatch(events); // Observer Pattern: The PPU notifies the EventLatch of its NMIs
         apu = new APU_2A03(this); // Initialize the APU
         controller = new int[2]; // Initialize controller array
         controller_state = new int[2]; // Initialize controller state array
+        read_pages = new byte[256][]; // Initialize the page tables
+        read_pages_offset = new int[256];
+        write_pages = new byte[256][];
+        write_pages_offset = new int[256];
+        mapRamPages(); // Map the RAM into the page tables
         cpu.connectBus(this); // Mediator Pattern: Connect CPU with the NES bus
     }
 
     public void setSampleFreq(int sampleRate) {
-        time_per_system_sample = 1.0 / (double) sampleRate; // Calculate time per system sample
-        time_per_NES_cycle = 1.0 / 5369318.0; // Set time per NES cycle based on system clock rate
+        sample_freq = sampleRate; // Store the nominal rate, the adjustments are relative to it
+        apu.setSampleRate(sampleRate); // Bridge Pattern: The APU resamples its output at that rate
+    }
+
+    /**
+     * Slightly speed up or slow down the production of audio samples, without resetting the audio output
+     * used to keep the audio output buffer from draining or filling up
+     *
+     * @param ratio the ratio to apply to the nominal sample rate, close to 1
+     */
+    public void adjustSampleFreq(double ratio) {
+        apu.adjustSampleRate(sample_freq * ratio); // Bridge Pattern: Only the timing of the next samples is changed
     }
 
     /**
@@ -79,6 +120,15 @@ public class NES {
         return apu; // Accessor for the APU instance
     }
 
+    /**
+     * Return a Pointer to the EventLatch of the console
+     *
+     * @return the EventLatch
+     */
+    public EventLatch getEventLatch() {
+        return events; // Accessor for the EventLatch instance
+    }
+
     /**
      * Write a value to the CPU Addressable range
      *
@@ -88,7 +138,20 @@ public class NES {
     public void cpuWrite(int addr, int data) {
         data &= 0xFF; // Ensure data is 8-bit
         addr &= 0xFFFF; // Ensure address is 16-bit
-        if (!cartridge.cpuWrite(addr, data)) { // Bridge Pattern: Cartridge handles its own CPU writes
+        byte[] page = write_pages[addr >> 8];
+        if (page != null) { // RAM and Cartridge RAM are directly written
+            page[write_pages_offset[addr >> 8] + (addr & 0xFF)] = (byte) data;
+            return;
+        }
+        boolean mapper_register = addr >= 0x4020; // The Mapper registers are in the Cartridge space
+        if (mapper_register)
+            ppu.sync(); // The Mapper may switch the banks or the mirroring the PPU is rendering from
+        boolean mapped = cartridge.cpuWrite(addr, data); // Bridge Pattern: Cartridge handles its own CPU writes
+        if (mapper_register) {
+            ppu.updateMirroring(); // The Mapper may have switched the mirroring
+            ppu.sync(); // The Mapper may have changed when its next IRQ fires
+        }
+        if (!mapped) {
             if (addr <= 0x1FFF) { // Write to RAM
                 ram[addr & 0x07FF] = (byte) data; // RAM mirroring
             } else if (addr <= 0x3FFF) { // Write to PPU Register
@@ -99,6 +162,7 @@ public class NES {
                 dma_page = data; // Set DMA page
                 dma_addr = 0; // Reset DMA address
                 dma_transfer = true; // Start DMA transfer
+                events.raise(EventLatch.DMA); // The CPU is suspended until the end of the transfer
             } else if (addr == 0x4016) { // Controller state snapshot
                 controller_state[data & 0x1] = controller[data & 0x1]; // Update controller state
             }
@@ -114,20 +178,39 @@ public class NES {
      */
     public int cpuRead(int addr, boolean readOnly) {
         addr &= 0xFFFF; // Ensure address is 16-bit
-        IntegerWrapper data = new IntegerWrapper(); // Wrapper for the read data
-        if (!cartridge.cpuRead(addr, data)) { // Bridge Pattern: Cartridge handles its own CPU reads
+        byte[] page = read_pages[addr >> 8];
+        if (page != null) // RAM, Program ROM and Cartridge RAM are directly indexed
+            return page[read_pages_offset[addr >> 8] + (addr & 0xFF)] & 0xFF;
+        int data = cartridge.cpuRead(addr); // Bridge Pattern: Cartridge handles its own CPU reads
+        if (data == Mapper.UNMAPPED) {
+            data = 0x00; // Open bus reads as 0
             if (addr <= 0x1FFF) // Read from RAM
-                data.value = ram[addr & 0x07FF]; // RAM mirroring
+                data = ram[addr & 0x07FF]; // RAM mirroring
             else if (addr <= 0x3FFF) // Read from PPU Register
-                data.value = ppu.cpuRead(addr & 0x0007, readOnly); // PPU register read handling
+                data = ppu.cpuRead(addr & 0x0007, readOnly); // PPU register read handling
             else if (addr == 0x4015)
-                data.value = apu.cpuRead(addr, readOnly); // APU register read handling
+                data = apu.cpuRead(addr, readOnly); // APU register read handling
             else if (addr >= 0x4016 && addr <= 0x4017 && !readOnly) { // Read controllers
-                data.value = ((controller_state[addr & 0x0001] & 0x80) > 0) ? 0x1 : 0x0; // Serial controller read
+                data = ((controller_state[addr & 0x0001] & 0x80) > 0) ? 0x1 : 0x0; // Serial controller read
                 controller_state[addr & 0x0001] <<= 1; // Shift controller state
             }
         }
-        return data.value & 0xFF; // Return the read value
+        return data & 0xFF; // Return the read value
+    }
+
+    /**
+     * Return the value a CPU read would return if that read has no side effect
+     * only the RAM and the Status Register of the PPU can be polled that way
+     *
+     * @param addr the Address to read from
+     * @return the value that would be read, -1 if the address can't be polled without side effect
+     */
+    public int peekPolledValue(int addr) {
+        if (addr <= 0x1FFF) // RAM
+            return ram[addr & 0x07FF] & 0xFF; // RAM mirroring
+        if (addr <= 0x3FFF && (addr & 0x0007) == 0x0002) // PPU Status Register
+            return ppu.peekStatus();
+        return -1;
     }
 
     /**
@@ -138,6 +221,33 @@ public class NES {
     public void insertCartridge(Cartridge cart) {
         this.cartridge = cart; // Set the cartridge
         ppu.connectCartridge(cartridge); // Bridge Pattern: Link cartridge to PPU
+        cpu.connectCartridge(cartridge); // Bridge Pattern: Link cartridge to CPU for its decode cache
+        cartridge.getMapper().setMappingListener(this::mapCartridgePages); // Observer Pattern: Remap the pages when the Mapper switches banks
+        cartridge.getMapper().connectEventLatch(events); // Observer Pattern: The Mapper notifies the EventLatch of its IRQs
+        mapCartridgePages(); // Map the Cartridge into the page tables
+    }
+
+    /**
+     * Update the page tables entries of the RAM range (0x0000 - 0x1FFF)
+     */
+    private void mapRamPages() {
+        for (int page = 0x00; page <= 0x1F; page++) { // The RAM is mirrored every 2KB up to 0x1FFF
+            read_pages[page] = page_tables ? ram : null;
+            read_pages_offset[page] = (page & 0x07) << 8;
+            write_pages[page] = page_tables ? ram : null;
+            write_pages_offset[page] = (page & 0x07) << 8;
+        }
+    }
+
+    /**
+     * Update the page tables entries of the Cartridge range (0x4100 - 0xFFFF)
+     * using the current banks of the Mapper
+     */
+    private void mapCartridgePages() {
+        for (int page = 0x41; page <= 0xFF; page++) { // The page 0x40 contains the APU and I/O registers
+            read_pages[page] = page_tables ? cartridge.getCpuReadPage(page, read_pages_offset) : null;
+            write_pages[page] = page_tables ? cartridge.getCpuWritePage(page, write_pages_offset) : null;
+        }
     }
 
     /**
@@ -147,12 +257,16 @@ public class NES {
         cpu.reset(); // Reset the CPU
         ppu.reset(); // Reset the PPU
         cartridge.reset(); // Reset the cartridge
+        ppu.updateMirroring(); // The Mapper may have reset the mirroring
         system_ticks = 0; // Reset system tick counter
+        next_save_check = 0; // Reset the save timer check
+        cpu_phase = 0; // Realign the CPU cycle
         dma_page = 0x00; // Reset DMA state
         dma_addr = 0x00; // Reset DMA state
         dma_data = 0x00; // Reset DMA state
         dma_dummy = true; // Reset DMA dummy state
         dma_transfer = false; // Reset DMA transfer state
+        events.release(EventLatch.DMA); // The transfer is aborted
     }
 
     /**
@@ -163,77 +277,280 @@ public class NES {
         apu.startup(); // Startup the APU
         ppu.reset(); // Reset the PPU
         cartridge.reset(); // Reset the cartridge
+        ppu.updateMirroring(); // The Mapper may have reset the mirroring
         system_ticks = 0; // Reset system tick counter
+        next_save_check = 0; // Reset the save timer check
+        cpu_phase = 0; // Realign the CPU cycle
     }
 
     /**
      * Compute one console tick
      * the PPU is clocked every times
      * the CPU is clocked one every 3 times
+     * the audio samples produced by the APU are read by block with readAudio
+     */
+    public void clock() {
+        tick(); // Advance the whole system by one tick
+        if (events.anyRaised())
+            pollInterrupts(); // Handle the interrupts raised during the tick
+        if (system_ticks >= next_save_check) // Only look at the wall clock from time to time
+            checkSave();
+    }
+
+    /**
+     * Read the audio samples produced since the last call, as values between -1 and 1
+     *
+     * @param out    the array to fill
+     * @param offset the index of the first sample to write
+     * @param length the maximum number of samples to write
+     * @return the number of samples written
+     */
+    public int readAudio(float[] out, int offset, int length) {
+        return apu.readSamples(out, offset, length); // Bridge Pattern: The APU renders the whole block at once
+    }
+
+    /**
+     * Read the audio samples produced since the last call, as values between -1 and 1
+     *
+     * @param out the buffer to fill, from its position up to its limit
+     * @return the number of samples written
+     */
+    public int readAudio(FloatBuffer out) {
+        return apu.readSamples(out); // Bridge Pattern: The APU renders the whole block at once
+    }
+
+    /**
+     * Run the console until the PPU completes the current frame
+     * The frame complete flag of the PPU is consumed
+     */
+    public void runFrame() {
+        ppu.frame_complete = false; // Discard any frame that hasn't been consumed yet
+        if (instruction_stepping)
+            runInstructions(Long.MAX_VALUE, true);
+        else {
+            while (!ppu.frame_complete) {
+                if (cpu_phase == 0 && events.anyRaised())
+                    pollInterrupts(); // Interrupts are only observed by the CPU, so we poll them once per CPU cycle
+                tick();
+            }
+        }
+        ppu.frame_complete = false; // Consume the frame
+        last_frame_idle_cycles_skipped = idle_cycles_skipped; // Publish the idle cycles of the frame
+        idle_cycles_skipped = 0;
+        endBatch();
+    }
+
+    /**
+     * Run the console for the specified number of CPU cycles (3 system ticks each)
+     *
+     * @param cycles the number of CPU cycles to run
+     */
+    public void runCycles(long cycles) {
+        long end = system_ticks + cycles * 3; // Tick at which we stop
+        if (instruction_stepping)
+            runInstructions(end, false);
+        else {
+            while (system_ticks < end) {
+                if (cpu_phase == 0 && events.anyRaised())
+                    pollInterrupts(); // Interrupts are only observed by the CPU, so we poll them once per CPU cycle
+                tick();
+            }
+        }
+        endBatch();
+    }
+
+    /**
+     * Run the console until the condition is met
+     * The condition is evaluated at the start of every CPU cycle
+     *
+     * @param condition the condition to reach
+     */
+    public void runUntil(BooleanSupplier condition) {
+        while (true) {
+            if (cpu_phase == 0) {
+                if (events.anyRaised())
+                    pollInterrupts(); // Interrupts are only observed by the CPU, so we poll them once per CPU cycle
+                if (condition.getAsBoolean())
+                    break; // The condition is met, we stop before the CPU cycle
+            }
+            tick();
+        }
+        endBatch();
+    }
+
+    /**
+     * Run the console by whole CPU instructions until the end tick is reached
+     * or, if requested, until the PPU completes a frame
+     * The CPU executes an instruction during its first cycle, then the PPU and APU are caught up
+     * for the cycles the instruction takes without clocking the CPU or polling the interrupts each time
+     * The only check of the catch up loop is whether the EventLatch holds an event
+     * We fall back to single ticks while a DMA is running or the CPU is stalled
+     * When the CPU jumps back to an idle loop, the iterations are skipped up to the next event
+     *
+     * @param end         the tick at which we stop
+     * @param until_frame should we stop when the PPU completes a frame
+     */
+    private void runInstructions(long end, boolean until_frame) {
+        while (system_ticks < end && !(until_frame && ppu.frame_complete)) {
+            if (cpu_phase != 0) {
+                tick();
+                continue;
+            }
+            if (events.anyRaised()) {
+                pollInterrupts(); // An interrupt may replace the instruction we are about to fetch
+                if (dma_transfer || dummy_cycle_left != 0) {
+                    tick();
+                    continue;
+                }
+            }
+            int pc = cpu.getProgramCounter();
+            tick(); // The CPU executes a whole instruction (or idles if it's not done with the previous one)
+            boolean jumped_back = cpu.getProgramCounter() <= pc;
+            //We catch up the two remaining ticks of the cycle and every idle cycle of the instruction
+            long catch_up_end = Math.min(end, system_ticks + 2 + 3L * cpu.getIdleCycles());
+            int skipped_cycles = 0;
+            while (system_ticks < catch_up_end) {
+                if (cpu_phase == 0) {
+                    if (events.anyRaised())
+                        break; // An interrupt, a DMA or a stall must be handled at this exact cycle, the main loop will do it
+                    ppu.clock();
+                    apu.clock();
+                    if (dummy_cycle_left == 0) // The APU may have stalled the CPU during this tick
+                        skipped_cycles++;
+                    else
+                        consumeStallCycle();
+                } else {
+                    ppu.clock();
+                    apu.clock();
+                }
+                endTick();
+                if (until_frame && ppu.frame_complete)
+                    break;
+            }
+            cpu.skipIdleCycles(skipped_cycles);
+            if (jumped_back && idle_loop_skipping && cpu_phase == 0 && !(until_frame && ppu.frame_complete))
+                skipIdleLoop(end);
+        }
+    }
+
+    /**
+     * Fast forward the iterations of the idle loop the CPU is about to run, if any
+     * The PPU and APU are clocked as usual, but the CPU only accounts for the iterations as they don't alter anything
+     * We only skip whole iterations that end before the next event the loop could observe
+     *
+     * @param end the tick at which the batch stops
      */
-    public boolean clock(boolean update_apu_visual) {
+    private void skipIdleLoop(long end) {
+        if (events.anyRaised())
+            return; // The main loop has an event to handle first
+        int loop_cycles = cpu.getIdleLoopCycles();
+        if (loop_cycles == 0)
+            return;
+        boolean status_polled = cpu.getIdleLoopAddress() >= 0x2000; // The other polled addresses are in RAM
+        long quiet_ticks = Math.min(end - system_ticks, Math.min(ppu.getQuietClocks(status_polled), apu.getQuietClocks()));
+        long iterations = quiet_ticks / (3L * loop_cycles);
+        for (long ticks = iterations * 3 * loop_cycles; ticks > 0; ticks--) {
+            ppu.clock();
+            apu.clock();
+            endTick();
+        }
+        cpu.skipIdleLoop(iterations * loop_cycles);
+        idle_cycles_skipped += iterations * loop_cycles;
+        total_idle_cycles_skipped += iterations * loop_cycles;
+    }
+
+    /**
+     * Compute one console tick without any interrupt or save handling
+     */
+    private void tick() {
         ppu.clock(); // Clock the PPU every tick
-        apu.clock(sound_rendering, time_per_NES_cycle); // Clock the APU every tick
-        if (system_ticks % 3 == 0) { // Clock the CPU every 3 ticks
+        apu.clock(); // Clock the APU every tick
+        if (cpu_phase == 0) { // Clock the CPU every 3 ticks
             if (dma_transfer) {
                 if (dma_dummy) { // Handle DMA dummy cycle
-                    if (system_ticks % 2 == 1)
+                    if ((system_ticks & 0x1) == 1)
                         dma_dummy = false;
                 } else { // Handle DMA transfer cycle
-                    if (system_ticks % 2 == 0) // Read from memory on even cycles
+                    if ((system_ticks & 0x1) == 0) // Read from memory on even cycles
                         dma_data = cpuRead(dma_page << 8 | dma_addr, false);
                     else { // Write to PPU memory on odd cycles
-                        switch ((dma_addr) & 0x03) {
-                            case 0x0:
-                                ppu.getOams()[dma_addr >> 2].setY(dma_data);
-                            case 0x1:
-                                ppu.getOams()[dma_addr >> 2].setId(dma_data);
-                            case 0x2:
-                                ppu.getOams()[dma_addr >> 2].setAttribute(dma_data);
-                            case 0x3:
-                                ppu.getOams()[dma_addr >> 2].setX(dma_data);
-                        }
+                        ppu.sync(); // The OAM must not change under the sprites the PPU hasn't evaluated yet
+                        ppu.writeOam(dma_addr, dma_data);
                         dma_addr++;
                         dma_addr &= 0xFF;
                         if (dma_addr == 0x00) { // End of DMA transfer
                             dma_transfer = false;
                             dma_dummy = true;
+                            events.release(EventLatch.DMA);
                         }
                     }
                 }
             } else if (dummy_cycle_left == 0)
                 cpu.clock(); // Clock the CPU
             else
-                dummy_cycle_left--;
+                consumeStallCycle();
         }
+        endTick();
+    }
 
-        boolean audioSampleReady = false;
-        audio_time += time_per_NES_cycle; // Accumulate time for audio sampling
-        if (audio_time >= time_per_system_sample) { // Check if it's time for an audio sample
-            audio_time -= time_per_system_sample; // Reset audio time
-            if (sound_rendering)
-                final_audio_sample = apu.getSample(update_apu_visual); // Get audio sample from APU
-            else
-                final_audio_sample = 0;
-            audioSampleReady = true;
-        }
+    /**
+     * Advance the tick counters
+     */
+    private void endTick() {
+        system_ticks++; // Increment system ticks
+        cpu_phase = cpu_phase == 2 ? 0 : cpu_phase + 1; // Advance inside the CPU cycle
+    }
 
-        if (ppu.nmi())
-            cpu.nmi(); // Handle PPU NMI interrupt
-        if (apu.irq())
-            cpu.irq(); // Handle APU IRQ interrupt
-        if (cartridge.getMapper().irqState()) {
-            cartridge.getMapper().irqClear();
-            cpu.irq(); // Handle Cartridge IRQ interrupt
+    /**
+     * Consume one of the cycles the CPU is stalled for
+     */
+    private void consumeStallCycle() {
+        dummy_cycle_left--;
+        if (dummy_cycle_left == 0)
+            events.release(EventLatch.CPU_STALL); // The CPU resumes on the next cycle
+    }
+
+    /**
+     * Forward the due interrupts to the CPU
+     * the IRQ event is kept as long as the APU or the Mapper holds the line, the NMI and Mapper IRQ are acknowledged
+     * While the CPU ignores the IRQs, the event is masked until it clears its I flag
+     */
+    private void pollInterrupts() {
+        if (events.isRaised(EventLatch.NMI)) {
+            if (ppu.nmi())
+                cpu.nmi(); // Handle PPU NMI interrupt
+            events.release(EventLatch.NMI);
+        }
+        if (events.isRaised(EventLatch.IRQ)) {
+            if (cpu.isIrqDisabled())
+                events.mask(EventLatch.IRQ); // The CPU unmasks the event when it clears its I flag
+            else if (apu.irq())
+                cpu.irq(); // Handle APU IRQ interrupt
+            else if (cartridge.getMapper().irqState()) {
+                cartridge.getMapper().irqClear();
+                cpu.irq(); // Handle Cartridge IRQ interrupt
+            } else
+                events.release(EventLatch.IRQ); // The line has been released
         }
+    }
 
+    /**
+     * Handle the interrupts raised during the last ticks of a batch and the save timer
+     */
+    private void endBatch() {
+        pollInterrupts(); // The last CPU cycle of the batch may have been cut short
+        checkSave(); // Check the save timer once per batch
+    }
+
+    /**
+     * Save the Cartridge RAM if the save interval has elapsed
+     */
+    private void checkSave() {
+        next_save_check = system_ticks + TICKS_PER_SAVE_CHECK; // Schedule the next check
         if (System.currentTimeMillis() >= next_save) { // Save the state if necessary
             cartridge.save(); // Save the cartridge state
             next_save = System.currentTimeMillis() + SAVE_INTERVAL; // Update the next save time
         }
-        system_ticks++; // Increment system ticks
-
-        return audioSampleReady; // Return whether an audio sample is ready
     }
 
     /**
@@ -250,6 +567,74 @@ public class NES {
      */
     public void enableSoundRendering(boolean enabled) {
         this.sound_rendering = enabled; // Enable or disable sound rendering
+        apu.enableSampling(enabled); // Bridge Pattern: The APU stops clocking what only affects the output
+    }
+
+    /**
+     * Select how runFrame and runCycles schedule the CPU
+     * when enabled, the PPU and APU are caught up after each instruction instead of interleaving every CPU cycle
+     * both modes produce the same results, the per cycle mode is kept as a reference
+     *
+     * @param enabled should the CPU be run by whole instructions
+     */
+    public void enableInstructionStepping(boolean enabled) {
+        this.instruction_stepping = enabled; // Select the CPU scheduling mode
+    }
+
+    /**
+     * Select whether the next frame is composed, overriding the frame skip for that frame only
+     * the frames that aren't composed aren't handed to the display, but everything the CPU can observe stays exact
+     *
+     * @param render should the next frame be composed
+     */
+    public void setRenderNextFrame(boolean render) {
+        ppu.setRenderNextFrame(render); // Bridge Pattern: The choice is applied by the PPU at the start of the frame
+    }
+
+    /**
+     * Set the number of frames that aren't composed between 2 composed frames, used for fast forward
+     *
+     * @param frame_skip the number of frames skipped after each composed frame, 0 to compose every frame
+     */
+    public void setFrameSkip(int frame_skip) {
+        ppu.setFrameSkip(frame_skip); // Bridge Pattern: The policy is applied by the PPU at the start of each frame
+    }
+
+    /**
+     * Enable or disable the fast forward of the idle loops of the CPU, only used when stepping by instructions
+     * both modes produce the same results
+     *
+     * @param enabled should the idle loops be skipped
+     */
+    public void enableIdleLoopSkipping(boolean enabled) {
+        this.idle_loop_skipping = enabled; // Select whether the idle loops are skipped
+    }
+
+    /**
+     * Enable or disable the direct access to the pages of RAM, Program ROM and Cartridge RAM
+     * otherwise every access goes through the dispatch chain, which produces the same results and is kept as a reference
+     *
+     * @param enabled should the page tables be used
+     */
+    public void enablePageTables(boolean enabled) {
+        this.page_tables = enabled; // Select whether the pages are accessed directly
+        mapRamPages(); // Fill or empty the page tables
+        if (cartridge != null)
+            mapCartridgePages();
+    }
+
+    /**
+     * @return the number of CPU cycles skipped in idle loops during the last frame run by runFrame
+     */
+    public long getIdleCyclesSkippedLastFrame() {
+        return last_frame_idle_cycles_skipped; // Accessor for the idle cycles of the last frame
+    }
+
+    /**
+     * @return the number of CPU cycles skipped in idle loops since the creation of the console
+     */
+    public long getTotalIdleCyclesSkipped() {
+        return total_idle_cycles_skipped; // Accessor for the total idle cycles
     }
 
     /**
@@ -270,6 +655,10 @@ public class NES {
      */
     public void haltCPU(int cycles) {
         dummy_cycle_left = cycles; // Set the number of dummy cycles for the CPU
+        if (cycles > 0)
+            events.raise(EventLatch.CPU_STALL); // The main loop must stop skipping CPU cycles
+        else
+            events.release(EventLatch.CPU_STALL);
     }
 
     /**
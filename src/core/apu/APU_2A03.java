@@ -1,12 +1,14 @@
 package core.apu;
 
 import core.NES;
+import core.EventLatch;
 import core.apu.channels.DMCChannel;
 import core.apu.channels.NoiseChannel;
 import core.apu.channels.PulseChannel;
 import core.apu.channels.TriangleChannel;
 import utils.AudioSampleCollection;
 
+import java.nio.FloatBuffer;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -16,10 +18,45 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 public class APU_2A03 {
 
     private static final int VISUALIZER_SAMPLE_SIZE = 256;
-    private static final double CLOCK_TIME = .333333333 / 1789773.0;
+    //The visualizer is fed every 203 CPU cycles, about every 5 samples at 44.1kHz
+    private static final int VISUALIZER_PERIOD = 203;
+    //The BlipBuffer frame is ended automatically after 1/16th of a second if nobody reads the samples
+    private static final int MAX_BLIP_FRAME = 111860;
+    //The APU is caught up at least every 65536 clocks (about 12ms), even if nothing depends on it
+    private static final int MAX_SYNC_LIMIT = 1 << 16;
+    //The deltas added to the BlipBuffer are fixed point numbers of the output of the Mixer
+    private static final int BLIP_AMPLITUDE = 1 << 15;
+    private static final double CPU_CLOCK_RATE = 5369318.0 / 3;
 
     private static double volume = 1;
-    private static int skip_audio_sample = 2;
+
+    //The frame counter value of each step of the frame sequencer, the 2nd and 4th steps are half frames
+    private static final int[] FOUR_STEP_SEQUENCE = {3729, 7457, 11186, 14916};
+    private static final int[] FIVE_STEP_SEQUENCE = {3729, 7457, 11186, 18641};
+
+    //The outputs of the non linear Mixer in BLIP_AMPLITUDE units, indexed by p1 + p2 and by 3 * t + 2 * n + d
+    private static final int[] PULSE_TABLE = new int[31];
+    private static final int[] TND_TABLE = new int[203];
+    //The outputs of the linear approximation of the Mixer, one table per input
+    private static final int[] LINEAR_PULSE_TABLE = new int[31];
+    private static final int[] LINEAR_TRIANGLE_TABLE = new int[16];
+    private static final int[] LINEAR_NOISE_TABLE = new int[16];
+    private static final int[] LINEAR_DMC_TABLE = new int[128];
+
+    static {
+        for (int i = 1; i < PULSE_TABLE.length; i++)
+            PULSE_TABLE[i] = (int) Math.round(95.52 / (8128.0 / i + 100) * BLIP_AMPLITUDE);
+        for (int i = 1; i < TND_TABLE.length; i++)
+            TND_TABLE[i] = (int) Math.round(163.67 / (24329.0 / i + 100) * BLIP_AMPLITUDE);
+        for (int i = 0; i < LINEAR_PULSE_TABLE.length; i++)
+            LINEAR_PULSE_TABLE[i] = (int) Math.round(0.00752 * 1.5 * i * BLIP_AMPLITUDE);
+        for (int i = 0; i < 16; i++) {
+            LINEAR_TRIANGLE_TABLE[i] = (int) Math.round(0.00851 * 1.5 * i * BLIP_AMPLITUDE);
+            LINEAR_NOISE_TABLE[i] = (int) Math.round(0.00494 * 1.5 * i * BLIP_AMPLITUDE);
+        }
+        for (int i = 0; i < LINEAR_DMC_TABLE.length; i++)
+            LINEAR_DMC_TABLE[i] = (int) Math.round(0.00335 * 1.5 * i * BLIP_AMPLITUDE);
+    }
 
     public static final int[] length_table = {
             10, 254, 20, 2, 40, 4, 80, 6, 160, 8, 60,
@@ -32,26 +69,38 @@ public class APU_2A03 {
     private final NoiseChannel noise;
     private final DMCChannel dmc;
     private final Queue<AudioSampleCollection> audio_visualizer_queue;
+    private final EventLatch events;
+    private final BlipBuffer blip_buffer;
 
+    //The position of the clock inside the APU cycle (2 CPU cycles, 6 clocks)
     private int clock_counter = 0;
-    private double total_time = 0.0;
+    private int pending_clocks = 0;
+    private int sync_limit = 1;
     private int frame_counter = 0;
     private int cycle_remaining_since_4017_write = -1;
+    private int frame_step = 0;
+    private int next_frame_step = FOUR_STEP_SEQUENCE[0];
 
     private boolean frame_IRQ = false;
     private boolean flag_IRQ_inhibit = false;
     private boolean flag_5_step_mode = false;
 
     private boolean raw_audio = false;
-    private boolean pulse_1_rendered = true;
-    private boolean pulse_2_rendered = true;
-    private boolean noise_rendered = true;
-    private boolean triangle_rendered = true;
-    private boolean dmc_rendered = true;
+    //The output of each channel is masked by its mask before being mixed, 0 to mute the channel
+    private int pulse_1_mask = 0xFF;
+    private int pulse_2_mask = 0xFF;
+    private int noise_mask = 0xFF;
+    private int triangle_mask = 0xFF;
+    private int dmc_mask = 0xFF;
     private boolean linear_out = false;
+    private boolean sampling = true;
+    private boolean visualizer_enabled = false;
 
     private int cycles_until_visualizer_sample = 0;
-    private int audio_sample_until_skip = 0;
+
+    //The CPU cycles since the last sample and the output of the Mixer the last time it was added to the BlipBuffer
+    private int blip_time = 0;
+    private int blip_output = 0;
 
     /**
      * Create a new instance of an APU
@@ -62,7 +111,34 @@ public class APU_2A03 {
         triangle = new TriangleChannel();
         noise = new NoiseChannel();
         dmc = new DMCChannel(nes);
+        events = nes.getEventLatch();
         audio_visualizer_queue = new ConcurrentLinkedQueue<>();
+        blip_buffer = new BlipBuffer(CPU_CLOCK_RATE, 44100);
+    }
+
+    /**
+     * Set the rate of the samples returned by getSample
+     *
+     * @param sample_rate the number of samples per second
+     */
+    public void setSampleRate(int sample_rate) {
+        sync();
+        blip_buffer.setRates(CPU_CLOCK_RATE, sample_rate);
+        blip_time = 0;
+        blip_output = 0;
+    }
+
+    /**
+     * Nudge the rate of the samples returned by getSample without dropping the pending output
+     *
+     * @param sample_rate the number of samples per second, close to the rate set by setSampleRate
+     */
+    public void adjustSampleRate(double sample_rate) {
+        //The pending deltas are placed at the previous rate
+        sync();
+        blip_buffer.endFrame(blip_time);
+        blip_time = 0;
+        blip_buffer.adjustRates(CPU_CLOCK_RATE, sample_rate);
     }
 
     /**
@@ -83,49 +159,117 @@ public class APU_2A03 {
         return volume;
     }
 
-    public static void setSampleSkip(int sampleSkip) {
-        skip_audio_sample = sampleSkip;
+    /**
+     * Select the quality of the conversion of the output to the sample rate
+     *
+     * @param quality the quality tier to use
+     */
+    public void setResamplingQuality(ResamplingQuality quality) {
+        blip_buffer.setQuality(quality);
+    }
+
+    /**
+     * @return the quality tier used to convert the output to the sample rate
+     */
+    public ResamplingQuality getResamplingQuality() {
+        return blip_buffer.getQuality();
+    }
+
+    /**
+     * Read the audio samples produced since the last call, as values between -1 and 1
+     * the APU is caught up first, the samples are taken from the BlipBuffer
+     *
+     * @param out    the array to fill
+     * @param offset the index of the first sample to write
+     * @param length the maximum number of samples to write
+     * @return the number of samples written
+     */
+    public int readSamples(float[] out, int offset, int length) {
+        int count = endAudioFrame(length);
+        float scale = (float) (2 * volume / BLIP_AMPLITUDE);
+        for (int i = 0; i < count; i++)
+            out[offset + i] = blip_buffer.readSample() * scale;
+        return count;
+    }
+
+    /**
+     * Read the audio samples produced since the last call, as values between -1 and 1
+     * the samples are written from the position of the buffer, up to its limit
+     *
+     * @param out the buffer to fill
+     * @return the number of samples written
+     */
+    public int readSamples(FloatBuffer out) {
+        int count = endAudioFrame(out.remaining());
+        float scale = (float) (2 * volume / BLIP_AMPLITUDE);
+        for (int i = 0; i < count; i++)
+            out.put(blip_buffer.readSample() * scale);
+        return count;
+    }
+
+    /**
+     * Catch up the APU and make every sample produced until now available
+     *
+     * @param length the maximum number of samples that will be read
+     * @return the number of samples that can be read, up to length
+     */
+    private int endAudioFrame(int length) {
+        sync();
+        blip_buffer.endFrame(blip_time);
+        blip_time = 0;
+        return Math.min(blip_buffer.samplesAvailable(), length);
+    }
+
+    /**
+     * Enable or Disable the feeding of the audio visualizer
+     *
+     * @param enabled should the visualizer be fed
+     */
+    public void enableVisualizer(boolean enabled) {
+        visualizer_enabled = enabled;
+    }
+
+    /**
+     * Push the current output of the channels and the Mixer to the visualizer queue
+     */
+    private void feedVisualizer() {
+        if (audio_visualizer_queue.size() >= VISUALIZER_SAMPLE_SIZE)
+            audio_visualizer_queue.poll();
+
+        AudioSampleCollection sampleCollection = new AudioSampleCollection();
+        sampleCollection.pulse1 = (pulse_1.output & pulse_1_mask) / 15.0;
+        sampleCollection.pulse2 = (pulse_2.output & pulse_2_mask) / 15.0;
+        sampleCollection.triangle = (triangle.output & triangle_mask) / 15.0;
+        sampleCollection.noise = (noise.output & noise_mask) / 15.0;
+        sampleCollection.dmc = (dmc.output & dmc_mask) / 128.0;
+        sampleCollection.mixer = blip_output / (double) BLIP_AMPLITUDE * 1.5;
+        audio_visualizer_queue.offer(sampleCollection);
     }
 
     /**
-     * Return the current audio sample as a value between -1 and 1
+     * Mix the output of the rendered channels through the Mixer tables
      *
-     * @return the current audio sample as a value between -1 and 1
-     */
-    public double getSample(boolean update_visual) {
-        double sample;
-        double p1 = pulse_1_rendered ? pulse_1.sample * 15 : 0;
-        double p2 = pulse_2_rendered ? pulse_2.sample * 15 : 0;
-        double t = triangle_rendered ? triangle.sample * 15 : 0;
-        double n = noise_rendered ? noise.sample * 15 : 0;
-        double d = dmc_rendered ? dmc.output * 128 : 0;
+     * @return the output of the Mixer, in BLIP_AMPLITUDE units
+     */
+    private int mix() {
+        int pulse = (pulse_1.output & pulse_1_mask) + (pulse_2.output & pulse_2_mask);
+        int t = triangle.output & triangle_mask;
+        int n = noise.output & noise_mask;
+        int d = dmc.output & dmc_mask;
         if (linear_out)
-            sample = (0.00752 * (p1 + p2) + 0.00851 * t + 0.00494 * n + 0.00335 * d) * 1.5;
-        else {
-            double pulse = (p1 + p2 == 0) ? 0 : 95.88 / ((8128.0 / (p1 + p2)) + 100);
-            double tnd = (t == 0 && n == 0 && d == 0) ? 0 : 159.79 / (1.0 / (t / 8227.0 + n / 12241.0 + d / 22638.0) + 100);
-            sample = pulse + tnd;
-        }
+            return LINEAR_PULSE_TABLE[pulse] + LINEAR_TRIANGLE_TABLE[t] + LINEAR_NOISE_TABLE[n] + LINEAR_DMC_TABLE[d];
+        return PULSE_TABLE[pulse] + TND_TABLE[3 * t + 2 * n + d];
+    }
 
-        if (update_visual) {
-            if (cycles_until_visualizer_sample == 0) {
-                if (audio_visualizer_queue.size() >= VISUALIZER_SAMPLE_SIZE)
-                    audio_visualizer_queue.poll();
-
-                AudioSampleCollection sampleCollection = new AudioSampleCollection();
-                sampleCollection.pulse1 = pulse_1_rendered ? pulse_1.sample : 0;
-                sampleCollection.pulse2 = pulse_2_rendered ? pulse_2.sample : 0;
-                sampleCollection.triangle = triangle_rendered ? triangle.sample : 0;
-                sampleCollection.noise = noise_rendered ? noise.sample : 0;
-                sampleCollection.dmc = dmc_rendered ? dmc.output : 0;
-                sampleCollection.mixer = sample * 1.5;
-                audio_visualizer_queue.offer(sampleCollection);
-
-                cycles_until_visualizer_sample = 1280 / VISUALIZER_SAMPLE_SIZE;
-            }
-            cycles_until_visualizer_sample--;
+    /**
+     * Add the change of the output of the Mixer to the BlipBuffer if any channel has changed during the CPU cycle
+     */
+    private void updateOutput() {
+        int output = mix();
+        if (output != blip_output) {
+            blip_buffer.addDelta(blip_time, output - blip_output);
+            blip_output = output;
         }
-        return sample * 2 * volume;
     }
 
     public Queue<AudioSampleCollection> getAudioVisualizerQueue() {
@@ -139,7 +283,7 @@ public class APU_2A03 {
      * @param enabled should the channel be rendered
      */
     public void setPulse1Rendered(boolean enabled) {
-        this.pulse_1_rendered = enabled;
+        this.pulse_1_mask = enabled ? 0xFF : 0x00;
     }
 
     /**
@@ -149,7 +293,7 @@ public class APU_2A03 {
      * @param enabled should the channel be rendered
      */
     public void setPulse2Rendered(boolean enabled) {
-        this.pulse_2_rendered = enabled;
+        this.pulse_2_mask = enabled ? 0xFF : 0x00;
     }
 
     /**
@@ -159,7 +303,7 @@ public class APU_2A03 {
      * @param enabled should the channel be rendered
      */
     public void setNoiseRendered(boolean enabled) {
-        this.noise_rendered = enabled;
+        this.noise_mask = enabled ? 0xFF : 0x00;
     }
 
     /**
@@ -169,7 +313,7 @@ public class APU_2A03 {
      * @param enabled should the channel be rendered
      */
     public void setTriangleRendered(boolean enabled) {
-        this.triangle_rendered = enabled;
+        this.triangle_mask = enabled ? 0xFF : 0x00;
     }
 
     /**
@@ -179,13 +323,14 @@ public class APU_2A03 {
      * @param enabled should the channel be rendered
      */
     public void setDMCRendered(boolean enabled) {
-        this.dmc_rendered = enabled;
+        this.dmc_mask = enabled ? 0xFF : 0x00;
     }
 
     /**
      * Reset the APU
      */
     public void reset() {
+        sync();
         cpuWrite(0x4015, 0x00);
     }
 
@@ -193,12 +338,14 @@ public class APU_2A03 {
      * Set the APU to startup
      */
     public void startup() {
+        sync();
         for (int i = 0x4000; i < 0x4007; i++)
             cpuWrite(i, 0x00);
         for (int i = 0x4010; i < 0x4013; i++)
             cpuWrite(i, 0x00);
         noise.setSequence(0xDBDB);
         frame_counter = 15;
+        updateFrameStep();
         cpuWrite(0x4015, 0x00);
     }
 
@@ -208,6 +355,8 @@ public class APU_2A03 {
      * @param addr the address to write to
      */
     public void cpuWrite(int addr, int data) {
+        //The write happens after every pending clock
+        sync();
         //If bit 7 is set quarter and half frame signals ar triggered
         switch (addr) {
             case 0x4000 -> pulse_1.writeDutyCycle(data);
@@ -245,6 +394,8 @@ public class APU_2A03 {
                 dmc.clearIrq();
                 if ((data & 0x10) == 0x00)
                     dmc.clearReader();
+                else
+                    dmc.startReader();
                 if ((data & 0x1) == 0x1)
                     pulse_1.enable(true);
                 else
@@ -266,6 +417,7 @@ public class APU_2A03 {
             }
             case 0x4017 -> {
                 flag_5_step_mode = (data & 0x80) == 0x80;
+                updateFrameStep();
                 flag_IRQ_inhibit = (data & 0x40) == 0x40;
                 if (flag_IRQ_inhibit) frame_IRQ = false;
                 cycle_remaining_since_4017_write = 4;
@@ -286,6 +438,7 @@ public class APU_2A03 {
                 }
             }
         }
+        updateSyncLimit();
     }
 
     /**
@@ -296,6 +449,7 @@ public class APU_2A03 {
      * @return the value represent the state of the counters of every implemented channels
      */
     public int cpuRead(int addr, boolean readOnly) {
+        sync();
         int data = 0x00;
         if (addr == 0x4015) {
             data |= (pulse_1.getLengthCounter() > 0) ? 0x01 : 0x00;
@@ -308,90 +462,188 @@ public class APU_2A03 {
         }
         if (!readOnly)
             frame_IRQ = false;
+        updateSyncLimit();
         return data;
     }
 
     /**
-     * A system clock of the APU, sampling can be deactivated for better performance
-     * but there will be no sound
-     * when sampling is disabled we only update what is susceptible to be read (the length counters)
+     * Enable or Disable sampling, when sampling is disabled we only update what is susceptible to be read (the length counters)
+     * the output goes back to 0 and silent samples are still produced
+     * The APU is synchronized, the caller must hold the lock of the NES running it
      *
-     * @param enable_sampling if sampling is enabled
+     * @param enabled if sampling is enabled
      */
-    public void clock(boolean enable_sampling, double timePerClock) {
+    public void enableSampling(boolean enabled) {
+        sync();
+        if (!enabled && blip_output != 0) {
+            blip_buffer.addDelta(blip_time, -blip_output);
+            blip_output = 0;
+        }
+        sampling = enabled;
+    }
+
+    /**
+     * A system clock of the APU
+     * The clocks are only accumulated, the APU catches up when something depends on its state
+     * or when it may raise an IRQ or stall the CPU
+     */
+    public void clock() {
+        if (++pending_clocks >= sync_limit)
+            sync();
+    }
+
+    /**
+     * Run all the accumulated clocks so the APU state is up to date
+     * must be called before anything reads or alters the state of the channels or the frame counter
+     * Only 1 clock out of 3 (a CPU cycle) does something, the others are skipped at once
+     */
+    public void sync() {
+        while (pending_clocks > 0) {
+            int phase = clock_counter % 3;
+            if (phase != 0) {
+                int skipped = Math.min(3 - phase, pending_clocks);
+                clock_counter += skipped;
+                pending_clocks -= skipped;
+                if (clock_counter == 6)
+                    clock_counter = 0;
+            } else {
+                clockCycle();
+                clock_counter++;
+                pending_clocks--;
+            }
+        }
+        //Nobody reads the samples, we don't let the time of the BlipBuffer overflow
+        if (blip_time > MAX_BLIP_FRAME) {
+            blip_buffer.endFrame(blip_time);
+            blip_time = 0;
+        }
+        updateSyncLimit();
+    }
+
+    /**
+     * Compute how many clocks can be accumulated before the APU may raise an IRQ or stall the CPU
+     */
+    private void updateSyncLimit() {
+        sync_limit = Math.max(Math.min(quietClocks(), MAX_SYNC_LIMIT), 1);
+    }
+
+    /**
+     * Compute a CPU cycle of the APU, the frame counter and the pulse channels are clocked every other cycle
+     */
+    private void clockCycle() {
         boolean quarter_frame = false;
         boolean half_frame = false;
 
-        total_time += CLOCK_TIME;
-        if (clock_counter % 3 == 0) {
-            dmc.clock();
-            if (enable_sampling)
-                triangle.computeSample(timePerClock / 3, raw_audio);
-            if (clock_counter % 6 == 0) {
-                //A write to 0x4017 will cause the frame counter to be reset after 4 CPU cycles (2 APU cycles)
-                if (cycle_remaining_since_4017_write == 0) {
+        pulse_1.trackSweeper();
+        pulse_2.trackSweeper();
+        dmc.clock();
+        dmc.computeSample(); // The sample fetches stall the CPU and raise the IRQ even when nothing is mixed
+        if (sampling) {
+            triangle.clockSequencer();
+            noise.clockSequencer();
+        }
+        if (clock_counter == 0) {
+            //A write to 0x4017 will cause the frame counter to be reset after 4 CPU cycles (2 APU cycles)
+            if (cycle_remaining_since_4017_write == 0) {
+                frame_counter = 0;
+                updateFrameStep();
+                cycle_remaining_since_4017_write = -1;
+            }
+            if (cycle_remaining_since_4017_write >= 0)
+                cycle_remaining_since_4017_write -= 2;
+
+            frame_counter++;
+            //We only compare the frame counter against the next step of the sequence
+            if (frame_counter == next_frame_step) {
+                quarter_frame = true;
+                half_frame = (frame_step & 0x1) == 1;
+                if (frame_step == 3) {
                     frame_counter = 0;
-                    cycle_remaining_since_4017_write = -1;
-                }
-                if (cycle_remaining_since_4017_write >= 0)
-                    cycle_remaining_since_4017_write -= 2;
-
-                frame_counter++;
-                if (flag_5_step_mode) {
-                    quarter_frame = frame_counter == 3729 || frame_counter == 7457 || frame_counter == 11186 || frame_counter == 18641;
-                    half_frame = frame_counter == 7457 || frame_counter == 18641;
-                    if (frame_counter == 18641)
-                        frame_counter = 0;
-                } else {
-                    quarter_frame = frame_counter == 3729 || frame_counter == 7457 || frame_counter == 11186 || frame_counter == 14916;
-                    half_frame = frame_counter == 7457 || frame_counter == 14916;
-                    if (frame_counter == 14916) {
-                        frame_counter = 0;
-                        if (!flag_IRQ_inhibit)
-                            frame_IRQ = true;
+                    if (!flag_5_step_mode && !flag_IRQ_inhibit) {
+                        frame_IRQ = true;
+                        events.raise(EventLatch.IRQ);
                     }
                 }
-                if (quarter_frame) {
-                    triangle.clockLinearCounter();
-                    if (enable_sampling) {
-                        pulse_1.clockEnvelope();
-                        pulse_2.clockEnvelope();
-                        noise.clockEnvelope();
-                    }
-                }
-                if (half_frame) {
-                    pulse_1.clockLengthCounter();
-                    pulse_2.clockLengthCounter();
-                    triangle.clockLengthCounter();
-                    noise.clockLengthCounter();
-                    pulse_1.clockSweeper(0);
-                    pulse_2.clockSweeper(1);
-                }
-                if (enable_sampling) {
-                    if (audio_sample_until_skip >= skip_audio_sample) {
-                        pulse_1.computeSample(total_time, raw_audio);
-                        pulse_2.computeSample(total_time, raw_audio);
-                        noise.computeSample();
-                        dmc.computeSample();
-                        audio_sample_until_skip = 0;
-                    }
-                    audio_sample_until_skip++;
+                updateFrameStep();
+            }
+            if (quarter_frame) {
+                triangle.clockLinearCounter();
+                if (sampling) {
+                    pulse_1.clockEnvelope();
+                    pulse_2.clockEnvelope();
+                    noise.clockEnvelope();
                 }
             }
+            if (half_frame) {
+                pulse_1.clockLengthCounter();
+                pulse_2.clockLengthCounter();
+                triangle.clockLengthCounter();
+                noise.clockLengthCounter();
+                pulse_1.clockSweeper(0);
+                pulse_2.clockSweeper(1);
+            }
+            if (sampling) {
+                pulse_1.clockSequencer();
+                pulse_2.clockSequencer();
+            }
         }
-        pulse_1.trackSweeper();
-        pulse_2.trackSweeper();
+        if (sampling)
+            updateOutput();
+        blip_time++;
+        if (visualizer_enabled && --cycles_until_visualizer_sample <= 0) {
+            feedVisualizer();
+            cycles_until_visualizer_sample = VISUALIZER_PERIOD;
+        }
+    }
+
+    /**
+     * Return a lower bound of the number of clocks the APU can run before raising an IRQ or stalling the CPU
+     * The APU isn't synchronized, the sync limit already stops at the next event
+     * a limit of 1 means the APU can't tell when the next event will be
+     *
+     * @return the number of clocks that can be run without reaching an event
+     */
+    public int getQuietClocks() {
+        return sync_limit > 1 ? sync_limit - pending_clocks : 0;
+    }
 
-        clock_counter++;
+    /**
+     * @return a lower bound of the number of clocks the APU can run from its current state before raising an IRQ or stalling the CPU
+     */
+    private int quietClocks() {
+        //The DMC may stall the CPU at any time while playing, and a write to 0x4017 will soon reset the frame counter
+        if (dmc.hasBytesLeft() || cycle_remaining_since_4017_write >= 0)
+            return 0;
+        //Only the last step of the 4-step sequence raises an IRQ, the sequence is over if the counter is already past it
+        if (flag_5_step_mode || flag_IRQ_inhibit || frame_step >= FOUR_STEP_SEQUENCE.length)
+            return Integer.MAX_VALUE;
+        //The frame counter is incremented every 6 clocks
+        return Math.max((FOUR_STEP_SEQUENCE[3] - frame_counter - 1) * 6, 0);
+    }
+
+    /**
+     * Select the next step of the frame sequencer according to the current mode and frame counter
+     * if the counter is already past the last step, the sequencer won't step until the counter is reset
+     */
+    private void updateFrameStep() {
+        int[] sequence = flag_5_step_mode ? FIVE_STEP_SEQUENCE : FOUR_STEP_SEQUENCE;
+        frame_step = 0;
+        while (frame_step < sequence.length && sequence[frame_step] <= frame_counter)
+            frame_step++;
+        next_frame_step = frame_step < sequence.length ? sequence[frame_step] : -1;
     }
 
     /**
      * Enable or Disable RAW Audio mode
+     * The APU is synchronized, the caller must hold the lock of the NES running it
      *
      * @param raw should RAW Audio be triggered or not
      */
     public void enabledRawMode(boolean raw) {
+        sync();
         raw_audio = raw;
+        //In RAW mode the changes of the output are added as plain steps, the output is point sampled
+        blip_buffer.setBandLimited(!raw);
     }
 
     /**
@@ -401,6 +653,7 @@ public class APU_2A03 {
      * @return Does the APU need to trigger an IRQ
      */
     public boolean irq() {
+        sync();
         return frame_IRQ || dmc.hasInterruptTriggered();
     }
 
@@ -419,7 +672,7 @@ public class APU_2A03 {
      * @return is Pulse 1 rendering enabled
      */
     public boolean isPulse1Rendered() {
-        return pulse_1_rendered;
+        return pulse_1_mask != 0;
     }
 
     /**
@@ -428,7 +681,7 @@ public class APU_2A03 {
      * @return is Pulse 2 rendering enabled
      */
     public boolean isPulse2Rendered() {
-        return pulse_2_rendered;
+        return pulse_2_mask != 0;
     }
 
     /**
@@ -437,7 +690,7 @@ public class APU_2A03 {
      * @return is Triangle rendering enabled
      */
     public boolean isTriangleRendered() {
-        return triangle_rendered;
+        return triangle_mask != 0;
     }
 
     /**
@@ -446,7 +699,7 @@ public class APU_2A03 {
      * @return is Noise rendering enabled
      */
     public boolean isNoiseRendered() {
-        return noise_rendered;
+        return noise_mask != 0;
     }
 
     /**
@@ -455,7 +708,7 @@ public class APU_2A03 {
      * @return is DMC rendering enabled
      */
     public boolean isDMCRendered() {
-        return dmc_rendered;
+        return dmc_mask != 0;
     }
 
     /**
@@ -0,0 +1,179 @@
+package core.apu;
+
+import java.util.Arrays;
+
+/**
+ * This class turns the output of the APU into band limited samples
+ * Instead of sampling the channels, every change of the output is added as a delta at the exact cycle it happened
+ * each delta is spread over the neighbouring samples using a band limited step (a windowed sinc)
+ * taken from the polyphase table of the selected ResamplingQuality
+ * and the samples are rebuilt by summing the deltas once per output sample
+ * The cost only depends on the number of output changes and output samples, no matter the frequency of the channels
+ */
+public class BlipBuffer {
+
+    private static final int KERNEL_BITS = ResamplingQuality.KERNEL_BITS;
+    //The positions are fixed point numbers of samples
+    private static final int TIME_BITS = 32;
+
+    //The deltas are summed as longs, the sidelobes of many deltas in a row could overflow an int
+    private long[] buffer;
+    private int mask;
+    private int read_pos = 0;
+    private long factor;
+    private long offset = 0;
+    private long integrator = 0;
+    private boolean band_limited = true;
+    private volatile ResamplingQuality quality = ResamplingQuality.MEDIUM;
+
+    /**
+     * Create a new buffer
+     *
+     * @param clock_rate  the number of clocks per second, the time of the deltas is expressed in clocks
+     * @param sample_rate the number of output samples per second
+     */
+    public BlipBuffer(double clock_rate, int sample_rate) {
+        setRates(clock_rate, sample_rate);
+    }
+
+    /**
+     * Change the clock and sample rates, the buffer is cleared
+     * the buffer can hold at least 1/8th of a second of samples
+     *
+     * @param clock_rate  the number of clocks per second
+     * @param sample_rate the number of output samples per second
+     */
+    public void setRates(double clock_rate, int sample_rate) {
+        adjustRates(clock_rate, sample_rate);
+        buffer = new long[Integer.highestOneBit(sample_rate / 8 + ResamplingQuality.MAX_WIDTH) << 1];
+        mask = buffer.length - 1;
+        clear();
+    }
+
+    /**
+     * Slightly change the clock or sample rate without clearing the buffer
+     * the pending deltas and samples are kept, only the next deltas are placed at the new rate
+     *
+     * @param clock_rate  the number of clocks per second
+     * @param sample_rate the number of output samples per second, must stay close to the rate the buffer was sized for
+     */
+    public void adjustRates(double clock_rate, double sample_rate) {
+        factor = Math.round(sample_rate / clock_rate * (1L << TIME_BITS));
+    }
+
+    /**
+     * Select whether the deltas are spread using the band limited step
+     * otherwise each delta is added as a plain step to a single sample, which amounts to point sampling the output
+     *
+     * @param band_limited should the deltas be band limited
+     */
+    public void setBandLimited(boolean band_limited) {
+        this.band_limited = band_limited;
+    }
+
+    /**
+     * Select the polyphase table used to spread the next deltas
+     * the pending deltas are kept, every table has the same gain
+     *
+     * @param quality the quality tier to use
+     */
+    public void setQuality(ResamplingQuality quality) {
+        this.quality = quality;
+    }
+
+    /**
+     * @return the quality tier in use
+     */
+    public ResamplingQuality getQuality() {
+        return quality;
+    }
+
+    /**
+     * Remove every pending sample and delta, the output goes back to 0
+     */
+    public void clear() {
+        Arrays.fill(buffer, 0);
+        read_pos = 0;
+        offset = 0;
+        integrator = 0;
+    }
+
+    /**
+     * Add a change of the output
+     * if the samples haven't been read in time, the oldest ones are dropped to make room for the delta
+     *
+     * @param time  the time of the change in clocks, relative to the end of the last frame
+     * @param delta the difference between the new and the previous output
+     */
+    public void addDelta(int time, int delta) {
+        ResamplingQuality quality = this.quality; // The tier may be changed by another thread
+        long pos = offset + time * factor;
+        int index = (int) (pos >> TIME_BITS);
+        int overflow = index + quality.width - buffer.length;
+        if (overflow > 0) {
+            dropSamples(overflow);
+            index -= overflow;
+        }
+        if (!band_limited) {
+            //The step is placed at the center of the kernel, so both modes have the same latency
+            buffer[(index + read_pos + quality.width / 2) & mask] += (long) delta << KERNEL_BITS;
+            return;
+        }
+        int[] kernel = quality.kernel[(int) (pos >>> (TIME_BITS - quality.phase_bits)) & ((1 << quality.phase_bits) - 1)];
+        index += read_pos;
+        for (int i = 0; i < kernel.length; i++)
+            buffer[(index + i) & mask] += (long) kernel[i] * delta;
+    }
+
+    /**
+     * End the current frame, the samples before its end become available
+     * the time of the next deltas will be relative to the end of this frame
+     * if the samples haven't been read in time, the oldest ones are dropped
+     *
+     * @param time the length of the frame in clocks
+     */
+    public void endFrame(int time) {
+        offset += time * factor;
+        int overflow = (int) (offset >> TIME_BITS) - (buffer.length - ResamplingQuality.MAX_WIDTH);
+        if (overflow > 0)
+            dropSamples(overflow);
+    }
+
+    /**
+     * @return the number of samples that can be read
+     */
+    public int samplesAvailable() {
+        return (int) Math.max(offset >> TIME_BITS, 0);
+    }
+
+    /**
+     * Read the next sample, if no sample is available the last one is returned again
+     *
+     * @return the sample, in the same unit as the deltas
+     */
+    public int readSample() {
+        if (offset >= 1L << TIME_BITS) {
+            integrator += buffer[read_pos];
+            buffer[read_pos] = 0;
+            read_pos = (read_pos + 1) & mask;
+            offset -= 1L << TIME_BITS;
+        }
+        return (int) (integrator >> KERNEL_BITS);
+    }
+
+    /**
+     * Drop the oldest samples, their deltas are still summed so the following samples keep the right level
+     * the current frame may be longer than the buffer, the dropped samples can be past its last end
+     * and the offset can become negative until the frame ends
+     *
+     * @param count the number of samples to drop
+     */
+    private void dropSamples(int count) {
+        for (int i = 0; i < count; i++) {
+            integrator += buffer[read_pos];
+            buffer[read_pos] = 0;
+            read_pos = (read_pos + 1) & mask;
+        }
+        offset -= (long) count << TIME_BITS;
+    }
+}
@@ -0,0 +1,59 @@
+package core.apu;
+
+/**
+ * The quality tiers of the conversion of the APU output to the output sample rate
+ * Each tier is a polyphase table of band limited steps (windowed sincs), a longer kernel has a sharper cutoff
+ * and less aliasing, but each change of the APU output costs one multiply-add per tap
+ */
+public enum ResamplingQuality {
+    LOW(8, 4, 0.40),     // 8 taps, 16 phases
+    MEDIUM(16, 6, 0.45), // 16 taps, 64 phases
+    HIGH(32, 8, 0.47);   // 32 taps, 256 phases
+
+    //The taps of each phase sum to exactly 1 << KERNEL_BITS, so the integrated output never drifts
+    static final int KERNEL_BITS = 14;
+    //The widest kernel of all the tiers
+    static final int MAX_WIDTH = 32;
+
+    final int width;
+    final int phase_bits;
+    final int[][] kernel;
+
+    /**
+     * Compute the polyphase table of the tier
+     *
+     * @param width      the number of taps of each phase
+     * @param phase_bits the number of phases is 1 << phase_bits
+     * @param cutoff     the cutoff of the low pass filter, as a fraction of the sample rate
+     */
+    ResamplingQuality(int width, int phase_bits, double cutoff) {
+        this.width = width;
+        this.phase_bits = phase_bits;
+        int phases = 1 << phase_bits;
+        kernel = new int[phases][width];
+        for (int phase = 0; phase < phases; phase++) {
+            double[] taps = new double[width];
+            double sum = 0;
+            for (int i = 0; i < width; i++) {
+                //The distance in samples between the tap and the step, the step falls in the middle of the kernel
+                double t = i - (width / 2 - 1) - phase / (double) phases;
+                double x = 2 * cutoff * t;
+                double sinc = x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+                //Blackman window over the taps
+                double window = 0.42 + 0.5 * Math.cos(Math.PI * t / (width / 2)) + 0.08 * Math.cos(2 * Math.PI * t / (width / 2));
+                taps[i] = sinc * window;
+                sum += taps[i];
+            }
+            //We normalize the phase and put the rounding error on its largest tap
+            int total = 0;
+            int largest = 0;
+            for (int i = 0; i < width; i++) {
+                kernel[phase][i] = (int) Math.round(taps[i] / sum * (1 << KERNEL_BITS));
+                total += kernel[phase][i];
+                if (kernel[phase][i] > kernel[phase][largest])
+                    largest = i;
+            }
+            kernel[phase][largest] += (1 << KERNEL_BITS) - total;
+        }
+    }
+}
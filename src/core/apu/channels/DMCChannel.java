@@ -1,6 +1,7 @@
 package core.apu.channels;
 
 import core.NES;
+import core.EventLatch;
 import core.apu.channels.components.dmc.MemoryReader;
 
 /**
@@ -14,7 +15,8 @@ public class DMCChannel {
     private final MemoryReader memoryReader;
     private final OutputUnit outputUnit;
 
-    public double output = 0;
+    //The 7 bits level of the channel, as fed to the Mixer
+    public int output = 0;
 
     private boolean interrupt = false;
     private boolean irqEnabled = false;
@@ -60,6 +62,7 @@ public class DMCChannel {
      */
     public void directLoad(int data) {
         outputUnit.output = data & 0x7F;
+        output = outputUnit.output;
     }
 
     /**
@@ -105,6 +108,7 @@ public class DMCChannel {
                     memoryReader.setBytesRemaining(sample_length);
                 } else if (irqEnabled) {
                     interrupt = true;
+                    nes.getEventLatch().raise(EventLatch.IRQ);
                 }
             }
         }
@@ -135,7 +139,7 @@ public class DMCChannel {
             }
         }
         // The output is pushed to the DAC
-        output = (output + (outputUnit.output / 64.0)) / 4;
+        output = outputUnit.output;
     }
 
     /**
@@ -152,6 +156,16 @@ public class DMCChannel {
         memoryReader.setBytesRemaining(0);
     }
 
+    /**
+     * Restart the sample from its address if the Reader has finished the current one
+     */
+    public void startReader() {
+        if (memoryReader.getBytesRemaining() == 0) {
+            memoryReader.setCurrentAddress(sample_address);
+            memoryReader.setBytesRemaining(sample_length);
+        }
+    }
+
     /**
      * Return whether or not there is bytes left in the current sample
      *
@@ -5,12 +5,18 @@ import core.apu.channels.components.Envelope;
 import core.apu.channels.components.LengthCounter;
 import core.apu.channels.components.Sequencer;
 
+import java.util.function.IntUnaryOperator;
+
 /**
  * This class represent a Noise Channel of the APU
  */
 public class NoiseChannel {
 
-    public double sample = 0;
+    //The period of the shift register in CPU cycles
+    private static final int[] period_table = {4, 8, 16, 32, 64, 96, 128, 160, 202, 254, 380, 508, 762, 1016, 2034, 4068};
+
+    //The 4 bits level of the channel, as fed to the Mixer
+    public int output = 0;
 
     private final Envelope envelope;
     private final LengthCounter length_counter;
@@ -20,6 +26,9 @@ public class NoiseChannel {
     private boolean halted = false;
     private boolean mode = false;
 
+    //The shift register feedback is kept in a field so no lambda is instantiated on every clock
+    private final IntUnaryOperator shift_register_feedback = s -> (((s & 0x0001) ^ ((s & (mode ? 0x0040 : 0x0002)) >> 1)) << 14) | ((s & 0x7FFF) >> 1);
+
     /**
      * Create a new NoiseChannel
      */
@@ -60,38 +69,20 @@ public class NoiseChannel {
     public void updateReload(int data) {
         if (enabled) {
             mode = (data & 0x80) == 0x80;
-            switch (data & 0x0F) {
-                case 0x00 -> sequencer.reload = 0;
-                case 0x01 -> sequencer.reload = 4;
-                case 0x02 -> sequencer.reload = 8;
-                case 0x03 -> sequencer.reload = 16;
-                case 0x04 -> sequencer.reload = 32;
-                case 0x05 -> sequencer.reload = 64;
-                case 0x06 -> sequencer.reload = 96;
-                case 0x07 -> sequencer.reload = 128;
-                case 0x08 -> sequencer.reload = 160;
-                case 0x09 -> sequencer.reload = 202;
-                case 0x0A -> sequencer.reload = 254;
-                case 0x0B -> sequencer.reload = 380;
-                case 0x0C -> sequencer.reload = 508;
-                case 0x0D -> sequencer.reload = 1016;
-                case 0x0E -> sequencer.reload = 2034;
-                case 0x0F -> sequencer.reload = 4068;
-            }
+            sequencer.reload = period_table[data & 0x0F] - 1;
         }
     }
 
     /**
-     * Compute the sample of the channel
+     * Clock the shift register and update the output of the channel, called every CPU cycle
+     * the output is the volume of the Envelope, muted by the Length Counter and while bit 0 of the shift register is set
      */
-    public void computeSample() {
-        sequencer.clock(enabled, s -> (((s & 0x0001) ^ ((s & (mode ? 0x0040 : 0x0002)) >> 1)) << 14) | ((s & 0x7FFF) >> 1));
-        sample = 0;
-
-        if (length_counter.counter > 0 && (sequencer.sequence & 0x01) != 0)
-            sample = (double) sequencer.output * ((double) (envelope.output - 1) / 16.0) * 0.5;
-        if (!enabled)
-            sample = 0;
+    public void clockSequencer() {
+        sequencer.clock(enabled, shift_register_feedback);
+        if (enabled && length_counter.counter > 0 && (sequencer.sequence & 0x01) == 0)
+            output = envelope.output;
+        else
+            output = 0;
     }
 
     /**
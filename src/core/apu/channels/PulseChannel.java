@@ -4,7 +4,6 @@ import core.apu.APU_2A03;
 import core.apu.channels.components.Envelope;
 import core.apu.channels.components.LengthCounter;
 import core.apu.channels.components.Sequencer;
-import core.apu.channels.components.pulse.Oscillator;
 import core.apu.channels.components.pulse.Sweeper;
 
 /**
@@ -16,9 +15,9 @@ public class PulseChannel {
     private final Envelope envelope;
     private final LengthCounter length_counter;
     private final Sweeper sweeper;
-    private final Oscillator oscillator;
 
-    public double sample = 0.0;
+    //The 4 bits level of the channel, as fed to the Mixer
+    public int output = 0;
 
     private boolean enabled = false;
     private boolean halted = false;
@@ -28,7 +27,6 @@ public class PulseChannel {
      */
     public PulseChannel() {
         sequencer = new Sequencer();
-        oscillator = new Oscillator();
         envelope = new Envelope();
         length_counter = new LengthCounter();
         sweeper = new Sweeper();
@@ -41,22 +39,10 @@ public class PulseChannel {
      */
     public void writeDutyCycle(int data) {
         switch ((data & 0xC0) >> 6) {
-            case 0x00 -> {
-                sequencer.sequence = 0b00000001;
-                oscillator.duty_cycle = 0.125f;
-            }
-            case 0x01 -> {
-                sequencer.sequence = 0b00000011;
-                oscillator.duty_cycle = 0.250f;
-            }
-            case 0x02 -> {
-                sequencer.sequence = 0b00001111;
-                oscillator.duty_cycle = 0.500f;
-            }
-            case 0x03 -> {
-                sequencer.sequence = 0b11111100;
-                oscillator.duty_cycle = 0.750f;
-            }
+            case 0x00 -> sequencer.sequence = 0b00000001;
+            case 0x01 -> sequencer.sequence = 0b00000011;
+            case 0x02 -> sequencer.sequence = 0b00001111;
+            case 0x03 -> sequencer.sequence = 0b11111100;
         }
         halted = (data & 0x20) == 0x20;
         envelope.volume = (data & 0x0F);
@@ -109,22 +95,16 @@ public class PulseChannel {
     }
 
     /**
-     * Compute the sample of the channel
+     * Clock the sequencer and update the output of the channel, called every APU cycle
+     * the output is the volume of the Envelope while the sequence outputs a 1
+     * it is muted by the Length Counter, the Sweeper or when the period is too short
      */
-    public void computeSample(double time, boolean raw) {
-        if (enabled && length_counter.counter > 0 && !sweeper.muted && envelope.output > 2) {
-            sequencer.clock(true, s -> (((s & 0x01) << 7) | ((s & 0xFE) >> 1)));
-            if (sequencer.timer >= 8) {
-                if (raw) {
-                    sample = sequencer.output * ((envelope.output - 1) / 22.0);
-                } else {
-                    oscillator.frequency = 1789773.0f / (16.0f * (sequencer.reload + 1));
-                    oscillator.amplitude = (envelope.output - 1) / 16.0f;
-                    sample = oscillator.sample(time) / 2;
-                }
-            }
-        } else
-            sample = 0;
+    public void clockSequencer() {
+        sequencer.clock(true, s -> (((s & 0x01) << 7) | ((s & 0xFE) >> 1)));
+        if (enabled && length_counter.counter > 0 && !sweeper.muted && sequencer.reload >= 8 && sequencer.output == 1)
+            output = envelope.output;
+        else
+            output = 0;
     }
 
     /**
@@ -14,14 +14,12 @@ public class TriangleChannel {
     private final LinearCounter linear_counter;
     private final LengthCounter length_counter;
 
-    public double sample = 0.0;
+    //The 4 bits level of the channel, as fed to the Mixer
+    public int output = 0;
 
     private boolean enabled = false;
     private boolean halted = false;
 
-    private double last_period = 0;
-    private double last_sequencer_output = 0;
-
     /**
      * Create a new TriangleChannel
      */
@@ -74,63 +72,15 @@ public class TriangleChannel {
     }
 
     /**
-     * Compute the sample of the channel
+     * Clock the sequencer and update the output of the channel, called every CPU cycle
+     * the sequencer only steps while both counters are running, otherwise the output holds its level
+     * the periods too short to be heard are ignored, they would only produce an ultrasonic noise
      */
-    public void computeSample(double timePerCycle, boolean raw) {
-        last_period += timePerCycle;
-        double period = (sequencer.reload + 1) * timePerCycle;
-        double lastSample = sample;
-        if (enabled && length_counter.counter > 0 && linear_counter.counter > 0) {
+    public void clockSequencer() {
+        if (length_counter.counter > 0 && linear_counter.counter > 0 && sequencer.reload >= 2) {
             sequencer.clock(true);
-            if (sequencer.timer > 2) {
-                last_sequencer_output = sequencer.output == 0 ? last_sequencer_output : sequencer.output;
-                if (raw) {
-                    sample = sequencer.output / 30.0;
-                } else {
-                    int lower = sequencer.output;
-                    int higher = sequencer.sequence[(sequencer.sequenceIndex + 1) & 0x1F];
-                    double percent = last_period / period;
-                    if (lower == 15 && higher == 15) {
-                        if (percent <= 0.5)
-                            sample = ((16 - 15) * percent + 15) / 30.0;
-                        else if (percent <= 1)
-                            sample = ((15 - 16) * percent + 16) / 30.0;
-                        else
-                            sample = higher / 30.0;
-                    } else if (lower == 0 && higher == 0) {
-                        if (percent <= 0.5)
-                            sample = (-percent) / 30.0;
-                        else if (percent <= 1)
-                            sample = (percent - 1) / 30.0;
-                        else
-                            sample = higher / 30.0;
-                    } else
-                    if (percent <= 1)
-                        sample = ((higher - lower) * percent + lower) / 30.0;
-                    else
-                        sample = higher / 30.0;
-                }
-            }
-        } else
-            sample = 0;
-
-        //We smooth the output to avoid artifacts
-        //if the channel is started we mute the sample until the cycle reaches a 0
-        if (!raw && lastSample == 0 && (sample - lastSample > 0.02 || sample - lastSample < -0.02))
-            sample = lastSample * 0.5;
-        //if the channel is disabled when the sample isn't 0, we smooth the sound by finishing the cycle
-        if (sample == 0 && (sample - lastSample > 0.02 || sample - lastSample < -0.02)) {
-            double timeRem = period * Math.abs(last_sequencer_output);
-            int nbStep = (int) (timeRem / timePerCycle);
-            double smoothing_step = last_sequencer_output / 30.0 / nbStep;
-            sample = lastSample - smoothing_step;
-            if (sample < 0.05 && sample >= -0.05)
-                sample *= 0.9;
-            if (Math.signum(last_sequencer_output) != Math.signum(sample))
-                sample *= 0.9;
+            output = sequencer.output;
         }
-        if (sequencer.timer == 0)
-            last_period = 0;
     }
 
     /**
@@ -1,6 +1,6 @@
 package core.apu.channels.components;
 
-import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
 
 /**
  * This class represents a sequencer used to store information about the Audio Channel and how it should behave
@@ -18,12 +18,12 @@ public class Sequencer {
      * @param enabled is the sequencer enabled
      * @param func    the operation that the sequencer should execute
      */
-    public void clock(boolean enabled, Function<Integer, Integer> func) {
+    public void clock(boolean enabled, IntUnaryOperator func) {
         if (enabled) {
             timer--;
             if (timer == -1) {
-                timer = reload + 1;
-                sequence = func.apply(sequence);
+                timer = reload;
+                sequence = func.applyAsInt(sequence);
                 output = sequence & 0x1;
             }
         }
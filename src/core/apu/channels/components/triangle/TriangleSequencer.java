@@ -21,7 +21,7 @@ public class TriangleSequencer {
         if (enabled) {
             timer--;
             if (timer == -1) {
-                timer = reload + 1;
+                timer = reload;
                 sequenceIndex = (sequenceIndex + 1) & 0x1F;
                 output = sequence[sequenceIndex];
             }
@@ -7,7 +7,6 @@ import exceptions.UnsupportedMapperException;
 import javafx.application.Platform;
 import utils.Dialogs;
 import utils.FileReader;
-import utils.IntegerWrapper;
 
 import javax.swing.*;
 import java.io.EOFException;
@@ -15,6 +14,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
 
 /**
  * Here we make a class that will represent the "cartridge" of the NES
@@ -28,6 +28,12 @@ public class Cartridge {
     private final byte[] chrMemory;
     private final Mapper mapper;
     private final Mirror mirror;
+    private final boolean fourScreen;
+    private final int[] prgBanks;
+    private final int[] chrBanks;
+    private final TileCache tileCache;
+    private boolean tileCacheEnabled = true;
+    private IntConsumer prgWriteListener;
 
     /**
      * Create a Cartridge and load a ROM into the emulator
@@ -46,6 +52,8 @@ public class Cartridge {
         // Extract the Mapper ID and Mirroring mode
         int mapperId = ((header.flag_7 >> 4) << 4) | (header.flag_6 >> 4);
         mirror = (header.flag_6 & 0x01) == 0x01 ? Mirror.VERTICAL : Mirror.HORIZONTAL;
+        // The Cartridge may provide the memory of 2 additional nametables, the Mapper can't change the mirroring then
+        fourScreen = (header.flag_6 & 0x08) == 0x08;
 
         // Discard padding if necessary
         if ((header.flag_6 & 0x04) == 0x04) {
@@ -95,23 +103,64 @@ public class Cartridge {
             case 66 -> new Mapper066(nbPRGBanks, nbCHRBanks);
             default -> throw new UnsupportedMapperException("Mapper " + (mapperId & 0xFF) + " not implemented yet");
         };
+        // The banks arrays are updated in place by the Mapper, we keep them to avoid the bank math on each access
+        this.prgBanks = mapper.getPrgBanks();
+        this.chrBanks = mapper.getChrBanks();
+        this.tileCache = new TileCache(chrMemory);
     }
 
     /**
      * Will read a value from Program Memory if the Mapper allows it
      *
      * @param addr the address to read from
-     * @param data the Wrapper where to store the read data
-     * @return was the data searched in the Cartridge
+     * @return the read data as an 8bit unsigned value, or Mapper.UNMAPPED if the address isn't mapped by the Cartridge
      */
-    public boolean cpuRead(int addr, IntegerWrapper data) {
-        IntegerWrapper mapped = new IntegerWrapper();
-        if (mapper.cpuMapRead(addr, mapped, data)) {
-            if (mapped.value == -1) return true;
-            data.value = prgMemory[mapped.value] & 0xFF;
-            return true;
-        }
-        return false;
+    public int cpuRead(int addr) {
+        //Program Memory is read through the current banks of the Mapper
+        if (addr >= 0x8000)
+            return prgMemory[prgBanks[(addr >> 13) & 0x03] + (addr & 0x1FFF)] & 0xFF;
+        int mapped = mapper.cpuMapRead(addr);
+        if (mapped == Mapper.UNMAPPED) return Mapper.UNMAPPED;
+        //The data has been read by the Mapper itself (internal RAM)
+        if ((mapped & Mapper.INTERNAL) == Mapper.INTERNAL) return mapped & 0xFF;
+        return prgMemory[mapped] & 0xFF;
+    }
+
+    /**
+     * Return the array backing a 256 bytes page of the CPU addressable range if it can be read directly
+     * (Program ROM or Cartridge RAM), this is only valid until the Mapper switches its PRG banks
+     *
+     * @param page    the page to map (addr >> 8)
+     * @param offsets the array where the offset of the page inside the backing array will be stored (at index page)
+     * @return the backing array or null if the page needs to go through the Mapper
+     */
+    public byte[] getCpuReadPage(int page, int[] offsets) {
+        int mapped = mapper.cpuMapRead(page << 8);
+        if (mapped == Mapper.UNMAPPED)
+            return null;
+        if ((mapped & Mapper.INTERNAL) == Mapper.INTERNAL)
+            return getCpuWritePage(page, offsets);
+        //We only use the page if it fully fits in Program Memory, otherwise we let the Mapper handle it
+        if (mapped + 0xFF >= prgMemory.length)
+            return null;
+        offsets[page] = mapped;
+        return prgMemory;
+    }
+
+    /**
+     * Return the array backing a 256 bytes page of the CPU addressable range if it can be written directly
+     * (only Cartridge RAM, writes to Program ROM are Mapper register writes)
+     *
+     * @param page    the page to map (addr >> 8)
+     * @param offsets the array where the offset of the page inside the backing array will be stored (at index page)
+     * @return the backing array or null if the page needs to go through the Mapper
+     */
+    public byte[] getCpuWritePage(int page, int[] offsets) {
+        //Cartridge RAM is mapped from 0x6000 to 0x7FFF
+        if (page < 0x60 || page > 0x7F || !mapper.hasRAM())
+            return null;
+        offsets[page] = (page << 8) & 0x1FFF;
+        return mapper.getRAM();
     }
 
     /**
@@ -123,30 +172,65 @@ public class Cartridge {
      * @return was the data for the Cartridge
      */
     public boolean cpuWrite(int addr, int data) {
-        IntegerWrapper mapped = new IntegerWrapper();
-        if (mapper.cpuMapWrite(addr, mapped, data)) {
-            if (mapped.value == -1) return true;
-            prgMemory[mapped.value] = (byte) data;
-            return true;
+        int mapped = mapper.cpuMapWrite(addr, data);
+        if (mapped == Mapper.UNMAPPED) return false;
+        if (mapped != Mapper.INTERNAL) {
+            prgMemory[mapped] = (byte) data;
+            if (prgWriteListener != null)
+                prgWriteListener.accept(mapped);
         }
-        return false;
+        return true;
+    }
+
+    /**
+     * Set the listener notified when the CPU writes to the Program Memory
+     * the listener receives the offset of the modified byte in Program Memory
+     *
+     * @param listener the listener to notify, can be null
+     */
+    public void setPrgWriteListener(IntConsumer listener) {
+        prgWriteListener = listener;
     }
 
     /**
      * Will read a value from Character Memory if the Mapper allows it
      *
      * @param addr the address to read from
-     * @param data the Wrapper where to store the read data
-     * @return was the data searched in the Cartridge
+     * @return the read data as an 8bit unsigned value, or Mapper.UNMAPPED if the address isn't mapped by the Cartridge
      */
-    public boolean ppuRead(int addr, IntegerWrapper data) {
-        addr &= 0xFFFF;
-        IntegerWrapper mapped = new IntegerWrapper();
-        if (mapper.ppuMapRead(addr, mapped, data)) {
-            data.value = chrMemory[mapped.value] & 0xFF;
-            return true;
-        }
-        return false;
+    public int ppuRead(int addr) {
+        //Only the pattern tables can be mapped, they are read through the current banks of the Mapper
+        if (addr > 0x1FFF) return Mapper.UNMAPPED;
+        int bank = chrBanks[addr >> 10];
+        if (bank == Mapper.UNMAPPED) return Mapper.UNMAPPED;
+        return chrMemory[bank + (addr & 0x03FF)] & 0xFF;
+    }
+
+    /**
+     * Will read a decoded row of pixels from Character Memory if the Mapper allows it
+     * the 2 bitplanes are read at once from the Tile Cache
+     *
+     * @param addr    the address of the row in the low bitplane
+     * @param flipped should the row be flipped horizontally
+     * @return the row packed as described by TileCache, or Mapper.UNMAPPED if the address isn't mapped by the Cartridge
+     */
+    public int ppuReadPattern(int addr, boolean flipped) {
+        //The row must be in the low bitplane of a tile of the pattern tables
+        if (addr > 0x1FFF || (addr & 0x08) != 0) return Mapper.UNMAPPED;
+        if (!tileCacheEnabled) return Mapper.UNMAPPED;
+        int bank = chrBanks[addr >> 10];
+        if (bank == Mapper.UNMAPPED) return Mapper.UNMAPPED;
+        return tileCache.getRow(bank + (addr & 0x03FF), flipped);
+    }
+
+    /**
+     * Enable or disable the Tile Cache
+     * otherwise the rows are read from Character Memory byte by byte, which produces the same frames and is kept as a reference
+     *
+     * @param enabled should the decoded rows be read from the Tile Cache
+     */
+    public void enableTileCache(boolean enabled) {
+        tileCacheEnabled = enabled;
     }
 
     /**
@@ -158,12 +242,13 @@ public class Cartridge {
      * @return was the data for the Cartridge
      */
     public boolean ppuWrite(int addr, int data) {
-        IntegerWrapper mapped = new IntegerWrapper();
-        if (mapper.ppuMapWrite(addr, mapped, data)) {
-            chrMemory[mapped.value] = (byte) data;
-            return true;
+        int mapped = mapper.ppuMapWrite(addr, data);
+        if (mapped == Mapper.UNMAPPED) return false;
+        if (mapped != Mapper.INTERNAL) {
+            chrMemory[mapped] = (byte) data;
+            tileCache.invalidate(mapped);
         }
-        return false;
+        return true;
     }
 
     /**
@@ -172,6 +257,9 @@ public class Cartridge {
      * @return the game's mirroring mode
      */
     public Mirror getMirror() {
+        if (fourScreen) {
+            return Mirror.FOUR_SCREEN;
+        }
         Mirror mirroringMode = mapper.mirror();
         if (mirroringMode == Mirror.HARDWARE) {
             return mirror;
@@ -197,6 +285,15 @@ public class Cartridge {
         return mapper;
     }
 
+    /**
+     * Return the Program Memory of the Cartridge
+     *
+     * @return the Program Memory
+     */
+    public byte[] getPrgMemory() {
+        return prgMemory;
+    }
+
     /**
      * Save the current Cartridge RAM to a file (filename.sav)
      */
@@ -266,6 +363,8 @@ public class Cartridge {
 
     private final Mapper mapper;
     private final Mirror mirror;
+    private final int[] prgBanks;
+    private final int[] chrBanks;
 
     */
 /**
@@ -0,0 +1,94 @@
+package core.cartridge;
+
+import utils.NumberUtils;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps the tiles of the Character Memory decoded
+ * A row of a tile is stored as 8 nibbles, the leftmost pixel in the msb, each nibble holding the 2bit pixel ID in its 2 lsb
+ * so the PPU can shift whole pixels and put the palette ID in the 2 msb of each nibble
+ * The tiles are indexed by their offset in Character Memory, the Mappers switching banks doesn't invalidate anything,
+ * only the writes to Character RAM mark the written tile as dirty, it is decoded again the next time it is read
+ */
+public class TileCache {
+
+    //The bits of a byte spread to the lsb of 8 nibbles
+    private static final int[] SPREAD = new int[256];
+
+    static {
+        for (int val = 0; val < 256; val++)
+            for (int bit = 0; bit < 8; bit++)
+                if ((val & (0x1 << bit)) != 0)
+                    SPREAD[val] |= 0x1 << (bit << 2);
+    }
+
+    private final byte[] chr_memory;
+    private final int[] rows;
+    private final int[] flipped_rows;
+    private final boolean[] dirty;
+
+    /**
+     * Create the cache of a Character Memory, every tile is decoded the first time it is read
+     *
+     * @param chr_memory the Character Memory of the Cartridge
+     */
+    TileCache(byte[] chr_memory) {
+        this.chr_memory = chr_memory;
+        this.rows = new int[chr_memory.length >> 1];
+        this.flipped_rows = new int[chr_memory.length >> 1];
+        this.dirty = new boolean[chr_memory.length >> 4];
+        Arrays.fill(dirty, true);
+    }
+
+    /**
+     * Combine the 2 bitplanes of a row of pixels
+     *
+     * @param low  the low bitplane of the row
+     * @param high the high bitplane of the row
+     * @return the row packed as 8 nibbles, the leftmost pixel in the msb
+     */
+    public static int interleave(int low, int high) {
+        return SPREAD[low & 0xFF] | (SPREAD[high & 0xFF] << 1);
+    }
+
+    /**
+     * Return a decoded row of a tile, decoding the tile if it is dirty
+     *
+     * @param offset  the offset in Character Memory of the row in the low bitplane
+     * @param flipped should the row be flipped horizontally
+     * @return the row packed as 8 nibbles, the leftmost pixel in the msb
+     */
+    int getRow(int offset, boolean flipped) {
+        int tile = offset >> 4;
+        if (dirty[tile])
+            decode(tile);
+        int row = (tile << 3) | (offset & 0x07);
+        return flipped ? flipped_rows[row] : rows[row];
+    }
+
+    /**
+     * Decode the 8 rows of a tile in both orientations
+     *
+     * @param tile the index of the tile in Character Memory
+     */
+    private void decode(int tile) {
+        for (int row = 0; row < 8; row++) {
+            int low = chr_memory[(tile << 4) | row] & 0xFF;
+            int high = chr_memory[(tile << 4) | row | 0x08] & 0xFF;
+            rows[(tile << 3) | row] = interleave(low, high);
+            flipped_rows[(tile << 3) | row] = interleave(NumberUtils.byteFlip(low), NumberUtils.byteFlip(high));
+        }
+        dirty[tile] = false;
+    }
+
+    /**
+     * Mark the tile containing a byte of Character Memory as dirty
+     * called when the PPU writes to the Character RAM
+     *
+     * @param offset the offset of the modified byte
+     */
+    void invalidate(int offset) {
+        dirty[offset >> 4] = true;
+    }
+}
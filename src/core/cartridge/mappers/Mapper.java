@@ -1,13 +1,29 @@
 package core.cartridge.mappers;
 
+import core.EventLatch;
 import core.ppu.Mirror;
-import utils.IntegerWrapper;
 
 public abstract class Mapper {
 
+    /**
+     * Returned when the address isn't mapped by the Cartridge
+     */
+    public static final int UNMAPPED = -1;
+    /**
+     * Flag returned when the access has been served by the Mapper itself (internal RAM or register)
+     * when reading, the 8 lsb contain the read data
+     */
+    public static final int INTERNAL = 0x40000000;
+
     final int nb_PRG_banks;  // Number of Program ROM Banks
     final int nb_CHR_banks;  // Number of Character ROM Banks
 
+    final int[] prg_banks;  // Offset in Program Memory of each 8KB window of the CPU range 0x8000 - 0xFFFF
+    final int[] chr_banks;  // Offset in Character Memory of each 1KB window of the PPU range 0x0000 - 0x1FFF, UNMAPPED if not mapped
+
+    private Runnable mapping_listener;
+    private EventLatch events;
+
     /**
      * @param nPRGBanks number of Program ROM Banks
      * @param nCHRBanks number of Character ROM Banks
@@ -15,39 +31,51 @@ public abstract class Mapper {
     Mapper(int nPRGBanks, int nCHRBanks) {
         this.nb_PRG_banks = nPRGBanks;
         this.nb_CHR_banks = nCHRBanks;
+        this.prg_banks = new int[4];
+        this.chr_banks = new int[8];
     }
 
     /**
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data read from the mapped address
-     * @return Whether or not the Address was mapped
+     * The Program Memory is read through the current PRG banks
+     * Mappers with internal RAM must handle the range 0x6000 - 0x7FFF themselves
+     *
+     * @param addr the CPU Address to map
+     * @return the mapped offset in Program Memory, INTERNAL | data if served by the Mapper or UNMAPPED
      */
-    public abstract boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data);
+    public int cpuMapRead(int addr) {
+        if (addr >= 0x8000) {
+            return prg_banks[(addr >> 13) & 0x03] + (addr & 0x1FFF);
+        }
+        return UNMAPPED;
+    }
 
     /**
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Program Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
-    public abstract boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data);
+    public abstract int cpuMapWrite(int addr, int data);
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data read from the mapped address
-     * @return Whether or not the Address was mapped
+     * The Character Memory is read through the current CHR banks
+     *
+     * @param addr the PPU Address to map
+     * @return the mapped offset in Character Memory or UNMAPPED
      */
-    public abstract boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data);
+    public int ppuMapRead(int addr) {
+        if (addr <= 0x1FFF) {
+            int bank = chr_banks[addr >> 10];
+            return bank == UNMAPPED ? UNMAPPED : bank + (addr & 0x03FF);
+        }
+        return UNMAPPED;
+    }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return if the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Character Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
-    public abstract boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data);
+    public abstract int ppuMapWrite(int addr, int data);
 
     /**
      * @return the current mirroring mode
@@ -67,6 +95,16 @@ public abstract class Mapper {
 
     public void notifyScanline() {}
 
+    /**
+     * Return how many scanline notifications are left before the Mapper fires an IRQ
+     * the PPU can run that many scanlines ahead of the CPU without being synchronized
+     *
+     * @return the number of notifications, Integer.MAX_VALUE if no IRQ can be fired that way
+     */
+    public int getScanlinesUntilIRQ() {
+        return Integer.MAX_VALUE;
+    }
+
     /**
      * @param addr the address the PPU has read from
      */
@@ -75,6 +113,123 @@ public abstract class Mapper {
 
     public void reset() {}
 
+    /**
+     * Return the offsets in Program Memory of the 4 8KB windows of the CPU range 0x8000 - 0xFFFF
+     * the array is updated in place when the Mapper switches banks
+     *
+     * @return the PRG banks offsets
+     */
+    public int[] getPrgBanks() {
+        return prg_banks;
+    }
+
+    /**
+     * Return the offsets in Character Memory of the 8 1KB windows of the PPU range 0x0000 - 0x1FFF
+     * the array is updated in place when the Mapper switches banks, an entry is UNMAPPED if the window isn't mapped
+     *
+     * @return the CHR banks offsets
+     */
+    public int[] getChrBanks() {
+        return chr_banks;
+    }
+
+    /**
+     * Set the listener notified each time the PRG banks are switched
+     *
+     * @param listener the listener to notify, can be null
+     */
+    public void setMappingListener(Runnable listener) {
+        mapping_listener = listener;
+    }
+
+    /**
+     * Connect the EventLatch notified when the Mapper raises an IRQ
+     *
+     * @param events the EventLatch of the console, can be null
+     */
+    public void connectEventLatch(EventLatch events) {
+        this.events = events;
+    }
+
+    /**
+     * Notify the EventLatch that the IRQ line has been raised
+     */
+    void raiseIRQ() {
+        if (events != null)
+            events.raise(EventLatch.IRQ);
+    }
+
+    /**
+     * Notify the listener that the PRG banks have been switched
+     */
+    void notifyMappingChanged() {
+        if (mapping_listener != null)
+            mapping_listener.run();
+    }
+
+    /**
+     * Map an 8KB window of the CPU range 0x8000 - 0xFFFF to a bank of Program Memory
+     *
+     * @param window the window to map (0 for 0x8000 up to 3 for 0xE000)
+     * @param bank   the 8KB bank, wrapped around the size of Program Memory
+     */
+    void mapPRG8K(int window, int bank) {
+        prg_banks[window] = Math.floorMod(bank, nb_PRG_banks * 2) * 0x2000;
+    }
+
+    /**
+     * Map a 16KB window of the CPU range 0x8000 - 0xFFFF to a bank of Program Memory
+     *
+     * @param window the window to map (0 for 0x8000, 1 for 0xC000)
+     * @param bank   the 16KB bank, wrapped around the size of Program Memory
+     */
+    void mapPRG16K(int window, int bank) {
+        mapPRG8K(window * 2, bank * 2);
+        mapPRG8K(window * 2 + 1, bank * 2 + 1);
+    }
+
+    /**
+     * Map the whole CPU range 0x8000 - 0xFFFF to a bank of Program Memory
+     *
+     * @param bank the 32KB bank, wrapped around the size of Program Memory
+     */
+    void mapPRG32K(int bank) {
+        for (int i = 0; i < 4; i++)
+            mapPRG8K(i, bank * 4 + i);
+    }
+
+    /**
+     * Map a 1KB window of the PPU range 0x0000 - 0x1FFF to a bank of Character Memory
+     *
+     * @param window the window to map (0 for 0x0000 up to 7 for 0x1C00)
+     * @param bank   the 1KB bank, wrapped around the size of Character Memory
+     */
+    void mapCHR1K(int window, int bank) {
+        //If there is no Character ROM, the Cartridge contains 8KB of Character RAM
+        chr_banks[window] = Math.floorMod(bank, nb_CHR_banks == 0 ? 8 : nb_CHR_banks * 8) * 0x0400;
+    }
+
+    /**
+     * Map a 4KB window of the PPU range 0x0000 - 0x1FFF to a bank of Character Memory
+     *
+     * @param window the window to map (0 for 0x0000, 1 for 0x1000)
+     * @param bank   the 4KB bank, wrapped around the size of Character Memory
+     */
+    void mapCHR4K(int window, int bank) {
+        for (int i = 0; i < 4; i++)
+            mapCHR1K(window * 4 + i, bank * 4 + i);
+    }
+
+    /**
+     * Map the whole PPU range 0x0000 - 0x1FFF to a bank of Character Memory
+     *
+     * @param bank the 8KB bank, wrapped around the size of Character Memory
+     */
+    void mapCHR8K(int bank) {
+        for (int i = 0; i < 8; i++)
+            mapCHR1K(i, bank * 8 + i);
+    }
+
     /**
      * @return does the Cartridge has internal RAM, false if not overridden
      */
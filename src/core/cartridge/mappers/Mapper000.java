@@ -1,6 +1,5 @@
 package core.cartridge.mappers;
 
-import utils.IntegerWrapper;
 
 /**
  * This class implements the iNES Mapper 000 (NROM)
@@ -15,75 +14,45 @@ public class Mapper000 extends Mapper {
      */
     public Mapper000(int nPRGBanks, int nCHRBanks) {
         super(nPRGBanks, nCHRBanks);
-    }
-
-    /**
-     * No mapping occur, the address is directly returned
-     *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
-     */
-    @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr >= 0x8000) {
-            mapped.value = addr & (nb_PRG_banks > 1 ? 0x7FFF : 0x3FFF);
-            return true;
+        //The banks never change, a single 16KB bank is mirrored in the upper half of the range
+        if (nb_PRG_banks > 1)
+            mapPRG32K(0);
+        else {
+            mapPRG16K(0, 0);
+            mapPRG16K(1, 0);
         }
-        return false;
+        mapCHR8K(0);
     }
 
     /**
-     * No mapping occur, the address is directly returned
+     * No mapping occur, the write goes to the fixed banks
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Program Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         if (addr >= 0x8000) {
-            mapped.value = addr & (nb_PRG_banks > 1 ? 0x7FFF : 0x3FFF);
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * No mapping occur, the address is directly returned
-     *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
-     */
-    @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr <= 0x1FFF) {
-            mapped.value = addr;
-            return true;
+            return prg_banks[(addr >> 13) & 0x03] + (addr & 0x1FFF);
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
      * The PPU never write, for Mapper 000 the Character Memory is ROM
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Character Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int ppuMapWrite(int addr, int data) {
         if (addr <= 0x1FFF) {
             if (nb_CHR_banks == 0) {
-                mapped.value = addr;
-                return true;
+                return addr;
             }
         }
-        return false;
+        return UNMAPPED;
     }
 }
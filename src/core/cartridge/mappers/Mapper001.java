@@ -3,7 +3,6 @@ package core.cartridge.mappers;
 import core.ppu.Mirror;
 import exceptions.InvalidFileException;
 import utils.FileReader;
-import utils.IntegerWrapper;
 
 import java.io.EOFException;
 
@@ -44,49 +43,30 @@ public class Mapper001 extends Mapper {
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @return the mapped offset in Program Memory, INTERNAL | data if read from internal RAM or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
+    public int cpuMapRead(int addr) {
         //The CPU try to read from internal RAM
         if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
-            data.value = internal_ram[addr & 0x1FFF] & 0xFF;
-            return true;
+            return INTERNAL | (internal_ram[addr & 0x1FFF] & 0xFF);
         }
         //The CPU load from PRG Memory
-        if (addr >= 0x8000) {
-            //We select the right Bank by reading the control register
-            if ((control_register & 0b01000) == 0b01000) {
-                if (addr <= 0xBFFF) {
-                    mapped.value = (selected_PRG_bank_low_16K * 0x4000) + (addr & 0x3FFF);
-                    return true;
-                }
-                mapped.value = (selected_PRG_bank_high_16K * 0x4000) + (addr & 0x3FFF);
-            } else {
-                mapped.value = (selected_PRG_bank_32K * 0x8000) + (addr & 0x7FFF);
-            }
-            return true;
-        }
-        return false;
+        return super.cpuMapRead(addr);
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return INTERNAL if written to internal RAM or UNMAPPED
      */
     @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         //The CPU try to write to internal RAM
         if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
             internal_ram[addr & 0x1FFF] = (byte) data;
-            return true;
+            return INTERNAL;
         }
         //The CPU try to configure the Mapper circuit
         if (addr >= 0x8000) {
@@ -95,6 +75,7 @@ public class Mapper001 extends Mapper {
                 load_register = 0x00;
                 load_register_count = 0;
                 control_register = control_register | 0x0C;
+                updateBanks();
             } else { //Otherwise we load the msb in BIT 4 and shift the register
                 load_register >>= 1;
                 load_register |= ((data & 0x01) << 4);
@@ -139,57 +120,51 @@ public class Mapper001 extends Mapper {
                     //The shift register is cleared
                     load_register = 0x00;
                     load_register_count = 0;
+                    updateBanks();
                 }
             }
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * Update the PRG and CHR banks according to the selected banks and the control register
      */
-    @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr <= 0x1FFF) {
-            //If their is not banks we simply return the provided address
-            if (nb_CHR_banks == 0) {
-                mapped.value = addr;
-            } else {
-                //We select the right Bank by reading the control register
-                if ((control_register & 0b10000) == 0b10000) {
-                    if (addr <= 0x0FFF) {
-                        mapped.value = (selected_CHR_bank_low_4K * 0x1000) + (addr & 0x0FFF);
-                        return true;
-                    }
-                    mapped.value = (selected_CHR_bank_high_4K * 0x1000) + (addr & 0x0FFF);
-                } else {
-                    mapped.value = (selected_CHR_bank_8K * 0x2000) + (addr & 0x1FFF);
-                }
-            }
-            return true;
+    private void updateBanks() {
+        //We select the right PRG Banks by reading the control register
+        if ((control_register & 0b01000) == 0b01000) {
+            mapPRG16K(0, selected_PRG_bank_low_16K);
+            mapPRG16K(1, selected_PRG_bank_high_16K);
+        } else {
+            mapPRG32K(selected_PRG_bank_32K);
+        }
+        //If their is not banks we simply use the whole Character RAM
+        if (nb_CHR_banks == 0) {
+            mapCHR8K(0);
+        } else if ((control_register & 0b10000) == 0b10000) {
+            mapCHR4K(0, selected_CHR_bank_low_4K);
+            mapCHR4K(1, selected_CHR_bank_high_4K);
+        } else {
+            mapCHR8K(selected_CHR_bank_8K);
         }
-        return false;
+        notifyMappingChanged();
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Character Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int ppuMapWrite(int addr, int data) {
         if (addr <= 0x1FFF) {
             if (nb_CHR_banks == 0) {
-                mapped.value = addr;
-                return true;
+                return addr;
             }
-            return true;
+            //The Character Memory is ROM, the write is ignored
+            return INTERNAL;
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
@@ -217,6 +192,7 @@ public class Mapper001 extends Mapper {
         selected_PRG_bank_low_16K = 0;
         selected_PRG_bank_high_16K = nb_PRG_banks - 1;
         selected_PRG_bank_32K = 0;
+        updateBanks();
     }
 
     /**
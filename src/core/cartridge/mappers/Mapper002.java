@@ -1,6 +1,5 @@
 package core.cartridge.mappers;
 
-import utils.IntegerWrapper;
 
 
 public class Mapper002 extends Mapper {
@@ -18,68 +17,33 @@ public class Mapper002 extends Mapper {
     }
 
     /**
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Program Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr >= 0x8000 && addr <= 0xBFFF) {
-            mapped.value = (selected_PRG_bank_low * 0x4000) + (addr & 0x3FFF);
-            return true;
-        }
-        if (addr >= 0xC000) {
-            mapped.value = (selected_PRG_bank_high * 0x4000) + (addr & 0x3FFF);
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
-     */
-    @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         if (addr >= 0x8000) {
             selected_PRG_bank_low = data & 0x0F;
+            mapPRG16K(0, selected_PRG_bank_low);
+            notifyMappingChanged();
         }
-        return false;
-    }
-
-    /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
-     */
-    @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr <= 0x1FFF) {
-            mapped.value = addr;
-            return true;
-        }
-        return false;
+        return UNMAPPED;
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Character Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int ppuMapWrite(int addr, int data) {
         if (addr <= 0x1FFF) {
             if (nb_CHR_banks == 0) {
-                mapped.value = addr;
-                return true;
+                return addr;
             }
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
@@ -89,5 +53,9 @@ public class Mapper002 extends Mapper {
     public void reset() {
         selected_PRG_bank_low = 0;
         selected_PRG_bank_high = nb_PRG_banks - 1;
+        mapPRG16K(0, selected_PRG_bank_low);
+        mapPRG16K(1, selected_PRG_bank_high);
+        mapCHR8K(0);
+        notifyMappingChanged();
     }
 }
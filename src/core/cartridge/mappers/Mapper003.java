@@ -1,6 +1,5 @@
 package core.cartridge.mappers;
 
-import utils.IntegerWrapper;
 
 
 public class Mapper003 extends Mapper {
@@ -19,68 +18,42 @@ public class Mapper003 extends Mapper {
     }
 
     /**
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Program Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr >= 0x8000) {
-            if (nb_PRG_banks == 1)
-                mapped.value = addr & 0x3FFF;
-            if (nb_PRG_banks == 2)
-                mapped.value = addr & 0x7FFF;
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
-     */
-    @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         if (addr >= 0x8000) {
             selected_CHR_bank = data & 0x03;
-            mapped.value = addr;
+            mapCHR8K(selected_CHR_bank);
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Character Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr <= 0x1FFF) {
-            mapped.value = (selected_CHR_bank * 0x2000) + addr;
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
-     */
-    @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
-        return false;
+    public int ppuMapWrite(int addr, int data) {
+        return UNMAPPED;
     }
 
 
     @Override
     public void reset() {
         selected_CHR_bank = 0x00;
+        //The Program Memory isn't banked, a single 16KB bank is mirrored in the upper half of the range
+        if (nb_PRG_banks > 1)
+            mapPRG32K(0);
+        else {
+            mapPRG16K(0, 0);
+            mapPRG16K(1, 0);
+        }
+        mapCHR8K(selected_CHR_bank);
+        notifyMappingChanged();
     }
 
 }
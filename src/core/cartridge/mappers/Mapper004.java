@@ -3,7 +3,6 @@ package core.cartridge.mappers;
 import core.ppu.Mirror;
 import exceptions.InvalidFileException;
 import utils.FileReader;
-import utils.IntegerWrapper;
 
 import java.io.EOFException;
 
@@ -14,8 +13,6 @@ public class Mapper004 extends Mapper {
     private boolean flag_CHR_inversion = false;
 
     private final int[] register;
-    private final int[] chr_banks;
-    private final int[] prg_banks;
 
     private boolean flag_IRQ_active = false;
     private boolean flag_IRQ_enabled = false;
@@ -34,8 +31,6 @@ public class Mapper004 extends Mapper {
     public Mapper004(int nPRGBanks, int nCHRBanks, String saveFile) {
         super(nPRGBanks, nCHRBanks);
         register = new int[8];
-        chr_banks = new int[8];
-        prg_banks = new int[4];
         try {
             //The cartridge contains RAM, it can contains saves, we try to load it if it exist
             FileReader saveReader = new FileReader(saveFile);
@@ -47,52 +42,30 @@ public class Mapper004 extends Mapper {
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @return the mapped offset in Program Memory, INTERNAL | data if read from internal RAM or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
+    public int cpuMapRead(int addr) {
         //The CPU try to read from internal RAM
         if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
-            data.value = internal_ram[addr & 0x1FFF] & 0xFF;
-            return true;
+            return INTERNAL | (internal_ram[addr & 0x1FFF] & 0xFF);
         }
         //Otherwise we select the appropriate PRG bank using the provided address
-        if (addr >= 0x8000 && addr <= 0x9FFF) {
-            mapped.value = prg_banks[0] + (addr & 0x1FFF);
-            return true;
-        }
-        if (addr >= 0xA000 && addr <= 0xBFFF) {
-            mapped.value = prg_banks[1] + (addr & 0x1FFF);
-            return true;
-        }
-        if (addr >= 0xC000 && addr <= 0xDFFF) {
-            mapped.value = prg_banks[2] + (addr & 0x1FFF);
-            return true;
-        }
-        if (addr >= 0xE000) {
-            mapped.value = prg_banks[3] + (addr & 0x1FFF);
-            return true;
-        }
-        return false;
+        return super.cpuMapRead(addr);
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return INTERNAL if written to internal RAM or UNMAPPED
      */
     @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         //The CPU try to write to internal RAM
         if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
             internal_ram[addr & 0x1FFF] = (byte) data;
-            return true;
+            return INTERNAL;
         }
 
         //The CPU try to configure the Mapper circuit
@@ -105,37 +78,38 @@ public class Mapper004 extends Mapper {
                 register[target_register] = data;
                 //We set the CHR Banks according to the state of the registers and the Inversion mode
                 if (flag_CHR_inversion) {
-                    chr_banks[0] = register[2] * 0x0400;
-                    chr_banks[1] = register[3] * 0x0400;
-                    chr_banks[2] = register[4] * 0x0400;
-                    chr_banks[3] = register[5] * 0x0400;
-                    chr_banks[4] = (register[0] & 0xFE) * 0x0400;
-                    chr_banks[5] = register[0] * 0x0400 + 0x0400;
-                    chr_banks[6] = (register[1] & 0xFE) * 0x0400;
-                    chr_banks[7] = register[1] * 0x0400 + 0x0400;
+                    mapCHR1K(0, register[2]);
+                    mapCHR1K(1, register[3]);
+                    mapCHR1K(2, register[4]);
+                    mapCHR1K(3, register[5]);
+                    mapCHR1K(4, register[0] & 0xFE);
+                    mapCHR1K(5, register[0] + 1);
+                    mapCHR1K(6, register[1] & 0xFE);
+                    mapCHR1K(7, register[1] + 1);
                 } else {
-                    chr_banks[0] = (register[0] & 0xFE) * 0x0400;
-                    chr_banks[1] = register[0] * 0x0400 + 0x0400;
-                    chr_banks[2] = (register[1] & 0xFE) * 0x0400;
-                    chr_banks[3] = register[1] * 0x0400 + 0x0400;
-                    chr_banks[4] = register[2] * 0x0400;
-                    chr_banks[5] = register[3] * 0x0400;
-                    chr_banks[6] = register[4] * 0x0400;
-                    chr_banks[7] = register[5] * 0x0400;
+                    mapCHR1K(0, register[0] & 0xFE);
+                    mapCHR1K(1, register[0] + 1);
+                    mapCHR1K(2, register[1] & 0xFE);
+                    mapCHR1K(3, register[1] + 1);
+                    mapCHR1K(4, register[2]);
+                    mapCHR1K(5, register[3]);
+                    mapCHR1K(6, register[4]);
+                    mapCHR1K(7, register[5]);
                 }
 
                 //We set the PRG Banks according to the state of the registers and the PRG mode
                 if (flag_PRG_bank_mode) {
-                    prg_banks[2] = (register[6] & 0x3F) * 0x2000;
-                    prg_banks[0] = (nb_PRG_banks * 2 - 2) * 0x2000;
+                    mapPRG8K(2, register[6] & 0x3F);
+                    mapPRG8K(0, nb_PRG_banks * 2 - 2);
                 } else {
-                    prg_banks[0] = (register[6] & 0x3F) * 0x2000;
-                    prg_banks[2] = (nb_PRG_banks * 2 - 2) * 0x2000;
+                    mapPRG8K(0, register[6] & 0x3F);
+                    mapPRG8K(2, nb_PRG_banks * 2 - 2);
                 }
-                prg_banks[1] = (register[7] & 0x3F) * 0x2000;
-                prg_banks[3] = (nb_PRG_banks * 2 - 1) * 0x2000;
+                mapPRG8K(1, register[7] & 0x3F);
+                mapPRG8K(3, nb_PRG_banks * 2 - 1);
+                notifyMappingChanged();
             }
-            return false;
+            return UNMAPPED;
         }
 
         //The CPU try to set the mirroring mode
@@ -146,7 +120,7 @@ public class Mapper004 extends Mapper {
                 else
                     mirror = Mirror.VERTICAL;
             }
-            return false;
+            return UNMAPPED;
         }
 
         //The CPU try to set the scanline that should trigger an IRQ
@@ -155,7 +129,7 @@ public class Mapper004 extends Mapper {
                 irq_reload = data;
             else
                 irq_counter = 0;
-            return false;
+            return UNMAPPED;
         }
 
         //The CPU try to activate/deactivate the IRQ triggering
@@ -166,57 +140,19 @@ public class Mapper004 extends Mapper {
             } else {
                 flag_IRQ_enabled = true;
             }
-            return false;
-        }
-        return false;
-    }
-
-    /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
-     */
-    @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        //We select the appropriate CHR bank using the provided address
-        if (addr <= 0x03FF) {
-            mapped.value = chr_banks[0] + (addr & 0x03FF);
-            return true;
-        } else if (addr <= 0x07FF) {
-            mapped.value = chr_banks[1] + (addr & 0x03FF);
-            return true;
-        } else if (addr <= 0x0BFF) {
-            mapped.value = chr_banks[2] + (addr & 0x03FF);
-            return true;
-        } else if (addr <= 0x0FFF) {
-            mapped.value = chr_banks[3] + (addr & 0x03FF);
-            return true;
-        } else if (addr <= 0x13FF) {
-            mapped.value = chr_banks[4] + (addr & 0x03FF);
-            return true;
-        } else if (addr <= 0x17FF) {
-            mapped.value = chr_banks[5] + (addr & 0x03FF);
-            return true;
-        } else if (addr <= 0x1BFF) {
-            mapped.value = chr_banks[6] + (addr & 0x03FF);
-            return true;
-        } else if (addr <= 0x1FFF) {
-            mapped.value = chr_banks[7] + (addr & 0x03FF);
-            return true;
+            return UNMAPPED;
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Character Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
-        return false;
+    public int ppuMapWrite(int addr, int data) {
+        return UNMAPPED;
     }
 
     /**
@@ -253,8 +189,23 @@ public class Mapper004 extends Mapper {
         } else {
             irq_counter--;
         }
-        if (irq_counter == 0 && flag_IRQ_enabled)
+        if (irq_counter == 0 && flag_IRQ_enabled) {
             flag_IRQ_active = true;
+            raiseIRQ();
+        }
+    }
+
+    /**
+     * @return the number of scanline notifications left before the IRQ is fired, Integer.MAX_VALUE if it is disabled
+     */
+    @Override
+    public int getScanlinesUntilIRQ() {
+        if (!flag_IRQ_enabled)
+            return Integer.MAX_VALUE;
+        if (irq_counter > 0)
+            return irq_counter;
+        //The counter is reloaded on the next notification, and only fires then if the reload value is 0
+        return irq_reload == 0 ? 1 : irq_reload + 1;
     }
 
     /**
@@ -278,10 +229,11 @@ public class Mapper004 extends Mapper {
             register[i] = 0;
         }
 
-        prg_banks[0] = 0;
-        prg_banks[1] = 0x2000;
-        prg_banks[2] = (nb_PRG_banks * 2 - 2) * 0x2000;
-        prg_banks[3] = (nb_PRG_banks * 2 - 1) * 0x2000;
+        mapPRG8K(0, 0);
+        mapPRG8K(1, 1);
+        mapPRG8K(2, nb_PRG_banks * 2 - 2);
+        mapPRG8K(3, nb_PRG_banks * 2 - 1);
+        notifyMappingChanged();
     }
 
     /**
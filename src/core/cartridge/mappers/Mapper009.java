@@ -3,7 +3,6 @@ package core.cartridge.mappers;
 import core.ppu.Mirror;
 import exceptions.InvalidFileException;
 import utils.FileReader;
-import utils.IntegerWrapper;
 
 import java.io.EOFException;
 
@@ -43,111 +42,96 @@ public class Mapper009 extends Mapper {
     }
 
     /**
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @return the mapped offset in Program Memory, INTERNAL | data if read from internal RAM or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
+    public int cpuMapRead(int addr) {
         //The CPU try to read from internal RAM
         if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
-            data.value = internal_ram[addr & 0x1FFF] & 0xFF;
-            return true;
+            return INTERNAL | (internal_ram[addr & 0x1FFF] & 0xFF);
         }
         //The CPU load from PRG Memory
-        if (addr >= 0x8000 && addr <= 0x9FFF) {
-            mapped.value = (selected_PRG_bank * 0x2000) + (addr & 0x1FFF);
-            return true;
-        }
-        if (addr >= 0xA000 && addr <= 0xFFFF) {
-            mapped.value = 0x10000 | addr;
-            return true;
-        }
-        return false;
+        return super.cpuMapRead(addr);
     }
 
     /**
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Program Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         if (addr >= 0x6000 && addr <= 0x7FFF) { // Cartridge RAM
-            mapped.value = -1;
             internal_ram[addr & 0x1FFF] = (byte) data;
-            return true;
+            return INTERNAL;
         } else if (addr >= 0xA000 && addr <= 0xAFFF) {
             selected_PRG_bank = data & 0x0F;
-            return true;
+            mapPRG8K(0, selected_PRG_bank);
+            notifyMappingChanged();
+            return INTERNAL;
         } else if (addr >= 0xB000 && addr <= 0xBFFF) {
             selected_CHR_bank_l0_FD = data & 0x1F;
-            return true;
+            updateCHRBanks();
+            return INTERNAL;
         } else if (addr >= 0xC000 && addr <= 0xCFFF) {
             selected_CHR_bank_l0_FE = data & 0x1F;
-            return true;
+            updateCHRBanks();
+            return INTERNAL;
         } else if (addr >= 0xD000 && addr <= 0xDFFF) {
             selected_CHR_bank_l1_FD = data & 0x1F;
-            return true;
+            updateCHRBanks();
+            return INTERNAL;
         } else if (addr >= 0xE000 && addr <= 0xEFFF) {
             selected_CHR_bank_l1_FE = data & 0x1F;
-            return true;
+            updateCHRBanks();
+            return INTERNAL;
         } else if (addr >= 0xF000 && addr <= 0xFFFF) {
             switch (data & 0x01) {
                 case 0 -> mirroring_mode = Mirror.VERTICAL;
                 case 1 -> mirroring_mode = Mirror.HORIZONTAL;
             }
-            return true;
+            return INTERNAL;
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * Update the CHR banks according to the selected banks and the state of the latches
+     * a half of the range isn't mapped until its latch has been set
      */
-    @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr <= 0x0FFF) {
-            if (latch_0 == 0xFD) {
-                mapped.value = (selected_CHR_bank_l0_FD * 0x1000) + (addr & 0x0FFF);
-                return true;
-            } else if (latch_0 == 0xFE) {
-                mapped.value = (selected_CHR_bank_l0_FE * 0x1000) + (addr & 0x0FFF);
-                return true;
-            }
-        } else if (addr <= 0x1FFF) {
-            if (latch_1 == 0xFD) {
-                mapped.value = (selected_CHR_bank_l1_FD * 0x1000) + (addr & 0x0FFF);
-                return true;
-            } else if (latch_1 == 0xFE) {
-                mapped.value = (selected_CHR_bank_l1_FE * 0x1000) + (addr & 0x0FFF);
-                return true;
-            }
+    private void updateCHRBanks() {
+        if (latch_0 == 0xFD) {
+            mapCHR4K(0, selected_CHR_bank_l0_FD);
+        } else if (latch_0 == 0xFE) {
+            mapCHR4K(0, selected_CHR_bank_l0_FE);
+        } else {
+            for (int i = 0; i < 4; i++)
+                chr_banks[i] = UNMAPPED;
+        }
+        if (latch_1 == 0xFD) {
+            mapCHR4K(1, selected_CHR_bank_l1_FD);
+        } else if (latch_1 == 0xFE) {
+            mapCHR4K(1, selected_CHR_bank_l1_FE);
+        } else {
+            for (int i = 4; i < 8; i++)
+                chr_banks[i] = UNMAPPED;
         }
-        return false;
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Character Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int ppuMapWrite(int addr, int data) {
         if (addr <= 0x1FFF) {
             if (nb_CHR_banks == 0) {
-                mapped.value = addr;
-                return true;
+                return addr;
             }
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
@@ -163,6 +147,9 @@ public class Mapper009 extends Mapper {
             latch_1 = 0xFD;
         else if (addr >= 0x1FE8 && addr <= 0x1FEF)
             latch_1 = 0xFE;
+        else
+            return;
+        updateCHRBanks();
     }
 
     /**
@@ -185,6 +172,13 @@ public class Mapper009 extends Mapper {
         selected_CHR_bank_l1_FE = 0x00;
         latch_0 = 0x00;
         latch_1 = 0x00;
+        //The last three 8KB banks are fixed
+        mapPRG8K(0, selected_PRG_bank);
+        mapPRG8K(1, nb_PRG_banks * 2 - 3);
+        mapPRG8K(2, nb_PRG_banks * 2 - 2);
+        mapPRG8K(3, nb_PRG_banks * 2 - 1);
+        updateCHRBanks();
+        notifyMappingChanged();
     }
 
     /**
@@ -1,6 +1,5 @@
 package core.cartridge.mappers;
 
-import utils.IntegerWrapper;
 
 /**
  * This class implements the iNES Mapper 066 (GxROM)
@@ -20,59 +19,30 @@ public class Mapper066 extends Mapper {
     }
 
     /**
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Program Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr >= 0x8000) {
-            mapped.value = (selected_PRG_bank * 0x8000) + (addr & 0x7FFF);
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
-     */
-    @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         if (addr >= 0x8000) {
             selected_PRG_bank = (data & 0x30) >> 4;
             selected_CHR_bank = data & 0x03;
+            mapPRG32K(selected_PRG_bank);
+            mapCHR8K(selected_CHR_bank);
+            notifyMappingChanged();
         }
-        return false;
-    }
-
-    /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
-     */
-    @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr <= 0x1FFF) {
-            mapped.value = selected_CHR_bank * 0x2000 + addr;
-            return true;
-        }
-        return false;
+        return UNMAPPED;
     }
 
     /**
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped offset in Character Memory, INTERNAL if consumed by the Mapper or UNMAPPED
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
-        return false;
+    public int ppuMapWrite(int addr, int data) {
+        return UNMAPPED;
     }
 
 
@@ -80,5 +50,8 @@ public class Mapper066 extends Mapper {
     public void reset() {
         selected_PRG_bank = 0x00;
         selected_CHR_bank = 0x00;
+        mapPRG32K(selected_PRG_bank);
+        mapCHR8K(selected_CHR_bank);
+        notifyMappingChanged();
     }
 }
@@ -1,6 +1,8 @@
 package core.cpu;
 
+import core.EventLatch;
 import core.NES;
+import core.cartridge.Cartridge;
 import utils.IntegerWrapper;
 
 import java.util.*;
@@ -11,6 +13,10 @@ import java.util.*;
 public class CPU_6502 {
 
     private final List<Instruction> opcodes;
+    private final int[] opcode_cycles;
+    private final AddressingMode[] opcode_modes;
+    private final int[] opcode_lengths;
+    private final CoreType core;
     private NES nes;
     private int accumulator = 0x00;
     private int x_register = 0x00;
@@ -26,11 +32,23 @@ public class CPU_6502 {
     private int addr_rel = 0x00;
     private long cpu_clock = 0L;
     private boolean halted;
+    private int idle_loop_address = -1;
+    private DecodeCache decode_cache;
 
     /**
-     * Here are the operation codes for the CPU
+     * Create a CPU using the switch based execution core
      */
     public CPU_6502() {
+        this(CoreType.SWITCH);
+    }
+
+    /**
+     * Here are the operation codes for the CPU
+     *
+     * @param core the execution core to use
+     */
+    public CPU_6502(CoreType core) {
+        this.core = core;
         opcodes = new ArrayList<>();
         opcodes.add(new Instruction(OPCode.BRK, AddressingMode.IMM, opcodes.size(), 7, this));
         opcodes.add(new Instruction(OPCode.ORA, AddressingMode.IZX, opcodes.size(), 6, this));
@@ -288,6 +306,22 @@ public class CPU_6502 {
         opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ABX, opcodes.size(), 4, this));
         opcodes.add(new Instruction(OPCode.INC, AddressingMode.ABX, opcodes.size(), 7, this));
         opcodes.add(new Instruction(OPCode.INS, AddressingMode.ABX, opcodes.size(), 7, this));
+
+        //The switch core only needs the number of cycles of each Instruction
+        opcode_cycles = new int[opcodes.size()];
+        for (Instruction instr : opcodes)
+            opcode_cycles[instr.opcode] = instr.cycles;
+        //The operations only need the addressing mode, and the decode cache the length of each Instruction
+        opcode_modes = new AddressingMode[opcodes.size()];
+        opcode_lengths = new int[opcodes.size()];
+        for (Instruction instr : opcodes) {
+            opcode_modes[instr.opcode] = instr.addr_mode;
+            opcode_lengths[instr.opcode] = switch (instr.addr_mode) {
+                case IMP -> 1;
+                case IMM, ZP0, ZPX, ZPY, IZX, IZY, REL -> 2;
+                case ABS, ABX, ABY, IND -> 3;
+            };
+        }
     }
 
     /**
@@ -297,6 +331,19 @@ public class CPU_6502 {
         this.nes = NES;
     }
 
+    /**
+     * Connect the Cartridge whose Program ROM will be decoded only once by the switch core
+     * the Instructions are then executed from the decode cache until the CPU writes to the Program Memory
+     *
+     * @param cartridge the Cartridge inserted in the console
+     */
+    public void connectCartridge(Cartridge cartridge) {
+        if (core != CoreType.SWITCH)
+            return;
+        decode_cache = new DecodeCache(cartridge.getPrgMemory(), cartridge.getMapper().getPrgBanks(), opcode_lengths);
+        cartridge.setPrgWriteListener(decode_cache::invalidate);
+    }
+
     /**
      * Above we connected the Bus, now we need to write to an address.
      * @param addr the address to write to
@@ -326,6 +373,21 @@ public class CPU_6502 {
         return (status & flag.value) == flag.value;
     }
 
+    /**
+     * Let the console forward the IRQ line again if the I flag has been cleared
+     */
+    private void unmaskIrq() {
+        if (!getFlag(Flags.I))
+            nes.getEventLatch().unmask(EventLatch.IRQ);
+    }
+
+    /**
+     * @return is the I flag set, the IRQs are then ignored
+     */
+    public boolean isIrqDisabled() {
+        return getFlag(Flags.I);
+    }
+
     /**
      * Set a Flag to 0 or 1 (true or false)
      *
@@ -560,7 +622,7 @@ public class CPU_6502 {
         setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
         setFlag(Flags.N, (tmp & 0x80) == 0x80);
 
-        if (opcodes.get(opcode).addr_mode == AddressingMode.IMP) accumulator = tmp & 0xFF;
+        if (opcode_modes[opcode] == AddressingMode.IMP) accumulator = tmp & 0xFF;
         else write(addr_abs, tmp & 0xFF);
 
         return 0;
@@ -744,6 +806,7 @@ public class CPU_6502 {
      */
     int cli() {
         setFlag(Flags.I, false);
+        unmaskIrq();
         return 0;
     }
 
@@ -963,7 +1026,7 @@ public class CPU_6502 {
         setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
         setFlag(Flags.N, (tmp & 0x80) == 0x80);
 
-        if (opcodes.get(opcode).addr_mode == AddressingMode.IMP) accumulator = tmp & 0xFF;
+        if (opcode_modes[opcode] == AddressingMode.IMP) accumulator = tmp & 0xFF;
         else write(addr_abs, tmp & 0xFF);
 
         return 0;
@@ -1031,6 +1094,7 @@ public class CPU_6502 {
         status = popStack();
 
         setFlag(Flags.U, true);
+        unmaskIrq();
 
         return 0;
     }
@@ -1046,7 +1110,7 @@ public class CPU_6502 {
         setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
         setFlag(Flags.N, (tmp & 0x80) == 0x80);
 
-        if (opcodes.get(opcode).addr_mode == AddressingMode.IMP) accumulator = tmp & 0xFF;
+        if (opcode_modes[opcode] == AddressingMode.IMP) accumulator = tmp & 0xFF;
         else write(addr_abs, tmp & 0xFF);
 
         return 0;
@@ -1063,7 +1127,7 @@ public class CPU_6502 {
         setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
         setFlag(Flags.N, (tmp & 0x80) == 0x80);
 
-        if (opcodes.get(opcode).addr_mode == AddressingMode.IMP) accumulator = tmp & 0xFF;
+        if (opcode_modes[opcode] == AddressingMode.IMP) accumulator = tmp & 0xFF;
         else write(addr_abs, tmp & 0xFF);
 
         return 0;
@@ -1082,6 +1146,7 @@ public class CPU_6502 {
 
         status &= ~Flags.B.value & 0x00FF;
         status &= ~Flags.U.value & 0x00FF;
+        unmaskIrq();
 
         return 0;
     }
@@ -1433,8 +1498,163 @@ public class CPU_6502 {
     }
 
 
+    // Addressing Modes with an operand coming from the decode cache
+    // the operand isn't read again, the Program Counter is only moved past it
+
+    /**
+     * @param operand the decoded operand
+     * @return 0 No extra cycle required
+     */
+    int zp0(int operand) {
+        addr_abs = operand & 0xFF;
+        program_counter = (program_counter + 1) & 0xFFFF;
+
+        return 0;
+    }
+
+    /**
+     * @param operand the decoded operand
+     * @return 0 No extra cycle required
+     */
+    int zpy(int operand) {
+        addr_abs = (operand + y_register) & 0x00FF;
+        program_counter = (program_counter + 1) & 0xFFFF;
+
+        return 0;
+    }
+
+    /**
+     * @param operand the decoded operand
+     * @return 0 No extra cycle required
+     */
+    int abs(int operand) {
+        addr_abs = operand;
+        program_counter = (program_counter + 2) & 0xFFFF;
+
+        return 0;
+    }
+
+    /**
+     * @param operand the decoded operand
+     * @return 1 if a page Boundary is crossed when adding Y Register, 0 otherwise
+     */
+    int aby(int operand) {
+        program_counter = (program_counter + 2) & 0xFFFF;
+
+        addr_abs = (operand + y_register) & 0xFFFF;
+
+        if ((addr_abs & 0xFF00) != (operand & 0xFF00)) return 1;
+        return 0;
+    }
+
+    /**
+     * @param operand the decoded operand
+     * @return 0 No extra cycle required
+     */
+    int izx(int operand) {
+        program_counter = (program_counter + 1) & 0xFFFF;
+
+        int low = read((operand + (x_register & 0xFF)) & 0x00FF);
+        int high = read((operand + (x_register & 0xFF) + 1) & 0x00FF);
+
+        addr_abs = (high << 8) | low;
+
+        return 0;
+    }
+
+    /**
+     * @param operand the decoded operand
+     * @return 0 No extra cycle required
+     */
+    int zpx(int operand) {
+        addr_abs = (operand + x_register) & 0x00FF;
+        program_counter = (program_counter + 1) & 0xFFFF;
+
+        return 0;
+    }
+
+    /**
+     * @param operand the decoded operand
+     * @return 0 No extra cycle required
+     */
+    int rel(int operand) {
+        addr_rel = operand;
+        program_counter = (program_counter + 1) & 0xFFFF;
+
+        if ((addr_rel & 0x80) == 0x80) addr_rel |= 0xFFFFFF00;
+
+        return 0;
+    }
+
+    /**
+     * @param operand the decoded operand
+     * @return 1 if a page boundary is crossed when adding X Register, 0 otherwise
+     */
+    int abx(int operand) {
+        program_counter = (program_counter + 2) & 0xFFFF;
+
+        addr_abs = (operand + x_register) & 0xFFFF;
+
+        //Dummy read
+        if ((operand & 0xFF) + x_register > 0xFF || opcode == 0x3E)
+            read((operand & 0xFF00) | (addr_abs & 0xFF));
+        if ((addr_abs & 0xFF00) != (operand & 0xFF00)) return 1;
+
+        return 0;
+    }
+
+    /**
+     * @param operand the decoded operand
+     * @return 0 No extra cycle required (because no page boundary cross can occur)
+     */
+    int ind(int operand) {
+        program_counter = (program_counter + 2) & 0xFFFF;
+
+        if ((operand & 0xFF) == 0xFF) addr_abs = (read(operand & 0xFF00) << 8) | read(operand); //Page boundary bug
+        else addr_abs = (read(operand + 1) << 8) | read(operand);
+
+        return 0;
+    }
+
+    /**
+     * @param operand the decoded operand
+     * @return 1 If when adding Y we cross a page boundary 0 otherwise
+     */
+    int izy(int operand) {
+        program_counter = (program_counter + 1) & 0xFFFF;
+
+        int low = read(operand);
+        int high = read((operand + 1) & 0x00FF);
+
+        addr_abs = (high << 8) | low;
+        addr_abs += y_register;
+        addr_abs &= 0xFFFF;
+
+        //Dummy read
+        if (low + y_register > 0xFF)
+            read(((high << 8) & 0xFF00) | (addr_abs & 0xFF));
+
+        if ((addr_abs & 0xFF00) != (high << 8)) return 1;
+
+        return 0;
+    }
+
     //  Utility Methods //
 
+    /**
+     * Read the operand of the current opcode from the bus, for the Instructions that aren't in the decode cache
+     * the addressing modes without operand read nothing, the others read their bytes in the same order they would
+     *
+     * @return the operand of the Instruction
+     */
+    private int readOperand() {
+        return switch (opcode_modes[opcode]) {
+            case IMP, IMM -> 0;
+            case ZP0, ZPX, ZPY, IZX, IZY, REL -> read(program_counter);
+            case ABS, ABX, ABY, IND -> read(program_counter) | (read((program_counter + 1) & 0xFFFF) << 8);
+        };
+    }
+
     /**
      * Execute one tick of the CPU
      */
@@ -1443,21 +1663,31 @@ public class CPU_6502 {
             //Check if the CPU finished the last instruction (this is given by the cycles)
             if (cycles <= 0) {
 
-                //Fetch the Operation Code
-                opcode = read(program_counter);
+                //Fetch the Operation Code, already decoded if the Instruction is in the decode cache
+                int decoded = decode_cache == null ? DecodeCache.NOT_CACHED : decode_cache.get(program_counter);
+                opcode = decoded != DecodeCache.NOT_CACHED ? decoded & 0xFF : read(program_counter);
                 setFlag(Flags.U, true);
                 //Increment the Program Counter
                 program_counter++;
                 program_counter &= 0xFFFF;
-                //Pull the Instruction via the opcodes
-                Instruction instr = opcodes.get(opcode);
-                //Set the required number of cycle for this instruction
-                cycles = instr.cycles;
-                //Execute the Instruction (Fetch data + treatment)
-                int additional_cycle_1 = instr.addrmode();
-                int additional_cycle_2 = instr.operate();
-                //If the Instruction is susceptible of requiring an extra cycle and the addressing mode require one, we can set an extra cycle.
-                cycles += (additional_cycle_1 & additional_cycle_2);
+                if (core == CoreType.SWITCH) {
+                    //Set the required number of cycle for this instruction
+                    cycles = opcode_cycles[opcode];
+                    //Execute the Instruction, the extra cycle is computed by the switch
+                    int operand = decoded != DecodeCache.NOT_CACHED ? (decoded >> 8) & 0xFFFF : readOperand();
+                    int additional_cycle = execute(operand); // The branches add their cycles directly, execute before reading cycles
+                    cycles += additional_cycle;
+                } else {
+                    //Pull the Instruction via the opcodes
+                    Instruction instr = opcodes.get(opcode);
+                    //Set the required number of cycle for this instruction
+                    cycles = instr.cycles;
+                    //Execute the Instruction (Fetch data + treatment)
+                    int additional_cycle_1 = instr.addrmode();
+                    int additional_cycle_2 = instr.operate();
+                    //If the Instruction is susceptible of requiring an extra cycle and the addressing mode require one, we can set an extra cycle.
+                    cycles += (additional_cycle_1 & additional_cycle_2);
+                }
                 setFlag(Flags.U, true);
             }
             //Decrement the remaining busy cycle index
@@ -1466,6 +1696,276 @@ public class CPU_6502 {
         }
     }
 
+    /**
+     * Execute the current opcode by calling its addressing mode and operation directly
+     * both are always evaluated, in that order, like with the opcode table
+     * The operand comes from the decode cache, or has just been read by readOperand()
+     *
+     * @param operand the operand of the Instruction
+     * @return 1 if the Instruction requires an extra cycle, 0 otherwise
+     */
+    private int execute(int operand) {
+        return switch (opcode) {
+            case 0x00 -> imm() & brk();
+            case 0x01 -> izx(operand) & ora();
+            case 0x02 -> imp() & hlt();
+            case 0x03 -> izx(operand) & aso();
+            case 0x04 -> imp() & skb();
+            case 0x05 -> zp0(operand) & ora();
+            case 0x06 -> zp0(operand) & asl();
+            case 0x07 -> zp0(operand) & aso();
+            case 0x08 -> imp() & php();
+            case 0x09 -> imm() & ora();
+            case 0x0A -> imp() & asl();
+            case 0x0B -> imm() & anc();
+            case 0x0C -> imp() & skw();
+            case 0x0D -> abs(operand) & ora();
+            case 0x0E -> abs(operand) & asl();
+            case 0x0F -> abs(operand) & aso();
+            case 0x10 -> rel(operand) & bpl();
+            case 0x11 -> izy(operand) & ora();
+            case 0x12 -> imp() & hlt();
+            case 0x13 -> izy(operand) & aso();
+            case 0x14 -> imp() & skb();
+            case 0x15 -> zpx(operand) & ora();
+            case 0x16 -> zpx(operand) & asl();
+            case 0x17 -> zpx(operand) & aso();
+            case 0x18 -> imp() & clc();
+            case 0x19 -> aby(operand) & ora();
+            case 0x1A -> imp() & nop();
+            case 0x1B -> aby(operand) & aso();
+            case 0x1C -> imp() & skw();
+            case 0x1D -> abx(operand) & ora();
+            case 0x1E -> abx(operand) & asl();
+            case 0x1F -> abx(operand) & aso();
+            case 0x20 -> abs(operand) & jsr();
+            case 0x21 -> izx(operand) & and();
+            case 0x22 -> imp() & hlt();
+            case 0x23 -> izx(operand) & rla();
+            case 0x24 -> zp0(operand) & bit();
+            case 0x25 -> zp0(operand) & and();
+            case 0x26 -> zp0(operand) & rol();
+            case 0x27 -> zp0(operand) & rla();
+            case 0x28 -> imp() & plp();
+            case 0x29 -> imm() & and();
+            case 0x2A -> imp() & rol();
+            case 0x2B -> imm() & anc();
+            case 0x2C -> abs(operand) & bit();
+            case 0x2D -> abs(operand) & and();
+            case 0x2E -> abs(operand) & rol();
+            case 0x2F -> abs(operand) & rla();
+            case 0x30 -> rel(operand) & bmi();
+            case 0x31 -> izy(operand) & and();
+            case 0x32 -> imp() & hlt();
+            case 0x33 -> izy(operand) & rla();
+            case 0x34 -> imp() & skb();
+            case 0x35 -> zpx(operand) & and();
+            case 0x36 -> zpx(operand) & rol();
+            case 0x37 -> zpx(operand) & rla();
+            case 0x38 -> imp() & sec();
+            case 0x39 -> aby(operand) & and();
+            case 0x3A -> imp() & nop();
+            case 0x3B -> aby(operand) & rla();
+            case 0x3C -> imp() & skw();
+            case 0x3D -> abx(operand) & and();
+            case 0x3E -> abx(operand) & rol();
+            case 0x3F -> abx(operand) & rla();
+            case 0x40 -> imp() & rti();
+            case 0x41 -> izx(operand) & eor();
+            case 0x42 -> imp() & hlt();
+            case 0x43 -> izx(operand) & lse();
+            case 0x44 -> imp() & skb();
+            case 0x45 -> zp0(operand) & eor();
+            case 0x46 -> zp0(operand) & lsr();
+            case 0x47 -> zp0(operand) & lse();
+            case 0x48 -> imp() & pha();
+            case 0x49 -> imm() & eor();
+            case 0x4A -> imp() & lsr();
+            case 0x4B -> imm() & alr();
+            case 0x4C -> abs(operand) & jmp();
+            case 0x4D -> abs(operand) & eor();
+            case 0x4E -> abs(operand) & lsr();
+            case 0x4F -> abs(operand) & lse();
+            case 0x50 -> rel(operand) & bvc();
+            case 0x51 -> izy(operand) & eor();
+            case 0x52 -> imp() & hlt();
+            case 0x53 -> izy(operand) & lse();
+            case 0x54 -> imp() & skb();
+            case 0x55 -> zpx(operand) & eor();
+            case 0x56 -> zpx(operand) & lsr();
+            case 0x57 -> zpx(operand) & lse();
+            case 0x58 -> imp() & cli();
+            case 0x59 -> aby(operand) & eor();
+            case 0x5A -> imp() & nop();
+            case 0x5B -> aby(operand) & lse();
+            case 0x5C -> imp() & skw();
+            case 0x5D -> abx(operand) & eor();
+            case 0x5E -> abx(operand) & lsr();
+            case 0x5F -> abx(operand) & lse();
+            case 0x60 -> imp() & rts();
+            case 0x61 -> izx(operand) & adc();
+            case 0x62 -> imp() & hlt();
+            case 0x63 -> izx(operand) & rra();
+            case 0x64 -> imp() & skb();
+            case 0x65 -> zp0(operand) & adc();
+            case 0x66 -> zp0(operand) & ror();
+            case 0x67 -> zp0(operand) & rra();
+            case 0x68 -> imp() & pla();
+            case 0x69 -> imm() & adc();
+            case 0x6A -> imp() & ror();
+            case 0x6B -> imm() & arr();
+            case 0x6C -> ind(operand) & jmp();
+            case 0x6D -> abs(operand) & adc();
+            case 0x6E -> abs(operand) & ror();
+            case 0x6F -> abs(operand) & rra();
+            case 0x70 -> rel(operand) & bvs();
+            case 0x71 -> izy(operand) & adc();
+            case 0x72 -> imp() & hlt();
+            case 0x73 -> izy(operand) & rra();
+            case 0x74 -> imp() & skb();
+            case 0x75 -> zpx(operand) & adc();
+            case 0x76 -> zpx(operand) & ror();
+            case 0x77 -> zpx(operand) & rra();
+            case 0x78 -> imp() & sei();
+            case 0x79 -> aby(operand) & adc();
+            case 0x7A -> imp() & nop();
+            case 0x7B -> aby(operand) & rra();
+            case 0x7C -> imp() & skw();
+            case 0x7D -> abx(operand) & adc();
+            case 0x7E -> abx(operand) & ror();
+            case 0x7F -> abx(operand) & rra();
+            case 0x80 -> imp() & skb();
+            case 0x81 -> izx(operand) & sta();
+            case 0x82 -> imp() & skb();
+            case 0x83 -> izx(operand) & axs();
+            case 0x84 -> zp0(operand) & sty();
+            case 0x85 -> zp0(operand) & sta();
+            case 0x86 -> zp0(operand) & stx();
+            case 0x87 -> zp0(operand) & axs();
+            case 0x88 -> imp() & dey();
+            case 0x89 -> imp() & skb();
+            case 0x8A -> imp() & txa();
+            case 0x8B -> imm() & xaa();
+            case 0x8C -> abs(operand) & sty();
+            case 0x8D -> abs(operand) & sta();
+            case 0x8E -> abs(operand) & stx();
+            case 0x8F -> abs(operand) & axs();
+            case 0x90 -> rel(operand) & bcc();
+            case 0x91 -> izy(operand) & sta();
+            case 0x92 -> imp() & hlt();
+            case 0x93 -> izy(operand) & axa();
+            case 0x94 -> zpx(operand) & sty();
+            case 0x95 -> zpx(operand) & sta();
+            case 0x96 -> zpy(operand) & stx();
+            case 0x97 -> zpy(operand) & axs();
+            case 0x98 -> imp() & tya();
+            case 0x99 -> aby(operand) & sta();
+            case 0x9A -> imp() & txs();
+            case 0x9B -> aby(operand) & tas();
+            case 0x9C -> abx(operand) & say();
+            case 0x9D -> abx(operand) & sta();
+            case 0x9E -> aby(operand) & xas();
+            case 0x9F -> aby(operand) & axa();
+            case 0xA0 -> imm() & ldy();
+            case 0xA1 -> izx(operand) & lda();
+            case 0xA2 -> imm() & ldx();
+            case 0xA3 -> izx(operand) & lax();
+            case 0xA4 -> zp0(operand) & ldy();
+            case 0xA5 -> zp0(operand) & lda();
+            case 0xA6 -> zp0(operand) & ldx();
+            case 0xA7 -> zp0(operand) & lax();
+            case 0xA8 -> imp() & tay();
+            case 0xA9 -> imm() & lda();
+            case 0xAA -> imp() & tax();
+            case 0xAB -> imm() & oal();
+            case 0xAC -> abs(operand) & ldy();
+            case 0xAD -> abs(operand) & lda();
+            case 0xAE -> abs(operand) & ldx();
+            case 0xAF -> abs(operand) & lax();
+            case 0xB0 -> rel(operand) & bcs();
+            case 0xB1 -> izy(operand) & lda();
+            case 0xB2 -> imp() & hlt();
+            case 0xB3 -> izy(operand) & lax();
+            case 0xB4 -> zpx(operand) & ldy();
+            case 0xB5 -> zpx(operand) & lda();
+            case 0xB6 -> zpy(operand) & ldx();
+            case 0xB7 -> zpy(operand) & lax();
+            case 0xB8 -> imp() & clv();
+            case 0xB9 -> aby(operand) & lda();
+            case 0xBA -> imp() & tsx();
+            case 0xBB -> aby(operand) & las();
+            case 0xBC -> abx(operand) & ldy();
+            case 0xBD -> abx(operand) & lda();
+            case 0xBE -> aby(operand) & ldx();
+            case 0xBF -> aby(operand) & lax();
+            case 0xC0 -> imm() & cpy();
+            case 0xC1 -> izx(operand) & cmp();
+            case 0xC2 -> imp() & skb();
+            case 0xC3 -> izx(operand) & dcm();
+            case 0xC4 -> zp0(operand) & cpy();
+            case 0xC5 -> zp0(operand) & cmp();
+            case 0xC6 -> zp0(operand) & dec();
+            case 0xC7 -> zp0(operand) & dcm();
+            case 0xC8 -> imp() & iny();
+            case 0xC9 -> imm() & cmp();
+            case 0xCA -> imp() & dex();
+            case 0xCB -> imp() & sax();
+            case 0xCC -> abs(operand) & cpy();
+            case 0xCD -> abs(operand) & cmp();
+            case 0xCE -> abs(operand) & dec();
+            case 0xCF -> abs(operand) & dcm();
+            case 0xD0 -> rel(operand) & bne();
+            case 0xD1 -> izy(operand) & cmp();
+            case 0xD2 -> imp() & hlt();
+            case 0xD3 -> izy(operand) & dcm();
+            case 0xD4 -> imp() & skb();
+            case 0xD5 -> zpx(operand) & cmp();
+            case 0xD6 -> zpx(operand) & dec();
+            case 0xD7 -> zpx(operand) & dcm();
+            case 0xD8 -> imp() & cld();
+            case 0xD9 -> aby(operand) & cmp();
+            case 0xDA -> imp() & nop();
+            case 0xDB -> aby(operand) & dcm();
+            case 0xDC -> imp() & skw();
+            case 0xDD -> abx(operand) & cmp();
+            case 0xDE -> abx(operand) & dec();
+            case 0xDF -> abx(operand) & dcm();
+            case 0xE0 -> imm() & cpx();
+            case 0xE1 -> izx(operand) & sbc();
+            case 0xE2 -> imp() & skb();
+            case 0xE3 -> izx(operand) & ins();
+            case 0xE4 -> zp0(operand) & cpx();
+            case 0xE5 -> zp0(operand) & sbc();
+            case 0xE6 -> zp0(operand) & inc();
+            case 0xE7 -> zp0(operand) & ins();
+            case 0xE8 -> imp() & inx();
+            case 0xE9 -> imm() & sbc();
+            case 0xEA -> imp() & nop();
+            case 0xEB -> imm() & sbc();
+            case 0xEC -> abs(operand) & cpx();
+            case 0xED -> abs(operand) & sbc();
+            case 0xEE -> abs(operand) & inc();
+            case 0xEF -> abs(operand) & ins();
+            case 0xF0 -> rel(operand) & beq();
+            case 0xF1 -> izy(operand) & sbc();
+            case 0xF2 -> imp() & hlt();
+            case 0xF3 -> izy(operand) & ins();
+            case 0xF4 -> imp() & skb();
+            case 0xF5 -> zpx(operand) & sbc();
+            case 0xF6 -> zpx(operand) & inc();
+            case 0xF7 -> zpx(operand) & ins();
+            case 0xF8 -> imp() & sed();
+            case 0xF9 -> aby(operand) & sbc();
+            case 0xFA -> imp() & nop();
+            case 0xFB -> aby(operand) & ins();
+            case 0xFC -> imp() & skw();
+            case 0xFD -> abx(operand) & sbc();
+            case 0xFE -> abx(operand) & inc();
+            case 0xFF -> abx(operand) & ins();
+            default -> 0;
+        };
+    }
+
     /**
      * Reset the CPU to the default state
      */
@@ -1540,7 +2040,7 @@ public class CPU_6502 {
     }
 
     private void fetch() {
-        if (opcodes.get(opcode).addr_mode != AddressingMode.IMP)
+        if (opcode_modes[opcode] != AddressingMode.IMP)
             fetched = read(addr_abs);
     }
 
@@ -1699,6 +2199,136 @@ public class CPU_6502 {
         return cycles == 0;
     }
 
+    /**
+     * Return the number of cycles the CPU will idle through before fetching the next instruction
+     * the whole instruction has already been executed during its first cycle
+     *
+     * @return the number of idle cycles left, 0 if the CPU is halted
+     */
+    public int getIdleCycles() {
+        return halted ? 0 : Math.max(cycles, 0);
+    }
+
+    /**
+     * Let idle cycles of the current instruction elapse at once instead of clocking the CPU for each of them
+     *
+     * @param count the number of cycles to skip, must not exceed getIdleCycles()
+     */
+    public void skipIdleCycles(int count) {
+        cpu_clock += count;
+        cycles -= count;
+    }
+
+    /**
+     * Check whether the CPU is about to run a side effect free polling loop that won't exit by itself
+     * The recognized loops are a branch or a JMP to itself, and a load (LDA, LDX, LDY or BIT) followed by a branch back to it
+     * A load loop is only recognized if the polled value is already reflected by the registers, so an iteration doesn't change anything
+     * The address polled by the loop is then available through getIdleLoopAddress()
+     *
+     * @return the number of cycles of one iteration of the loop, 0 if the CPU isn't idling
+     */
+    public int getIdleLoopCycles() {
+        idle_loop_address = -1;
+        if (halted || cycles > 0)
+            return 0;
+        int pc = program_counter;
+        int op = peek(pc);
+        if (op == 0x4C) // JMP to itself
+            return (peek(pc + 1) | (peek(pc + 2) << 8)) == pc ? opcode_cycles[op] : 0;
+        int length;
+        int value;
+        switch (op) {
+            case 0xA5, 0xA6, 0xA4, 0x24 -> { // LDA, LDX, LDY, BIT Zero Page
+                idle_loop_address = peek(pc + 1);
+                length = 2;
+            }
+            case 0xAD, 0xAE, 0xAC, 0x2C -> { // LDA, LDX, LDY, BIT Absolute
+                idle_loop_address = peek(pc + 1) | (peek(pc + 2) << 8);
+                length = 3;
+            }
+            default -> {
+                //The loop may be a single branch to itself
+                return getIdleBranchCycles(op, pc, pc);
+            }
+        }
+        value = nes.peekPolledValue(idle_loop_address);
+        if (value < 0) {
+            idle_loop_address = -1;
+            return 0;
+        }
+        //The load must leave the registers as they already are
+        int loaded = switch (op) {
+            case 0xA5, 0xAD -> accumulator;
+            case 0xA6, 0xAE -> x_register;
+            case 0xA4, 0xAC -> y_register;
+            default -> value;
+        };
+        boolean zero = op == 0x24 || op == 0x2C ? (accumulator & value) == 0 : value == 0;
+        boolean same_flags = getFlag(Flags.N) == ((value & 0x80) == 0x80) && getFlag(Flags.Z) == zero;
+        if (op == 0x24 || op == 0x2C)
+            same_flags &= getFlag(Flags.V) == ((value & 0x40) == 0x40);
+        int branch_cycles = getIdleBranchCycles(peek(pc + length), pc + length, pc);
+        if (loaded != value || !same_flags || branch_cycles == 0) {
+            idle_loop_address = -1;
+            return 0;
+        }
+        return opcode_cycles[op] + branch_cycles;
+    }
+
+    /**
+     * @return the address polled by the last loop recognized by getIdleLoopCycles(), -1 if the loop doesn't poll anything
+     */
+    public int getIdleLoopAddress() {
+        return idle_loop_address;
+    }
+
+    /**
+     * Account for iterations of an idle loop that have been skipped
+     * the CPU is left at the start of the loop, as the iterations didn't alter its state
+     *
+     * @param count the number of cycles skipped
+     */
+    public void skipIdleLoop(long count) {
+        cpu_clock += count;
+    }
+
+    /**
+     * Return the cycles of a branch instruction if it is taken and jumps to the specified address
+     *
+     * @param op     the opcode at the branch address
+     * @param pc     the address of the branch
+     * @param target the address the branch must jump to
+     * @return the cycles of the taken branch, 0 if it isn't a taken branch to the target
+     */
+    private int getIdleBranchCycles(int op, int pc, int target) {
+        boolean taken = switch (op) {
+            case 0x10 -> !getFlag(Flags.N); // BPL
+            case 0x30 -> getFlag(Flags.N); // BMI
+            case 0x50 -> !getFlag(Flags.V); // BVC
+            case 0x70 -> getFlag(Flags.V); // BVS
+            case 0x90 -> !getFlag(Flags.C); // BCC
+            case 0xB0 -> getFlag(Flags.C); // BCS
+            case 0xD0 -> !getFlag(Flags.Z); // BNE
+            case 0xF0 -> getFlag(Flags.Z); // BEQ
+            default -> false;
+        };
+        int next = (pc + 2) & 0xFFFF;
+        if (!taken || ((next + (byte) peek(pc + 1)) & 0xFFFF) != target)
+            return 0;
+        //A taken branch costs an extra cycle, and another one if it crosses a page
+        return opcode_cycles[op] + 1 + ((next & 0xFF00) != (target & 0xFF00) ? 1 : 0);
+    }
+
+    /**
+     * Read a byte without altering the state of the system
+     *
+     * @param addr the address to read from
+     * @return the read value
+     */
+    private int peek(int addr) {
+        return nes.cpuRead(addr & 0xFFFF, true) & 0xFF;
+    }
+
     /**
      * @return the current Y Accumulator value as an 8bit unsigned value
      */
@@ -1740,4 +2370,11 @@ public class CPU_6502 {
     public int getProgramCounter() {
         return program_counter;
     }
+
+    /**
+     * @return the number of cycles the CPU has run since it was created
+     */
+    public long getClockCount() {
+        return cpu_clock;
+    }
 }
\ No newline at end of file
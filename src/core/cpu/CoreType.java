@@ -0,0 +1,9 @@
+package core.cpu;
+
+/**
+ * The execution cores available for the CPU
+ */
+public enum CoreType {
+    TABLE,  // Each Instruction is looked up in the opcode table and executed through its method references
+    SWITCH  // The opcode is dispatched by a switch calling the addressing mode and operation directly
+}
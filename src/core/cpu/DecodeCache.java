@@ -0,0 +1,85 @@
+package core.cpu;
+
+/**
+ * This class keeps the already decoded Instructions of the Program ROM
+ * An entry is indexed by the offset of the opcode in Program Memory, so the same code
+ * seen through different banks shares its entries and switching banks doesn't invalidate anything
+ * Only the range 0x8000 - 0xFFFF is cached, code running from RAM or Cartridge RAM is always decoded by the CPU
+ */
+class DecodeCache {
+
+    public static final int NOT_CACHED = 0;
+    private static final int DECODED = 0x1000000;
+
+    private final byte[] prg_memory;
+    private final int[] prg_banks;
+    private final int[] opcode_lengths;
+    private final int[] entries;
+
+    /**
+     * Create an empty cache for a Program Memory
+     *
+     * @param prg_memory     the Program Memory of the Cartridge
+     * @param prg_banks      the offset in Program Memory of each 8KB window of the range 0x8000 - 0xFFFF, updated by the Mapper
+     * @param opcode_lengths the length in bytes of each Instruction (opcode + operand)
+     */
+    DecodeCache(byte[] prg_memory, int[] prg_banks, int[] opcode_lengths) {
+        this.prg_memory = prg_memory;
+        this.prg_banks = prg_banks;
+        this.opcode_lengths = opcode_lengths;
+        this.entries = new int[prg_memory.length];
+    }
+
+    /**
+     * Return the decoded Instruction at the specified address, decoding it if needed
+     * the entry contains the opcode in the low byte and the operand in the 16 next bits
+     *
+     * @param addr the address of the opcode
+     * @return the decoded Instruction, NOT_CACHED if the Instruction can't be cached
+     */
+    int get(int addr) {
+        if (addr < 0x8000)
+            return NOT_CACHED;
+        int offset = prg_banks[(addr >> 13) & 0x03] + (addr & 0x1FFF);
+        if (offset >= entries.length)
+            return NOT_CACHED;
+        int entry = entries[offset];
+        if (entry != NOT_CACHED)
+            return entry;
+        return decode(offset);
+    }
+
+    /**
+     * Decode the Instruction starting at an offset of Program Memory and store it
+     *
+     * @param offset the offset of the opcode in Program Memory
+     * @return the decoded Instruction, NOT_CACHED if the Instruction can't be cached
+     */
+    private int decode(int offset) {
+        int opcode = prg_memory[offset] & 0xFF;
+        int length = opcode_lengths[opcode];
+        //The operand must be in the same bank as the opcode, otherwise it depends on the mapping of the next window
+        if ((offset & 0x1FFF) + length > 0x2000)
+            return NOT_CACHED;
+        int operand = 0;
+        if (length > 1)
+            operand = prg_memory[offset + 1] & 0xFF;
+        if (length > 2)
+            operand |= (prg_memory[offset + 2] & 0xFF) << 8;
+        int entry = DECODED | (operand << 8) | opcode;
+        entries[offset] = entry;
+        return entry;
+    }
+
+    /**
+     * Invalidate every Instruction using a byte of Program Memory
+     * called when the CPU writes to the Program Memory
+     *
+     * @param offset the offset of the modified byte
+     */
+    void invalidate(int offset) {
+        //The byte can be the opcode or the operand of the 2 previous opcodes
+        for (int i = Math.max(offset - 2, 0); i <= offset && i < entries.length; i++)
+            entries[i] = NOT_CACHED;
+    }
+}
@@ -0,0 +1,39 @@
+package core.ppu;
+
+/**
+ * This class represent one of the frames exchanged between the PPU and the display
+ * Depending on the output mode of the PPU when the frame was rendered, either the colors
+ * or the palette indices and the emphasis of each scanline are filled
+ */
+public class Frame {
+
+    public final int[] pixels; // packed like Palette.getScreenColor
+    public final byte[] indices; // the index of each pixel color in the system palette
+    public final byte[] emphasis; // the emphasis bits of each scanline
+
+    long number = 0;
+    boolean indexed = false;
+
+    /**
+     * Create an empty frame
+     */
+    Frame() {
+        pixels = new int[PPU_2C02.SCREEN_WIDTH * PPU_2C02.SCREEN_HEIGHT];
+        indices = new byte[PPU_2C02.SCREEN_WIDTH * PPU_2C02.SCREEN_HEIGHT];
+        emphasis = new byte[PPU_2C02.SCREEN_HEIGHT];
+    }
+
+    /**
+     * @return the number of the frame since the PPU was created, starting at 1
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * @return was the frame rendered in indexed mode (indices and emphasis filled instead of pixels)
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+}
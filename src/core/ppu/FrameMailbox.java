@@ -0,0 +1,95 @@
+package core.ppu;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class hands the frames of the PPU over to the display without copying them and without locking
+ * 3 frames are rotating : the PPU always renders in the back frame, the display owns the front frame
+ * and the last published frame waits in the middle
+ * Publishing and taking a frame are a single atomic swap of the middle frame, the producer never waits for the display
+ * and the display always gets the newest frame, the frames it didn't take in time are dropped
+ */
+public class FrameMailbox {
+
+    //Set alongside the index of the middle frame when it hasn't been taken by the display yet
+    private static final int FRESH = 0x4;
+
+    private final Frame[] frames;
+    private final AtomicInteger middle;
+
+    private int back = 0; // only used by the PPU
+    private int front = 2; // only used by the display
+
+    private volatile long produced = 0;
+    private volatile long presented = 0;
+    private volatile long dropped = 0;
+
+    /**
+     * Create the mailbox and its 3 frames
+     */
+    FrameMailbox() {
+        frames = new Frame[]{new Frame(), new Frame(), new Frame()};
+        middle = new AtomicInteger(1);
+    }
+
+    /**
+     * Called by the PPU
+     *
+     * @return the frame the PPU is rendering into
+     */
+    Frame getBackFrame() {
+        return frames[back];
+    }
+
+    /**
+     * Publish the back frame, replacing the frame waiting for the display if any
+     * Called by the PPU once the frame is fully rendered
+     *
+     * @return the next frame to render into
+     */
+    Frame publish() {
+        frames[back].number = produced + 1;
+        int previous = middle.getAndSet(back | FRESH);
+        //The display didn't take the previous frame in time
+        if ((previous & FRESH) == FRESH)
+            dropped++;
+        produced++;
+        back = previous & 0x3;
+        return frames[back];
+    }
+
+    /**
+     * Take the newest published frame, the frame stays valid until the next successful call
+     * Called by the display
+     *
+     * @return the newest frame, null if no frame has been published since the last call
+     */
+    public Frame acquire() {
+        if ((middle.get() & FRESH) == 0)
+            return null;
+        front = middle.getAndSet(front) & 0x3;
+        presented++;
+        return frames[front];
+    }
+
+    /**
+     * @return the number of frames published by the PPU
+     */
+    public long getFramesProduced() {
+        return produced;
+    }
+
+    /**
+     * @return the number of frames taken by the display
+     */
+    public long getFramesPresented() {
+        return presented;
+    }
+
+    /**
+     * @return the number of frames replaced before the display could take them
+     */
+    public long getFramesDropped() {
+        return dropped;
+    }
+}
@@ -1,15 +1,12 @@
 package core.ppu;
 
+import core.EventLatch;
 import core.cartridge.Cartridge;
-import core.ppu.registers.*;
-import gui.lwjgui.windows.Tile;
-import javafx.scene.image.WritableImage;
-import javafx.scene.paint.Color;
-import org.lwjgl.BufferUtils;
-import utils.IntegerWrapper;
+import core.cartridge.TileCache;
+import core.cartridge.mappers.Mapper;
 import utils.NumberUtils;
 
-import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * This class represent the PPU of the NES
@@ -20,27 +17,82 @@ public class PPU_2C02 {
     public static final int SCREEN_WIDTH = 256;
     public static final int SCREEN_HEIGHT = 240;
 
-    private final Color[] system_palette;
-    private final ByteBuffer screen_buffer;
-    private final ByteBuffer screen_buffer_tmp;
+    //Flags of the pixels of the sprite line buffer, the 5 lsb are the palette index
+    private static final int SPRITE_PRIORITY = 0x20;
+    private static final int SPRITE_ZERO = 0x40;
+    //The bits of the Control Register ($2000)
+    private static final int CONTROL_NAMETABLE = 0x03;
+    private static final int CONTROL_INCREMENT_MODE = 0x04;
+    private static final int CONTROL_PATTERN_SPRITE = 0x08;
+    private static final int CONTROL_PATTERN_BACKGROUND = 0x10;
+    private static final int CONTROL_SPRITE_SIZE = 0x20;
+    private static final int CONTROL_ENABLE_NMI = 0x80;
+    //The bits of the Mask Register ($2001), the 3 msb are the emphasis bits
+    private static final int MASK_GRAYSCALE = 0x01;
+    private static final int MASK_RENDER_BACKGROUND_LEFT = 0x02;
+    private static final int MASK_RENDER_SPRITE_LEFT = 0x04;
+    private static final int MASK_RENDER_BACKGROUND = 0x08;
+    private static final int MASK_RENDER_SPRITES = 0x10;
+    private static final int MASK_RENDERING = MASK_RENDER_BACKGROUND | MASK_RENDER_SPRITES;
+    //The bits of the Status Register ($2002)
+    private static final int STATUS_SPRITE_OVERFLOW = 0x20;
+    private static final int STATUS_SPRITE_ZERO_HIT = 0x40;
+    private static final int STATUS_VERTICAL_BLANK = 0x80;
+    //The fields of the Loopy Registers (credit to Loopy from the NESDev wiki), a 15bit address 0yyy NNYY YYYX XXXX
+    private static final int LOOPY_COARSE_X = 0x001F;
+    private static final int LOOPY_COARSE_Y = 0x03E0;
+    private static final int LOOPY_NAMETABLE_X = 0x0400;
+    private static final int LOOPY_NAMETABLE_Y = 0x0800;
+    private static final int LOOPY_FINE_Y = 0x7000;
+    private static final int LOOPY_HORIZONTAL = LOOPY_NAMETABLE_X | LOOPY_COARSE_X;
+    private static final int LOOPY_VERTICAL = LOOPY_FINE_Y | LOOPY_NAMETABLE_Y | LOOPY_COARSE_Y;
+    //The palette ID of a tile copied in the 2 msb of each of its pixel nibbles
+    private static final int[] ATTRIBUTE_NIBBLES = {0x00000000, 0x44444444, 0x88888888, 0xCCCCCCCC};
+
+    private final Palette system_palette;
+    private final int[] screen_palette;
+    private final byte[] index_palette;
+    private final FrameMailbox frame_mailbox;
+    //The buffers of the frame being rendered
+    private int[] frame_buffer;
+    private byte[] index_buffer;
+    private byte[] line_emphasis;
 
     private final byte[][] nametable_memory;
+    private final byte[][] nametables;
     private final byte[] palette_memory;
     private final byte[][] patterntable_memory;
 
-    private final MaskRegister mask_register;
-    private final ControlRegister control_register;
-    private final StatusRegister status_register;
-    private final LoopyRegister vram_addr;
-    private final LoopyRegister tram_addr;
+    //The registers are kept packed as the CPU sees them, their fields are accessed with the masks above
+    private int mask_register = 0x00;
+    private int control_register = 0x00;
+    private int status_register = 0x00;
+    private int vram_addr = 0x0000;
+    private int tram_addr = 0x0000;
 
-    private final ObjectAttribute[] oams;
-    private final ObjectAttribute[] visible_oams;
+    //The 64 sprites as 4 bytes each (Y, tile ID, attribute, X) and the 8 sprites selected for the next scanline
+    private final byte[] oam_memory;
+    private final byte[] secondary_oam;
+    //For each scanline the OAM entries of its first 8 sprites, rebuilt only when the OAM or the sprite size has changed
+    private final byte[] line_sprites;
+    private final byte[] line_sprite_count;
+    private boolean sprite_index_dirty = true;
 
-    private final int[] sprite_shift_pattern_low;
-    private final int[] sprite_shift_pattern_high;
+    private final int[] sprite_shift_pattern;
+    private final int[] sprite_line;
 
+    //Only meant for the thread running the emulation, the display gets the frames from the FrameMailbox
     public boolean frame_complete;
+    private boolean indexed_output = false;
+    //When a frame isn't composed, only what the CPU and the Mapper can observe is emulated
+    private boolean compose_frame = true;
+    private boolean next_frame_forced = false;
+    private boolean render_next_frame = true;
+    private int frame_skip = 0;
+    private int frames_skipped = 0;
+    private boolean scanline_rendering = true;
+    //Written by the thread of the debug views, taken at the end of the next frame
+    private volatile VramSnapshot pending_snapshot = null;
     private Cartridge cartridge;
 
     private int sprite_count;
@@ -52,12 +104,10 @@ public class PPU_2C02 {
     private int bg_next_tile_id = 0x00;
     private int bg_next_tile_attrib = 0x00;
     private int bg_next_tile_lsb = 0x00;
-    private int bg_next_tile_msb = 0x00;
+    private int bg_next_tile_pattern = 0x00;
 
-    private int bg_shift_pattern_low = 0x0000;
-    private int bg_shift_pattern_high = 0x0000;
-    private int bg_shift_attrib_low = 0x0000;
-    private int bg_shift_attrib_high = 0x0000;
+    //The pixels of the 2 next tiles as nibbles (palette ID in the 2 msb, pixel ID in the 2 lsb), the next pixel in the msb
+    private long bg_shift_pattern = 0x00;
 
     private boolean spriteZeroHitPossible = false;
     private boolean spriteZeroBeingRendered = false;
@@ -67,106 +117,116 @@ public class PPU_2C02 {
     private boolean odd_frame = false;
     private boolean nmi;
 
+    private int pending_dots = 0;
+    private int sync_limit = 1;
+
+    private EventLatch events;
+
     /**
      * Create a new PPU, instantiate its components and fill up the palettes
      */
     public PPU_2C02() {
-        nametable_memory = new byte[2][1024];
+        //The 2 last pages are the additional memory of the four screen Cartridges
+        nametable_memory = new byte[4][1024];
+        nametables = new byte[4][];
         patterntable_memory = new byte[2][4096];
         palette_memory = new byte[32];
-        system_palette = new Color[0x40];
-        screen_buffer = BufferUtils.createByteBuffer(SCREEN_HEIGHT * SCREEN_WIDTH * 4);
-        screen_buffer_tmp = BufferUtils.createByteBuffer(SCREEN_HEIGHT * SCREEN_WIDTH * 4);
+        system_palette = new Palette();
+        screen_palette = new int[32];
+        index_palette = new byte[32];
+        frame_mailbox = new FrameMailbox();
+        useFrame(frame_mailbox.getBackFrame());
         frame_complete = false;
         scanline = 0;
         cycle = 0;
-        mask_register = new MaskRegister();
-        control_register = new ControlRegister();
-        status_register = new StatusRegister();
-        vram_addr = new LoopyRegister();
-        tram_addr = new LoopyRegister();
-        oams = new ObjectAttribute[64];
-        for (int i = 0; i < oams.length; i++)
-            oams[i] = new ObjectAttribute();
-        visible_oams = new ObjectAttribute[8];
-        for (int i = 0; i < visible_oams.length; i++)
-            visible_oams[i] = new ObjectAttribute();
-        sprite_shift_pattern_low = new int[8];
-        sprite_shift_pattern_high = new int[8];
-
-        // Here is the palette table
-
-        system_palette[0x00] = new Color(84 / 255.0, 84 / 255.0, 84 / 255.0, 1);
-        system_palette[0x01] = new Color(0 / 255.0, 30 / 255.0, 116 / 255.0, 1);
-        system_palette[0x02] = new Color(8 / 255.0, 16 / 255.0, 144 / 255.0, 1);
-        system_palette[0x03] = new Color(48 / 255.0, 0 / 255.0, 136 / 255.0, 1);
-        system_palette[0x04] = new Color(68 / 255.0, 0 / 255.0, 100 / 255.0, 1);
-        system_palette[0x05] = new Color(92 / 255.0, 0 / 255.0, 48 / 255.0, 1);
-        system_palette[0x06] = new Color(84 / 255.0, 4 / 255.0, 0 / 255.0, 1);
-        system_palette[0x07] = new Color(60 / 255.0, 24 / 255.0, 0 / 255.0, 1);
-        system_palette[0x08] = new Color(32 / 255.0, 42 / 255.0, 0 / 255.0, 1);
-        system_palette[0x09] = new Color(8 / 255.0, 58 / 255.0, 0 / 255.0, 1);
-        system_palette[0x0A] = new Color(0 / 255.0, 64 / 255.0, 0 / 255.0, 1);
-        system_palette[0x0B] = new Color(0 / 255.0, 60 / 255.0, 0 / 255.0, 1);
-        system_palette[0x0C] = new Color(0 / 255.0, 50 / 255.0, 60 / 255.0, 1);
-        system_palette[0x0D] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x0E] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x0F] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x10] = new Color(152 / 255.0, 150 / 255.0, 152 / 255.0, 1);
-        system_palette[0x11] = new Color(8 / 255.0, 76 / 255.0, 196 / 255.0, 1);
-        system_palette[0x12] = new Color(48 / 255.0, 50 / 255.0, 236 / 255.0, 1);
-        system_palette[0x13] = new Color(92 / 255.0, 30 / 255.0, 228 / 255.0, 1);
-        system_palette[0x14] = new Color(136 / 255.0, 20 / 255.0, 176 / 255.0, 1);
-        system_palette[0x15] = new Color(160 / 255.0, 20 / 255.0, 100 / 255.0, 1);
-        system_palette[0x16] = new Color(152 / 255.0, 34 / 255.0, 32 / 255.0, 1);
-        system_palette[0x17] = new Color(120 / 255.0, 60 / 255.0, 0 / 255.0, 1);
-        system_palette[0x18] = new Color(84 / 255.0, 90 / 255.0, 0 / 255.0, 1);
-        system_palette[0x19] = new Color(40 / 255.0, 114 / 255.0, 0 / 255.0, 1);
-        system_palette[0x1A] = new Color(8 / 255.0, 124 / 255.0, 0 / 255.0, 1);
-        system_palette[0x1B] = new Color(0 / 255.0, 118 / 255.0, 40 / 255.0, 1);
-        system_palette[0x1C] = new Color(0 / 255.0, 102 / 255.0, 120 / 255.0, 1);
-        system_palette[0x1D] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x1E] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x1F] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x20] = new Color(236 / 255.0, 238 / 255.0, 236 / 255.0, 1);
-        system_palette[0x21] = new Color(76 / 255.0, 154 / 255.0, 236 / 255.0, 1);
-        system_palette[0x22] = new Color(120 / 255.0, 124 / 255.0, 236 / 255.0, 1);
-        system_palette[0x23] = new Color(176 / 255.0, 98 / 255.0, 236 / 255.0, 1);
-        system_palette[0x24] = new Color(228 / 255.0, 84 / 255.0, 236 / 255.0, 1);
-        system_palette[0x25] = new Color(236 / 255.0, 88 / 255.0, 180 / 255.0, 1);
-        system_palette[0x26] = new Color(236 / 255.0, 106 / 255.0, 100 / 255.0, 1);
-        system_palette[0x27] = new Color(212 / 255.0, 136 / 255.0, 32 / 255.0, 1);
-        system_palette[0x28] = new Color(160 / 255.0, 170 / 255.0, 0 / 255.0, 1);
-        system_palette[0x29] = new Color(116 / 255.0, 196 / 255.0, 0 / 255.0, 1);
-        system_palette[0x2A] = new Color(76 / 255.0, 208 / 255.0, 32 / 255.0, 1);
-        system_palette[0x2B] = new Color(56 / 255.0, 204 / 255.0, 108 / 255.0, 1);
-        system_palette[0x2C] = new Color(56 / 255.0, 180 / 255.0, 204 / 255.0, 1);
-        system_palette[0x2D] = new Color(60 / 255.0, 60 / 255.0, 60 / 255.0, 1);
-        system_palette[0x2E] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x2F] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x30] = new Color(236 / 255.0, 238 / 255.0, 236 / 255.0, 1);
-        system_palette[0x31] = new Color(168 / 255.0, 204 / 255.0, 236 / 255.0, 1);
-        system_palette[0x32] = new Color(188 / 255.0, 188 / 255.0, 236 / 255.0, 1);
-        system_palette[0x33] = new Color(212 / 255.0, 178 / 255.0, 236 / 255.0, 1);
-        system_palette[0x34] = new Color(236 / 255.0, 174 / 255.0, 236 / 255.0, 1);
-        system_palette[0x35] = new Color(236 / 255.0, 174 / 255.0, 212 / 255.0, 1);
-        system_palette[0x36] = new Color(236 / 255.0, 180 / 255.0, 176 / 255.0, 1);
-        system_palette[0x37] = new Color(228 / 255.0, 196 / 255.0, 144 / 255.0, 1);
-        system_palette[0x38] = new Color(204 / 255.0, 210 / 255.0, 120 / 255.0, 1);
-        system_palette[0x39] = new Color(180 / 255.0, 222 / 255.0, 120 / 255.0, 1);
-        system_palette[0x3A] = new Color(168 / 255.0, 226 / 255.0, 144 / 255.0, 1);
-        system_palette[0x3B] = new Color(152 / 255.0, 226 / 255.0, 180 / 255.0, 1);
-        system_palette[0x3C] = new Color(160 / 255.0, 214 / 255.0, 228 / 255.0, 1);
-        system_palette[0x3D] = new Color(160 / 255.0, 162 / 255.0, 160 / 255.0, 1);
-        system_palette[0x3E] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x3F] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
+        oam_memory = new byte[256];
+        secondary_oam = new byte[32];
+        line_sprites = new byte[SCREEN_HEIGHT << 3];
+        line_sprite_count = new byte[SCREEN_HEIGHT];
+        sprite_shift_pattern = new int[8];
+        sprite_line = new int[258];
+
+        updateScreenPalette();
+    }
+
+    /**
+     * @return the mailbox through which the frames are handed to the display
+     */
+    public FrameMailbox getFrameMailbox() {
+        return frame_mailbox;
+    }
+
+    /**
+     * Ask for a copy of the memories of the PPU, taken at the end of the current frame
+     * the snapshot must not be read until VramSnapshot.isComplete returns true
+     *
+     * @param snapshot the snapshot to fill
+     */
+    public void requestSnapshot(VramSnapshot snapshot) {
+        snapshot.complete = false;
+        pending_snapshot = snapshot;
+    }
+
+    /**
+     * Select the format of the frames produced by the PPU
+     * in indexed mode, the colors aren't expanded and only the indices and emphasis of the frames are filled
+     *
+     * @param indexed_output should the PPU output palette indices instead of RGBA colors
+     */
+    public void setIndexedOutput(boolean indexed_output) {
+        this.indexed_output = indexed_output;
+    }
+
+    /**
+     * @return does the PPU output palette indices instead of RGBA colors
+     */
+    public boolean isIndexedOutput() {
+        return indexed_output;
     }
 
     /**
-     * @return a ByteBuffer that can be loaded into a texture to be displayed on the screen
+     * Select whether the visible scanlines run from their first dot are rendered at once
+     * otherwise every dot goes through the dot by dot path, which produces the same frames and is kept as a reference
+     *
+     * @param enabled should the scanlines be rendered at once
      */
-    public ByteBuffer getScreenBuffer() {
-        return screen_buffer;
+    public void enableScanlineRendering(boolean enabled) {
+        sync();
+        scanline_rendering = enabled;
+    }
+
+    /**
+     * Select whether the next frame is composed, overriding the frame skip for that frame only
+     * a frame that isn't composed keeps the sprite zero hit, sprite overflow and the Mapper notifications exact
+     * but no pixel is computed and the frame isn't handed to the display
+     *
+     * @param render should the next frame be composed
+     */
+    public void setRenderNextFrame(boolean render) {
+        next_frame_forced = true;
+        render_next_frame = render;
+    }
+
+    /**
+     * Set the number of frames skipped between 2 composed frames
+     *
+     * @param frame_skip the number of frames not composed after each composed frame, 0 to compose every frame
+     */
+    public void setFrameSkip(int frame_skip) {
+        this.frame_skip = Math.max(frame_skip, 0);
+        frames_skipped = 0;
+    }
+
+    /**
+     * Decide whether the frame starting at the first visible scanline is composed
+     */
+    private void startFrame() {
+        if (next_frame_forced) {
+            compose_frame = render_next_frame;
+            next_frame_forced = false;
+        } else
+            compose_frame = frames_skipped >= frame_skip;
+        frames_skipped = compose_frame ? 0 : frames_skipped + 1;
     }
 
     /**
@@ -176,6 +236,43 @@ public class PPU_2C02 {
      */
     public void connectCartridge(Cartridge cartridge) {
         this.cartridge = cartridge;
+        updateMirroring();
+    }
+
+    /**
+     * Map the 4 nametables to the pages of nametable memory according to the mirroring mode of the Cartridge
+     * must be called each time the mirroring mode may have changed
+     */
+    public void updateMirroring() {
+        switch (cartridge.getMirror()) {
+            case VERTICAL -> mapNametables(0, 1, 0, 1);
+            case ONE_SCREEN_LOW -> mapNametables(0, 0, 0, 0);
+            case ONE_SCREEN_HIGH -> mapNametables(1, 1, 1, 1);
+            case FOUR_SCREEN -> mapNametables(0, 1, 2, 3);
+            default -> mapNametables(0, 0, 1, 1);
+        }
+    }
+
+    /**
+     * @param top_left     the page of the nametable 0x2000
+     * @param top_right    the page of the nametable 0x2400
+     * @param bottom_left  the page of the nametable 0x2800
+     * @param bottom_right the page of the nametable 0x2C00
+     */
+    private void mapNametables(int top_left, int top_right, int bottom_left, int bottom_right) {
+        nametables[0] = nametable_memory[top_left];
+        nametables[1] = nametable_memory[top_right];
+        nametables[2] = nametable_memory[bottom_left];
+        nametables[3] = nametable_memory[bottom_right];
+    }
+
+    /**
+     * Connect the EventLatch notified when a NMI is requested
+     *
+     * @param events the EventLatch of the console
+     */
+    public void connectEventLatch(EventLatch events) {
+        this.events = events;
     }
 
     /**
@@ -191,13 +288,13 @@ public class PPU_2C02 {
             //If in read only, don't alter the PPU state
             switch (addr) {
                 case 0x0000: // Control
-                    data = control_register.get();
+                    data = control_register;
                     break;
                 case 0x0001: // Mask
-                    data = mask_register.get();
+                    data = mask_register;
                     break;
                 case 0x0002: // Status
-                    data = status_register.get();
+                    data = status_register;
                     break;
                 case 0x0003: // OAM Address
                     break;
@@ -213,6 +310,8 @@ public class PPU_2C02 {
             }
             return data & 0xFF;
         }
+        //The read may depend on the dots not run yet
+        sync();
         switch (addr) {
             case 0x0000: // Control
                 break;
@@ -221,9 +320,9 @@ public class PPU_2C02 {
                 break;
             case 0x0002: // Status
                 //When reading the Status Register, the unused bits are filled with le last data that was read
-                data = (status_register.get() & 0xF0) | (ppu_data_buffer & 0x1F);
+                data = (status_register & 0xF0) | (ppu_data_buffer & 0x1F);
                 //The Vertical Blank Flag is reset
-                status_register.setVerticalBlank(false);
+                status_register &= ~STATUS_VERTICAL_BLANK;
                 //The address_latch is also reset to ensure proper write for the next time
                 address_latch = 0;
                 break;
@@ -239,15 +338,18 @@ public class PPU_2C02 {
             case 0x0007: // PPU Data
                 //Nametable reads are delayed by one cycle
                 //When reading the last fetched data is returned and the next is fetched
-                int last_addr = vram_addr.get();
+                int last_addr = vram_addr;
                 data = ppu_data_buffer;
-                ppu_data_buffer = ppuRead(vram_addr.get(), false);
+                ppu_data_buffer = ppuRead(vram_addr, false);
                 //Except palette, here their is no delay
-                if (vram_addr.get() >= 0x3F00) data = ppu_data_buffer;
+                if (vram_addr >= 0x3F00) data = ppu_data_buffer;
                 //The vram address is incremented (horizontally or vertically depending on the Control Register)
-                vram_addr.set(vram_addr.get() + (control_register.isIncrementModeSet() ? 32 : 1));
-                if ((vram_addr.get() & 0x1000) == 0x1000 && (last_addr & 0x1000) == 0)
+                vram_addr = (vram_addr + ((control_register & CONTROL_INCREMENT_MODE) != 0 ? 32 : 1)) & 0x7FFF;
+                if ((vram_addr & 0x1000) == 0x1000 && (last_addr & 0x1000) == 0) {
                     cartridge.getMapper().notifyScanline();
+                    //The Mapper IRQ counter has changed
+                    updateSyncLimit();
+                }
                 break;
         }
         return data & 0xFF;
@@ -260,15 +362,20 @@ public class PPU_2C02 {
      * @param data the data to write
      */
     public void cpuWrite(int addr, int data) {
+        sync();
         switch (addr) {
             case 0x0000: // Control
-                control_register.set(data);
+                //A new sprite size changes the scanlines covered by each sprite
+                if (((data ^ control_register) & CONTROL_SPRITE_SIZE) != 0)
+                    sprite_index_dirty = true;
+                control_register = data & 0xFF;
                 //When writing to the Control Register, one of the Loopy Register need to be updated (in case the nametable has changed)
-                tram_addr.setNametableX(control_register.isNametableXSet());
-                tram_addr.setNametableY(control_register.isNametableYSet());
+                tram_addr = (tram_addr & ~(LOOPY_NAMETABLE_Y | LOOPY_NAMETABLE_X)) | ((control_register & CONTROL_NAMETABLE) << 10);
                 break;
             case 0x0001: // Mask
-                mask_register.set(data);
+                mask_register = data & 0xFF;
+                //The grayscale and emphasis bits change the colors of the whole palette
+                updateScreenPalette();
                 break;
             case 0x0002: // Status
                 break;
@@ -276,16 +383,7 @@ public class PPU_2C02 {
                 oam_addr = data;
                 break;
             case 0x0004: // OAM Data
-                switch (oam_addr & 0x03) {
-                    case 0x0:
-                        oams[oam_addr >> 2].setY(data);
-                    case 0x1:
-                        oams[oam_addr >> 2].setId(data);
-                    case 0x2:
-                        oams[oam_addr >> 2].setAttribute(data);
-                    case 0x3:
-                        oams[oam_addr >> 2].setX(data);
-                }
+                writeOam(oam_addr, data);
                 oam_addr++;
                 oam_addr &= 0xFF;
                 break;
@@ -294,13 +392,12 @@ public class PPU_2C02 {
                 if (address_latch == 0) {
                     //The offset is spliced into coarseX and fineX
                     fine_x = data & 0x07;
-                    tram_addr.setCoarseX(data >> 3);
+                    tram_addr = (tram_addr & ~LOOPY_COARSE_X) | ((data >> 3) & 0x1F);
                     address_latch = 1;
                     //The second write is the Y offset
                 } else {
                     //The offset is spliced into coarseY and fineY
-                    tram_addr.setFineY(data & 0x07);
-                    tram_addr.setCoarseY(data >> 3);
+                    tram_addr = (tram_addr & ~(LOOPY_FINE_Y | LOOPY_COARSE_Y)) | ((data & 0x07) << 12) | (((data >> 3) & 0x1F) << 5);
                     address_latch = 0;
                 }
                 break;
@@ -308,23 +405,25 @@ public class PPU_2C02 {
                 //An address is 16bit, therefor we need 2 write cycle to load a full address
                 //The first write is the 8 MSB of the address
                 if (address_latch == 0) {
-                    tram_addr.set((tram_addr.get() & 0x00FF) | ((data & 0x3F) << 8));
+                    tram_addr = (tram_addr & 0x00FF) | ((data & 0x3F) << 8);
                     address_latch = 1;
                     //The second write is the 8 LSB of the address
                 } else {
-                    tram_addr.set((tram_addr.get() & 0xFF00) | data);
+                    tram_addr = (tram_addr & 0xFF00) | (data & 0xFF);
                     //When the address has been fully fetched, it is store into the main Loopy Register
-                    vram_addr.set(tram_addr.get());
+                    vram_addr = tram_addr;
                     address_latch = 0;
                 }
                 break;
             case 0x0007: // PPU Data
                 //The data is written to the VRAM address
-                ppuWrite(vram_addr.get(), data);
+                ppuWrite(vram_addr, data);
                 //The vram address is incremented (horizontally or vertically depending on the Control Register)
-                vram_addr.set(vram_addr.get() + (control_register.isIncrementModeSet() ? 32 : 1));
+                vram_addr = (vram_addr + ((control_register & CONTROL_INCREMENT_MODE) != 0 ? 32 : 1)) & 0x7FFF;
                 break;
         }
+        //The write may have enabled the NMI or the rendering
+        updateSyncLimit();
     }
 
     /**
@@ -333,45 +432,28 @@ public class PPU_2C02 {
      */
     private int ppuRead(int addr, boolean readOnly) {
         addr &= 0x3FFF;
-        //A Wrapper used to store the data gathered by the Cartridge
-        IntegerWrapper data = new IntegerWrapper();
         //If the address is mapped by the cartridge, let it handle and return read value
-        if (!cartridge.ppuRead(addr, data)) {
+        int data = cartridge.ppuRead(addr);
+        if (data == Mapper.UNMAPPED) {
+            data = 0x00;
             if (addr <= 0x1FFF) { //Read from pattern table
-                data.value = patterntable_memory[(addr & 0x1000) >> 12][addr & 0x0FFF];
+                data = patterntable_memory[(addr & 0x1000) >> 12][addr & 0x0FFF];
             } else if (addr <= 0x3EFF) { //Read from nametable
                 addr &= 0x0FFF;
-                if (cartridge.getMirror() == Mirror.VERTICAL) {
-                    if (addr <= 0x03FF)
-                        data.value = nametable_memory[0][addr & 0x03FF];
-                    if (addr >= 0x0400 && addr <= 0x07FF)
-                        data.value = nametable_memory[1][addr & 0x03FF];
-                    if (addr >= 0x0800 && addr <= 0x0BFF)
-                        data.value = nametable_memory[0][addr & 0x03FF];
-                    if (addr >= 0x0C00)
-                        data.value = nametable_memory[1][addr & 0x03FF];
-                } else if (cartridge.getMirror() == Mirror.HORIZONTAL) {
-                    if (addr <= 0x03FF)
-                        data.value = nametable_memory[0][addr & 0x03FF];
-                    if (addr >= 0x0400 && addr <= 0x07FF)
-                        data.value = nametable_memory[0][addr & 0x03FF];
-                    if (addr >= 0x0800 && addr <= 0x0BFF)
-                        data.value = nametable_memory[1][addr & 0x03FF];
-                    if (addr >= 0x0C00)
-                        data.value = nametable_memory[1][addr & 0x03FF];
-                }
+                //The 4 nametables are mapped to their page according to the mirroring mode
+                data = nametables[addr >> 10][addr & 0x03FF];
             } else { //Read from palette memory
                 addr &= 0x1F;
                 if (addr == 0x0010) addr = 0x0000;
                 if (addr == 0x0014) addr = 0x0004;
                 if (addr == 0x0018) addr = 0x0008;
                 if (addr == 0x001C) addr = 0x000C;
-                data.value = palette_memory[addr] & (mask_register.isGrayscaleSet() ? 0x30 : 0x3F);
+                data = palette_memory[addr] & ((mask_register & MASK_GRAYSCALE) != 0 ? 0x30 : 0x3F);
             }
         }
         if (!readOnly)
             cartridge.getMapper().updateLatch(addr);
-        return data.value & 0xFF;
+        return data & 0xFF;
     }
 
     /**
@@ -390,25 +472,7 @@ public class PPU_2C02 {
 
             } else if (addr <= 0x3EFF) { //Write to nametable
                 addr &= 0x0FFF;
-                if (cartridge.getMirror() == Mirror.VERTICAL) {
-                    if (addr <= 0x03FF)
-                        nametable_memory[0][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0400 && addr <= 0x07FF)
-                        nametable_memory[1][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0800 && addr <= 0x0BFF)
-                        nametable_memory[0][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0C00)
-                        nametable_memory[1][addr & 0x03FF] = (byte) data;
-                } else if (cartridge.getMirror() == Mirror.HORIZONTAL) {
-                    if (addr <= 0x03FF)
-                        nametable_memory[0][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0400 && addr <= 0x07FF)
-                        nametable_memory[0][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0800 && addr <= 0x0BFF)
-                        nametable_memory[1][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0C00)
-                        nametable_memory[1][addr & 0x03FF] = (byte) data;
-                }
+                nametables[addr >> 10][addr & 0x03FF] = (byte) data;
             } else { //Writting to palette memory
                 addr &= 0x001F;
                 if (addr == 0x0010) addr = 0x0000;
@@ -416,6 +480,7 @@ public class PPU_2C02 {
                 if (addr == 0x0018) addr = 0x0008;
                 if (addr == 0x001C) addr = 0x000C;
                 palette_memory[addr] = (byte) data;
+                updateScreenPalette();
             }
         }
     }
@@ -424,22 +489,121 @@ public class PPU_2C02 {
      * @return an 8bit unsigned value pointed by the current OAM address
      */
     private int getOamData() {
-        return switch (oam_addr & 0x03) {
-            case 0x0 -> oams[oam_addr >> 2].getY() & 0xFF;
-            case 0x1 -> oams[oam_addr >> 2].getId() & 0xFF;
-            case 0x2 -> oams[oam_addr >> 2].getAttribute() & 0xFF;
-            case 0x3 -> oams[oam_addr >> 2].getX() & 0xFF;
-            default -> 0x00;
-        };
+        return oam_memory[oam_addr] & 0xFF;
+    }
+
+    /**
+     * Write a byte to the OAM, called by $2004 writes and by the OAM DMA
+     * the PPU must have been synchronized before
+     *
+     * @param addr the address in OAM (0x00 - 0xFF)
+     * @param data the data to write
+     */
+    public void writeOam(int addr, int data) {
+        oam_memory[addr & 0xFF] = (byte) data;
+        sprite_index_dirty = true;
     }
 
     /**
      * @param paletteId the palette ID
      * @param pixel     the pixel ID
-     * @return the corresponding Color
+     * @return the corresponding color packed as 0xAARRGGBB
+     */
+    private int getARGBFromPalette(int paletteId, int pixel) {
+        return system_palette.getARGB(readPalette((paletteId << 2) + pixel), mask_register >> 5);
+    }
+
+    /**
+     * Copy the Pattern Memory, the 4 nametables as mapped, the resolved palette colors and the OAM
+     * the reads don't go through the Mapper latches, the emulation isn't affected
+     *
+     * @param snapshot the snapshot to fill
+     */
+    private void fillSnapshot(VramSnapshot snapshot) {
+        for (int addr = 0; addr < snapshot.pattern_memory.length; addr++)
+            snapshot.pattern_memory[addr] = (byte) ppuRead(addr, true);
+        for (int addr = 0; addr < snapshot.nametable_memory.length; addr++)
+            snapshot.nametable_memory[addr] = (byte) ppuRead(0x2000 | addr, true);
+        for (int i = 0; i < snapshot.palette_colors.length; i++)
+            snapshot.palette_colors[i] = getARGBFromPalette(i >> 2, i & 0x03);
+        System.arraycopy(oam_memory, 0, snapshot.oam_memory, 0, oam_memory.length);
+        snapshot.control_register = control_register;
+        snapshot.complete = true;
+    }
+
+    /**
+     * Resolve the screen color of every entry of the Palette Memory
+     * using the current grayscale and emphasis bits, this is done on each write instead of each pixel
+     */
+    private void updateScreenPalette() {
+        int emphasis = mask_register >> 5;
+        for (int addr = 0; addr < screen_palette.length; addr++) {
+            screen_palette[addr] = system_palette.getScreenColor(readPalette(addr), emphasis);
+            index_palette[addr] = (byte) readPalette(addr);
+        }
+    }
+
+    /**
+     * @param addr the entry of the Palette Memory
+     * @return the index of the color in the system palette, with the grayscale bit applied
+     */
+    private int readPalette(int addr) {
+        addr &= 0x1F;
+        //The backdrop entries of the sprite palettes are mirrors of the background ones
+        if ((addr & 0x13) == 0x10) addr &= 0x0F;
+        return palette_memory[addr] & ((mask_register & MASK_GRAYSCALE) != 0 ? 0x30 : 0x3F);
+    }
+
+    /**
+     * Return the value a CPU read of the Status Register would return, if that read has no side effect
+     *
+     * @return the value of the Status Register, -1 if reading it would reset the Vertical Blank flag or the address latch
+     */
+    public int peekStatus() {
+        sync();
+        int status = status_register;
+        if ((status & 0x80) == 0x80 || address_latch != 0)
+            return -1;
+        return (status & 0xF0) | (ppu_data_buffer & 0x1F);
+    }
+
+    /**
+     * Return a lower bound of the number of clocks the PPU can run before any event visible from the CPU
+     * the events are those of the sync limit (the end of the frame, the NMI and the Mapper IRQ)
+     * and, when the Status Register is polled, the Vertical Blank flag and the sprite flags
+     * The PPU isn't synchronized, the accumulated dots are rendered by whole scanlines once the limit is reached
+     *
+     * @param status_polled does the CPU poll the Status Register
+     * @return the number of clocks that can be run without reaching an event
+     */
+    public int getQuietClocks(boolean status_polled) {
+        int quiet = sync_limit - pending_dots;
+        if (status_polled) {
+            quiet = Math.min(quiet, Math.min(pendingDotsUntil(241, 1), pendingDotsUntil(-1, 1)));
+            //The sprite flags can be set at any point of the visible scanlines
+            if ((mask_register & MASK_RENDERING) != 0)
+                quiet = pendingDotsUntil(0, 0) > pendingDotsUntil(240, 0) ? 0 : Math.min(quiet, pendingDotsUntil(0, 0));
+        }
+        //The odd frames are one dot shorter when rendering
+        return Math.max(quiet - 1, 0);
+    }
+
+    /**
+     * @param target_scanline the scanline of the dot
+     * @param target_cycle    the cycle of the dot
+     * @return the number of clocks before the PPU processes the specified dot, once the accumulated dots are run
+     */
+    private int pendingDotsUntil(int target_scanline, int target_cycle) {
+        return Math.floorMod(dotsUntil(target_scanline, target_cycle) - pending_dots, 262 * 341);
+    }
+
+    /**
+     * @param target_scanline the scanline of the dot
+     * @param target_cycle    the cycle of the dot
+     * @return the number of clocks before the PPU processes the specified dot
      */
-    public Color getColorFromPalette(int paletteId, int pixel) {
-        return system_palette[ppuRead(0x3F00 + ((paletteId << 2) & 0x00FF) + (pixel & 0x00FF), false)];
+    private int dotsUntil(int target_scanline, int target_cycle) {
+        return Math.floorMod((target_scanline - scanline) * 341 + target_cycle - cycle, 262 * 341);
     }
 
     /**
@@ -458,6 +622,7 @@ public class PPU_2C02 {
      * Reset the PPU to its default state
      */
     public void reset() {
+        sync();
         fine_x = 0x00;
         address_latch = 0x00;
         ppu_data_buffer = 0x00;
@@ -466,62 +631,97 @@ public class PPU_2C02 {
         bg_next_tile_id = 0x00;
         bg_next_tile_attrib = 0x00;
         bg_next_tile_lsb = 0x00;
-        bg_next_tile_msb = 0x00;
-        bg_shift_pattern_low = 0x0000;
-        bg_shift_pattern_high = 0x0000;
-        bg_shift_attrib_low = 0x0000;
-        bg_shift_attrib_high = 0x0000;
-        status_register.set(0xA0);
-        mask_register.set(0x00);
-        control_register.set(0x00);
-        vram_addr.set(0x0000);
-        tram_addr.set(0x0000);
-        screen_buffer_tmp.clear();
+        bg_next_tile_pattern = 0x00;
+        bg_shift_pattern = 0x00;
+        status_register = 0xA0;
+        mask_register = 0x00;
+        control_register = 0x00;
+        vram_addr = 0x0000;
+        tram_addr = 0x0000;
+        sprite_index_dirty = true;
+        updateScreenPalette();
+        updateSyncLimit();
     }
 
 
     /**
-     * We need to impliment a clock. Here we will impliment a state pattern to indicate one 'tick' of the PPU clock.
+     * Called once per PPU clock
+     * The dots are only accumulated, the PPU catches up when something depends on its state
+     * or when the next event visible from the outside is due
      */
     public void clock() {
+        if (++pending_dots >= sync_limit)
+            sync();
+    }
+
+    /**
+     * Run all the accumulated dots so the PPU state is up to date
+     * must be called before anything reads or alters the state the rendering depends on
+     * The visible scanlines that are run from their first dot are rendered at once
+     */
+    public void sync() {
+        while (pending_dots > 0) {
+            if (scanline_rendering && cycle == 0 && pending_dots >= 341 && scanline >= 0 && scanline < 240 && !(scanline == 0 && odd_frame && (mask_register & MASK_RENDERING) != 0)) {
+                renderScanline();
+                pending_dots -= 341;
+            } else {
+                clockDot();
+                pending_dots--;
+            }
+        }
+        updateSyncLimit();
+    }
+
+    /**
+     * Compute how many dots can be accumulated before the next event visible from the outside
+     * the events are the end of the frame, the NMI and the scanline notification that will fire an IRQ from the Mapper
+     */
+    private void updateSyncLimit() {
+        //The odd frames are one dot shorter when rendering, the events can come one dot earlier
+        int limit = dotsUntil(260, 340);
+        if ((control_register & CONTROL_ENABLE_NMI) != 0)
+            limit = Math.min(limit, dotsUntil(241, 1));
+        if (cartridge != null && (mask_register & MASK_RENDERING) != 0) {
+            int scanlines = cartridge.getMapper().getScanlinesUntilIRQ();
+            if (scanlines != Integer.MAX_VALUE) {
+                //The Mapper is notified at cycle 260 of every scanline until the end of the visible screen
+                int irq_scanline = (cycle <= 260 ? scanline : scanline + 1) + scanlines - 1;
+                if (irq_scanline < 240)
+                    limit = Math.min(limit, dotsUntil(irq_scanline, 260));
+            }
+        }
+        sync_limit = Math.max(limit, 1);
+    }
+
+    /**
+     * Compute a single dot of the PPU
+     */
+    private void clockDot() {
         //If we are in the visible screen (regarding scanlines)
         if (scanline >= -1 && scanline < 240) {
             if (cycle >= 257 && cycle <= 320)
                 oam_addr = 0;
-            if (scanline == -1 && cycle == 0)
-                screen_buffer_tmp.clear();
             //If we are on the top left, we will count the cycle and clear the screen for buffering
-            if (scanline == 0 && cycle == 0 && odd_frame && (mask_register.isRenderBackgroundSet() || mask_register.isRenderSpritesSet())) {
+            if (scanline == 0 && cycle == 0 && odd_frame && (mask_register & MASK_RENDERING) != 0) {
                 cycle = 1;
             }
             //If we are before the first scanline, we reset the Status Register and Shift Registers
             if (scanline == -1 && cycle == 1) {
-                status_register.setVerticalBlank(false);
-                status_register.setSpriteOverflow(false);
-                status_register.setSpriteZeroHit(false);
-                for (int i = 0; i < 8; i++) {
-                    sprite_shift_pattern_low[i] = 0x00;
-                    sprite_shift_pattern_high[i] = 0x00;
-                }
+                status_register &= ~(STATUS_VERTICAL_BLANK | STATUS_SPRITE_OVERFLOW | STATUS_SPRITE_ZERO_HIT);
+                Arrays.fill(sprite_shift_pattern, 0x00);
             }
             //In the event we need to compute the color
             if ((cycle >= 2 && cycle < 258) || (cycle >= 321 && cycle < 338)) {
 
-                if (mask_register.isRenderBackgroundSet()) {
-                    bg_shift_pattern_low = (bg_shift_pattern_low << 1) & 0xFFFF;
-                    bg_shift_pattern_high = (bg_shift_pattern_high << 1) & 0xFFFF;
-                    bg_shift_attrib_low = (bg_shift_attrib_low << 1) & 0xFFFF;
-                    bg_shift_attrib_high = (bg_shift_attrib_high << 1) & 0xFFFF;
-                }
-                if (mask_register.isRenderSpritesSet() && cycle >= 1 && cycle < 258) {
+                if ((mask_register & MASK_RENDER_BACKGROUND) != 0)
+                    bg_shift_pattern <<= 4;
+                if ((mask_register & MASK_RENDER_SPRITES) != 0 && cycle >= 1 && cycle < 258) {
                     for (int i = 0; i < sprite_count; i++) {
                         //For all visible sprites, we decrement the position by one until we need to render it.
-                        if (visible_oams[i].getX() > 0)
-                            visible_oams[i].setX(visible_oams[i].getX() - 1);
-                        else {
-                            sprite_shift_pattern_low[i] = (sprite_shift_pattern_low[i] << 1) & 0xFF;
-                            sprite_shift_pattern_high[i] = (sprite_shift_pattern_high[i] << 1) & 0xFF;
-                        }
+                        if (secondary_oam[(i << 2) | 3] != 0)
+                            secondary_oam[(i << 2) | 3]--;
+                        else
+                            sprite_shift_pattern[i] <<= 4;
                     }
                 }
                 //All of the following action will be executed once and in order for each tile
@@ -531,33 +731,28 @@ public class PPU_2C02 {
                 //We only keep the 2 lsb of the attribute
                 switch ((cycle - 1) % 8) {
                     case 0 -> {
-                        bg_shift_pattern_low = ((bg_shift_pattern_low & 0xFF00) | bg_next_tile_lsb) & 0xFFFF;
-                        bg_shift_pattern_high = ((bg_shift_pattern_high & 0xFF00) | bg_next_tile_msb) & 0xFFFF;
-                        bg_shift_attrib_low = ((bg_shift_attrib_low & 0xFF00) | (((bg_next_tile_attrib & 0b01) == 0b01) ? 0xFF : 0x00)) & 0xFFFF;
-                        bg_shift_attrib_high = ((bg_shift_attrib_high & 0xFF00) | (((bg_next_tile_attrib & 0b10) == 0b10) ? 0xFF : 0x00)) & 0xFFFF;
-                        bg_next_tile_id = ppuRead(0x2000 | (vram_addr.get() & 0x0FFF), false);
+                        bg_shift_pattern = loadBackgroundShifter(bg_shift_pattern, bg_next_tile_pattern, bg_next_tile_attrib);
+                        bg_next_tile_id = ppuRead(0x2000 | (vram_addr & 0x0FFF), false);
                     }
                     case 2 -> {
-                        bg_next_tile_attrib = ppuRead(0x23C0 | (vram_addr.isNametableYSet() ? 0x1 << 11 : 0x0) | (vram_addr.isNametableXSet() ? 0x1 << 10 : 0x0) | ((vram_addr.getCoarseY() >> 2) << 3) | (vram_addr.getCoarseX() >> 2), false);
-                        if ((vram_addr.getCoarseY() & 0x02) == 0x02)
+                        bg_next_tile_attrib = ppuRead(0x23C0 | (vram_addr & (LOOPY_NAMETABLE_Y | LOOPY_NAMETABLE_X)) | ((vram_addr >> 4) & 0x38) | ((vram_addr >> 2) & 0x07), false);
+                        if ((vram_addr & 0x0040) == 0x0040)
                             bg_next_tile_attrib = (bg_next_tile_attrib >> 4) & 0xFF;
-                        if ((vram_addr.getCoarseX() & 0x02) == 0x02)
+                        if ((vram_addr & 0x0002) == 0x0002)
                             bg_next_tile_attrib = (bg_next_tile_attrib >> 2) & 0xFF;
                         bg_next_tile_attrib &= 0x03;
                     }
-                    case 4 -> bg_next_tile_lsb = ppuRead((control_register.isPatternBackgroundSet() ? 0x1 << 12 : 0) + (bg_next_tile_id << 4) + vram_addr.getFineY(), false);
-                    case 6 -> bg_next_tile_msb = ppuRead((control_register.isPatternBackgroundSet() ? 0x1 << 12 : 0) + (bg_next_tile_id << 4) + vram_addr.getFineY() + 8, false);
+                    case 4 -> bg_next_tile_lsb = ppuRead(((control_register & CONTROL_PATTERN_BACKGROUND) << 8) + (bg_next_tile_id << 4) + ((vram_addr >> 12) & 0x07), false);
+                    case 6 -> bg_next_tile_pattern = TileCache.interleave(bg_next_tile_lsb, ppuRead(((control_register & CONTROL_PATTERN_BACKGROUND) << 8) + (bg_next_tile_id << 4) + ((vram_addr >> 12) & 0x07) + 8, false));
                     case 7 -> { // Increment Scroll X
                         //If we are rendering sprites or background
-                        if (mask_register.isRenderBackgroundSet() || mask_register.isRenderSpritesSet()) {
+                        if ((mask_register & MASK_RENDERING) != 0) {
                             //If we cross a nametable boundary we invert the nametableX bit to fetch from the other nametable
-                            if (vram_addr.getCoarseX() == 31) {
-                                vram_addr.setCoarseX(0);
-                                vram_addr.setNametableX(!vram_addr.isNametableXSet());
-                                //Or we just continue in the same one
-                            } else {
-                                vram_addr.setCoarseX(vram_addr.getCoarseX() + 1);
-                            }
+                            if ((vram_addr & LOOPY_COARSE_X) == 31)
+                                vram_addr = (vram_addr & ~LOOPY_COARSE_X) ^ LOOPY_NAMETABLE_X;
+                            //Or we just continue in the same one
+                            else
+                                vram_addr++;
                         }
                     }
                 }
@@ -565,158 +760,121 @@ public class PPU_2C02 {
             //If we are at the end of a visible scanline we pass to the next one
             if (cycle == 256) { // Increment Scroll Y axis
                 //Are we are rendering sprites or background?
-                if (mask_register.isRenderBackgroundSet() || mask_register.isRenderSpritesSet()) {
+                if ((mask_register & MASK_RENDERING) != 0) {
                     //Are we are still in the same tile row?
-                    if (vram_addr.getFineY() < 7) {
-                        vram_addr.setFineY(vram_addr.getFineY() + 1);
+                    if ((vram_addr & LOOPY_FINE_Y) != LOOPY_FINE_Y) {
+                        vram_addr += 0x1000;
                         //If we have passed to the next tile row
                     } else {
                         //reset the offset inside the row to 0
-                        vram_addr.setFineY(0);
+                        vram_addr &= ~LOOPY_FINE_Y;
+                        int coarse_y = (vram_addr & LOOPY_COARSE_Y) >> 5;
                         //If we are at le last tile row, we skip the OAM and switch to the next nametable
-                        if (vram_addr.getCoarseY() == 29) {
-                            vram_addr.setCoarseY(0);
-                            vram_addr.setNametableY(!vram_addr.isNametableYSet());
-                            //Just in case we've gone behond the nametable
-                        } else if (vram_addr.getCoarseY() == 31) {
-                            vram_addr.setCoarseY(0);
-                            //Or we simply switch to the next tile row
-                        } else {
-                            vram_addr.setCoarseY(vram_addr.getCoarseY() + 1);
-                        }
+                        if (coarse_y == 29)
+                            vram_addr = (vram_addr & ~LOOPY_COARSE_Y) ^ LOOPY_NAMETABLE_Y;
+                        //Just in case we've gone behond the nametable
+                        else if (coarse_y == 31)
+                            vram_addr &= ~LOOPY_COARSE_Y;
+                        //Or we simply switch to the next tile row
+                        else
+                            vram_addr += 0x0020;
                     }
                 }
             }
             //If we are at the first pixel of the horizontal blank we reset the X coordinates to the start of a line
             if (cycle == 257) {
-                bg_shift_pattern_low = ((bg_shift_pattern_low & 0xFF00) | bg_next_tile_lsb) & 0xFFFF;
-                bg_shift_pattern_high = ((bg_shift_pattern_high & 0xFF00) | bg_next_tile_msb) & 0xFFFF;
-                bg_shift_attrib_low = ((bg_shift_attrib_low & 0xFF00) | (((bg_next_tile_attrib & 0b01) == 0b01) ? 0xFF : 0x00)) & 0xFFFF;
-                bg_shift_attrib_high = ((bg_shift_attrib_high & 0xFF00) | (((bg_next_tile_attrib & 0b10) == 0b10) ? 0xFF : 0x00)) & 0xFFFF;
-                if (mask_register.isRenderBackgroundSet() || mask_register.isRenderSpritesSet()) {
-                    vram_addr.setNametableX(tram_addr.isNametableXSet());
-                    vram_addr.setCoarseX(tram_addr.getCoarseX());
+                bg_shift_pattern = loadBackgroundShifter(bg_shift_pattern, bg_next_tile_pattern, bg_next_tile_attrib);
+                if ((mask_register & MASK_RENDERING) != 0) {
+                    vram_addr = (vram_addr & ~LOOPY_HORIZONTAL) | (tram_addr & LOOPY_HORIZONTAL);
                 }
             }
 
             if (cycle == 338 || cycle == 340) {
-                bg_next_tile_id = ppuRead(0x2000 | (vram_addr.get() & 0x0FFF), false);
+                bg_next_tile_id = ppuRead(0x2000 | (vram_addr & 0x0FFF), false);
             }
             //At the start of a new frame we reset the Y coordinates to the top of the screen
             if (scanline == -1 && cycle >= 280 && cycle < 305) {
-                if (mask_register.isRenderBackgroundSet() || mask_register.isRenderSpritesSet()) {
-                    vram_addr.setNametableY(tram_addr.isNametableYSet());
-                    vram_addr.setCoarseY(tram_addr.getCoarseY());
-                    vram_addr.setFineY(tram_addr.getFineY());
+                if ((mask_register & MASK_RENDERING) != 0) {
+                    vram_addr = (vram_addr & ~LOOPY_VERTICAL) | (tram_addr & LOOPY_VERTICAL);
                 }
             }
 
             //At the end of a scanline, we fetch the sprite that will be visible on the next scanline
-            if (cycle == 320 && scanline >= 0) {
-                //We clear all visible Object Attribute
-                for (ObjectAttribute visible_oam : visible_oams) visible_oam.clear(0xFF);
-                //And reset the sprite count
-                sprite_count = 0;
-
-                for (int i = 0; i < 8; i++) {
-                    sprite_shift_pattern_low[i] = 0x00;
-                    sprite_shift_pattern_high[i] = 0x00;
-                }
-
-                //Reset the oam entry index and sprite zero hit possible flag
-                int oam_entry = 0;
-                spriteZeroHitPossible = false;
-
-                //We read all OAM and break if we hit the max number of sprite for one scanline
-                while (oam_entry < 64 && sprite_count <= 8) {
-                    //We compute if the sprite is in the current scanline
-                    int diff = scanline - oams[oam_entry].getY();
-                    if (diff >= 0 && diff < (control_register.isSpriteSizeSet() ? 16 : 8)) {
-                        //If their is room left for another sprite, we add it to the rendered sprite
-                        if (sprite_count < 8) {
-                            //If this is the first sprite, a sprite zero hit is possible, we update the flag
-                            if (oam_entry == 0) {
-                                spriteZeroHitPossible = true;
-                            }
-                            //Instead of instantiating new OAM, we fill it with the data of the other one
-                            visible_oams[sprite_count].set(oams[oam_entry]);
-                        }
-                        sprite_count++;
-                    }
-                    oam_entry++;
-                }
-                //If we hit a 9th sprite on the scanline, we set the sprite overflow flag to 1
-                status_register.setSpriteOverflow(sprite_count >= 8);
-                if (sprite_count > 8) sprite_count = 8;
-            }
+            if (cycle == 320 && scanline >= 0)
+                evaluateSprites();
             //At the end of the horizontal blank, we fetch all the relevant sprite data for the next scanline
-            //This is really done one multiple cycles, but it's easier to do it all. It doesn't change the overall behaviour of the rendering process
-            if (cycle == 340) {
-                //For each sprite
-                for (int i = 0; i < sprite_count; i++) {
-                    int sprite_pattern_low, sprite_pattern_high;
-                    int sprite_pattern_addr_low, sprite_pattern_addr_high;
-                    if (!control_register.isSpriteSizeSet()) { //If the sprites are 8x8
-                        if (!((visible_oams[i].getAttribute() & 0x80) == 0x80)) //If the sprite normally oriented
-                            sprite_pattern_addr_low = (control_register.isPatternSpriteSet() ? 0x1 << 12 : 0x0) | (visible_oams[i].getId() << 4) | (scanline - visible_oams[i].getY());
-                        else //If the sprite is flipped vertically
-                            sprite_pattern_addr_low = (control_register.isPatternSpriteSet() ? 0x1 << 12 : 0x0) | (visible_oams[i].getId() << 4) | (7 - (scanline - visible_oams[i].getY()));
-                    } else { //If the sprites are 8x16
-                        if (!((visible_oams[i].getAttribute() & 0x80) == 0x80)) { //If the sprite normally oriented
-                            if (scanline - visible_oams[i].getY() < 8) //Reading top half
-                                sprite_pattern_addr_low = ((visible_oams[i].getId() & 0x01) << 12) | ((visible_oams[i].getId() & 0xFE) << 4) | ((scanline - visible_oams[i].getY()) & 0x07);
-                            else //Reading bottom half
-                                sprite_pattern_addr_low = ((visible_oams[i].getId() & 0x01) << 12) | (((visible_oams[i].getId() & 0xFE) + 1) << 4) | ((scanline - visible_oams[i].getY()) & 0x07);
-                        } else {  //If the sprite is flipped vertically
-                            if (scanline - visible_oams[i].getY() < 8) //Reading top half
-                                sprite_pattern_addr_low = ((visible_oams[i].getId() & 0x01) << 12) | (((visible_oams[i].getId() & 0xFE) + 1) << 4) | (7 - (scanline - visible_oams[i].getY()) & 0x07);
-                            else //Reading bottom half
-                                sprite_pattern_addr_low = ((visible_oams[i].getId() & 0x01) << 12) | ((visible_oams[i].getId() & 0xFE) << 4) | (7 - (scanline - visible_oams[i].getY()) & 0x07);
-                        }
-                    }
-                    //We compute the complete address and fetch the the sprite's bitplane
-                    sprite_pattern_addr_high = (sprite_pattern_addr_low + 8) & 0xFFFF;
-                    sprite_pattern_low = ppuRead(sprite_pattern_addr_low, false);
-                    sprite_pattern_high = ppuRead(sprite_pattern_addr_high, false);
-
-                    //If the sprite is flipped horizontally, the sprite bitplane are flipped
-                    if ((visible_oams[i].getAttribute() & 0x40) == 0x40) {
-                        sprite_pattern_low = NumberUtils.byteFlip(sprite_pattern_low);
-                        sprite_pattern_high = NumberUtils.byteFlip(sprite_pattern_high);
-                    }
-
-                    //We load the sprites to the Shift Registers
-                    sprite_shift_pattern_low[i] = sprite_pattern_low;
-                    sprite_shift_pattern_high[i] = sprite_pattern_high;
-                }
-            }
+            if (cycle == 340)
+                fetchSprites();
         }
 
         //If we exit the visible screen, we set the vertical blank flag and eventually fire a Non Maskable Interrupt
         if (scanline >= 241 && scanline < 261) {
             if (scanline == 241 && cycle == 1) {
-                status_register.setVerticalBlank(true);
-                if (control_register.isEnableNmiSet())
+                status_register |= STATUS_VERTICAL_BLANK;
+                if ((control_register & CONTROL_ENABLE_NMI) != 0) {
                     nmi = true;
+                    events.raise(EventLatch.NMI);
+                }
+            }
+        }
+
+        //A frame that isn't composed only needs the sprite zero hit, as long as it can still occur
+        if (compose_frame)
+            composeDot();
+        else if (spriteZeroHitPossible && (mask_register & MASK_RENDERING) == MASK_RENDERING && (status_register & STATUS_SPRITE_ZERO_HIT) == 0)
+            testSpriteZeroHit();
+
+        if ((mask_register & MASK_RENDERING) != 0) {
+            if (cycle == 260 && scanline < 240) {
+                cartridge.getMapper().notifyScanline();
+            }
+        }
+
+        cycle++;
+        //If we are at the end of a scanline
+        if (cycle >= 341) {
+            cycle = 0;
+            scanline++;
+            //If we are a the bottom of the screen
+            if (scanline >= 261) {
+                //We reset the scanline to the top, set the frameComplete flag and flip the screen buffer to prepare rendering
+                scanline = -1;
+                frame_complete = true;
+                odd_frame = !odd_frame;
+                //We hand the frame over to the display and start rendering into a free one
+                if (compose_frame) {
+                    Frame frame = frame_mailbox.getBackFrame();
+                    frame.indexed = indexed_output;
+                    useFrame(frame_mailbox.publish());
+                }
+                //The memories are copied for the debug views while nothing is being rendered
+                VramSnapshot snapshot = pending_snapshot;
+                if (snapshot != null) {
+                    pending_snapshot = null;
+                    fillSnapshot(snapshot);
+                }
             }
+            //The pre-render scanline doesn't output anything, the choice can be made up to the first visible one
+            if (scanline == 0)
+                startFrame();
         }
+    }
 
+    /**
+     * Mux the background and sprite pixels of the current dot, test the sprite zero hit and push the pixel into the frame
+     */
+    private void composeDot() {
         int bg_pixel = 0x00;
         int bg_palette = 0x00;
 
         //If background rendering is enabled
-        if (mask_register.isRenderBackgroundSet()) {
+        if ((mask_register & MASK_RENDER_BACKGROUND) != 0) {
             //We select the current pixels offset using the scroll information
-            if (mask_register.isRenderBackgroundLeftSet() || cycle >= 9) {
-                int bit_mux = (0x8000 >> fine_x) & 0xFFFF;
-                //We compute the pixel ID by getting the right bit from the 2 shift registers
-                int p0_pixel = (bg_shift_pattern_low & bit_mux) > 0 ? 0x1 : 0x0;
-                int p1_pixel = (bg_shift_pattern_high & bit_mux) > 0 ? 0x1 : 0x0;
-                bg_pixel = ((p1_pixel << 1) | p0_pixel) & 0x0F;
-                //Same for the palette ID
-                int bg_pal0 = (bg_shift_attrib_low & bit_mux) > 0 ? 0x1 : 0x0;
-                int bg_pal1 = (bg_shift_attrib_high & bit_mux) > 0 ? 0x1 : 0x0;
-                bg_palette = ((bg_pal1 << 1) | bg_pal0) & 0x0F;
+            if ((mask_register & MASK_RENDER_BACKGROUND_LEFT) != 0 || cycle >= 9) {
+                int nibble = (int) (bg_shift_pattern >>> (60 - (fine_x << 2))) & 0x0F;
+                //The nibble contains the pixel ID and the palette ID
+                bg_pixel = nibble & 0x03;
+                bg_palette = nibble >> 2;
             }
         }
 
@@ -725,22 +883,19 @@ public class PPU_2C02 {
         boolean fg_priority = false;
 
         //If sprite rendering is enabled
-        if (mask_register.isRenderSpritesSet()) {
+        if ((mask_register & MASK_RENDER_SPRITES) != 0) {
             //The 0th sprite being rendered flag is reset
-            if (mask_register.isRenderSpriteLeftSet() || cycle >= 9) {
+            if ((mask_register & MASK_RENDER_SPRITE_LEFT) != 0 || cycle >= 9) {
                 spriteZeroBeingRendered = false;
                 //For each sprite in order of priority
                 for (int i = 0; i < sprite_count; i++) {
                     //If we are at the sprite X location
-                    if (visible_oams[i].getX() == 0) {
-                        //We get the foreground pixel lsb and msb
-                        int fg_pixel_low = (sprite_shift_pattern_low[i] & 0x80) == 0x80 ? 0x1 : 0x0;
-                        int fg_pixel_high = (sprite_shift_pattern_high[i] & 0x80) == 0x80 ? 0x1 : 0x0;
-                        //We combine them into a 2bit ID
-                        fg_pixel = ((fg_pixel_high << 1) | fg_pixel_low) & 0x03;
+                    if (secondary_oam[(i << 2) | 3] == 0) {
+                        //We get the foreground pixel ID from the msb nibble
+                        fg_pixel = (sprite_shift_pattern[i] >>> 28) & 0x03;
                         //We get the sprite palette and if it has priority over the background
-                        fg_palette = (visible_oams[i].getAttribute() & 0x03) + 0x04;
-                        fg_priority = (visible_oams[i].getAttribute() & 0x20) == 0;
+                        fg_palette = (secondary_oam[(i << 2) | 2] & 0x03) + 0x04;
+                        fg_priority = (secondary_oam[(i << 2) | 2] & 0x20) == 0;
 
                         //If the pixel isn't transparent and we are rendering sprite 0, we set the 0th sprite being rendered to true
                         if (fg_pixel != 0) {
@@ -779,298 +934,323 @@ public class PPU_2C02 {
             //If we are rendering the 0th sprite and a sprite zero hit is possible then a sprite zero hit may have occur
             if (spriteZeroBeingRendered && spriteZeroHitPossible) {
                 //If we are rendering background and sprites
-                if (mask_register.isRenderBackgroundSet() && mask_register.isRenderSpritesSet()) {
+                if ((mask_register & MASK_RENDERING) == MASK_RENDERING) {
                     //If we are in the valid test.state space (if we don't render the first columns we don't test.state for hit in it)
-                    if (!(mask_register.isRenderBackgroundLeftSet() || mask_register.isRenderSpriteLeftSet())) {
+                    if ((mask_register & (MASK_RENDER_BACKGROUND_LEFT | MASK_RENDER_SPRITE_LEFT)) == 0) {
                         if (cycle >= 9 && cycle < 258)
-                            status_register.setSpriteZeroHit(true);
+                            status_register |= STATUS_SPRITE_ZERO_HIT;
                     } else if (cycle >= 1 && cycle < 258)
-                        status_register.setSpriteZeroHit(true);
+                        status_register |= STATUS_SPRITE_ZERO_HIT;
                 }
             }
         }
 
         //If we are in the visible area we push a pixel into the screen buffer
         if (cycle - 1 >= 0 && cycle - 1 < SCREEN_WIDTH && scanline >= 0 && scanline < SCREEN_HEIGHT) {
-            screen_buffer_tmp.put((byte) ((int) (getColorFromPalette(palette, pixel).getRed() * 255) & 0xFF));
-            screen_buffer_tmp.put((byte) ((int) (getColorFromPalette(palette, pixel).getGreen() * 255) & 0xFF));
-            screen_buffer_tmp.put((byte) ((int) (getColorFromPalette(palette, pixel).getBlue() * 255) & 0xFF));
-            screen_buffer_tmp.put((byte) ((int) (getColorFromPalette(palette, pixel).getOpacity() * 255) & 0xFF));
-        }
-
-        if (mask_register.isRenderBackgroundSet() || mask_register.isRenderSpritesSet()) {
-            if (cycle == 260 && scanline < 240) {
-                cartridge.getMapper().notifyScanline();
-            }
-        }
-
-        cycle++;
-        //If we are at the end of a scanline
-        if (cycle >= 341) {
-            cycle = 0;
-            scanline++;
-            //If we are a the bottom of the screen
-            if (scanline >= 261) {
-                //We reset the scanline to the top, set the frameComplete flag and flip the screen buffer to prepare rendering
-                scanline = -1;
-                frame_complete = true;
-                odd_frame = !odd_frame;
-                //We put the content if the tmp buffer to the screen buffer that will be fetched by the UI
-                screen_buffer_tmp.flip();
-                screen_buffer.clear();
-                screen_buffer.put(screen_buffer_tmp);
-                screen_buffer.flip();
-            }
+            if (indexed_output) {
+                //The emphasis is only kept once per scanline, the colors are expanded by the consumer
+                if (cycle == 1)
+                    line_emphasis[scanline] = (byte) (mask_register >> 5);
+                index_buffer[(scanline << 8) | (cycle - 1)] = index_palette[((palette << 2) + pixel) & 0x1F];
+            } else
+                frame_buffer[(scanline << 8) | (cycle - 1)] = screen_palette[((palette << 2) + pixel) & 0x1F];
         }
     }
 
-    // Debug Methods
-
     /**
-     * @return an array of ObjectAttribute containing all the OAM
+     * Test the sprite zero hit at the current dot without muxing the pixel
+     * sprite 0 comes first in the Secondary OAM, so it is the sprite drawn whenever its pixel isn't transparent
      */
-    public ObjectAttribute[] getOams() {
-        return oams;
+    private void testSpriteZeroHit() {
+        if (cycle < 1 || cycle >= 258 || sprite_count == 0 || secondary_oam[3] != 0)
+            return;
+        //The left columns of each layer may be hidden
+        if (cycle < 9 && (mask_register & (MASK_RENDER_BACKGROUND_LEFT | MASK_RENDER_SPRITE_LEFT)) != (MASK_RENDER_BACKGROUND_LEFT | MASK_RENDER_SPRITE_LEFT))
+            return;
+        int bg_pixel = (int) (bg_shift_pattern >>> (60 - (fine_x << 2))) & 0x03;
+        int fg_pixel = (sprite_shift_pattern[0] >>> 28) & 0x03;
+        if (bg_pixel > 0 && fg_pixel > 0)
+            status_register |= STATUS_SPRITE_ZERO_HIT;
     }
 
     /**
-     * @param i         the pattern table index
-     * @param paletteId the paletteId to be used
-     * @param dest      the image where to store the patternTable
+     * Run the 341 dots of a visible scanline at once
+     * the registers can't change during the scanline, so the background is fetched and muxed without going through
+     * the Loopy Registers and the sprites are drawn into a line buffer instead of being shifted every dot
+     * The memory accesses are done in the same order as dot by dot, the Mappers watching them see no difference
      */
-    public void getPatternTable(int i, int paletteId, WritableImage dest) {
-        //For each row of tiles starting at the top
-        for (int tileX = 0; tileX < 16; tileX++) {
-            //For each tile starting at the left
-            for (int tileY = 0; tileY < 16; tileY++) {
-                //We compute the tile offset inside the Pattern Memory
-                int offset = tileX * 256 + tileY * 16;
-                //For each row of the tile
-                for (byte row = 0; row < 8; row++) {
-                    //We get the lsb of the pixels of the row
-                    int tile_lsb = ppuRead(i * 0x1000 + offset + row, true);
-                    //We get the msb of the pixels of the row
-                    int tile_msb = ppuRead(i * 0x1000 + offset + row + 8, true);
-                    //for each pixel of the row
-                    for (int col = 0; col < 8; col++) {
-                        //We compute the pixel id
-                        int pixel = ((tile_lsb & 0x01) << 1) | (tile_msb & 0x01);
-                        //We shift the tile registers to get the next pixel id
-                        tile_lsb >>= 1;
-                        tile_msb >>= 1;
-                        //We populate the image by getting the right color from the palette using the palette and pixel IDs
-                        dest.getPixelWriter().setColor(((tileY << 3) | (7 - col)), ((tileX << 3) | row), getColorFromPalette(paletteId, pixel));
-                    }
+    private void renderScanline() {
+        boolean render_bg = (mask_register & MASK_RENDER_BACKGROUND) != 0;
+        boolean render_spr = (mask_register & MASK_RENDER_SPRITES) != 0;
+        boolean rendering = render_bg || render_spr;
+        int bg_start = (mask_register & MASK_RENDER_BACKGROUND_LEFT) != 0 ? 1 : 9;
+        int spr_start = (mask_register & MASK_RENDER_SPRITE_LEFT) != 0 ? 1 : 9;
+        //If we don't render the first columns we don't test for hit in it
+        int hit_start = (mask_register & (MASK_RENDER_BACKGROUND_LEFT | MASK_RENDER_SPRITE_LEFT)) != 0 ? 1 : 9;
+        boolean hit_possible = spriteZeroHitPossible && render_bg && render_spr;
+        boolean compose = compose_frame;
+        //Once the hit has occurred, a frame that isn't composed has nothing left to compute for the pixels
+        boolean hit_test = hit_possible && (status_register & STATUS_SPRITE_ZERO_HIT) == 0;
+        int pattern_bg = (control_register & CONTROL_PATTERN_BACKGROUND) << 8;
+        int emphasis = mask_register >> 5;
+        int line_offset = scanline << 8;
+        int bit_shift = 60 - (fine_x << 2);
+
+        //The sprites are drawn from the last to the first, so the first opaque sprite ends up in front
+        //if the frame isn't composed, only the 0th sprite is needed for the hit
+        if (render_spr && (compose || hit_test)) {
+            Arrays.fill(sprite_line, 0);
+            for (int i = compose ? sprite_count - 1 : 0; i >= 0; i--) {
+                //A sprite starts being shifted out the dot after its X counter reached 0
+                int x = (secondary_oam[(i << 2) | 3] & 0xFF) + 1;
+                int attribute = secondary_oam[(i << 2) | 2];
+                int attributes = (((attribute & 0x03) + 0x04) << 2) | ((attribute & 0x20) == 0 ? SPRITE_PRIORITY : 0) | (i == 0 ? SPRITE_ZERO : 0);
+                for (int shift = 0; shift < 8 && x + shift < 258; shift++) {
+                    int pixel = (sprite_shift_pattern[i] >>> (28 - (shift << 2))) & 0x03;
+                    if (pixel != 0)
+                        sprite_line[x + shift] = attributes | pixel;
                 }
             }
         }
-    }
 
-    /**
-     * @param i    the pattern table index
-     * @param dest the image where to store the nametable
-     */
-    public void getNametable(int i, WritableImage dest) {
-        //For each row of tiles starting at the top
-        for (int y = 0; y < 30; y++) {
-            //For each tile starting at the left
-            for (int x = 0; x < 32; x++) {
-                //For each row of the tile
-                //We read the tile ID by selecting the correct nametable using the mirroring mode
-                int offset = 0x0400 * (i & 0x3);
-                int tile_id = ppuRead(0x2000 | offset | (y << 5) | x, true);
-                //We read the tile attribute starting at offset 0x03C0 of the selected nametable, the attribute offset is calculated using the tile pos divided by 4
-                int tile_attrib = ppuRead(0x23C0 | offset | ((y >> 2) << 3) | (x >> 2), true);
-                //We select the right attribute depending on the tile pos inside the current 4x4 tile grid
-                if ((y & 0x02) == 0x02)
-                    tile_attrib = (tile_attrib >> 4) & 0x00FF;
-                if ((x & 0x02) == 0x02)
-                    tile_attrib = (tile_attrib >> 2) & 0x00FF;
-                //We only keep the 2 lsb of the attribute
-                tile_attrib &= 0x03;
-                //We use the attribute to determinate the tile palette
-                int palette = tile_attrib & 0b11;
-                int pid;
-                for (int row = 0; row < 8; row++) {
-                    //We use the tile id and the current row index to get the lsb of the 8 pixel IDs of the row (low bitplane)
-                    int tile_lsb = ppuRead((control_register.isPatternBackgroundSet() ? 0x1 << 12 : 0) + (tile_id << 4) + row, true);
-                    //We use the tile id and the current row index to get the msb of the 8 pixels of the row (high bitplane)
-                    int tile_msb = ppuRead((control_register.isPatternBackgroundSet() ? 0x1 << 12 : 0) + (tile_id << 4) + row + 8, true);
-                    //For each pixel of the row
-                    for (int col = 0; col < 8; col++) {
-                        //We get the correct pixel ID by reading the 2 bitplanes
-                        int p0_pixel = (tile_lsb & 0x80) > 0 ? 0x1 : 0x0;
-                        int p1_pixel = (tile_msb & 0x80) > 0 ? 0x1 : 0x0;
-                        int pixel = ((p1_pixel << 1) | p0_pixel) & 0x000F;
-                        pid = palette;
-                        //If the pixel ID is 0, then it's transparent so we use pixel 0 of palette 0
-                        if (pixel == 0x00) pid = 0x00;
-                        //We shift the tile registers to get the next pixel id
-                        tile_lsb = (tile_lsb << 1) & 0xFFFF;
-                        tile_msb = (tile_msb << 1) & 0xFFFF;
-                        //We populate the image by getting the right color from the palette using the palette and pixel IDs
-                        dest.getPixelWriter().setColor(((x << 3) | (col)), ((y << 3) | row), getColorFromPalette(pid, pixel));
+        int v = vram_addr;
+        int next_id = bg_next_tile_id, next_attrib = bg_next_tile_attrib, next_pattern = bg_next_tile_pattern;
+        long shift_pattern = bg_shift_pattern;
+        for (int dot = 1; dot < 338; dot++) {
+            if (dot == 258) {
+                //The horizontal blank, nothing is fetched or drawn until the next scanline tiles
+                oam_addr = 0;
+                if (rendering)
+                    cartridge.getMapper().notifyScanline();
+                evaluateSprites();
+                dot = 320;
+                continue;
+            }
+            if (dot >= 2) {
+                if (render_bg)
+                    shift_pattern <<= 4;
+                switch ((dot - 1) & 0x07) {
+                    case 0 -> {
+                        shift_pattern = loadBackgroundShifter(shift_pattern, next_pattern, next_attrib);
+                        next_id = ppuRead(0x2000 | (v & 0x0FFF), false);
+                    }
+                    case 2 -> {
+                        int coarse_x = v & 0x1F;
+                        int coarse_y = (v >> 5) & 0x1F;
+                        next_attrib = ppuRead(0x23C0 | (v & 0x0C00) | ((coarse_y >> 2) << 3) | (coarse_x >> 2), false);
+                        if ((coarse_y & 0x02) == 0x02)
+                            next_attrib >>= 4;
+                        if ((coarse_x & 0x02) == 0x02)
+                            next_attrib >>= 2;
+                        next_attrib &= 0x03;
+                    }
+                    //Both bitplanes are fetched at once, the registers can't change before the second one is due
+                    case 4 -> next_pattern = readPatternRow(pattern_bg + (next_id << 4) + ((v >> 12) & 0x07), false);
+                    case 7 -> { // Increment Scroll X
+                        if (rendering) {
+                            if ((v & 0x1F) == 31)
+                                v = (v & ~0x1F) ^ 0x0400;
+                            else
+                                v++;
+                        }
                     }
                 }
             }
+            if (dot == 256 && rendering) { // Increment Scroll Y
+                if ((v & 0x7000) != 0x7000) {
+                    v += 0x1000;
+                } else {
+                    v &= ~0x7000;
+                    int coarse_y = (v >> 5) & 0x1F;
+                    if (coarse_y == 29)
+                        v = (v & ~0x03E0) ^ 0x0800;
+                    else if (coarse_y == 31)
+                        v &= ~0x03E0;
+                    else
+                        v += 0x20;
+                }
+            }
+            if (dot == 257) {
+                shift_pattern = loadBackgroundShifter(shift_pattern, next_pattern, next_attrib);
+                if (rendering)
+                    v = (v & ~LOOPY_HORIZONTAL) | (tram_addr & LOOPY_HORIZONTAL);
+            }
+            if (dot > 257 || !(compose || hit_test))
+                continue;
+
+            //The nibble of the background is directly the palette index of the pixel
+            int background = render_bg && dot >= bg_start ? (int) (shift_pattern >>> bit_shift) & 0x0F : 0x00;
+            int bg_pixel = background & 0x03;
+            int sprite = render_spr && dot >= spr_start ? sprite_line[dot] : 0;
+
+            //If the 0th sprite and the background are both opaque, a sprite zero hit occurs
+            if (bg_pixel != 0 && (sprite & SPRITE_ZERO) != 0 && hit_possible && dot >= hit_start)
+                status_register |= STATUS_SPRITE_ZERO_HIT;
+            if (!compose)
+                continue;
+
+            //The foreground is drawn if the background is transparent or if it has priority over the background
+            int color = 0x00;
+            if (sprite != 0 && (bg_pixel == 0 || (sprite & SPRITE_PRIORITY) != 0))
+                color = sprite & 0x1F;
+            else if (bg_pixel != 0)
+                color = background;
+
+            if (dot <= SCREEN_WIDTH) {
+                if (indexed_output) {
+                    if (dot == 1)
+                        line_emphasis[scanline] = (byte) emphasis;
+                    index_buffer[line_offset | (dot - 1)] = index_palette[color];
+                } else
+                    frame_buffer[line_offset | (dot - 1)] = screen_palette[color];
+            }
         }
-    }
+        //The two nametable fetches of the end of the scanline
+        ppuRead(0x2000 | (v & 0x0FFF), false);
+        bg_next_tile_id = ppuRead(0x2000 | (v & 0x0FFF), false);
+        fetchSprites();
 
-    public Tile getNametableTile(int x, int y, int nametable) {
-        Tile dest = new Tile(false);
-        dest.x = x;
-        dest.y = y;
-        int offset = 0x0400 * (nametable & 0x3);
-        dest.addr = 0x2000 | offset | (y << 5) | x;
-        //We read the tile ID by selecting the correct nametable using the mirroring mode
-        dest.tile = ppuRead(dest.addr, true);
-        //We read the tile attribute starting at offset 0x03C0 of the selected nametable, the attribute offset is calculated using the tile pos divided by 4
-        dest.attribute = ppuRead(0x23C0 | offset | ((y >> 2) << 3) | (x >> 2), true);
-        //We select the right attribute depending on the tile pos inside the current 4x4 tile grid
-        if ((y & 0x02) == 0x02)
-            dest.attribute = (dest.attribute >> 4) & 0x00FF;
-        if ((x & 0x02) == 0x02)
-            dest.attribute = (dest.attribute >> 2) & 0x00FF;
-        //We only keep the 2 lsb of the attribute
-        dest.attribute &= 0x03;
-        dest.palette = dest.attribute & 0b11;
-        int pid;
-        //For each row of the tile
-        for (int row = 0; row < 8; row++) {
-            //We use the tile id and the current row index to get the lsb of the 8 pixel IDs of the row (low bitplane)
-            int tile_lsb = ppuRead((control_register.isPatternBackgroundSet() ? 0x1 << 12 : 0) + (dest.tile << 4) + row, true);
-            //We use the tile id and the current row index to get the msb of the 8 pixels of the row (high bitplane)
-            int tile_msb = ppuRead((control_register.isPatternBackgroundSet() ? 0x1 << 12 : 0) + (dest.tile << 4) + row + 8, true);
-            //We use the attribute to determinate the tile palette
-            //For each pixel of the row
-            for (int col = 0; col < 8; col++) {
-                //We get the correct pixel ID by reading the 2 bitplanes
-                int p0_pixel = (tile_lsb & 0x80) > 0 ? 0x1 : 0x0;
-                int p1_pixel = (tile_msb & 0x80) > 0 ? 0x1 : 0x0;
-                int pixel = ((p1_pixel << 1) | p0_pixel) & 0x000F;
-                pid = dest.palette;
-                //If the pixel ID is 0, then it's transparent so we use pixel 0 of palette 0
-                if (pixel == 0x00) pid = 0x00;
-                //We shift the tile registers to get the next pixel id
-                tile_lsb = (tile_lsb << 1) & 0xFFFF;
-                tile_msb = (tile_msb << 1) & 0xFFFF;
-                //We populate the image by getting the right color from the palette using the palette and pixel IDs
-                dest.colors[col | (row << 3)] = getColorFromPalette(pid, pixel);
+        //The last dot leaves the flag as seen by the first pixel of the next scanline
+        if (render_spr) {
+            spriteZeroBeingRendered = false;
+            for (int i = 0; i < sprite_count; i++) {
+                if (secondary_oam[(i << 2) | 3] == 0 && (sprite_shift_pattern[i] & 0x30000000) != 0) {
+                    spriteZeroBeingRendered = i == 0;
+                    break;
+                }
             }
         }
-        return dest;
+
+        vram_addr = v;
+        bg_next_tile_attrib = next_attrib;
+        bg_next_tile_pattern = next_pattern;
+        bg_shift_pattern = shift_pattern;
+        scanline++;
     }
 
-    public Tile getPatterntableTile(int x, int y, int paletteId, int patterntableId) {
-        Tile dest = new Tile(false);
-        int offset = y * 256 + x * 16;
-        dest.tile = y | (x << 4);
-        dest.addr = patterntableId * 0x1000 + offset;
-        //For each row of the tile
-        for (byte row = 0; row < 8; row++) {
-            //We get the lsb of the pixels of the row
-            int tile_lsb = ppuRead(dest.addr + row, true);
-            //We get the msb of the pixels of the row
-            int tile_msb = ppuRead(dest.addr + row + 8, true);
-            //for each pixel of the row
-            for (int col = 0; col < 8; col++) {
-                //We compute the pixel id
-                int pixel = ((tile_lsb & 0x01) << 1) | (tile_msb & 0x01);
-                //We shift the tile registers to get the next pixel id
-                tile_lsb >>= 1;
-                tile_msb >>= 1;
-                //We populate the image by getting the right color from the palette using the palette and pixel IDs
-                dest.colors[(7 - col) | (row << 3)] = getColorFromPalette(paletteId, pixel);
-            }
+    /**
+     * Render the next pixels into a frame
+     *
+     * @param frame the frame to render into
+     */
+    private void useFrame(Frame frame) {
+        frame_buffer = frame.pixels;
+        index_buffer = frame.indices;
+        line_emphasis = frame.emphasis;
+    }
+
+    /**
+     * Select the sprites of the next scanline and copy them to the Secondary OAM
+     * The sprites of each scanline are looked up in the sprite index instead of scanning the whole OAM
+     */
+    private void evaluateSprites() {
+        //We clear the Secondary OAM
+        Arrays.fill(secondary_oam, (byte) 0xFF);
+        //And reset the sprite count
+        sprite_count = 0;
+
+        Arrays.fill(sprite_shift_pattern, 0x00);
+        spriteZeroHitPossible = false;
+
+        if (scanline >= 0 && scanline < SCREEN_HEIGHT) {
+            if (sprite_index_dirty)
+                buildSpriteIndex();
+            sprite_count = line_sprite_count[scanline];
+            for (int i = 0; i < sprite_count; i++)
+                System.arraycopy(oam_memory, line_sprites[(scanline << 3) | i] << 2, secondary_oam, i << 2, 4);
+            //If the first sprite is in the scanline, a sprite zero hit is possible
+            spriteZeroHitPossible = sprite_count > 0 && line_sprites[scanline << 3] == 0;
         }
-        return dest;
+        //If we hit the max number of sprite on the scanline, we set the sprite overflow flag to 1
+        status_register = sprite_count >= 8 ? status_register | STATUS_SPRITE_OVERFLOW : status_register & ~STATUS_SPRITE_OVERFLOW;
     }
 
-    public Tile getOamTile8x8(int oamId) {
-        if (oamId < 64) {
-            Tile tile = new Tile(false);
-            ObjectAttribute entry = oams[oamId];
-            for (int row = 0; row < 8; row++) {
-                tile.addr = (control_register.isPatternSpriteSet() ? 1 << 12 : 0) | (entry.getId() << 4);
-                tile.x = entry.getX();
-                tile.y = entry.getY();
-                tile.tile = entry.getId() >> 1;
-                tile.palette = (entry.getAttribute() & 0x3) + 4;
-                tile.attribute = entry.getAttribute() & 0xE0;
-                int sprite_pattern_low, sprite_pattern_high;
-                int sprite_pattern_addr_low, sprite_pattern_addr_high;
-                //We retrieve the low bit plane address of the current sprite row
-                if ((entry.getAttribute() & 0x80) != 0x80) // Sprite normally oriented
-                    sprite_pattern_addr_low = tile.addr | row;
-                else //Sprite flipped vertically
-                    sprite_pattern_addr_low = tile.addr | (7 - row);
-
-                //The high bit plane one is offset by 8 from the low bit plane
-                sprite_pattern_addr_high = (sprite_pattern_addr_low + 8) & 0xFFFF;
-                //We read the 2 bit planes
-                sprite_pattern_low = ppuRead(sprite_pattern_addr_low, true);
-                sprite_pattern_high = ppuRead(sprite_pattern_addr_high, true);
-
-                //If the sprite is flipped horizontally
-                if ((entry.getAttribute() & 0x40) == 0x40) {
-                    sprite_pattern_low = NumberUtils.byteFlip(sprite_pattern_low);
-                    sprite_pattern_high = NumberUtils.byteFlip(sprite_pattern_high);
-                }
-                //For each pixel of the row
-                for (int col = 0; col < 8; col++) {
-                    //We compute the pixel and palette id
-                    int px = ((sprite_pattern_low & 0x80) == 0x80 ? 0x1 : 0x0) | ((((sprite_pattern_high & 0x80) == 0x80 ? 0x1 : 0x0)) << 1);
-                    //We draw the pixel
-                    tile.colors[col | (row << 3)] = getColorFromPalette(px == 0 ? 0 : tile.palette, px);
-                    //We shift the bit planes for the next pixel
-                    sprite_pattern_high <<= 1;
-                    sprite_pattern_low <<= 1;
+    /**
+     * Rebuild the list of the sprites of each scanline from the OAM
+     * A scanline keeps at most its first 8 sprites in OAM order, which is all the evaluation needs
+     */
+    private void buildSpriteIndex() {
+        Arrays.fill(line_sprite_count, (byte) 0);
+        int height = (control_register & CONTROL_SPRITE_SIZE) != 0 ? 16 : 8;
+        for (int entry = 0; entry < 64; entry++) {
+            int y = oam_memory[entry << 2] & 0xFF;
+            for (int line = y; line < y + height && line < SCREEN_HEIGHT; line++) {
+                int count = line_sprite_count[line];
+                if (count < 8) {
+                    line_sprites[(line << 3) | count] = (byte) entry;
+                    line_sprite_count[line] = (byte) (count + 1);
                 }
             }
-            return tile;
         }
-        return null;
+        sprite_index_dirty = false;
     }
 
-    public Tile getOamTile8x16(int oamId) {
-        Tile tile = new Tile(true);
-        ObjectAttribute entry = oams[oamId];
-        for (int row = 0; row < 16; row++) {
-            int sprite_pattern_low, sprite_pattern_high;
-            int sprite_pattern_addr_low, sprite_pattern_addr_high;
-            if ((entry.getAttribute() & 0x80) != 0x80) {
-                if (row < 8)
-                    sprite_pattern_addr_low = ((entry.getId() & 0x1) << 12) | ((entry.getId() & 0xFE) << 4) | row;
-                else
-                    sprite_pattern_addr_low = ((entry.getId() & 0x1) << 12) | (((entry.getId() & 0xFE) + 1) << 4) | (row - 8);
-            } else {
-                if (row < 8)
-                    sprite_pattern_addr_low = ((entry.getId() & 0x1) << 12) | (((entry.getId() & 0xFE) + 1) << 4) | (7 - row);
-                else
-                    sprite_pattern_addr_low = ((entry.getId() & 0x1) << 12) | ((entry.getId() & 0xFE) << 4) | (7 - row + 8);
+    /**
+     * Fetch the patterns of the sprites selected for the next scanline and load them into the Shift Registers
+     * This is really done one multiple cycles, but it's easier to do it all. It doesn't change the overall behaviour of the rendering process
+     */
+    private void fetchSprites() {
+        int pattern_sprite = (control_register & CONTROL_PATTERN_SPRITE) << 9;
+        //For each sprite
+        for (int i = 0; i < sprite_count; i++) {
+            int row = scanline - (secondary_oam[i << 2] & 0xFF);
+            int id = secondary_oam[(i << 2) | 1] & 0xFF;
+            int attribute = secondary_oam[(i << 2) | 2];
+            int sprite_pattern_addr_low;
+            if ((control_register & CONTROL_SPRITE_SIZE) == 0) { //If the sprites are 8x8
+                if ((attribute & 0x80) != 0x80) //If the sprite normally oriented
+                    sprite_pattern_addr_low = pattern_sprite | (id << 4) | row;
+                else //If the sprite is flipped vertically
+                    sprite_pattern_addr_low = pattern_sprite | (id << 4) | (7 - row);
+            } else { //If the sprites are 8x16
+                if ((attribute & 0x80) != 0x80) { //If the sprite normally oriented
+                    if (row < 8) //Reading top half
+                        sprite_pattern_addr_low = ((id & 0x01) << 12) | ((id & 0xFE) << 4) | (row & 0x07);
+                    else //Reading bottom half
+                        sprite_pattern_addr_low = ((id & 0x01) << 12) | (((id & 0xFE) + 1) << 4) | (row & 0x07);
+                } else {  //If the sprite is flipped vertically
+                    if (row < 8) //Reading top half
+                        sprite_pattern_addr_low = ((id & 0x01) << 12) | (((id & 0xFE) + 1) << 4) | (7 - row & 0x07);
+                    else //Reading bottom half
+                        sprite_pattern_addr_low = ((id & 0x01) << 12) | ((id & 0xFE) << 4) | (7 - row & 0x07);
+                }
             }
-            sprite_pattern_addr_high = (sprite_pattern_addr_low + 8) & 0xFFFF;
-            sprite_pattern_low = ppuRead(sprite_pattern_addr_low, true);
-            sprite_pattern_high = ppuRead(sprite_pattern_addr_high, true);
+            //We fetch the sprite's row, flipped if the sprite is flipped horizontally, and load it to the Shift Register
+            sprite_shift_pattern[i] = readPatternRow(sprite_pattern_addr_low, (attribute & 0x40) == 0x40);
+        }
+    }
 
-            if ((entry.getAttribute() & 0x40) == 0x40) {
-                sprite_pattern_low = NumberUtils.byteFlip(sprite_pattern_low);
-                sprite_pattern_high = NumberUtils.byteFlip(sprite_pattern_high);
-            }
-            tile.addr = entry.getId();
-            tile.x = entry.getX();
-            tile.y = entry.getY();
-            tile.tile = entry.getId() >> 1;
-            tile.palette = (entry.getAttribute() & 0x3) + 4;
-            for (int col = 0; col < 8; col++) {
-                int px = ((sprite_pattern_low & 0x80) == 0x80 ? 0x1 : 0x0) | ((((sprite_pattern_high & 0x80) == 0x80 ? 0x1 : 0x0)) << 1);
-
-                tile.colors[col | (row << 3)] = getColorFromPalette(px == 0 ? 0 : tile.palette, px);
-
-                sprite_pattern_high <<= 1;
-                sprite_pattern_low <<= 1;
-            }
+    /**
+     * Read a row of pixels of a tile, the 2 bitplanes are decoded together
+     *
+     * @param addr    the address of the row in the low bitplane
+     * @param flipped should the row be flipped horizontally
+     * @return the row packed as described by TileCache
+     */
+    private int readPatternRow(int addr, boolean flipped) {
+        addr &= 0x3FFF;
+        int row = cartridge.ppuReadPattern(addr, flipped);
+        if (row == Mapper.UNMAPPED) {
+            //The row isn't in the Character Memory, we read the 2 bitplanes the usual way
+            int low = ppuRead(addr, false);
+            int high = ppuRead(addr + 8, false);
+            return flipped ? TileCache.interleave(NumberUtils.byteFlip(low), NumberUtils.byteFlip(high)) : TileCache.interleave(low, high);
         }
-        return tile;
+        //The Mapper still sees both reads, only the high bitplane one can switch banks so the low one is never affected
+        cartridge.getMapper().updateLatch(addr);
+        cartridge.getMapper().updateLatch(addr + 8);
+        return row;
+    }
+
+    /**
+     * Load the next tile into the low half of the Background Shifter
+     *
+     * @param shifter the Background Shifter
+     * @param pattern the row of the next tile
+     * @param attrib  the palette ID of the next tile
+     * @return the loaded Background Shifter
+     */
+    private static long loadBackgroundShifter(long shifter, int pattern, int attrib) {
+        return (shifter & 0xFFFFFFFF00000000L) | ((pattern | ATTRIBUTE_NIBBLES[attrib]) & 0xFFFFFFFFL);
     }
 }
@@ -0,0 +1,109 @@
+package core.ppu;
+
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * This class represent the system palette of the NES
+ * The 64 colors are resolved once for each of the 8 combinations of the emphasis bits of the Mask Register
+ * the colors can then be fetched without any computation while rendering
+ */
+public class Palette {
+
+    public static final int COLOR_COUNT = 0x40;
+    public static final int EMPHASIS_COUNT = 8;
+
+    //The channels not emphasized are attenuated by this factor for each emphasis bit set
+    private static final double ATTENUATION = 0.816328;
+
+    // Here is the palette table (packed as 0xRRGGBB)
+    private static final int[] NTSC_COLORS = {
+            0x545454, 0x001E74, 0x081090, 0x300088, 0x440064, 0x5C0030, 0x540400, 0x3C1800,
+            0x202A00, 0x083A00, 0x004000, 0x003C00, 0x00323C, 0x000000, 0x000000, 0x000000,
+            0x989698, 0x084CC4, 0x3032EC, 0x5C1EE4, 0x8814B0, 0xA01464, 0x982220, 0x783C00,
+            0x545A00, 0x287200, 0x087C00, 0x007628, 0x006678, 0x000000, 0x000000, 0x000000,
+            0xECEEEC, 0x4C9AEC, 0x787CEC, 0xB062EC, 0xE454EC, 0xEC58B4, 0xEC6A64, 0xD48820,
+            0xA0AA00, 0x74C400, 0x4CD020, 0x38CC6C, 0x38B4CC, 0x3C3C3C, 0x000000, 0x000000,
+            0xECEEEC, 0xA8CCEC, 0xBCBCEC, 0xD4B2EC, 0xECAEEC, 0xECAED4, 0xECB4B0, 0xE4C490,
+            0xCCD278, 0xB4DE78, 0xA8E290, 0x98E2B4, 0xA0D6E4, 0xA0A2A0, 0x000000, 0x000000
+    };
+
+    private final int[] argb_colors;
+    private final int[] screen_colors;
+
+    /**
+     * Create the palette and resolve the colors for every emphasis
+     */
+    public Palette() {
+        argb_colors = new int[COLOR_COUNT * EMPHASIS_COUNT];
+        screen_colors = new int[COLOR_COUNT * EMPHASIS_COUNT];
+        boolean little_endian = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+        for (int emphasis = 0; emphasis < EMPHASIS_COUNT; emphasis++) {
+            for (int color = 0; color < COLOR_COUNT; color++) {
+                int rgb = emphasize(NTSC_COLORS[color], color, emphasis);
+                int r = (rgb >> 16) & 0xFF;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                argb_colors[(emphasis << 6) | color] = 0xFF000000 | rgb;
+                //The screen buffer is read as RGBA bytes, an int store must produce them in memory order
+                screen_colors[(emphasis << 6) | color] = little_endian ? 0xFF000000 | (b << 16) | (g << 8) | r : (r << 24) | (g << 16) | (b << 8) | 0xFF;
+            }
+        }
+    }
+
+    /**
+     * Apply the emphasis bits to a color
+     *
+     * @param rgb      the color packed as 0xRRGGBB
+     * @param color    the index of the color in the system palette
+     * @param emphasis the emphasis bits (red, green, blue from the lsb)
+     * @return the emphasized color packed as 0xRRGGBB
+     */
+    private static int emphasize(int rgb, int color, int emphasis) {
+        //The columns 0xE and 0xF are black whatever the emphasis
+        if (emphasis == 0 || (color & 0x0E) == 0x0E)
+            return rgb;
+        double r = (rgb >> 16) & 0xFF;
+        double g = (rgb >> 8) & 0xFF;
+        double b = rgb & 0xFF;
+        if ((emphasis & 0x01) == 0x01) { g *= ATTENUATION; b *= ATTENUATION; }
+        if ((emphasis & 0x02) == 0x02) { r *= ATTENUATION; b *= ATTENUATION; }
+        if ((emphasis & 0x04) == 0x04) { r *= ATTENUATION; g *= ATTENUATION; }
+        return ((int) Math.round(r) << 16) | ((int) Math.round(g) << 8) | (int) Math.round(b);
+    }
+
+    /**
+     * @param color    the index of the color in the system palette (0x00 - 0x3F)
+     * @param emphasis the emphasis bits (bits 5 to 7 of the Mask Register shifted to the lsb)
+     * @return the color packed as 0xAARRGGBB
+     */
+    public int getARGB(int color, int emphasis) {
+        return argb_colors[(emphasis << 6) | (color & 0x3F)];
+    }
+
+    /**
+     * @param color    the index of the color in the system palette (0x00 - 0x3F)
+     * @param emphasis the emphasis bits (bits 5 to 7 of the Mask Register shifted to the lsb)
+     * @return the color packed as RGBA bytes in native order, ready to be stored in the screen buffer
+     */
+    public int getScreenColor(int color, int emphasis) {
+        return screen_colors[(emphasis << 6) | (color & 0x3F)];
+    }
+
+    /**
+     * Expand a frame rendered in indexed mode into RGBA colors
+     *
+     * @param indices  the palette indices of the frame (256 per scanline)
+     * @param emphasis the emphasis bits of each scanline
+     * @param dest     the buffer where to store the colors, packed like getScreenColor
+     */
+    public void expand(byte[] indices, byte[] emphasis, IntBuffer dest) {
+        dest.clear();
+        for (int line = 0; line < emphasis.length; line++) {
+            int offset = (emphasis[line] & 0x07) << 6;
+            for (int i = line << 8; i < (line + 1) << 8; i++)
+                dest.put(screen_colors[offset | (indices[i] & 0x3F)]);
+        }
+        dest.flip();
+    }
+}
@@ -1,10 +1,11 @@
-package gui.lwjgui.windows;
-
-import javafx.scene.paint.Color;
+package core.ppu;
 
+/**
+ * This class holds the pixels and the attributes of a tile read from a VramSnapshot
+ */
 public class Tile {
 
-    public final Color[] colors;
+    public final int[] colors; // packed as 0xAARRGGBB
     public int tile = 0x00;
     public int addr = 0x0000;
     public int x = 0x00;
@@ -14,8 +15,8 @@ public class Tile {
 
     public Tile(boolean doubleHeight) {
         if (doubleHeight)
-            colors = new Color[128];
+            colors = new int[128];
         else
-            colors = new Color[64];
+            colors = new int[64];
     }
 }
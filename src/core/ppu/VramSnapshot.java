@@ -0,0 +1,275 @@
+package core.ppu;
+
+import core.cartridge.TileCache;
+import core.ppu.registers.ObjectAttribute;
+import utils.NumberUtils;
+
+/**
+ * This class represent a copy of the memories of the PPU, taken by the PPU at the end of a frame
+ * The debug views render from it on their own thread, so they never read the memories while the emulation modifies them
+ * The images are rendered into int arrays (0xAARRGGBB) and the tiles into Tiles provided by the caller
+ */
+public class VramSnapshot {
+
+    //Filled by the PPU, the palette already resolved to colors using the emphasis bits of the frame
+    final byte[] pattern_memory;
+    final byte[] nametable_memory;
+    final int[] palette_colors;
+    final byte[] oam_memory;
+    int control_register = 0x00;
+
+    volatile boolean complete = false;
+
+    /**
+     * Create an empty snapshot, it can be filled using PPU_2C02.requestSnapshot
+     */
+    public VramSnapshot() {
+        pattern_memory = new byte[0x2000];
+        nametable_memory = new byte[0x1000];
+        palette_colors = new int[32];
+        oam_memory = new byte[256];
+    }
+
+    /**
+     * @return has the PPU filled the snapshot since it was requested
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the value of the Control Register when the snapshot was taken
+     */
+    public int getControl() {
+        return control_register;
+    }
+
+    /**
+     * @param paletteId the palette ID
+     * @param pixel     the pixel ID
+     * @return the color of the pixel packed as 0xAARRGGBB
+     */
+    public int getARGBFromPalette(int paletteId, int pixel) {
+        return palette_colors[((paletteId << 2) + pixel) & 0x1F];
+    }
+
+    /**
+     * Copy an OAM entry
+     *
+     * @param oamId the index of the entry (0 - 63)
+     * @param dest  the ObjectAttribute where to store the entry
+     * @return dest
+     */
+    public ObjectAttribute getOam(int oamId, ObjectAttribute dest) {
+        dest.setY(oam_memory[oamId << 2]);
+        dest.setId(oam_memory[(oamId << 2) | 1]);
+        dest.setAttribute(oam_memory[(oamId << 2) | 2]);
+        dest.setX(oam_memory[(oamId << 2) | 3]);
+        return dest;
+    }
+
+    /**
+     * @param addr    the address of the row in the low bitplane
+     * @param flipped should the row be flipped horizontally
+     * @return the row packed as described by TileCache
+     */
+    private int readPatternRow(int addr, boolean flipped) {
+        addr &= 0x1FFF;
+        int low = pattern_memory[addr] & 0xFF;
+        int high = pattern_memory[addr | 0x08] & 0xFF;
+        return flipped ? TileCache.interleave(NumberUtils.byteFlip(low), NumberUtils.byteFlip(high)) : TileCache.interleave(low, high);
+    }
+
+    /**
+     * @param addr the address in the nametables (0x2000 - 0x2FFF)
+     * @return the byte at this address
+     */
+    private int readNametable(int addr) {
+        return nametable_memory[addr & 0x0FFF] & 0xFF;
+    }
+
+    /**
+     * @param i         the pattern table index
+     * @param paletteId the paletteId to be used
+     * @param dest      the 128x128 pixels where to store the pattern table
+     */
+    public void renderPatternTable(int i, int paletteId, int[] dest) {
+        //For each row of tiles starting at the top
+        for (int tileY = 0; tileY < 16; tileY++) {
+            //For each tile starting at the left
+            for (int tileX = 0; tileX < 16; tileX++) {
+                //We compute the tile offset inside the Pattern Memory
+                int offset = tileY * 256 + tileX * 16;
+                //For each row of the tile
+                for (int row = 0; row < 8; row++) {
+                    //We get the decoded pixels of the row
+                    int tile_row = readPatternRow(i * 0x1000 + offset + row, false);
+                    int line = (((tileY << 3) | row) << 7) | (tileX << 3);
+                    //for each pixel of the row, we get the pixel id from the msb nibble and the color from the palette
+                    for (int col = 0; col < 8; col++) {
+                        dest[line | col] = getARGBFromPalette(paletteId, (tile_row >>> 28) & 0x03);
+                        tile_row <<= 4;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param i    the nametable index
+     * @param dest the 256x240 pixels where to store the nametable
+     */
+    public void renderNametable(int i, int[] dest) {
+        int pattern_bg = (control_register & 0x10) << 8;
+        //For each row of tiles starting at the top
+        for (int y = 0; y < 30; y++) {
+            //For each tile starting at the left
+            for (int x = 0; x < 32; x++) {
+                int offset = 0x0400 * (i & 0x3);
+                int tile_id = readNametable(0x2000 | offset | (y << 5) | x);
+                int palette = readAttribute(offset, x, y);
+                for (int row = 0; row < 8; row++) {
+                    //We use the tile id and the current row index to get the 8 decoded pixel IDs of the row
+                    int tile_row = readPatternRow(pattern_bg + (tile_id << 4) + row, false);
+                    int line = (((y << 3) | row) << 8) | (x << 3);
+                    for (int col = 0; col < 8; col++) {
+                        int pixel = (tile_row >>> 28) & 0x03;
+                        //If the pixel ID is 0, then it's transparent so we use pixel 0 of palette 0
+                        dest[line | col] = getARGBFromPalette(pixel == 0x00 ? 0x00 : palette, pixel);
+                        tile_row <<= 4;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param offset the offset of the nametable
+     * @param x      the x coordinate of the tile
+     * @param y      the y coordinate of the tile
+     * @return the palette ID of the tile
+     */
+    private int readAttribute(int offset, int x, int y) {
+        //We read the tile attribute starting at offset 0x03C0 of the selected nametable, the attribute offset is calculated using the tile pos divided by 4
+        int attribute = readNametable(0x23C0 | offset | ((y >> 2) << 3) | (x >> 2));
+        //We select the right attribute depending on the tile pos inside the current 4x4 tile grid
+        if ((y & 0x02) == 0x02)
+            attribute >>= 4;
+        if ((x & 0x02) == 0x02)
+            attribute >>= 2;
+        //We only keep the 2 lsb of the attribute
+        return attribute & 0x03;
+    }
+
+    /**
+     * @param x         the x coordinate of the tile
+     * @param y         the y coordinate of the tile
+     * @param nametable the nametable index
+     * @param dest      the Tile where to store the tile
+     * @return dest
+     */
+    public Tile getNametableTile(int x, int y, int nametable, Tile dest) {
+        dest.x = x;
+        dest.y = y;
+        int offset = 0x0400 * (nametable & 0x3);
+        dest.addr = 0x2000 | offset | (y << 5) | x;
+        dest.tile = readNametable(dest.addr);
+        dest.attribute = readAttribute(offset, x, y);
+        dest.palette = dest.attribute;
+        //For each row of the tile
+        for (int row = 0; row < 8; row++) {
+            int tile_row = readPatternRow(((control_register & 0x10) << 8) + (dest.tile << 4) + row, false);
+            for (int col = 0; col < 8; col++) {
+                int pixel = (tile_row >>> 28) & 0x03;
+                dest.colors[col | (row << 3)] = getARGBFromPalette(pixel == 0x00 ? 0x00 : dest.palette, pixel);
+                tile_row <<= 4;
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * @param x              the x coordinate of the tile
+     * @param y              the y coordinate of the tile
+     * @param paletteId      the paletteId to be used
+     * @param patterntableId the pattern table index
+     * @param dest           the Tile where to store the tile
+     * @return dest
+     */
+    public Tile getPatterntableTile(int x, int y, int paletteId, int patterntableId, Tile dest) {
+        dest.x = x;
+        dest.y = y;
+        dest.tile = y | (x << 4);
+        dest.addr = patterntableId * 0x1000 + y * 256 + x * 16;
+        dest.attribute = 0x00;
+        dest.palette = paletteId;
+        //For each row of the tile
+        for (int row = 0; row < 8; row++) {
+            int tile_row = readPatternRow(dest.addr + row, false);
+            for (int col = 0; col < 8; col++) {
+                dest.colors[col | (row << 3)] = getARGBFromPalette(paletteId, (tile_row >>> 28) & 0x03);
+                tile_row <<= 4;
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * @param oamId the index of the OAM entry (0 - 63)
+     * @param dest  the Tile where to store the sprite, must be 8x8
+     * @return dest
+     */
+    public Tile getOamTile8x8(int oamId, Tile dest) {
+        int id = oam_memory[(oamId << 2) | 1] & 0xFF;
+        int attribute = oam_memory[(oamId << 2) | 2] & 0xFF;
+        dest.addr = ((control_register & 0x08) << 9) | (id << 4);
+        dest.x = oam_memory[(oamId << 2) | 3] & 0xFF;
+        dest.y = oam_memory[oamId << 2] & 0xFF;
+        dest.tile = id >> 1;
+        dest.palette = (attribute & 0x3) + 4;
+        dest.attribute = attribute & 0xE0;
+        for (int row = 0; row < 8; row++) {
+            //We read the row, flipped vertically and horizontally like the sprite
+            int sprite_row = readPatternRow(dest.addr | ((attribute & 0x80) != 0x80 ? row : 7 - row), (attribute & 0x40) == 0x40);
+            for (int col = 0; col < 8; col++) {
+                int px = (sprite_row >>> 28) & 0x03;
+                dest.colors[col | (row << 3)] = getARGBFromPalette(px == 0 ? 0 : dest.palette, px);
+                sprite_row <<= 4;
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * @param oamId the index of the OAM entry (0 - 63)
+     * @param dest  the Tile where to store the sprite, must be 8x16
+     * @return dest
+     */
+    public Tile getOamTile8x16(int oamId, Tile dest) {
+        int id = oam_memory[(oamId << 2) | 1] & 0xFF;
+        int attribute = oam_memory[(oamId << 2) | 2] & 0xFF;
+        dest.addr = id;
+        dest.x = oam_memory[(oamId << 2) | 3] & 0xFF;
+        dest.y = oam_memory[oamId << 2] & 0xFF;
+        dest.tile = id >> 1;
+        dest.palette = (attribute & 0x3) + 4;
+        dest.attribute = attribute & 0xE0;
+        //The pattern table is selected by bit 0 of the ID, the top half is the even tile unless the sprite is flipped vertically
+        int top = ((id & 0x1) << 12) | ((id & 0xFE) << 4);
+        int bottom = ((id & 0x1) << 12) | (((id & 0xFE) + 1) << 4);
+        for (int row = 0; row < 16; row++) {
+            int sprite_pattern_addr_low;
+            if ((attribute & 0x80) != 0x80)
+                sprite_pattern_addr_low = row < 8 ? top | row : bottom | (row - 8);
+            else
+                sprite_pattern_addr_low = row < 8 ? bottom | (7 - row) : top | (15 - row);
+            int sprite_row = readPatternRow(sprite_pattern_addr_low, (attribute & 0x40) == 0x40);
+            for (int col = 0; col < 8; col++) {
+                int px = (sprite_row >>> 28) & 0x03;
+                dest.colors[col | (row << 3)] = getARGBFromPalette(px == 0 ? 0 : dest.palette, px);
+                sprite_row <<= 4;
+            }
+        }
+        return dest;
+    }
+}
@@ -2,8 +2,11 @@ package gui.lwjgui;
 
 import core.AudioEngine;
 import core.NES;
+import core.apu.ResamplingQuality;
 import core.cartridge.Cartridge;
+import core.ppu.Frame;
 import core.ppu.PPU_2C02;
+import core.ppu.Palette;
 import exceptions.InvalidFileException;
 import exceptions.UnsupportedMapperException;
 import gui.inputs.InputMapper;
@@ -27,6 +30,9 @@ import utils.Dialogs;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Mixer;
 import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 
 import static org.lwjgl.opengl.GL11.*;
 
@@ -40,6 +46,9 @@ public class NEmuSContext implements Renderer {
     private final InputMapper inputMapper;
     private final Fbo fbo;
     private final Texture screen_texture;
+    private final Palette screen_palette;
+    private final ByteBuffer screen_buffer;
+    private final IntBuffer screen_pixels;
     private final Quad screen_quad;
     private final AudioEngine audioEngine;
 
@@ -48,9 +57,10 @@ public class NEmuSContext implements Renderer {
     private String requested_rom;
     private boolean load_rom_requested = false;
     private boolean reset_requested = false;
-    public boolean emulation_running = false;
+    public volatile boolean emulation_running = false;
     private boolean redraw = false;
     private boolean started = false;
+    private Frame presented_frame = null;
 
     /**
      * Create a new emulator context
@@ -64,7 +74,12 @@ public class NEmuSContext implements Renderer {
 
         //We enable texture and create the quad, fbo and texture used to render
         glEnable(GL_TEXTURE_2D);
-        screen_texture = new Texture(PPU_2C02.SCREEN_WIDTH, PPU_2C02.SCREEN_HEIGHT, nes.getPpu().getScreenBuffer());
+        //The PPU only outputs palette indices, the colors are expanded here just before the texture upload
+        nes.getPpu().setIndexedOutput(true);
+        screen_palette = new Palette();
+        screen_buffer = ByteBuffer.allocateDirect(PPU_2C02.SCREEN_WIDTH * PPU_2C02.SCREEN_HEIGHT * 4).order(ByteOrder.nativeOrder());
+        screen_pixels = screen_buffer.asIntBuffer();
+        screen_texture = new Texture(PPU_2C02.SCREEN_WIDTH, PPU_2C02.SCREEN_HEIGHT, screen_buffer);
         fbo = new Fbo(PPU_2C02.SCREEN_WIDTH, PPU_2C02.SCREEN_HEIGHT);
         screen_quad = new Quad();
 
@@ -90,7 +105,7 @@ public class NEmuSContext implements Renderer {
         default_shader.cleanUp();
         screen_texture.cleanUp();
         fbo.cleanUp();
-        audioEngine.stop();
+        audioEngine.close();
     }
 
     /**
@@ -164,19 +179,28 @@ public class NEmuSContext implements Renderer {
         //If a Reset has been requested
         if (reset_requested) {
             reset_requested = false;
-            boolean running = emulation_running;
-            emulation_running = false;
-            nes.reset();
-            emulation_running = running;
+            synchronized (nes) {
+                boolean running = emulation_running;
+                emulation_running = false;
+                nes.reset();
+                emulation_running = running;
+            }
         }
 
 
+        //We take the newest frame of the PPU, it stays ours until the next one
+        Frame frame = nes.getPpu().getFrameMailbox().acquire();
+        if (frame != null)
+            presented_frame = frame;
+
         //If we need to render the screen
-        if ((emulation_running && nes.getPpu().frame_complete) || redraw) {
-            nes.getPpu().frame_complete = false;
+        if ((emulation_running && frame != null) || redraw) {
             glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
             InputHandling();
-            screen_texture.load(nes.getPpu().getScreenBuffer());
+            if (presented_frame != null) {
+                screen_palette.expand(presented_frame.indices, presented_frame.emphasis, screen_pixels);
+                screen_texture.load(screen_buffer);
+            }
             if (redraw)
                 redraw = false;
         }
@@ -239,13 +263,8 @@ public class NEmuSContext implements Renderer {
      */
     public void frameStepEvent() {
         if (!emulation_running && started) {
-            do {
-                nes.clock(false);
-            } while (!nes.getPpu().frame_complete);
-            do {
-                nes.clock(false);
-            } while (nes.getCpu().complete());
-            nes.getPpu().frame_complete = false;
+            nes.runFrame();
+            nes.runUntil(() -> !nes.getCpu().complete());
             redraw = true;
         }
     }
@@ -255,15 +274,8 @@ public class NEmuSContext implements Renderer {
      */
     public void cpuStepEvent() {
         if (!emulation_running && started) {
-            do {
-                nes.clock(false);
-            } while (!nes.getCpu().complete());
-            do {
-                nes.clock(false);
-            } while (nes.getCpu().complete());
-            if (nes.getPpu().frame_complete) {
-                nes.getPpu().frame_complete = false;
-            }
+            nes.runUntil(() -> nes.getCpu().complete());
+            nes.runUntil(() -> !nes.getCpu().complete());
         }
         redraw = true;
     }
@@ -283,7 +295,10 @@ public class NEmuSContext implements Renderer {
      * @param enabled should sampling be activated
      */
     public void fireAudioRenderingEvent(boolean enabled) {
-        nes.enableSoundRendering(enabled);
+        //The APU is caught up and its output stepped back to 0, the emulation thread must not be running it
+        synchronized (nes) {
+            nes.enableSoundRendering(enabled);
+        }
     }
 
     /**
@@ -292,7 +307,18 @@ public class NEmuSContext implements Renderer {
      * @param raw should RAW Audio mode be activated
      */
     public void fireRawAudioEvent(boolean raw) {
-        nes.toggleRawAudio(raw);
+        synchronized (nes) {
+            nes.toggleRawAudio(raw);
+        }
+    }
+
+    /**
+     * Return the Audio Engine, it exposes the state of the audio output buffer
+     *
+     * @return the current Audio Engine
+     */
+    public AudioEngine getAudioEngine() {
+        return audioEngine;
     }
 
     /**
@@ -363,6 +389,24 @@ public class NEmuSContext implements Renderer {
         nes.getApu().setLinear(linear);
     }
 
+    /**
+     * Set the quality of the conversion of the APU output to the sample rate
+     *
+     * @param quality the quality tier to use
+     */
+    public void resamplingQualityEvent(ResamplingQuality quality) {
+        nes.getApu().setResamplingQuality(quality);
+    }
+
+    /**
+     * Return the quality of the conversion of the APU output to the sample rate
+     *
+     * @return the quality tier in use
+     */
+    public ResamplingQuality getResamplingQuality() {
+        return nes.getApu().getResamplingQuality();
+    }
+
     /**
      * Return the current NES of the emulator
      *
@@ -2,7 +2,7 @@ package gui.lwjgui.windows;
 
 import core.AudioEngine;
 import core.apu.APU_2A03;
-import core.apu.channels.components.pulse.Oscillator;
+import core.apu.ResamplingQuality;
 import gui.lwjgui.NEmuSUnified;
 import gui.lwjgui.NEmuSContext;
 import javafx.application.Application;
@@ -41,9 +41,7 @@ public class AudioSettings extends Application implements Initializable {
     @FXML
     private Slider volumeSlider;
     @FXML
-    private Slider soundQualitySlider;
-    @FXML
-    private Slider audioSampleSkipSlider;
+    private ComboBox<ResamplingQuality> resamplingQualityCombo;
     @FXML
     private CheckBox audioRenderingCheck;
     @FXML
@@ -98,11 +96,9 @@ public class AudioSettings extends Application implements Initializable {
     public void initialize(URL url, ResourceBundle resourceBundle) {
         instance = this;
         volumeSlider.valueProperty().addListener((observableValue, oldValue, newValue) -> APU_2A03.setVolume(newValue.intValue() / 100.0));
-        soundQualitySlider.valueProperty().addListener((observableValue, oldValue, newValue) -> Oscillator.setHarmonics(newValue.intValue() + 5));
-        audioSampleSkipSlider.valueProperty().addListener((observableValue, oldValue, newValue) -> APU_2A03.setSampleSkip(newValue.intValue()));
         volumeSlider.setValue(APU_2A03.getVolume() * 100);
-        soundQualitySlider.setValue(Oscillator.getHarmonics() - 5);
-        audioSampleSkipSlider.setValue(0);
+        resamplingQualityCombo.getItems().addAll(ResamplingQuality.values());
+        resamplingQualityCombo.getSelectionModel().select(emulator.getResamplingQuality());
         audioRenderingCheck.setSelected(emulator.isAudioRenderingEnabled());
         rawAudioCheck.setSelected(emulator.isRAWAudioEnabled());
         pulse1Checkbox.setSelected(emulator.isPulse1Rendered());
@@ -193,6 +189,15 @@ public class AudioSettings extends Application implements Initializable {
         emulator.dmcEvent(dmcCheckbox.isSelected());
     }
 
+    /**
+     * Will trigger a resampling quality change event to the Emulator
+     */
+    @FXML
+    public void resamplingQualityEvent() {
+        if (resamplingQualityCombo.getSelectionModel().getSelectedItem() != null)
+            emulator.resamplingQualityEvent(resamplingQualityCombo.getSelectionModel().getSelectedItem());
+    }
+
     @FXML
     public void switchAudioOutput() throws InterruptedException {
         audioEngine.stop();
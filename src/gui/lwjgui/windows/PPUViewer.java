@@ -1,6 +1,8 @@
 package gui.lwjgui.windows;
 
 import core.NES;
+import core.ppu.Tile;
+import core.ppu.VramSnapshot;
 import core.ppu.registers.ObjectAttribute;
 import gui.lwjgui.NEmuSUnified;
 import gui.lwjgui.NEmuSContext;
@@ -13,7 +15,7 @@ import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
@@ -35,14 +37,28 @@ public class PPUViewer extends Application implements Initializable {
     private final NEmuSContext emulator;
     private final NES nes;
     private Stage stage;
-    private final Image nametable1_render_target;
-    private final Image nametable2_render_target;
-    private final Image nametable3_render_target;
-    private final Image nametable4_render_target;
-    private final Image patterntable1_render_target;
-    private final Image patterntable2_render_target;
+    private final WritableImage nametable1_render_target;
+    private final WritableImage nametable2_render_target;
+    private final WritableImage nametable3_render_target;
+    private final WritableImage nametable4_render_target;
+    private final WritableImage patterntable1_render_target;
+    private final WritableImage patterntable2_render_target;
+    private final int[][] nametable_pixels;
+    private final int[][] patterntable_pixels;
     private int selected_palette = 0x00;
 
+    //The PPU fills one snapshot while the other is displayed, both are only swapped on the FX thread
+    private final VramSnapshot[] snapshots;
+    private volatile VramSnapshot shown_snapshot = null;
+    private VramSnapshot pending_snapshot = null;
+    //Set while the FX thread hasn't drawn the last rendered images
+    private volatile boolean update_pending = false;
+
+    //Reused for every tile drawn on the FX thread
+    private final Tile tile_8x8;
+    private final Tile tile_8x16;
+    private final ObjectAttribute oam_entry;
+
     @FXML
     private Canvas nt_1_canvas;
     @FXML
@@ -99,6 +115,12 @@ public class PPUViewer extends Application implements Initializable {
         nametable2_render_target = new WritableImage(256, 240);
         nametable3_render_target = new WritableImage(256, 240);
         nametable4_render_target = new WritableImage(256, 240);
+        nametable_pixels = new int[4][256 * 240];
+        patterntable_pixels = new int[2][128 * 128];
+        snapshots = new VramSnapshot[]{new VramSnapshot(), new VramSnapshot()};
+        tile_8x8 = new Tile(false);
+        tile_8x16 = new Tile(true);
+        oam_entry = new ObjectAttribute();
     }
 
     /**
@@ -153,19 +175,20 @@ public class PPUViewer extends Application implements Initializable {
         preview_canvas.getGraphicsContext2D().fillRect(0, 0, preview_canvas.getWidth(), preview_canvas.getHeight());
 
         nt_tab.getContent().addEventHandler(MouseEvent.MOUSE_MOVED, event -> {
-            if (emulator.isEmulationRunning()) {
+            VramSnapshot snapshot = shown_snapshot;
+            if (emulator.isEmulationRunning() && snapshot != null) {
                 Tile tile = null;
                 if (event.getX() > nt_1_canvas.getLayoutX() && event.getX() < nt_1_canvas.getLayoutX() + nt_1_canvas.getWidth() && event.getY() > nt_1_canvas.getLayoutY() && event.getY() < nt_1_canvas.getLayoutY() + nt_1_canvas.getHeight()) {
-                    tile = nes.getPpu().getNametableTile((int) (event.getX() - nt_1_canvas.getLayoutX()) / 8, (int) (event.getY() - nt_1_canvas.getLayoutY()) / 8, 0);
+                    tile = snapshot.getNametableTile((int) (event.getX() - nt_1_canvas.getLayoutX()) / 8, (int) (event.getY() - nt_1_canvas.getLayoutY()) / 8, 0, tile_8x8);
                     tooltip.show(nt_tab.getContent(), event.getScreenX() - event.getX() + nt_1_canvas.getLayoutX() + nt_1_canvas.getWidth() + 3, event.getScreenY());
                 } else if (event.getX() > nt_2_canvas.getLayoutX() && event.getX() < nt_2_canvas.getLayoutX() + nt_2_canvas.getWidth() && event.getY() > nt_2_canvas.getLayoutY() && event.getY() < nt_2_canvas.getLayoutY() + nt_2_canvas.getHeight()) {
-                    tile = nes.getPpu().getNametableTile((int) (event.getX() - nt_2_canvas.getLayoutX()) / 8, (int) (event.getY() - nt_2_canvas.getLayoutY()) / 8, 1);
+                    tile = snapshot.getNametableTile((int) (event.getX() - nt_2_canvas.getLayoutX()) / 8, (int) (event.getY() - nt_2_canvas.getLayoutY()) / 8, 1, tile_8x8);
                     tooltip.show(nt_tab.getContent(), event.getScreenX() - event.getX() + nt_2_canvas.getLayoutX() - tooltip.getWidth() + 15, event.getScreenY());
                 } else if (event.getX() > nt_3_canvas.getLayoutX() && event.getX() < nt_3_canvas.getLayoutX() + nt_3_canvas.getWidth() && event.getY() > nt_3_canvas.getLayoutY() && event.getY() < nt_3_canvas.getLayoutY() + nt_3_canvas.getHeight()) {
-                    tile = nes.getPpu().getNametableTile((int) (event.getX() - nt_3_canvas.getLayoutX()) / 8, (int) (event.getY() - nt_3_canvas.getLayoutY()) / 8, 2);
+                    tile = snapshot.getNametableTile((int) (event.getX() - nt_3_canvas.getLayoutX()) / 8, (int) (event.getY() - nt_3_canvas.getLayoutY()) / 8, 2, tile_8x8);
                     tooltip.show(nt_tab.getContent(), event.getScreenX() - event.getX() + nt_3_canvas.getLayoutX() + nt_3_canvas.getWidth() + 3, event.getScreenY());
                 } else if (event.getX() > nt_4_canvas.getLayoutX() && event.getX() < nt_4_canvas.getLayoutX() + nt_4_canvas.getWidth() && event.getY() > nt_4_canvas.getLayoutY() && event.getY() < nt_4_canvas.getLayoutY() + nt_4_canvas.getHeight()) {
-                    tile = nes.getPpu().getNametableTile((int) (event.getX() - nt_4_canvas.getLayoutX()) / 8, (int) (event.getY() - nt_4_canvas.getLayoutY()) / 8, 3);
+                    tile = snapshot.getNametableTile((int) (event.getX() - nt_4_canvas.getLayoutX()) / 8, (int) (event.getY() - nt_4_canvas.getLayoutY()) / 8, 3, tile_8x8);
                     tooltip.show(nt_tab.getContent(), event.getScreenX() - event.getX() + nt_4_canvas.getLayoutX() - tooltip.getWidth() + 15, event.getScreenY());
                 } else
                     tooltip.hide();
@@ -178,8 +201,8 @@ public class PPUViewer extends Application implements Initializable {
                     );
                     tooltip_canvas.setHeight(64);
                     int x = 0, y = 0;
-                    for (Color c : tile.colors) {
-                        tooltip_canvas.getGraphicsContext2D().setFill(c);
+                    for (int c : tile.colors) {
+                        tooltip_canvas.getGraphicsContext2D().setFill(toColor(c));
                         tooltip_canvas.getGraphicsContext2D().fillRect(x * 8, y * 8, 8, 8);
                         x++;
                         if (x >= 8) {
@@ -191,13 +214,14 @@ public class PPUViewer extends Application implements Initializable {
             }
         });
         pt_tab.getContent().addEventHandler(MouseEvent.MOUSE_MOVED, event -> {
-            if (emulator.isEmulationRunning()) {
+            VramSnapshot snapshot = shown_snapshot;
+            if (emulator.isEmulationRunning() && snapshot != null) {
                 Tile tile = null;
                 if (event.getX() > pt_1_canvas.getLayoutX() && event.getX() < pt_1_canvas.getLayoutX() + pt_1_canvas.getWidth() && event.getY() > pt_1_canvas.getLayoutY() && event.getY() < pt_1_canvas.getLayoutY() + pt_1_canvas.getHeight()) {
-                    tile = nes.getPpu().getPatterntableTile((int) (event.getX() - pt_1_canvas.getLayoutX()) / 16, (int) (event.getY() - pt_1_canvas.getLayoutY()) / 16, selected_palette, 0);
+                    tile = snapshot.getPatterntableTile((int) (event.getX() - pt_1_canvas.getLayoutX()) / 16, (int) (event.getY() - pt_1_canvas.getLayoutY()) / 16, selected_palette, 0, tile_8x8);
                     tooltip.show(pt_tab.getContent(), event.getScreenX() - event.getX() + pt_1_canvas.getLayoutX() + pt_1_canvas.getWidth() + 3, event.getScreenY());
                 } else if (event.getX() > pt_2_canvas.getLayoutX() && event.getX() < pt_2_canvas.getLayoutX() + pt_2_canvas.getWidth() && event.getY() > pt_2_canvas.getLayoutY() && event.getY() < pt_2_canvas.getLayoutY() + pt_2_canvas.getHeight()) {
-                    tile = nes.getPpu().getPatterntableTile((int) (event.getX() - pt_2_canvas.getLayoutX()) / 16, (int) (event.getY() - pt_2_canvas.getLayoutY()) / 16, selected_palette, 1);
+                    tile = snapshot.getPatterntableTile((int) (event.getX() - pt_2_canvas.getLayoutX()) / 16, (int) (event.getY() - pt_2_canvas.getLayoutY()) / 16, selected_palette, 1, tile_8x8);
                     tooltip.show(pt_tab.getContent(), event.getScreenX() - event.getX() + pt_2_canvas.getLayoutX() - tooltip.getWidth() + 15, event.getScreenY());
                 } else
                     tooltip.hide();
@@ -208,8 +232,8 @@ public class PPUViewer extends Application implements Initializable {
                     );
                     tooltip_canvas.setHeight(64);
                     int x = 0, y = 0;
-                    for (Color c : tile.colors) {
-                        tooltip_canvas.getGraphicsContext2D().setFill(c);
+                    for (int c : tile.colors) {
+                        tooltip_canvas.getGraphicsContext2D().setFill(toColor(c));
                         tooltip_canvas.getGraphicsContext2D().fillRect(x * 8, y * 8, 8, 8);
                         x++;
                         if (x >= 8) {
@@ -222,17 +246,18 @@ public class PPUViewer extends Application implements Initializable {
         });
 
         oam_canvas.addEventHandler(MouseEvent.MOUSE_MOVED, event -> {
-            if (emulator.isEmulationRunning()) {
-                Tile tile;
-                if ((nes.getPpu().cpuRead(0, true) & 0x20) == 0x20)
-                    tile = nes.getPpu().getOamTile8x16((int) (event.getX() / 32) + (int) (event.getY() / 64) * 8);
-                else
-                    tile = nes.getPpu().getOamTile8x8((int) (event.getX() / 32) + (int) (event.getY() / 32) * 8);
+            VramSnapshot snapshot = shown_snapshot;
+            if (emulator.isEmulationRunning() && snapshot != null) {
+                Tile tile = null;
+                boolean double_height = (snapshot.getControl() & 0x20) == 0x20;
+                int oam_id = (int) (event.getX() / 32) + (int) (event.getY() / (double_height ? 64 : 32)) * 8;
+                if (oam_id < 64)
+                    tile = double_height ? snapshot.getOamTile8x16(oam_id, tile_8x16) : snapshot.getOamTile8x8(oam_id, tile_8x8);
                 if (tile != null) {
                     tooltip.show(oam_tab.getContent(), event.getScreenX() - event.getX() - tooltip.getWidth() + 15, event.getScreenY());
                     int sprite_x = (int) event.getX() >> 5;
                     int sprite_y = (int) event.getY() >> 5;
-                    if ((nes.getPpu().cpuRead(0, true) & 0x20) == 0x20)
+                    if (double_height)
                         sprite_y >>= 1;
                     oam_list.getSelectionModel().clearSelection();
                     oam_list.getSelectionModel().select((sprite_y << 3) | sprite_x);
@@ -246,9 +271,9 @@ public class PPUViewer extends Application implements Initializable {
                                     "\nPalette : " + tile.palette
                     );
                     int x = 0, y = 0;
-                    tooltip_canvas.setHeight((nes.getPpu().cpuRead(0, true) & 0x20) == 0x20 ? 128 : 64);
-                    for (Color c : tile.colors) {
-                        tooltip_canvas.getGraphicsContext2D().setFill(c);
+                    tooltip_canvas.setHeight(double_height ? 128 : 64);
+                    for (int c : tile.colors) {
+                        tooltip_canvas.getGraphicsContext2D().setFill(toColor(c));
                         tooltip_canvas.getGraphicsContext2D().fillRect(x * 8, y * 8, 8, 8);
                         x++;
                         if (x >= 8) {
@@ -284,131 +309,148 @@ public class PPUViewer extends Application implements Initializable {
      */
     private void updateImages() {
         while(instance != null) {
-            if (emulator.isEmulationRunning()) {
+            if (emulator.isEmulationRunning() && !update_pending) {
+                update_pending = true;
+                //The images are rendered here from the last complete snapshot, neither the emulation nor the FX thread have to do it
+                VramSnapshot snapshot = shown_snapshot;
+                boolean nametables = nt_tab.isSelected();
+                boolean patterntables = pt_tab.isSelected();
+                if (snapshot != null) {
+                    if (nametables) {
+                        for (int i = 0; i < 4; i++)
+                            snapshot.renderNametable(i, nametable_pixels[i]);
+                    } else if (patterntables) {
+                        snapshot.renderPatternTable(0, selected_palette, patterntable_pixels[0]);
+                        snapshot.renderPatternTable(1, selected_palette, patterntable_pixels[1]);
+                    }
+                }
                 Platform.runLater(() -> {
-                    //If the current tab is the nametables one
-                    if (nt_tab.isSelected()) {
-                        //We retrieve the nametables and draw them
-                        nes.getPpu().getNametable(0, (WritableImage) nametable1_render_target);
-                        nes.getPpu().getNametable(1, (WritableImage) nametable2_render_target);
-                        nes.getPpu().getNametable(2, (WritableImage) nametable3_render_target);
-                        nes.getPpu().getNametable(3, (WritableImage) nametable4_render_target);
-                        nt_1_canvas.getGraphicsContext2D().drawImage(nametable1_render_target, 0, 0);
-                        nt_2_canvas.getGraphicsContext2D().drawImage(nametable2_render_target, 0, 0);
-                        nt_3_canvas.getGraphicsContext2D().drawImage(nametable3_render_target, 0, 0);
-                        nt_4_canvas.getGraphicsContext2D().drawImage(nametable4_render_target, 0, 0);
-                        //If the selected tab is the pattern tables one
-                    } else if (pt_tab.isSelected()) {
-                        //We retrieve the pattern tables and draw them
-                        nes.getPpu().getPatternTable(0, selected_palette, (WritableImage) patterntable1_render_target);
-                        nes.getPpu().getPatternTable(1, selected_palette, (WritableImage) patterntable2_render_target);
-                        pt_1_canvas.getGraphicsContext2D().drawImage(patterntable1_render_target, 0, 0, 256, 256);
-                        pt_2_canvas.getGraphicsContext2D().drawImage(patterntable2_render_target, 0, 0, 256, 256);
+                    if (snapshot != null) {
+                        //If the current tab is the nametables one
+                        if (nametables) {
+                            //We upload the nametables and draw them
+                            setPixels(nametable1_render_target, nametable_pixels[0]);
+                            setPixels(nametable2_render_target, nametable_pixels[1]);
+                            setPixels(nametable3_render_target, nametable_pixels[2]);
+                            setPixels(nametable4_render_target, nametable_pixels[3]);
+                            nt_1_canvas.getGraphicsContext2D().drawImage(nametable1_render_target, 0, 0);
+                            nt_2_canvas.getGraphicsContext2D().drawImage(nametable2_render_target, 0, 0);
+                            nt_3_canvas.getGraphicsContext2D().drawImage(nametable3_render_target, 0, 0);
+                            nt_4_canvas.getGraphicsContext2D().drawImage(nametable4_render_target, 0, 0);
+                            //If the selected tab is the pattern tables one
+                        } else if (patterntables) {
+                            //We upload the pattern tables and draw them
+                            setPixels(patterntable1_render_target, patterntable_pixels[0]);
+                            setPixels(patterntable2_render_target, patterntable_pixels[1]);
+                            pt_1_canvas.getGraphicsContext2D().drawImage(patterntable1_render_target, 0, 0, 256, 256);
+                            pt_2_canvas.getGraphicsContext2D().drawImage(patterntable2_render_target, 0, 0, 256, 256);
 
-                        //For each palette
-                        for (int i = 0; i < 8; i++) {
-                            //We get the correct canvas
-                            GraphicsContext g = palette_images[i].getGraphicsContext2D();
-                            //We draw each color
-                            for (int j = 0; j < 4; j++) {
-                                g.setFill(nes.getPpu().getColorFromPalette(i, j));
-                                g.fillRect((j & 1) == 0 ? 0 : palette_images[i].getWidth()/2, (j & 2) == 0 ? 0 : palette_images[i].getHeight()/2, palette_images[i].getWidth()/2, palette_images[i].getHeight()/2);
-                            }
-                            //If this is the selected palette, we highlight it
-                            if (i == selected_palette) {
-                                g.setFill(Color.RED);
-                                g.fillRect(0, 0, palette_images[i].getWidth(),6);
-                                g.fillRect(0, palette_images[i].getHeight() - 6, palette_images[i].getWidth(),6);
-                                g.fillRect(0, 0, 6,palette_images[i].getHeight());
-                                g.fillRect(palette_images[i].getWidth() - 6, 0, 6,palette_images[i].getHeight());
+                            //For each palette
+                            for (int i = 0; i < 8; i++) {
+                                //We get the correct canvas
+                                GraphicsContext g = palette_images[i].getGraphicsContext2D();
+                                //We draw each color
+                                for (int j = 0; j < 4; j++) {
+                                    g.setFill(toColor(snapshot.getARGBFromPalette(i, j)));
+                                    g.fillRect((j & 1) == 0 ? 0 : palette_images[i].getWidth()/2, (j & 2) == 0 ? 0 : palette_images[i].getHeight()/2, palette_images[i].getWidth()/2, palette_images[i].getHeight()/2);
+                                }
+                                //If this is the selected palette, we highlight it
+                                if (i == selected_palette) {
+                                    g.setFill(Color.RED);
+                                    g.fillRect(0, 0, palette_images[i].getWidth(),6);
+                                    g.fillRect(0, palette_images[i].getHeight() - 6, palette_images[i].getWidth(),6);
+                                    g.fillRect(0, 0, 6,palette_images[i].getHeight());
+                                    g.fillRect(palette_images[i].getWidth() - 6, 0, 6,palette_images[i].getHeight());
+                                }
                             }
-                        }
-                        //If the current tab is the OAM one
-                    } else if (oam_tab.isSelected()) {
-                        //We backup the currently selected index and clear the list
-                        int selectedIndex = oam_list.getSelectionModel().getSelectedIndex();
-                        oam_list.getItems().clear();
-                        GraphicsContext g = oam_canvas.getGraphicsContext2D();
-                        GraphicsContext preview = preview_canvas.getGraphicsContext2D();
-                        preview.setFill(Color.GREY);
-                        preview.fillRect(0, 0, preview_canvas.getWidth(), preview_canvas.getHeight());
-                        g.setFill(Color.GREY);
-                        g.fillRect(0, 0, oam_canvas.getWidth(), oam_canvas.getHeight());
-                        //We get the current state of the PPU Control Register
-                        int control = nes.getPpu().cpuRead(0, true);
-                        switch (control & 0x20) {
-                            case 0x00: //If sprite mode is 8x8 px
-                                //For each ObjectAttribute
-                                for (int i = 0; i < 64; i++) {
-                                    //We retrieve the entry
-                                    ObjectAttribute entry = nes.getPpu().getOams()[i];
-                                    //We populate the list
-                                    oam_list.getItems().add(String.format("%02X:", i) + " (" + String.format("%03d", entry.getX()) + ", " + String.format("%03d", entry.getY()) + ") ID: " + String.format("%02X", entry.getId()) + " AT: " + String.format("%02X", entry.getAttribute()));
-                                    //For each row of the sprite
-                                    Tile tile = nes.getPpu().getOamTile8x8(i);
+                        } else if (oam_tab.isSelected()) {
+                            //We backup the currently selected index and clear the list
+                            int selectedIndex = oam_list.getSelectionModel().getSelectedIndex();
+                            oam_list.getItems().clear();
+                            GraphicsContext g = oam_canvas.getGraphicsContext2D();
+                            GraphicsContext preview = preview_canvas.getGraphicsContext2D();
+                            preview.setFill(Color.GREY);
+                            preview.fillRect(0, 0, preview_canvas.getWidth(), preview_canvas.getHeight());
+                            g.setFill(Color.GREY);
+                            g.fillRect(0, 0, oam_canvas.getWidth(), oam_canvas.getHeight());
+                            //We get the state of the PPU Control Register when the snapshot was taken
+                            int control = snapshot.getControl();
+                            switch (control & 0x20) {
+                                case 0x00: //If sprite mode is 8x8 px
+                                    //For each ObjectAttribute
+                                    for (int i = 0; i < 64; i++) {
+                                        //We retrieve the entry
+                                        ObjectAttribute entry = snapshot.getOam(i, oam_entry);
+                                        //We populate the list
+                                        oam_list.getItems().add(String.format("%02X:", i) + " (" + String.format("%03d", entry.getX()) + ", " + String.format("%03d", entry.getY()) + ") ID: " + String.format("%02X", entry.getId()) + " AT: " + String.format("%02X", entry.getAttribute()));
+                                        //For each row of the sprite
+                                        Tile tile = snapshot.getOamTile8x8(i, tile_8x8);
 
-                                    for (int row = 0; row < 8; row++) {
-                                        for (int col = 0; col < 8; col++) {
-                                            g.setFill(tile.colors[col | (row << 3)]);
-                                            g.fillRect(((i & 0x7) << 5) | (col << 2), ((i >> 3) << 5) | (row << 2), 4, 4);
-                                            preview.setFill(tile.colors[col | (row << 3)]);
-                                            preview.fillRect(entry.getX() + col, entry.getY() + row, 1, 1);
+                                        for (int row = 0; row < 8; row++) {
+                                            for (int col = 0; col < 8; col++) {
+                                                g.setFill(toColor(tile.colors[col | (row << 3)]));
+                                                g.fillRect(((i & 0x7) << 5) | (col << 2), ((i >> 3) << 5) | (row << 2), 4, 4);
+                                                preview.setFill(toColor(tile.colors[col | (row << 3)]));
+                                                preview.fillRect(entry.getX() + col, entry.getY() + row, 1, 1);
+                                            }
                                         }
-                                    }
 
-                                    //If the current ObjectAttribute is the selected one, we highlight it
-                                    if (i == selectedIndex) {
-                                        g.setFill(Color.RED);
-                                        preview.setFill(Color.RED);
-                                        int x = (i % 8) * (8*4);
-                                        int y = (i / 8) * (8*4);
-                                        g.fillRect(x, y, 32, 3);
-                                        g.fillRect(x, y + 29, 32,3);
-                                        g.fillRect(x, y, 3, 32);
-                                        g.fillRect(x + 29, y, 3, 32);
-                                        preview.fillRect(entry.getX(), entry.getY(), 8, 1);
-                                        preview.fillRect(entry.getX(), entry.getY() + 7, 8,1);
-                                        preview.fillRect(entry.getX(), entry.getY(), 1, 8);
-                                        preview.fillRect(entry.getX() + 7, entry.getY(), 1, 8);
+                                        //If the current ObjectAttribute is the selected one, we highlight it
+                                        if (i == selectedIndex) {
+                                            g.setFill(Color.RED);
+                                            preview.setFill(Color.RED);
+                                            int x = (i % 8) * (8*4);
+                                            int y = (i / 8) * (8*4);
+                                            g.fillRect(x, y, 32, 3);
+                                            g.fillRect(x, y + 29, 32,3);
+                                            g.fillRect(x, y, 3, 32);
+                                            g.fillRect(x + 29, y, 3, 32);
+                                            preview.fillRect(entry.getX(), entry.getY(), 8, 1);
+                                            preview.fillRect(entry.getX(), entry.getY() + 7, 8,1);
+                                            preview.fillRect(entry.getX(), entry.getY(), 1, 8);
+                                            preview.fillRect(entry.getX() + 7, entry.getY(), 1, 8);
+                                        }
                                     }
-                                }
-                                break;
-                            case 0x20: //If sprite mode is 8x16 px
-                                //The same as 8x8 mode but the nametable is hardcoded as bit 0 of the Attribute
-                                //and we have to check which half of sprite is currently drawn
-                                for (int i = 0; i < 64; i++) {
-                                    ObjectAttribute entry = nes.getPpu().getOams()[i];
-                                    oam_list.getItems().add(String.format("%02X:", i) + " (" + String.format("%03d", entry.getX()) + ", " + String.format("%03d", entry.getY()) + ") ID: " + String.format("%02X", entry.getId()) + " AT: " + String.format("%02X", entry.getAttribute()));
+                                    break;
+                                case 0x20: //If sprite mode is 8x16 px
+                                    //The same as 8x8 mode but the nametable is hardcoded as bit 0 of the Attribute
+                                    //and we have to check which half of sprite is currently drawn
+                                    for (int i = 0; i < 64; i++) {
+                                        ObjectAttribute entry = snapshot.getOam(i, oam_entry);
+                                        oam_list.getItems().add(String.format("%02X:", i) + " (" + String.format("%03d", entry.getX()) + ", " + String.format("%03d", entry.getY()) + ") ID: " + String.format("%02X", entry.getId()) + " AT: " + String.format("%02X", entry.getAttribute()));
 
-                                    Tile tile = nes.getPpu().getOamTile8x16(i);
-                                    for (int row = 0; row < 16; row++) {
-                                        for (int col = 0; col < 8; col++) {
-                                            g.setFill(tile.colors[col | (row << 3)]);
-                                            g.fillRect(((i & 0x7) << 5) | (col << 2), ((i >> 3) << 6) | (row << 2), 4, 4);
-                                            preview.setFill(tile.colors[col | (row << 3)]);
-                                            preview.fillRect(entry.getX() + col, entry.getY() + row, 1, 1);
+                                        Tile tile = snapshot.getOamTile8x16(i, tile_8x16);
+                                        for (int row = 0; row < 16; row++) {
+                                            for (int col = 0; col < 8; col++) {
+                                                g.setFill(toColor(tile.colors[col | (row << 3)]));
+                                                g.fillRect(((i & 0x7) << 5) | (col << 2), ((i >> 3) << 6) | (row << 2), 4, 4);
+                                                preview.setFill(toColor(tile.colors[col | (row << 3)]));
+                                                preview.fillRect(entry.getX() + col, entry.getY() + row, 1, 1);
+                                            }
+                                        }
+                                        if (i == selectedIndex) {
+                                            g.setFill(Color.RED);
+                                            preview.setFill(Color.RED);
+                                            int x = (i % 8) * (8*4);
+                                            int y = (i / 8) * (16 * 4);
+                                            g.fillRect(x, y, 32, 3);
+                                            g.fillRect(x, y + 61, 32,3);
+                                            g.fillRect(x, y, 3, 64);
+                                            g.fillRect(x + 29, y, 3, 64);
+                                            preview.fillRect(entry.getX(), entry.getY(), 8, 1);
+                                            preview.fillRect(entry.getX(), entry.getY() + 15, 8,1);
+                                            preview.fillRect(entry.getX(), entry.getY(), 1, 16);
+                                            preview.fillRect(entry.getX() + 7, entry.getY(), 1, 16);
                                         }
                                     }
-                                    if (i == selectedIndex) {
-                                        g.setFill(Color.RED);
-                                        preview.setFill(Color.RED);
-                                        int x = (i % 8) * (8*4);
-                                        int y = (i / 8) * (16 * 4);
-                                        g.fillRect(x, y, 32, 3);
-                                        g.fillRect(x, y + 61, 32,3);
-                                        g.fillRect(x, y, 3, 64);
-                                        g.fillRect(x + 29, y, 3, 64);
-                                        preview.fillRect(entry.getX(), entry.getY(), 8, 1);
-                                        preview.fillRect(entry.getX(), entry.getY() + 15, 8,1);
-                                        preview.fillRect(entry.getX(), entry.getY(), 1, 16);
-                                        preview.fillRect(entry.getX() + 7, entry.getY(), 1, 16);
-                                    }
-                                }
-                                break;
+                                    break;
+                            }
+                            //We reselect the Object Attribute
+                            oam_list.getSelectionModel().select(selectedIndex);
                         }
-                        //We reselect the Object Attribute
-                        oam_list.getSelectionModel().select(selectedIndex);
                     }
+                    swapSnapshots();
+                    update_pending = false;
                 });
             }
             try {
@@ -418,4 +460,38 @@ public class PPUViewer extends Application implements Initializable {
             }
         }
     }
+
+    /**
+     * Display the last snapshot filled by the PPU and request a new one in the other snapshot
+     * called on the FX thread, so the tooltips never read a snapshot while it is being filled
+     */
+    private void swapSnapshots() {
+        if (pending_snapshot != null && pending_snapshot.isComplete()) {
+            shown_snapshot = pending_snapshot;
+            pending_snapshot = null;
+        }
+        if (pending_snapshot == null) {
+            pending_snapshot = snapshots[0] == shown_snapshot ? snapshots[1] : snapshots[0];
+            nes.getPpu().requestSnapshot(pending_snapshot);
+        }
+    }
+
+    /**
+     * Copy rendered pixels into an image in a single call
+     *
+     * @param dest   the image to fill
+     * @param pixels the pixels packed as 0xAARRGGBB, as many as the image
+     */
+    private static void setPixels(WritableImage dest, int[] pixels) {
+        int width = (int) dest.getWidth();
+        dest.getPixelWriter().setPixels(0, 0, width, (int) dest.getHeight(), PixelFormat.getIntArgbInstance(), pixels, 0, width);
+    }
+
+    /**
+     * @param argb a color packed as 0xAARRGGBB
+     * @return the corresponding Color
+     */
+    private static Color toColor(int argb) {
+        return Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF);
+    }
 }
@@ -0,0 +1,112 @@
+package headless;
+
+import core.NES;
+import core.apu.APU_2A03;
+import core.apu.ResamplingQuality;
+
+/**
+ * This class measures the CPU cost of one second of audio for each ResamplingQuality
+ * The APU is driven alone, without any Cartridge, with the 4 tone channels playing notes changing every frame
+ * The cost of the APU with sound rendering disabled is measured too, the difference is the cost of the synthesis
+ * Usage : AudioBenchmark [seconds]
+ */
+public class AudioBenchmark {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FRAMES_PER_SECOND = 60;
+    private static final int TICKS_PER_FRAME = 89342;
+    private static final int ROUNDS = 3;
+
+    private final int seconds;
+    private final float[] audio_block = new float[4096];
+
+    /**
+     * Create a new benchmark
+     *
+     * @param seconds the number of seconds of audio to produce for each measure
+     */
+    public AudioBenchmark(int seconds) {
+        this.seconds = seconds;
+    }
+
+    /**
+     * Run the measure several times and keep the best one, to leave out the pauses of the JVM
+     *
+     * @param quality   the quality tier to use
+     * @param rendering should the sound be rendered
+     * @return the lowest CPU time, in nanoseconds, taken by one second of audio
+     */
+    public double best(ResamplingQuality quality, boolean rendering) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++)
+            best = Math.min(best, measure(quality, rendering));
+        return best;
+    }
+
+    /**
+     * Produce the audio with the specified settings
+     *
+     * @param quality   the quality tier to use
+     * @param rendering should the sound be rendered
+     * @return the CPU time, in nanoseconds, taken by one second of audio
+     */
+    public double measure(ResamplingQuality quality, boolean rendering) {
+        NES nes = new NES();
+        nes.setSampleFreq(SAMPLE_RATE);
+        nes.enableSoundRendering(rendering);
+        APU_2A03 apu = nes.getApu();
+        apu.setResamplingQuality(quality);
+        apu.startup();
+        apu.cpuWrite(0x4015, 0x0F);
+        apu.cpuWrite(0x4000, 0xBF); // Pulse 1 : 50% duty, constant volume 15
+        apu.cpuWrite(0x4004, 0x7F); // Pulse 2 : 25% duty, constant volume 15
+        apu.cpuWrite(0x4008, 0xFF); // Triangle : linear counter held
+        apu.cpuWrite(0x400C, 0x3F); // Noise : constant volume 15
+
+        long start = System.nanoTime();
+        for (int frame = 0; frame < seconds * FRAMES_PER_SECOND; frame++) {
+            //A new note every frame, the periods and the length counters are reloaded
+            int period = 0x40 + (frame * 37 & 0x3FF);
+            apu.cpuWrite(0x4002, period & 0xFF);
+            apu.cpuWrite(0x4003, period >> 8);
+            apu.cpuWrite(0x4006, (period >> 1) & 0xFF);
+            apu.cpuWrite(0x4007, period >> 9);
+            apu.cpuWrite(0x400A, (period << 1) & 0xFF);
+            apu.cpuWrite(0x400B, (period >> 7) & 0x07);
+            apu.cpuWrite(0x400E, frame & 0x0F);
+            apu.cpuWrite(0x400F, 0x00);
+            for (int tick = 0; tick < TICKS_PER_FRAME; tick++)
+                apu.clock();
+            while (apu.readSamples(audio_block, 0, audio_block.length) == audio_block.length)
+                ; // We only drain the samples
+        }
+        return (System.nanoTime() - start) / (double) seconds;
+    }
+
+    public static void main(String[] args) {
+        int seconds = 10;
+        if (args.length > 1) {
+            System.err.println("Usage : AudioBenchmark [seconds]");
+            System.exit(1);
+        }
+        try {
+            if (args.length == 1)
+                seconds = Integer.parseInt(args[0]);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid duration : " + args[0]);
+            System.exit(1);
+        }
+        AudioBenchmark benchmark = new AudioBenchmark(seconds);
+        //A first pass of every measure to let the JIT compile the APU
+        benchmark.measure(ResamplingQuality.MEDIUM, false);
+        for (ResamplingQuality quality : ResamplingQuality.values())
+            benchmark.measure(quality, true);
+
+        double silent = benchmark.best(ResamplingQuality.MEDIUM, false);
+        System.out.printf("%-8s %8.2f ms of CPU per second of audio%n", "SILENT", silent / 1e6);
+        for (ResamplingQuality quality : ResamplingQuality.values()) {
+            double cost = benchmark.best(quality, true);
+            System.out.printf("%-8s %8.2f ms of CPU per second of audio (%.2f ms for the synthesis)%n", quality, cost / 1e6, (cost - silent) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package headless;
+
+import core.NES;
+import core.cartridge.Cartridge;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.io.EOFException;
+
+/**
+ * This class compares the page tables of the CPU bus to the dispatch chain on a game
+ * The game is run with the idle loops not skipped, then the bus is swept directly through RAM, the registers and Program ROM
+ * Usage : BusBenchmark rom [frames]
+ */
+public class BusBenchmark {
+
+    private static final int ROUNDS = 3;
+    private static final int SWEEPS = 2000;
+
+    private final String rom;
+    private final int frames;
+
+    /**
+     * Create a new benchmark
+     *
+     * @param rom    the path to the ROM
+     * @param frames the number of frames to emulate for each measure
+     */
+    public BusBenchmark(String rom, int frames) {
+        this.rom = rom;
+        this.frames = frames;
+    }
+
+    /**
+     * Create a console running the ROM
+     *
+     * @param page_tables should the page tables be used
+     * @return the console, powered up
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the ROM uses an unsupported Mapper
+     * @throws EOFException               if the ROM is truncated
+     */
+    private NES boot(boolean page_tables) throws InvalidFileException, UnsupportedMapperException, EOFException {
+        NES nes = new NES();
+        nes.setSampleFreq(44100);
+        nes.enableSoundRendering(false);
+        nes.enableIdleLoopSkipping(false);
+        nes.insertCartridge(new Cartridge(rom));
+        nes.enablePageTables(page_tables);
+        nes.startup();
+        return nes;
+    }
+
+    /**
+     * Emulate the frames from power up
+     *
+     * @param page_tables should the page tables be used
+     * @return the number of CPU cycles emulated per second
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the ROM uses an unsupported Mapper
+     * @throws EOFException               if the ROM is truncated
+     */
+    public double measureFrames(boolean page_tables) throws InvalidFileException, UnsupportedMapperException, EOFException {
+        NES nes = boot(page_tables);
+        long start = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++)
+            nes.runFrame();
+        return nes.getCpu().getClockCount() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Read the whole CPU addressable range without side effect and write to every byte of RAM
+     *
+     * @param page_tables should the page tables be used
+     * @return the number of accesses per second
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the ROM uses an unsupported Mapper
+     * @throws EOFException               if the ROM is truncated
+     */
+    public double measureAccesses(boolean page_tables) throws InvalidFileException, UnsupportedMapperException, EOFException {
+        NES nes = boot(page_tables);
+        int sum = 0;
+        long start = System.nanoTime();
+        for (int sweep = 0; sweep < SWEEPS; sweep++) {
+            for (int addr = 0x0000; addr <= 0xFFFF; addr++)
+                sum += nes.cpuRead(addr, true);
+            for (int addr = 0x0000; addr <= 0x07FF; addr++)
+                nes.cpuWrite(addr, sum + addr);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        //The sum is used so the reads can't be removed by the JIT
+        return (sum == 1 ? 0 : (double) SWEEPS * (0x10000 + 0x800)) / seconds;
+    }
+
+    /**
+     * Run both measures several times and keep the best ones, to leave out the pauses of the JVM
+     *
+     * @param page_tables should the page tables be used
+     * @return the highest number of CPU cycles per second, and the highest number of accesses per second
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the ROM uses an unsupported Mapper
+     * @throws EOFException               if the ROM is truncated
+     */
+    public double[] best(boolean page_tables) throws InvalidFileException, UnsupportedMapperException, EOFException {
+        double[] best = new double[2];
+        for (int round = 0; round < ROUNDS; round++) {
+            best[0] = Math.max(best[0], measureFrames(page_tables));
+            best[1] = Math.max(best[1], measureAccesses(page_tables));
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage : BusBenchmark rom [frames]");
+            System.exit(1);
+        }
+        int frames = 3600;
+        try {
+            if (args.length == 2)
+                frames = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid frame count : " + args[1]);
+            System.exit(1);
+        }
+        try {
+            BusBenchmark benchmark = new BusBenchmark(args[0], frames);
+            //A first pass of both modes to let the JIT compile them
+            for (boolean page_tables : new boolean[]{false, true}) {
+                benchmark.measureFrames(page_tables);
+                benchmark.measureAccesses(page_tables);
+            }
+            for (boolean page_tables : new boolean[]{false, true}) {
+                double[] best = benchmark.best(page_tables);
+                System.out.printf("%-15s %8.2f M CPU cycles per second %8.2f M accesses per second%n", page_tables ? "Page tables" : "Dispatch chain", best[0] / 1e6, best[1] / 1e6);
+            }
+        } catch (InvalidFileException | UnsupportedMapperException | EOFException e) {
+            System.err.println("Unable to load " + args[0] + " : " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
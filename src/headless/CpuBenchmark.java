@@ -0,0 +1,100 @@
+package headless;
+
+import core.NES;
+import core.cartridge.Cartridge;
+import core.cpu.CoreType;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.io.EOFException;
+
+/**
+ * This class compares the execution cores of the CPU on a game
+ * The idle loops aren't skipped, so the CPU executes every Instruction of the game
+ * Usage : CpuBenchmark rom [frames]
+ */
+public class CpuBenchmark {
+
+    private static final double CPU_CLOCK_RATE = 5369318.0 / 3;
+    private static final int ROUNDS = 3;
+
+    private final String rom;
+    private final int frames;
+
+    /**
+     * Create a new benchmark
+     *
+     * @param rom    the path to the ROM
+     * @param frames the number of frames to emulate for each measure
+     */
+    public CpuBenchmark(String rom, int frames) {
+        this.rom = rom;
+        this.frames = frames;
+    }
+
+    /**
+     * Run the measure several times and keep the best one, to leave out the pauses of the JVM
+     *
+     * @param core the execution core of the CPU
+     * @return the highest number of CPU cycles emulated per second
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the ROM uses an unsupported Mapper
+     * @throws EOFException               if the ROM is truncated
+     */
+    public double best(CoreType core) throws InvalidFileException, UnsupportedMapperException, EOFException {
+        double best = 0;
+        for (int round = 0; round < ROUNDS; round++)
+            best = Math.max(best, measure(core));
+        return best;
+    }
+
+    /**
+     * Emulate the frames from power up with the specified core
+     *
+     * @param core the execution core of the CPU
+     * @return the number of CPU cycles emulated per second
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the ROM uses an unsupported Mapper
+     * @throws EOFException               if the ROM is truncated
+     */
+    public double measure(CoreType core) throws InvalidFileException, UnsupportedMapperException, EOFException {
+        NES nes = new NES(core);
+        nes.setSampleFreq(44100);
+        nes.enableSoundRendering(false);
+        nes.enableIdleLoopSkipping(false);
+        nes.insertCartridge(new Cartridge(rom));
+        nes.startup();
+        long start = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++)
+            nes.runFrame();
+        return nes.getCpu().getClockCount() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage : CpuBenchmark rom [frames]");
+            System.exit(1);
+        }
+        int frames = 3600;
+        try {
+            if (args.length == 2)
+                frames = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid frame count : " + args[1]);
+            System.exit(1);
+        }
+        try {
+            CpuBenchmark benchmark = new CpuBenchmark(args[0], frames);
+            //A first pass of every core to let the JIT compile them
+            for (CoreType core : CoreType.values())
+                benchmark.measure(core);
+            for (CoreType core : CoreType.values()) {
+                double cycles = benchmark.best(core);
+                System.out.printf("%-8s %8.2f M CPU cycles per second (%.1f x real time)%n", core, cycles / 1e6, cycles / CPU_CLOCK_RATE);
+            }
+        } catch (InvalidFileException | UnsupportedMapperException | EOFException e) {
+            System.err.println("Unable to load " + args[0] + " : " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package headless;
+
+import core.NES;
+import core.cartridge.Cartridge;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * This class runs the emulation core without any window, OpenGL context or audio device
+ * It is meant to measure the raw emulation speed and to run ROMs in automated environments
+ * The audio can be recorded to a WAV file, it is read from the APU one block per frame
+ * Usage : HeadlessRunner rom frames [input_script|-] [wav_output]
+ */
+public class HeadlessRunner implements Runnable {
+
+    private final NES nes;
+    private final int frames;
+    private final InputScript script;
+    private final float[] audio_block = new float[2048];
+
+    private WavRecorder recorder = null;
+    private IOException recording_error = null;
+
+    private long elapsed_time = 0;
+    private int frames_emulated = 0;
+
+    /**
+     * Create a new runner and load the game
+     *
+     * @param rom    the path to the ROM
+     * @param frames the number of frames to emulate
+     * @param script the inputs to feed to the controllers, can be null
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the ROM uses an unsupported Mapper
+     * @throws EOFException               if the ROM is truncated
+     */
+    public HeadlessRunner(String rom, int frames, InputScript script) throws InvalidFileException, UnsupportedMapperException, EOFException {
+        this.frames = frames;
+        this.script = script;
+        nes = new NES();
+        //No audio device is used, so we don't need to mix the channels unless the audio is recorded
+        nes.setSampleFreq(44100);
+        nes.enableSoundRendering(false);
+        nes.insertCartridge(new Cartridge(rom));
+        nes.startup();
+    }
+
+    /**
+     * Emulate the requested number of frames as fast as possible
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++) {
+            if (script != null)
+                script.apply(frame, nes.controller);
+            nes.runFrame();
+            if (recorder != null)
+                recordAudio();
+            frames_emulated++;
+        }
+        elapsed_time = System.nanoTime() - start;
+    }
+
+    /**
+     * Record the audio to a WAV file, the channels are mixed from now on
+     *
+     * @param recorder the recorder to write the samples to
+     */
+    public void setRecorder(WavRecorder recorder) {
+        this.recorder = recorder;
+        nes.enableSoundRendering(recorder != null);
+    }
+
+    /**
+     * Write the samples of the last frame to the recorder
+     * if the file can't be written, the recording stops and the error is kept
+     */
+    private void recordAudio() {
+        try {
+            int count;
+            do {
+                count = nes.readAudio(audio_block, 0, audio_block.length);
+                recorder.write(audio_block, 0, count);
+            } while (count == audio_block.length);
+        } catch (IOException e) {
+            recording_error = e;
+            setRecorder(null);
+        }
+    }
+
+    /**
+     * @return the number of frames emulated per second during the last run
+     */
+    public double getFPS() {
+        return elapsed_time == 0 ? 0 : frames_emulated / (elapsed_time / 1e9);
+    }
+
+    /**
+     * @return the NES driven by the runner
+     */
+    public NES getNes() {
+        return nes;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage : HeadlessRunner rom frames [input_script|-] [wav_output]");
+            System.exit(1);
+        }
+        try {
+            InputScript script = args.length >= 3 && !args[2].equals("-") ? new InputScript(args[2]) : null;
+            HeadlessRunner runner = new HeadlessRunner(args[0], Integer.parseInt(args[1]), script);
+            WavRecorder recorder = args.length == 4 ? new WavRecorder(args[3], 44100) : null;
+            runner.setRecorder(recorder);
+            //The emulation runs on its own thread, the main thread only waits for the result
+            Thread emulation_thread = new Thread(runner, "Emulation");
+            emulation_thread.start();
+            emulation_thread.join();
+            if (recorder != null) {
+                recorder.close();
+                if (runner.recording_error != null)
+                    System.err.println("Audio recording stopped : " + runner.recording_error.getMessage());
+                System.out.printf("%d audio samples recorded to %s%n", recorder.getSamplesWritten(), args[3]);
+            }
+            System.out.printf("%d frames emulated in %.3fs : %.1f FPS (%.2fx real time)%n", runner.frames_emulated, runner.elapsed_time / 1e9, runner.getFPS(), runner.getFPS() / 60.0988);
+            if (runner.frames_emulated > 0)
+                System.out.printf("%.0f CPU cycles per frame skipped in idle loops%n", runner.nes.getTotalIdleCyclesSkipped() / (double) runner.frames_emulated);
+        } catch (InvalidFileException | UnsupportedMapperException | EOFException e) {
+            System.err.println("Unable to load the ROM : " + e.getMessage());
+            System.exit(1);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid frame count : " + args[1]);
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Unable to write the audio recording : " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
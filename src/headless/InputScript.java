@@ -0,0 +1,100 @@
+package headless;
+
+import exceptions.InvalidFileException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a scripted sequence of controller inputs
+ * Each non empty line of the script is formatted as "frame controller1 [controller2]"
+ * where a controller state is a list of buttons joined with '+' (A, B, SELECT, START, UP, DOWN, LEFT, RIGHT) or '-' when nothing is pressed
+ * A state is held until the next line of the same script, lines starting with '#' are ignored
+ * Example : "120 START" then "130 -" then "200 RIGHT+A"
+ */
+public class InputScript {
+
+    private final List<int[]> entries;
+    private int next_entry = 0;
+
+    /**
+     * Load and parse an input script
+     *
+     * @param filename the path to the script
+     * @throws InvalidFileException if the file can't be read or is malformed
+     */
+    public InputScript(String filename) throws InvalidFileException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(filename));
+        } catch (IOException e) {
+            throw new InvalidFileException("Unable to open file \"" + filename + "\"");
+        }
+        entries = new ArrayList<>();
+        int last_frame = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] tokens = line.split("\\s+");
+            if (tokens.length < 2 || tokens.length > 3)
+                throw new InvalidFileException("Invalid input script line " + (i + 1) + " : \"" + line + "\"");
+            int frame;
+            try {
+                frame = Integer.parseInt(tokens[0]);
+            } catch (NumberFormatException e) {
+                throw new InvalidFileException("Invalid frame number at line " + (i + 1) + " : \"" + tokens[0] + "\"");
+            }
+            //Entries must be sorted to be consumed sequentially during the emulation
+            if (frame < last_frame)
+                throw new InvalidFileException("Input script frames must be in ascending order (line " + (i + 1) + ")");
+            last_frame = frame;
+            entries.add(new int[]{frame, parseButtons(tokens[1], i + 1), tokens.length == 3 ? parseButtons(tokens[2], i + 1) : 0x00});
+        }
+    }
+
+    /**
+     * Convert a list of buttons into the controller's 8bit state
+     *
+     * @param buttons the buttons joined with '+', or '-' if none are pressed
+     * @param line    the current line used for error reporting
+     * @return the controller state as expected by the NES
+     * @throws InvalidFileException if a button is unknown
+     */
+    private static int parseButtons(String buttons, int line) throws InvalidFileException {
+        int state = 0x00;
+        if (buttons.equals("-"))
+            return state;
+        for (String button : buttons.toUpperCase().split("\\+")) {
+            state |= switch (button) {
+                case "A" -> 0x80;
+                case "B" -> 0x40;
+                case "SELECT" -> 0x20;
+                case "START" -> 0x10;
+                case "UP" -> 0x08;
+                case "DOWN" -> 0x04;
+                case "LEFT" -> 0x02;
+                case "RIGHT" -> 0x01;
+                default -> throw new InvalidFileException("Unknown button \"" + button + "\" at line " + line);
+            };
+        }
+        return state;
+    }
+
+    /**
+     * Apply all the entries scheduled up to the specified frame to the controllers
+     *
+     * @param frame      the frame about to be emulated
+     * @param controller the controllers of the NES
+     */
+    public void apply(int frame, int[] controller) {
+        while (next_entry < entries.size() && entries.get(next_entry)[0] <= frame) {
+            int[] entry = entries.get(next_entry++);
+            controller[0] = entry[1];
+            controller[1] = entry[2];
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package headless;
+
+import core.NES;
+import core.cartridge.Cartridge;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.io.EOFException;
+
+/**
+ * This class compares the rendering of whole scanlines to the dot by dot path of the PPU on a game
+ * Every frame is composed, the idle loops are skipped so the PPU takes most of the time
+ * The accesses of the CPU to the registers of the PPU are then measured alone
+ * Usage : PpuBenchmark rom [frames]
+ */
+public class PpuBenchmark {
+
+    private static final double FRAME_RATE = 60.0988;
+    private static final int ROUNDS = 3;
+    private static final int REGISTER_LOOPS = 2000000;
+
+    private final String rom;
+    private final int frames;
+
+    /**
+     * Create a new benchmark
+     *
+     * @param rom    the path to the ROM
+     * @param frames the number of frames to emulate for each measure
+     */
+    public PpuBenchmark(String rom, int frames) {
+        this.rom = rom;
+        this.frames = frames;
+    }
+
+    /**
+     * Run the measure several times and keep the best one, to leave out the pauses of the JVM
+     *
+     * @param scanline_rendering should the visible scanlines be rendered at once
+     * @return the highest number of frames emulated per second
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the ROM uses an unsupported Mapper
+     * @throws EOFException               if the ROM is truncated
+     */
+    public double best(boolean scanline_rendering) throws InvalidFileException, UnsupportedMapperException, EOFException {
+        double best = 0;
+        for (int round = 0; round < ROUNDS; round++)
+            best = Math.max(best, measure(scanline_rendering));
+        return best;
+    }
+
+    /**
+     * Emulate the frames from power up with the specified rendering path
+     *
+     * @param scanline_rendering should the visible scanlines be rendered at once
+     * @return the number of frames emulated per second
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the ROM uses an unsupported Mapper
+     * @throws EOFException               if the ROM is truncated
+     */
+    public double measure(boolean scanline_rendering) throws InvalidFileException, UnsupportedMapperException, EOFException {
+        NES nes = new NES();
+        nes.setSampleFreq(44100);
+        nes.enableSoundRendering(false);
+        nes.insertCartridge(new Cartridge(rom));
+        nes.getPpu().enableScanlineRendering(scanline_rendering);
+        nes.startup();
+        long start = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++)
+            nes.runFrame();
+        return frames / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Access the registers of the PPU the way a game updates them during the vertical blank
+     * the PPU isn't clocked, so only the accesses themselves are measured
+     *
+     * @return the number of register accesses per second
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the ROM uses an unsupported Mapper
+     * @throws EOFException               if the ROM is truncated
+     */
+    public double measureRegisters() throws InvalidFileException, UnsupportedMapperException, EOFException {
+        NES nes = new NES();
+        nes.setSampleFreq(44100);
+        nes.enableSoundRendering(false);
+        nes.insertCartridge(new Cartridge(rom));
+        nes.startup();
+        int sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < REGISTER_LOOPS; i++) {
+            nes.cpuWrite(0x2000, i & 0x3F); // Control, the NMI stays disabled
+            nes.cpuWrite(0x2001, i >> 6);
+            sum += nes.cpuRead(0x2002, false);
+            nes.cpuWrite(0x2005, i);
+            nes.cpuWrite(0x2005, i >> 8);
+            nes.cpuWrite(0x2006, 0x20 | (i & 0x1F));
+            nes.cpuWrite(0x2006, i >> 5);
+            nes.cpuWrite(0x2007, i);
+            sum += nes.cpuRead(0x2007, false);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        //The sum is used so the reads can't be removed by the JIT
+        return (sum == 1 ? 0 : REGISTER_LOOPS * 9.0) / seconds;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage : PpuBenchmark rom [frames]");
+            System.exit(1);
+        }
+        int frames = 3600;
+        try {
+            if (args.length == 2)
+                frames = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid frame count : " + args[1]);
+            System.exit(1);
+        }
+        try {
+            PpuBenchmark benchmark = new PpuBenchmark(args[0], frames);
+            //A first pass of both paths to let the JIT compile them
+            benchmark.measure(true);
+            benchmark.measure(false);
+            benchmark.measureRegisters();
+            double dots = benchmark.best(false);
+            double scanlines = benchmark.best(true);
+            System.out.printf("Dot by dot %8.1f frames per second (%.1f x real time)%n", dots, dots / FRAME_RATE);
+            System.out.printf("Scanlines  %8.1f frames per second (%.1f x real time), %.2f x the dot by dot path%n", scanlines, scanlines / FRAME_RATE, scanlines / dots);
+            double registers = 0;
+            for (int round = 0; round < ROUNDS; round++)
+                registers = Math.max(registers, benchmark.measureRegisters());
+            System.out.printf("Registers  %8.2f M accesses per second%n", registers / 1e6);
+        } catch (InvalidFileException | UnsupportedMapperException | EOFException e) {
+            System.err.println("Unable to load " + args[0] + " : " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
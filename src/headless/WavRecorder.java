@@ -0,0 +1,91 @@
+package headless;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class records blocks of audio samples to a mono 16 bits PCM WAV file
+ * The sizes of the header are written when the recorder is closed
+ */
+public class WavRecorder implements AutoCloseable {
+
+    private static final int HEADER_SIZE = 44;
+
+    private final RandomAccessFile file;
+    private final int sample_rate;
+    private ByteBuffer block_bytes;
+    private long samples_written = 0;
+
+    /**
+     * Create the WAV file, an existing file is overwritten
+     *
+     * @param filename    the path of the file to create
+     * @param sample_rate the number of samples per second
+     * @throws IOException if the file can't be created
+     */
+    public WavRecorder(String filename, int sample_rate) throws IOException {
+        this.sample_rate = sample_rate;
+        file = new RandomAccessFile(filename, "rw");
+        file.setLength(0);
+        file.write(header());
+        block_bytes = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Append a block of samples to the file
+     *
+     * @param samples the samples, between -1 and 1
+     * @param offset  the index of the first sample to write
+     * @param length  the number of samples to write
+     * @throws IOException if the file can't be written
+     */
+    public void write(float[] samples, int offset, int length) throws IOException {
+        if (block_bytes.capacity() < length * 2)
+            block_bytes = ByteBuffer.allocate(length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        block_bytes.clear();
+        for (int i = offset; i < offset + length; i++)
+            block_bytes.putShort((short) (Math.max(-1f, Math.min(1f, samples[i])) * Short.MAX_VALUE));
+        file.write(block_bytes.array(), 0, length * 2);
+        samples_written += length;
+    }
+
+    /**
+     * @return the number of samples written so far
+     */
+    public long getSamplesWritten() {
+        return samples_written;
+    }
+
+    /**
+     * Write the final sizes to the header and close the file
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        file.seek(0);
+        file.write(header());
+        file.close();
+    }
+
+    /**
+     * @return the header of the file, using the number of samples written so far
+     */
+    private byte[] header() {
+        int data_size = (int) Math.min(samples_written * 2, Integer.MAX_VALUE - HEADER_SIZE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'}).putInt(HEADER_SIZE - 8 + data_size);
+        header.put(new byte[]{'W', 'A', 'V', 'E'});
+        header.put(new byte[]{'f', 'm', 't', ' '}).putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) 1); // Mono
+        header.putInt(sample_rate);
+        header.putInt(sample_rate * 2); // Bytes per second
+        header.putShort((short) 2); // Bytes per frame
+        header.putShort((short) 16); // Bits per sample
+        header.put(new byte[]{'d', 'a', 't', 'a'}).putInt(data_size);
+        return header.array();
+    }
+}
@@ -0,0 +1,125 @@
+package core;
+
+import core.cpu.CoreType;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class checks that the memory accesses of the CPU and the PPU don't allocate anything on the heap
+ * The allocations are counted for the current thread by the ThreadMXBean of HotSpot
+ * The pom runs this class alone in its own surefire execution, limited to C1 so escape analysis can't hide an allocation
+ */
+public class BusAllocationTest {
+
+    private static final int WARMUP_FRAMES = 120;
+    private static final int MEASURED_FRAMES = 60;
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * A program hammering every kind of address: RAM, Program ROM, the PPU registers (including VRAM through 0x2007),
+     * the APU, the controllers and the OAM DMA, with the rendering and the NMI enabled
+     */
+    private static TestRom busProgram() {
+        TestRom rom = new TestRom();
+        rom.code(0x8000,
+                0x78,                   // SEI
+                0xD8,                   // CLD
+                0xA2, 0xFF,             // LDX #$FF
+                0x9A,                   // TXS
+                0xA9, 0x1E,             // LDA #$1E
+                0x8D, 0x01, 0x20,       // STA $2001 : background and sprites
+                0xA9, 0x80,             // LDA #$80
+                0x8D, 0x00, 0x20,       // STA $2000 : NMI enabled
+                //loop ($800F)
+                0xAD, 0x02, 0x20,       // LDA $2002
+                0xA9, 0x23,             // LDA #$23
+                0x8D, 0x06, 0x20,       // STA $2006
+                0x8E, 0x06, 0x20,       // STX $2006
+                0xAD, 0x07, 0x20,       // LDA $2007
+                0x8D, 0x07, 0x20,       // STA $2007
+                0xBD, 0x00, 0x03,       // LDA $0300,X
+                0x9D, 0x00, 0x04,       // STA $0400,X
+                0xBD, 0x00, 0x90,       // LDA $9000,X
+                0x95, 0x10,             // STA $10,X
+                0xA9, 0x0F,             // LDA #$0F
+                0x8D, 0x15, 0x40,       // STA $4015
+                0xAD, 0x15, 0x40,       // LDA $4015
+                0xA9, 0x01,             // LDA #$01
+                0x8D, 0x16, 0x40,       // STA $4016
+                0x4A,                   // LSR A
+                0x8D, 0x16, 0x40,       // STA $4016
+                0xAD, 0x16, 0x40,       // LDA $4016
+                0xE8,                   // INX
+                0xD0, 0x05,             // BNE skip
+                0xA9, 0x02,             // LDA #$02
+                0x8D, 0x14, 0x40,       // STA $4014 : OAM DMA once every 256 iterations
+                //skip
+                0x4C, 0x0F, 0x80        // JMP loop
+        );
+        rom.code(0x8100, 0x40); // NMI : RTI
+        rom.vectors(0x8100, 0x8000, 0x8100);
+        return rom;
+    }
+
+    /**
+     * Measure the bytes allocated by the current thread while running a task
+     * the cost of the measure itself is removed
+     */
+    private long allocatedBytes(Runnable task) {
+        long id = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(id);
+        long overhead = threads.getThreadAllocatedBytes(id) - start;
+        start = threads.getThreadAllocatedBytes(id);
+        task.run();
+        return threads.getThreadAllocatedBytes(id) - start - overhead;
+    }
+
+    /**
+     * Whole frames, with both execution cores, in per cycle mode and with instruction stepping, don't allocate
+     */
+    @Test
+    public void framesDontAllocate() throws Exception {
+        assertTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        for (CoreType core : CoreType.values()) {
+            for (boolean stepping : new boolean[]{true, false}) {
+                NES nes = busProgram().boot(core);
+                nes.enableInstructionStepping(stepping);
+                for (int frame = 0; frame < WARMUP_FRAMES; frame++)
+                    nes.runFrame();
+                long allocated = allocatedBytes(() -> {
+                    for (int frame = 0; frame < MEASURED_FRAMES; frame++)
+                        nes.runFrame();
+                });
+                assertEquals(0, allocated / MEASURED_FRAMES, core + (stepping ? " stepping" : " per cycle") + " bytes allocated per frame");
+            }
+        }
+    }
+
+    /**
+     * Direct accesses to the whole CPU addressable range don't allocate
+     */
+    @Test
+    public void busAccessesDontAllocate() throws Exception {
+        threads.setThreadAllocatedMemoryEnabled(true);
+        NES nes = busProgram().boot(CoreType.SWITCH);
+        Runnable accesses = () -> {
+            for (int addr = 0x0000; addr <= 0xFFFF; addr++) {
+                nes.cpuRead(addr, false);
+                nes.cpuRead(addr, true);
+                //A write to the Program ROM is a Mapper register write, and 0x4014 would start a DMA
+                if (addr < 0x4020 && addr != 0x4014)
+                    nes.cpuWrite(addr, addr);
+            }
+        };
+        for (int i = 0; i < 20; i++)
+            accesses.run();
+        long allocated = allocatedBytes(accesses);
+        assertEquals(0, allocated);
+    }
+}
@@ -0,0 +1,131 @@
+package core;
+
+import core.cpu.CoreType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class checks that an IRQ held while the CPU ignores it doesn't stop the main loop
+ * and that the CPU takes it as soon as its I flag is cleared, by CLI, PLP or RTI
+ */
+public class EventLatchTest {
+
+    private static final int FRAMES = 10;
+
+    /**
+     * A program waiting with the IRQs disabled until the frame IRQ has been raised, then clearing its I flag
+     * The IRQ handler counts the IRQs in 0x0010 and copies 0x0011 to 0x0012, 0x0011 is set once the I flag is cleared
+     *
+     * @param unmask the instructions clearing the I flag, they continue at 0x8040
+     * @return the image
+     */
+    private static TestRom unmaskProgram(int... unmask) {
+        TestRom rom = new TestRom();
+        rom.code(0x8000,
+                0x78,                   // SEI
+                0xD8,                   // CLD
+                0xA2, 0xFF,             // LDX #$FF
+                0x9A,                   // TXS
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x00, 0x20,       // STA $2000
+                0xA0, 0x1E,             // LDY #$1E
+                //outer ($800C)
+                0xA2, 0x00,             // LDX #$00
+                //inner ($800E)
+                0xCA,                   // DEX
+                0xD0, 0xFD,             // BNE inner
+                0x88,                   // DEY
+                0xD0, 0xF8              // BNE outer : 38400 cycles, the frame IRQ has been raised
+        );
+        rom.code(0x8014, unmask);
+        rom.code(0x8040,
+                0xA9, 0x01,             // LDA #$01
+                0x85, 0x11,             // STA $11
+                //idle ($8044)
+                0x4C, 0x44, 0x80        // JMP idle
+        );
+        rom.code(0x8100,
+                0xE6, 0x10,             // INC $10
+                0xA5, 0x11,             // LDA $11
+                0x85, 0x12,             // STA $12
+                0xAD, 0x15, 0x40,       // LDA $4015 : acknowledge the frame IRQ
+                0x40                    // RTI
+        );
+        rom.vectors(0x8000, 0x8000, 0x8100);
+        return rom;
+    }
+
+    /**
+     * Run the program in both modes and check that the IRQ is taken right after the I flag is cleared
+     *
+     * @param rom     the program to run
+     * @param program the description of the program
+     */
+    private static void assertIrqTaken(TestRom rom, String program) throws Exception {
+        for (boolean stepping : new boolean[]{false, true}) {
+            NES nes = rom.boot(CoreType.SWITCH);
+            nes.enableInstructionStepping(stepping);
+            for (int frame = 0; frame < FRAMES; frame++)
+                nes.runFrame();
+            String context = program + (stepping ? " stepping" : " per cycle");
+            assertTrue(nes.cpuRead(0x0010, true) > 0, context + " took no IRQ");
+            assertEquals(0, nes.cpuRead(0x0012, true), context + " took the IRQ late");
+            assertEquals(1, nes.cpuRead(0x0011, true), context + " didn't return from the IRQ");
+        }
+    }
+
+    @Test
+    public void cliUnmasksTheIrq() throws Exception {
+        assertIrqTaken(unmaskProgram(
+                0x58,                   // CLI
+                0x4C, 0x40, 0x80        // JMP $8040
+        ), "CLI");
+    }
+
+    @Test
+    public void plpUnmasksTheIrq() throws Exception {
+        assertIrqTaken(unmaskProgram(
+                0xA9, 0x00,             // LDA #$00
+                0x48,                   // PHA
+                0x28,                   // PLP
+                0x4C, 0x40, 0x80        // JMP $8040
+        ), "PLP");
+    }
+
+    @Test
+    public void rtiUnmasksTheIrq() throws Exception {
+        assertIrqTaken(unmaskProgram(
+                0xA9, 0x80,             // LDA #$80
+                0x48,                   // PHA
+                0xA9, 0x40,             // LDA #$40
+                0x48,                   // PHA
+                0xA9, 0x00,             // LDA #$00
+                0x48,                   // PHA
+                0x40                    // RTI : to $8040
+        ), "RTI");
+    }
+
+    /**
+     * The frame IRQ of a game that never writes to 0x4017 and keeps the IRQs disabled
+     * must not prevent the idle loop from being skipped
+     */
+    @Test
+    public void heldIrqDoesntStopIdleLoopSkipping() throws Exception {
+        TestRom rom = new TestRom();
+        rom.code(0x8000,
+                0x78,                   // SEI
+                //idle ($8001)
+                0x4C, 0x01, 0x80        // JMP idle
+        );
+        NES nes = rom.boot(CoreType.SWITCH);
+        nes.enableInstructionStepping(true);
+        for (int frame = 0; frame < FRAMES; frame++) {
+            nes.runFrame();
+            if (frame > 1) // The frame IRQ is raised during the second frame
+                assertTrue(nes.getIdleCyclesSkippedLastFrame() > 0, "No idle cycle skipped in frame " + frame);
+        }
+        assertTrue(nes.getApu().irq(), "The frame IRQ isn't held");
+    }
+}
@@ -0,0 +1,150 @@
+package core;
+
+import core.cpu.CoreType;
+import core.ppu.ScanlineRenderingTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class checks that skipping the idle loops produces the same results as running every iteration
+ * Two consoles run the same program, one skipping the idle loops and one not, and are compared after every frame
+ */
+public class IdleLoopSkippingTest {
+
+    private static final int FRAMES = 60;
+
+    /**
+     * A program rendering a scrolling background while waiting for the NMI, the NMI handler scrolls,
+     * changes the backdrop color and runs an OAM DMA, the IRQ handler counts the frame IRQs in 0x0031
+     *
+     * @param frame_irq should the frame IRQ be enabled
+     * @param poll_ram  should the main loop wait for the NMI handler to set 0x0020 instead of being a JMP to itself
+     * @return the image
+     */
+    private static TestRom waitProgram(boolean frame_irq, boolean poll_ram) {
+        TestRom rom = new TestRom();
+        byte[] patterns = new byte[0x2000];
+        new Random(0).nextBytes(patterns);
+        rom.chr(0x0000, patterns);
+        rom.code(0x8000,
+                0x78,                   // SEI
+                0xD8,                   // CLD
+                0xA2, 0xFF,             // LDX #$FF
+                0x9A,                   // TXS
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x00, 0x20,       // STA $2000
+                0x8D, 0x01, 0x20,       // STA $2001
+                //vblank ($800D)
+                0x2C, 0x02, 0x20,       // BIT $2002
+                0x10, 0xFB,             // BPL vblank
+                0xA9, 0x1E,             // LDA #$1E
+                0x8D, 0x01, 0x20,       // STA $2001 : background and sprites
+                0xA9, frame_irq ? 0x00 : 0x40, // LDA #$00 or #$40
+                0x8D, 0x17, 0x40,       // STA $4017 : 4-step sequence, frame IRQ enabled or inhibited
+                0xA9, 0x80,             // LDA #$80
+                0x8D, 0x00, 0x20,       // STA $2000 : NMI
+                0x58                    // CLI
+        );
+        if (poll_ram)
+            rom.code(0x8022,
+                    //wait ($8022)
+                    0xA5, 0x20,         // LDA $20
+                    0xF0, 0xFC,         // BEQ wait
+                    0xA9, 0x00,         // LDA #$00
+                    0x85, 0x20,         // STA $20
+                    0xE6, 0x21,         // INC $21
+                    0x4C, 0x22, 0x80    // JMP wait
+            );
+        else
+            rom.code(0x8022,
+                    0x4C, 0x22, 0x80    // JMP *
+            );
+        rom.code(0x8100,
+                0x85, 0x06,             // STA $06
+                0xE6, 0x30,             // INC $30
+                0xAD, 0x02, 0x20,       // LDA $2002 : reset the address latch
+                0xA9, 0x3F,             // LDA #$3F
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA5, 0x30,             // LDA $30
+                0x29, 0x3F,             // AND #$3F
+                0x8D, 0x07, 0x20,       // STA $2007 : backdrop color
+                0xA9, 0x80,             // LDA #$80
+                0x8D, 0x00, 0x20,       // STA $2000 : first nametable
+                0xA5, 0x30,             // LDA $30
+                0x8D, 0x05, 0x20,       // STA $2005
+                0x8D, 0x05, 0x20,       // STA $2005
+                0xA9, 0x02,             // LDA #$02
+                0x8D, 0x14, 0x40,       // STA $4014 : OAM DMA
+                0xA9, 0x01,             // LDA #$01
+                0x85, 0x20,             // STA $20
+                0x68,                   // PLA
+                0x29, 0xFB,             // AND #$FB : return with the IRQs enabled
+                0x48,                   // PHA
+                0xA5, 0x06,             // LDA $06
+                0x40                    // RTI
+        );
+        rom.code(0x8200,
+                0x85, 0x04,             // STA $04
+                0xAD, 0x15, 0x40,       // LDA $4015 : acknowledge the frame IRQ
+                0xE6, 0x31,             // INC $31
+                0x68,                   // PLA
+                0x29, 0xFB,             // AND #$FB : return with the IRQs enabled
+                0x48,                   // PHA
+                0xA5, 0x04,             // LDA $04
+                0x40                    // RTI
+        );
+        rom.vectors(0x8100, 0x8000, 0x8200);
+        return rom;
+    }
+
+    /**
+     * Run a program with and without the idle loop skipping and compare the consoles after every frame
+     *
+     * @param rom     the program to run
+     * @param program the description of the program
+     * @return the number of CPU cycles skipped
+     */
+    private static long compare(TestRom rom, String program) throws Exception {
+        NES running = rom.boot(CoreType.SWITCH);
+        NES skipping = rom.boot(CoreType.SWITCH);
+        running.enableInstructionStepping(true);
+        skipping.enableInstructionStepping(true);
+        running.enableIdleLoopSkipping(false);
+        skipping.enableIdleLoopSkipping(true);
+        for (int frame = 0; frame < FRAMES; frame++) {
+            running.runFrame();
+            skipping.runFrame();
+            InstructionSteppingTest.assertSameState(running, skipping, program + ", frame " + frame);
+        }
+        return skipping.getTotalIdleCyclesSkipped();
+    }
+
+    /**
+     * The loops waiting for the NMI are skipped while the PPU renders, up to the NMI or the frame IRQ
+     */
+    @Test
+    public void waitLoopsMatchTheIterations() throws Exception {
+        for (boolean frame_irq : new boolean[]{false, true}) {
+            for (boolean poll_ram : new boolean[]{false, true}) {
+                String program = (poll_ram ? "RAM polling" : "JMP *") + (frame_irq ? " with the frame IRQ" : "");
+                long skipped = compare(waitProgram(frame_irq, poll_ram), program);
+                //Most of each frame is spent waiting for the NMI
+                assertTrue(skipped > FRAMES * 20000L, program + " only skipped " + skipped + " cycles");
+            }
+        }
+    }
+
+    /**
+     * The loops polling the Status Register for the sprite zero hit and the vertical blank see the same flags
+     */
+    @Test
+    public void statusPollingMatchesTheIterations() throws Exception {
+        for (long seed = 0; seed < 2; seed++)
+            compare(ScanlineRenderingTest.goldenProgram(seed, seed == 1), "Golden seed " + seed);
+    }
+}
@@ -0,0 +1,200 @@
+package core;
+
+import core.cpu.CPU_6502;
+import core.cpu.CoreDifferentialTest;
+import core.cpu.CoreType;
+import core.ppu.Frame;
+import core.ppu.ScanlineRenderingTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class checks that running the CPU by whole instructions, with the PPU and the APU caught up afterwards,
+ * produces the same results as interleaving the 3 components every CPU cycle
+ * Two consoles run the same program, one in each mode, and are compared after every frame
+ */
+public class InstructionSteppingTest {
+
+    private static final int FRAMES = 60;
+
+    /**
+     * A program interrupted by everything the main loop has to handle at an exact cycle:
+     * the NMI, the frame IRQ of the APU, the IRQ of the DMC, the OAM DMA and the stalls of the DMC sample fetches
+     * Each interrupt handler stores the counter of the main loop (0x0000) in its own log, the IRQ handler also
+     * stores 0x4015 to tell the sources apart, so an interrupt taken one instruction later changes the logs
+     *
+     * @param idle should the main loop be a JMP to itself instead of a counter
+     * @return the image
+     */
+    private static TestRom interruptProgram(boolean idle) {
+        TestRom rom = new TestRom();
+        rom.code(0x8000,
+                0x78,                   // SEI
+                0xD8,                   // CLD
+                0xA2, 0xFF,             // LDX #$FF
+                0x9A,                   // TXS
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x00, 0x20,       // STA $2000
+                0x8D, 0x01, 0x20,       // STA $2001
+                //vblank ($800D)
+                0x2C, 0x02, 0x20,       // BIT $2002
+                0x10, 0xFB,             // BPL vblank
+                0xA9, 0x1E,             // LDA #$1E
+                0x8D, 0x01, 0x20,       // STA $2001 : background and sprites
+                0xA9, 0x8F,             // LDA #$8F
+                0x8D, 0x10, 0x40,       // STA $4010 : DMC IRQ, fastest rate
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x12, 0x40,       // STA $4012 : sample at $C000
+                0xA9, 0x04,             // LDA #$04
+                0x8D, 0x13, 0x40,       // STA $4013 : 65 bytes
+                0xA9, 0x10,             // LDA #$10
+                0x8D, 0x15, 0x40,       // STA $4015 : start the sample
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x17, 0x40,       // STA $4017 : 4-step sequence, frame IRQ
+                0xA9, 0x80,             // LDA #$80
+                0x8D, 0x00, 0x20,       // STA $2000 : NMI
+                0x58                    // CLI
+        );
+        if (idle)
+            rom.code(0x8036,
+                    0x4C, 0x36, 0x80    // JMP *
+            );
+        else
+            rom.code(0x8036,
+                    //loop ($8036)
+                    0xE6, 0x00,         // INC $00
+                    0xD0, 0xFC,         // BNE loop
+                    0xE6, 0x01,         // INC $01
+                    0x4C, 0x36, 0x80    // JMP loop
+            );
+        rom.code(0x8100,
+                0x85, 0x04,             // STA $04
+                0x86, 0x05,             // STX $05
+                0xA6, 0x02,             // LDX $02
+                0xA5, 0x00,             // LDA $00
+                0x9D, 0x00, 0x03,       // STA $0300,X
+                0xAD, 0x15, 0x40,       // LDA $4015 : acknowledge the frame IRQ
+                0x9D, 0x00, 0x04,       // STA $0400,X
+                0xE8,                   // INX
+                0x86, 0x02,             // STX $02
+                0xA9, 0x10,             // LDA #$10
+                0x8D, 0x15, 0x40,       // STA $4015 : acknowledge the DMC IRQ and restart the sample
+                0x68,                   // PLA
+                0x29, 0xFB,             // AND #$FB : return with the IRQs enabled
+                0x48,                   // PHA
+                0xA5, 0x04,             // LDA $04
+                0xA6, 0x05,             // LDX $05
+                0x40                    // RTI
+        );
+        rom.code(0x8200,
+                0x85, 0x06,             // STA $06
+                0x86, 0x07,             // STX $07
+                0xA6, 0x03,             // LDX $03
+                0xA5, 0x00,             // LDA $00
+                0x9D, 0x00, 0x05,       // STA $0500,X
+                0xE8,                   // INX
+                0x86, 0x03,             // STX $03
+                0xA9, 0x05,             // LDA #$05
+                0x8D, 0x14, 0x40,       // STA $4014 : OAM DMA from the log
+                0x68,                   // PLA
+                0x29, 0xFB,             // AND #$FB : return with the IRQs enabled
+                0x48,                   // PHA
+                0xA5, 0x06,             // LDA $06
+                0xA6, 0x07,             // LDX $07
+                0x40                    // RTI
+        );
+        rom.vectors(0x8200, 0x8000, 0x8100);
+        return rom;
+    }
+
+    /**
+     * Compare the state of the 2 consoles and the frame they have just completed
+     *
+     * @param reference the console run the reference way
+     * @param tested    the console run the way under test
+     * @param context   the description of the moment of the comparison
+     */
+    static void assertSameState(NES reference, NES tested, String context) {
+        CPU_6502 expected = reference.getCpu();
+        CPU_6502 actual = tested.getCpu();
+        assertEquals(expected.getProgramCounter(), actual.getProgramCounter(), context + " PC");
+        assertEquals(expected.getAccumulator(), actual.getAccumulator(), context + " A");
+        assertEquals(expected.getXRegister(), actual.getXRegister(), context + " X");
+        assertEquals(expected.getYRegister(), actual.getYRegister(), context + " Y");
+        assertEquals(expected.getStackPointer(), actual.getStackPointer(), context + " SP");
+        assertEquals(expected.getStatus(), actual.getStatus(), context + " P");
+        assertEquals(expected.getClockCount(), actual.getClockCount(), context + " cycles");
+        for (int addr = 0x0000; addr < 0x0800; addr++)
+            assertEquals(reference.cpuRead(addr, true), tested.cpuRead(addr, true), context + String.format(" RAM $%04X", addr));
+        Frame expected_frame = reference.getPpu().getFrameMailbox().acquire();
+        Frame actual_frame = tested.getPpu().getFrameMailbox().acquire();
+        assertNotNull(expected_frame, context + " frame");
+        assertNotNull(actual_frame, context + " frame");
+        assertEquals(expected_frame.getNumber(), actual_frame.getNumber(), context + " frame number");
+        assertArrayEquals(expected_frame.pixels, actual_frame.pixels, context + " pixels");
+    }
+
+    /**
+     * Run a program in both modes and compare the consoles after every frame
+     *
+     * @param rom     the program to run
+     * @param program the description of the program
+     */
+    private static void compare(TestRom rom, String program) throws Exception {
+        NES cycles = rom.boot(CoreType.SWITCH);
+        NES stepping = rom.boot(CoreType.SWITCH);
+        cycles.enableInstructionStepping(false);
+        stepping.enableInstructionStepping(true);
+        for (int frame = 0; frame < FRAMES; frame++) {
+            cycles.runFrame();
+            stepping.runFrame();
+            assertSameState(cycles, stepping, program + ", frame " + frame);
+        }
+    }
+
+    /**
+     * The NMI, the IRQs, the DMA and the DMC stalls happen at the same cycle in both modes
+     */
+    @Test
+    public void interruptsMatchThePerCycleMode() throws Exception {
+        for (boolean idle : new boolean[]{false, true}) {
+            String program = idle ? "Idle interrupts" : "Interrupts";
+            compare(interruptProgram(idle), program);
+            //The program must have been interrupted by every source
+            NES nes = interruptProgram(idle).boot(CoreType.SWITCH);
+            for (int frame = 0; frame < FRAMES; frame++)
+                nes.runFrame();
+            assertTrue(nes.cpuRead(0x0003, true) > 0, program + " took no NMI");
+            boolean frame_irq = false;
+            boolean dmc_irq = false;
+            for (int i = 0; i < nes.cpuRead(0x0002, true); i++) {
+                frame_irq |= (nes.cpuRead(0x0400 + i, true) & 0x40) != 0;
+                dmc_irq |= (nes.cpuRead(0x0400 + i, true) & 0x80) != 0;
+            }
+            assertTrue(frame_irq, program + " took no frame IRQ");
+            assertTrue(dmc_irq, program + " took no DMC IRQ");
+        }
+    }
+
+    /**
+     * The sprite zero polling and the mid frame writes of the golden programs see the same PPU state in both modes
+     */
+    @Test
+    public void goldenProgramsMatchThePerCycleMode() throws Exception {
+        for (long seed = 0; seed < 2; seed++)
+            compare(ScanlineRenderingTest.goldenProgram(seed, seed == 1), "Golden seed " + seed);
+    }
+
+    /**
+     * Random programs write random values to every register, including the DMA, the DMC and the frame counter
+     */
+    @Test
+    public void randomProgramsMatchThePerCycleMode() throws Exception {
+        for (long seed = 0; seed < 8; seed++)
+            compare(CoreDifferentialTest.randomProgram(seed), "Random seed " + seed);
+    }
+}
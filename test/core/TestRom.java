@@ -0,0 +1,151 @@
+package core;
+
+import core.cartridge.Cartridge;
+import core.cpu.CoreType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * This class builds the NROM images (Mapper 000, 32KB of Program ROM, 8KB of Character ROM or RAM) used by the tests
+ * The programs are assembled by hand into the Program ROM, the vectors point to 0x8000 by default
+ * Mapper 000 lets the CPU write to its Program ROM, which the tests use to run self modifying code
+ */
+public class TestRom {
+
+    private final byte[] prg_memory = new byte[0x8000];
+    private final byte[] chr_memory = new byte[0x2000];
+    private boolean vertical_mirroring = false;
+    private boolean chr_ram = false;
+
+    /**
+     * Create an empty image, the 3 vectors point to 0x8000
+     */
+    public TestRom() {
+        vectors(0x8000, 0x8000, 0x8000);
+    }
+
+    /**
+     * Copy bytes to the Program ROM
+     *
+     * @param addr  the CPU address of the first byte (0x8000 - 0xFFFF)
+     * @param bytes the bytes to copy
+     * @return this image
+     */
+    public TestRom code(int addr, int... bytes) {
+        for (int i = 0; i < bytes.length; i++)
+            prg_memory[addr - 0x8000 + i] = (byte) bytes[i];
+        return this;
+    }
+
+    /**
+     * Copy bytes to the Character ROM
+     *
+     * @param addr  the PPU address of the first byte (0x0000 - 0x1FFF)
+     * @param bytes the bytes to copy
+     * @return this image
+     */
+    public TestRom chr(int addr, byte[] bytes) {
+        System.arraycopy(bytes, 0, chr_memory, addr, bytes.length);
+        return this;
+    }
+
+    /**
+     * Set the NMI, Reset and IRQ vectors
+     *
+     * @param nmi   the address of the NMI handler
+     * @param reset the address the CPU starts at
+     * @param irq   the address of the IRQ handler
+     * @return this image
+     */
+    public TestRom vectors(int nmi, int reset, int irq) {
+        return code(0xFFFA, nmi & 0xFF, nmi >> 8, reset & 0xFF, reset >> 8, irq & 0xFF, irq >> 8);
+    }
+
+    /**
+     * Select the nametable mirroring wired by the Cartridge
+     *
+     * @param vertical should the mirroring be vertical instead of horizontal
+     * @return this image
+     */
+    public TestRom verticalMirroring(boolean vertical) {
+        vertical_mirroring = vertical;
+        return this;
+    }
+
+    /**
+     * Select Character RAM instead of Character ROM, the image then has no Character ROM
+     * and the program must write its tiles through 0x2006 and 0x2007
+     *
+     * @param ram should the Cartridge have Character RAM
+     * @return this image
+     */
+    public TestRom chrRam(boolean ram) {
+        chr_ram = ram;
+        return this;
+    }
+
+    /**
+     * @return the Program ROM, it can be filled directly
+     */
+    public byte[] prg() {
+        return prg_memory;
+    }
+
+    /**
+     * Write the image to a temporary iNES file and load it
+     *
+     * @return a new Cartridge using the image
+     * @throws Exception if the image can't be written or loaded
+     */
+    public Cartridge build() throws Exception {
+        Path file = Files.createTempFile("nemus-test", ".nes");
+        try {
+            int chr_length = chr_ram ? 0 : chr_memory.length;
+            byte[] image = new byte[16 + prg_memory.length + chr_length];
+            image[0] = 'N';
+            image[1] = 'E';
+            image[2] = 'S';
+            image[3] = 0x1A;
+            image[4] = 2; // 2 x 16KB of Program ROM
+            image[5] = (byte) (chr_ram ? 0 : 1); // 1 x 8KB of Character ROM, or 8KB of Character RAM
+            image[6] = (byte) (vertical_mirroring ? 0x01 : 0x00);
+            System.arraycopy(prg_memory, 0, image, 16, prg_memory.length);
+            System.arraycopy(chr_memory, 0, image, 16 + prg_memory.length, chr_length);
+            Files.write(file, image);
+            return new Cartridge(file.toString());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Insert the image in a new console and power it up, the sound isn't mixed
+     *
+     * @param core the execution core of the CPU
+     * @return the console, ready to run
+     * @throws Exception if the image can't be written or loaded
+     */
+    public NES boot(CoreType core) throws Exception {
+        return boot(new NES(core));
+    }
+
+    /**
+     * Insert the image in a console and power it up, the sound isn't mixed
+     *
+     * @param nes the console to use
+     * @return the console, ready to run
+     * @throws Exception if the image can't be written or loaded
+     */
+    public NES boot(NES nes) throws Exception {
+        nes.setSampleFreq(44100);
+        nes.enableSoundRendering(false);
+        nes.insertCartridge(build());
+        nes.startup();
+        return nes;
+    }
+}
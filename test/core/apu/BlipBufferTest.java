@@ -0,0 +1,82 @@
+package core.apu;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class checks that the BlipBuffer keeps the level of the output when its samples aren't read in time
+ */
+public class BlipBufferTest {
+
+    private static final double CLOCK_RATE = 5369318.0 / 3;
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FRAME_LENGTH = 29781;
+    private static final int AMPLITUDE = 10000;
+
+    /**
+     * Produce a square wave for 2 seconds without reading any sample, the buffer overflows many times
+     * every rising step is followed by a falling one, once the samples are read the output must be back to 0
+     */
+    @Test
+    public void overflowKeepsTheLevel() {
+        for (ResamplingQuality quality : ResamplingQuality.values()) {
+            for (boolean band_limited : new boolean[]{true, false}) {
+                BlipBuffer buffer = new BlipBuffer(CLOCK_RATE, SAMPLE_RATE);
+                buffer.setQuality(quality);
+                buffer.setBandLimited(band_limited);
+                for (int frame = 0; frame < 120; frame++) {
+                    for (int time = 0; time < FRAME_LENGTH; time += 1000) {
+                        buffer.addDelta(time + 100, AMPLITUDE);
+                        buffer.addDelta(time + 600, -AMPLITUDE);
+                    }
+                    buffer.endFrame(FRAME_LENGTH);
+                }
+                //A silent frame lets the tail of the last steps reach the readable samples
+                buffer.endFrame(FRAME_LENGTH);
+                int sample = 0;
+                while (buffer.samplesAvailable() > 0)
+                    sample = buffer.readSample();
+                assertEquals(0, sample, quality + (band_limited ? "" : " raw") + " output drifted");
+            }
+        }
+    }
+
+    /**
+     * A single frame longer than the whole buffer, the step up at its start has to survive the samples dropped later
+     */
+    @Test
+    public void frameLongerThanTheBuffer() {
+        BlipBuffer buffer = new BlipBuffer(CLOCK_RATE, SAMPLE_RATE);
+        buffer.addDelta(0, AMPLITUDE);
+        for (int time = 1000; time < 1_000_000; time += 1000) {
+            buffer.addDelta(time, AMPLITUDE);
+            buffer.addDelta(time + 500, -AMPLITUDE);
+        }
+        buffer.endFrame(1_000_000);
+        buffer.endFrame(FRAME_LENGTH);
+        int sample = 0;
+        while (buffer.samplesAvailable() > 0)
+            sample = buffer.readSample();
+        assertEquals(AMPLITUDE, sample);
+    }
+
+    /**
+     * The samples of a buffer read in time rebuild the steps with the right level
+     */
+    @Test
+    public void stepsAreRebuilt() {
+        BlipBuffer buffer = new BlipBuffer(CLOCK_RATE, SAMPLE_RATE);
+        buffer.addDelta(1000, AMPLITUDE);
+        buffer.endFrame(FRAME_LENGTH);
+        int sample = 0;
+        while (buffer.samplesAvailable() > 0)
+            sample = buffer.readSample();
+        assertEquals(AMPLITUDE, sample);
+        buffer.addDelta(1000, -AMPLITUDE / 2);
+        buffer.endFrame(FRAME_LENGTH);
+        while (buffer.samplesAvailable() > 0)
+            sample = buffer.readSample();
+        assertEquals(AMPLITUDE / 2, sample);
+    }
+}
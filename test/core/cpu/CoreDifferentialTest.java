@@ -0,0 +1,122 @@
+package core.cpu;
+
+import core.TestRom;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class runs the table core and the switch core side by side on the same programs
+ * and checks that the registers, the cycle counts and the bus accesses never differ
+ * The programs are random bytes, so every opcode, official or not, is executed with all kinds of operands
+ * they also write to their own Program ROM, which exercises the decode cache of the switch core
+ */
+public class CoreDifferentialTest {
+
+    private static final int SEEDS = 16;
+    private static final int TICKS = 300_000;
+    private static final int FRAMES = 30;
+    //The opcodes halting the CPU, replaced so the programs keep running
+    private static final int[] HALT_OPCODES = {0x02, 0x12, 0x22, 0x32, 0x42, 0x52, 0x62, 0x72, 0x92, 0xB2, 0xD2, 0xF2};
+
+    /**
+     * Create a Program ROM of random bytes, the vectors point inside it
+     * the odd seeds first copy 6 pages of random bytes to RAM and jump there, the code running from RAM
+     * isn't in the decode cache, the switch core reads its operands from the bus
+     *
+     * @param seed the seed of the random bytes
+     * @return the image
+     */
+    public static TestRom randomProgram(long seed) {
+        Random random = new Random(seed);
+        TestRom rom = new TestRom();
+        byte[] prg = rom.prg();
+        random.nextBytes(prg);
+        for (int i = 0; i < prg.length; i++)
+            for (int halt : HALT_OPCODES)
+                if ((prg[i] & 0xFF) == halt)
+                    prg[i] = (byte) 0xEA; // NOP
+        rom.vectors(0x8000 | random.nextInt(0x7FF0), 0x8000, 0x8000 | random.nextInt(0x7FF0));
+        if ((seed & 1) == 1) {
+            rom.code(0x8000,
+                    0xA2, 0x00,         // LDX #$00
+                    //copy ($8002)
+                    0xBD, 0x00, 0x90,   // LDA $9000,X
+                    0x9D, 0x00, 0x02,   // STA $0200,X
+                    0xBD, 0x00, 0x91,   // LDA $9100,X
+                    0x9D, 0x00, 0x03,   // STA $0300,X
+                    0xBD, 0x00, 0x92,   // LDA $9200,X
+                    0x9D, 0x00, 0x04,   // STA $0400,X
+                    0xBD, 0x00, 0x93,   // LDA $9300,X
+                    0x9D, 0x00, 0x05,   // STA $0500,X
+                    0xBD, 0x00, 0x94,   // LDA $9400,X
+                    0x9D, 0x00, 0x06,   // STA $0600,X
+                    0xBD, 0x00, 0x95,   // LDA $9500,X
+                    0x9D, 0x00, 0x07,   // STA $0700,X
+                    0xE8,               // INX
+                    0xD0, 0xD9,         // BNE copy
+                    0x4C, 0x00, 0x02    // JMP $0200
+            );
+        }
+        return rom;
+    }
+
+    /**
+     * Compare the state of the 2 CPUs
+     *
+     * @param table   the console using the table core
+     * @param sw      the console using the switch core
+     * @param context the description of the moment of the comparison
+     */
+    private static void assertSameState(TracingNES table, TracingNES sw, String context) {
+        CPU_6502 expected = table.getCpu();
+        CPU_6502 actual = sw.getCpu();
+        assertEquals(expected.getProgramCounter(), actual.getProgramCounter(), context + " PC");
+        assertEquals(expected.getAccumulator(), actual.getAccumulator(), context + " A");
+        assertEquals(expected.getXRegister(), actual.getXRegister(), context + " X");
+        assertEquals(expected.getYRegister(), actual.getYRegister(), context + " Y");
+        assertEquals(expected.getStackPointer(), actual.getStackPointer(), context + " SP");
+        assertEquals(expected.getStatus(), actual.getStatus(), context + " P");
+        assertEquals(expected.getClockCount(), actual.getClockCount(), context + " cycles");
+        assertArrayEquals(table.takeTrace(), sw.takeTrace(), context + " bus accesses");
+    }
+
+    /**
+     * Both cores are clocked one tick at a time and compared after every tick
+     */
+    @Test
+    public void lockstep() throws Exception {
+        for (long seed = 0; seed < SEEDS; seed++) {
+            TracingNES table = new TracingNES(CoreType.TABLE);
+            TracingNES sw = new TracingNES(CoreType.SWITCH);
+            randomProgram(seed).boot(table);
+            randomProgram(seed).boot(sw);
+            for (int tick = 0; tick < TICKS; tick++) {
+                table.clock();
+                sw.clock();
+                assertSameState(table, sw, "Seed " + seed + ", tick " + tick);
+            }
+        }
+    }
+
+    /**
+     * Both cores run whole frames with instruction stepping and idle loop skipping, and are compared after each frame
+     */
+    @Test
+    public void frames() throws Exception {
+        for (long seed = SEEDS; seed < 2 * SEEDS; seed++) {
+            TracingNES table = new TracingNES(CoreType.TABLE);
+            TracingNES sw = new TracingNES(CoreType.SWITCH);
+            randomProgram(seed).boot(table);
+            randomProgram(seed).boot(sw);
+            for (int frame = 0; frame < FRAMES; frame++) {
+                table.runFrame();
+                sw.runFrame();
+                assertSameState(table, sw, "Seed " + seed + ", frame " + frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package core.cpu;
+
+import core.NES;
+import core.TestRom;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class checks that the decode cache never executes an Instruction that has been overwritten
+ */
+public class DecodeCacheTest {
+
+    /**
+     * A program writing a subroutine to its Program ROM, calling it, then changing its opcode and both bytes of its operand
+     * the results of the calls are stored at 0x0000 - 0x0004
+     */
+    private static TestRom selfModifyingProgram() {
+        TestRom rom = new TestRom();
+        rom.code(0x8000,
+                0xA9, 0x11,             // LDA #$11
+                0x85, 0x10,             // STA $10
+                0xA9, 0x22,             // LDA #$22
+                0x85, 0x11,             // STA $11
+                0xA9, 0x33,             // LDA #$33
+                0x8D, 0x11, 0x01,       // STA $0111
+                0xA9, 0xAD,             // LDA #$AD
+                0x8D, 0x00, 0x90,       // STA $9000
+                0xA9, 0x10,             // LDA #$10
+                0x8D, 0x01, 0x90,       // STA $9001
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x02, 0x90,       // STA $9002
+                0xA9, 0x60,             // LDA #$60
+                0x8D, 0x03, 0x90,       // STA $9003 : $9000 is LDA $0010, RTS
+                0x20, 0x00, 0x90,       // JSR $9000 : decoded and cached
+                0x85, 0x00,             // STA $00
+                0xA9, 0x11,             // LDA #$11
+                0x8D, 0x01, 0x90,       // STA $9001 : $9000 is LDA $0011, RTS
+                0x20, 0x00, 0x90,       // JSR $9000
+                0x85, 0x01,             // STA $01
+                0xA9, 0xAE,             // LDA #$AE
+                0x8D, 0x00, 0x90,       // STA $9000 : $9000 is LDX $0011, RTS
+                0xA9, 0x00,             // LDA #$00
+                0x20, 0x00, 0x90,       // JSR $9000
+                0x86, 0x02,             // STX $02
+                0x85, 0x03,             // STA $03
+                0xA9, 0x01,             // LDA #$01
+                0x8D, 0x02, 0x90,       // STA $9002 : $9000 is LDX $0111, RTS
+                0x20, 0x00, 0x90,       // JSR $9000
+                0x86, 0x04,             // STX $04
+                0x4C, 0x48, 0x80        // JMP *
+        );
+        return rom;
+    }
+
+    /**
+     * The writes of the CPU reach the cache through Cartridge.setPrgWriteListener, the next fetch decodes the new bytes
+     */
+    @Test
+    public void writesToCachedCodeAreExecuted() throws Exception {
+        for (CoreType core : CoreType.values()) {
+            for (boolean stepping : new boolean[]{true, false}) {
+                NES nes = selfModifyingProgram().boot(core);
+                nes.enableInstructionStepping(stepping);
+                nes.runFrame();
+                nes.runFrame();
+                String context = core + (stepping ? " stepping" : " per cycle");
+                assertEquals(0x11, nes.cpuRead(0x0000, true), context + " first call");
+                assertEquals(0x22, nes.cpuRead(0x0001, true), context + " low byte of the operand changed");
+                assertEquals(0x22, nes.cpuRead(0x0002, true), context + " opcode changed");
+                assertEquals(0x00, nes.cpuRead(0x0003, true), context + " opcode changed");
+                assertEquals(0x33, nes.cpuRead(0x0004, true), context + " high byte of the operand changed");
+            }
+        }
+    }
+
+    /**
+     * A modified byte invalidates every Instruction it can belong to, as opcode or as operand
+     */
+    @Test
+    public void invalidateCoversTheOperands() {
+        byte[] prg = new byte[0x8000];
+        int[] banks = {0x0000, 0x2000, 0x4000, 0x6000};
+        int[] lengths = new int[256];
+        Arrays.fill(lengths, 1);
+        lengths[0xA9] = 2; // LDA #imm
+        lengths[0xAD] = 3; // LDA abs
+        DecodeCache cache = new DecodeCache(prg, banks, lengths);
+
+        prg[0x0100] = (byte) 0xAD;
+        prg[0x0101] = 0x34;
+        prg[0x0102] = 0x12;
+        assertEquals(0x1234AD, cache.get(0x8100) & 0xFFFFFF);
+        //The high byte of the operand, 2 bytes after the opcode
+        prg[0x0102] = 0x56;
+        assertEquals(0x1234AD, cache.get(0x8100) & 0xFFFFFF, "The cache is only refreshed when invalidated");
+        cache.invalidate(0x0102);
+        assertEquals(0x5634AD, cache.get(0x8100) & 0xFFFFFF);
+        //The opcode itself, the Instruction becomes shorter
+        prg[0x0100] = (byte) 0xA9;
+        cache.invalidate(0x0100);
+        assertEquals(0x0034A9, cache.get(0x8100) & 0xFFFFFF);
+    }
+
+    /**
+     * The entries are indexed by their offset in Program Memory, a bank switch shows the entries of the new bank
+     */
+    @Test
+    public void bankSwitchUsesTheOtherEntries() {
+        byte[] prg = new byte[0x8000];
+        int[] banks = {0x0000, 0x2000, 0x4000, 0x6000};
+        int[] lengths = new int[256];
+        Arrays.fill(lengths, 1);
+        lengths[0xA9] = 2;
+        DecodeCache cache = new DecodeCache(prg, banks, lengths);
+
+        prg[0x0000] = (byte) 0xA9;
+        prg[0x0001] = 0x11;
+        prg[0x4000] = (byte) 0xA9;
+        prg[0x4001] = 0x22;
+        assertEquals(0x11A9, cache.get(0x8000) & 0xFFFFFF);
+        banks[0] = 0x4000;
+        assertEquals(0x22A9, cache.get(0x8000) & 0xFFFFFF);
+        banks[0] = 0x0000;
+        assertEquals(0x11A9, cache.get(0x8000) & 0xFFFFFF);
+    }
+}
@@ -0,0 +1,62 @@
+package core.cpu;
+
+import core.NES;
+
+import java.util.Arrays;
+
+/**
+ * This class is a console recording every access of the CPU to the bus
+ * each access is packed as (write ? 1 : 0) << 24 | addr << 8 | data, the reads without side effect aren't recorded
+ * The reads of the Program ROM are left out too, the switch core takes the Instructions it has already decoded
+ * from its decode cache instead of the bus
+ */
+class TracingNES extends NES {
+
+    private int[] trace = new int[1024];
+    private int length = 0;
+
+    /**
+     * Create a new console
+     *
+     * @param core the execution core of the CPU
+     */
+    TracingNES(CoreType core) {
+        super(core);
+    }
+
+    @Override
+    public int cpuRead(int addr, boolean readOnly) {
+        int data = super.cpuRead(addr, readOnly);
+        if (!readOnly && (addr & 0xFFFF) < 0x8000)
+            record((addr & 0xFFFF) << 8 | data);
+        return data;
+    }
+
+    @Override
+    public void cpuWrite(int addr, int data) {
+        record(1 << 24 | (addr & 0xFFFF) << 8 | (data & 0xFF));
+        super.cpuWrite(addr, data);
+    }
+
+    /**
+     * Add an access to the trace
+     *
+     * @param access the packed access
+     */
+    private void record(int access) {
+        if (length == trace.length)
+            trace = Arrays.copyOf(trace, length * 2);
+        trace[length++] = access;
+    }
+
+    /**
+     * Return the accesses recorded since the last call and clear the trace
+     *
+     * @return the packed accesses, in order
+     */
+    int[] takeTrace() {
+        int[] accesses = Arrays.copyOf(trace, length);
+        length = 0;
+        return accesses;
+    }
+}
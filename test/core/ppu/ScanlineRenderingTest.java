@@ -0,0 +1,395 @@
+package core.ppu;
+
+import core.NES;
+import core.TestRom;
+import core.cpu.CoreType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class checks that rendering the visible scanlines at once produces the same frames as the dot by dot path
+ * Two consoles run the same program, one with scanline rendering and one without, and every frame is compared
+ */
+public class ScanlineRenderingTest {
+
+    private static final int FRAMES = 180;
+
+    /**
+     * A program drawing random tiles, random sprites and a random palette
+     * Every frame the NMI handler scrolls, switches the nametable, the sprite size, the left columns and the emphasis,
+     * and moves the sprite zero, then the main loop waits for the sprite zero hit and changes the scroll mid frame
+     * the number of hits is counted at 0x0011
+     *
+     * @param seed     the seed of the graphics
+     * @param vertical should the nametables be mirrored vertically
+     * @return the image
+     */
+    public static TestRom goldenProgram(long seed, boolean vertical) {
+        Random random = new Random(seed);
+        TestRom rom = new TestRom().verticalMirroring(vertical);
+        byte[] chr = new byte[0x2000];
+        random.nextBytes(chr);
+        rom.chr(0x0000, chr);
+        byte[] prg = rom.prg();
+        //The nametables at $C000, the sprites at $D000 and the palette at $E000
+        for (int i = 0x4000; i < 0x4800; i++)
+            prg[i] = (byte) random.nextInt(256);
+        for (int i = 0x5000; i < 0x5100; i++)
+            prg[i] = (byte) random.nextInt(256);
+        for (int i = 0x6000; i < 0x6020; i++)
+            prg[i] = (byte) random.nextInt(0x40);
+        rom.code(0x8000,
+                0x78,                   // SEI
+                0xD8,                   // CLD
+                0xA2, 0xFF,             // LDX #$FF
+                0x9A,                   // TXS
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x00, 0x20,       // STA $2000
+                0x8D, 0x01, 0x20,       // STA $2001 : rendering off
+                //vblank1 ($800D)
+                0x2C, 0x02, 0x20,       // BIT $2002
+                0x10, 0xFB,             // BPL vblank1
+                //vblank2 ($8012)
+                0x2C, 0x02, 0x20,       // BIT $2002
+                0x10, 0xFB,             // BPL vblank2
+                0xA9, 0x3F,             // LDA #$3F
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA2, 0x00,             // LDX #$00
+                //palette ($8023)
+                0xBD, 0x00, 0xE0,       // LDA $E000,X
+                0x8D, 0x07, 0x20,       // STA $2007
+                0xE8,                   // INX
+                0xE0, 0x20,             // CPX #$20
+                0xD0, 0xF5,             // BNE palette : 32 colors from $E000
+                0xA9, 0x20,             // LDA #$20
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA9, 0x00,             // LDA #$00
+                0x85, 0x00,             // STA $00
+                0xA9, 0xC0,             // LDA #$C0
+                0x85, 0x01,             // STA $01
+                0xA2, 0x08,             // LDX #$08
+                //nametable_page ($8042)
+                0xA0, 0x00,             // LDY #$00
+                //nametable_byte ($8044)
+                0xB1, 0x00,             // LDA ($00),Y
+                0x8D, 0x07, 0x20,       // STA $2007
+                0xC8,                   // INY
+                0xD0, 0xF8,             // BNE nametable_byte
+                0xE6, 0x01,             // INC $01
+                0xCA,                   // DEX
+                0xD0, 0xF1,             // BNE nametable_page : 2KB of nametables from $C000
+                0xA2, 0x00,             // LDX #$00
+                //oam ($8053)
+                0xBD, 0x00, 0xD0,       // LDA $D000,X
+                0x9D, 0x00, 0x02,       // STA $0200,X
+                0xE8,                   // INX
+                0xD0, 0xF7,             // BNE oam : the sprites from $D000
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x05, 0x20,       // STA $2005
+                0x8D, 0x05, 0x20,       // STA $2005
+                0xA9, 0x90,             // LDA #$90
+                0x8D, 0x00, 0x20,       // STA $2000 : NMI, background from $1000
+                0xA9, 0x1E,             // LDA #$1E
+                0x8D, 0x01, 0x20,       // STA $2001 : background and sprites
+                //wait_nmi ($806E)
+                0xA5, 0x12,             // LDA $12
+                0xF0, 0xFC,             // BEQ wait_nmi : idle until the NMI
+                0xA9, 0x00,             // LDA #$00
+                0x85, 0x12,             // STA $12
+                //hit_clear ($8076)
+                0x2C, 0x02, 0x20,       // BIT $2002
+                0x70, 0xFB,             // BVS hit_clear
+                //hit_set ($807B)
+                0x2C, 0x02, 0x20,       // BIT $2002
+                0x50, 0xFB,             // BVC hit_set : wait for the sprite zero hit
+                0xE6, 0x11,             // INC $11 : count the hits
+                0xA5, 0x10,             // LDA $10
+                0x8D, 0x05, 0x20,       // STA $2005
+                0x8D, 0x05, 0x20,       // STA $2005 : fine X changes mid frame
+                0xA9, 0x21,             // LDA #$21
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA5, 0x10,             // LDA $10
+                0x8D, 0x06, 0x20,       // STA $2006 : the VRAM address jumps mid frame
+                0x4C, 0x6E, 0x80        // JMP wait_nmi
+        );
+        rom.code(0x8100,
+                0x48,                   // PHA
+                0xA9, 0x02,             // LDA #$02
+                0x8D, 0x14, 0x40,       // STA $4014 : OAM DMA
+                0xE6, 0x10,             // INC $10
+                0xE6, 0x12,             // INC $12
+                0xA5, 0x10,             // LDA $10
+                0x8D, 0x05, 0x20,       // STA $2005
+                0x0A,                   // ASL A
+                0x8D, 0x05, 0x20,       // STA $2005 : scroll
+                0xA5, 0x10,             // LDA $10
+                0x29, 0x23,             // AND #$23
+                0x09, 0x90,             // ORA #$90
+                0x8D, 0x00, 0x20,       // STA $2000 : nametable and sprite size
+                0xA5, 0x10,             // LDA $10
+                0x29, 0xE6,             // AND #$E6
+                0x09, 0x18,             // ORA #$18
+                0x8D, 0x01, 0x20,       // STA $2001 : left columns and emphasis
+                0xEE, 0x03, 0x02,       // INC $0203
+                0xEE, 0x00, 0x02,       // INC $0200 : sprite zero moves
+                0x68,                   // PLA
+                0x40                    // RTI
+        );
+        rom.vectors(0x8100, 0x8000, 0x8100);
+        return rom;
+    }
+
+    /**
+     * A program drawing random tiles written to the Character RAM, random sprites and a random palette
+     * Every frame the NMI handler rewrites through 0x2006 and 0x2007 the 16 bytes of the tile
+     * at the next position of the top rows of the nametable, the background and the sprites share the pattern table
+     *
+     * @param seed the seed of the graphics
+     * @return the image
+     */
+    static TestRom chrRamProgram(long seed) {
+        Random random = new Random(seed);
+        TestRom rom = new TestRom().chrRam(true);
+        byte[] prg = rom.prg();
+        //The tiles at $A000, the nametable at $C000, the sprites at $D000 and the palette at $E000
+        for (int i = 0x2000; i < 0x4000; i++)
+            prg[i] = (byte) random.nextInt(256);
+        for (int i = 0x4000; i < 0x4400; i++)
+            prg[i] = (byte) random.nextInt(256);
+        for (int i = 0x5000; i < 0x5100; i++)
+            prg[i] = (byte) random.nextInt(256);
+        for (int i = 0x6000; i < 0x6020; i++)
+            prg[i] = (byte) random.nextInt(0x40);
+        rom.code(0x8000,
+                0x78,                   // SEI
+                0xD8,                   // CLD
+                0xA2, 0xFF,             // LDX #$FF
+                0x9A,                   // TXS
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x00, 0x20,       // STA $2000
+                0x8D, 0x01, 0x20,       // STA $2001 : rendering off
+                //vblank1 ($800D)
+                0x2C, 0x02, 0x20,       // BIT $2002
+                0x10, 0xFB,             // BPL vblank1
+                //vblank2 ($8012)
+                0x2C, 0x02, 0x20,       // BIT $2002
+                0x10, 0xFB,             // BPL vblank2
+                0xA9, 0x3F,             // LDA #$3F
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA2, 0x00,             // LDX #$00
+                //palette ($8023)
+                0xBD, 0x00, 0xE0,       // LDA $E000,X
+                0x8D, 0x07, 0x20,       // STA $2007
+                0xE8,                   // INX
+                0xE0, 0x20,             // CPX #$20
+                0xD0, 0xF5,             // BNE palette : 32 colors from $E000
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x06, 0x20,       // STA $2006
+                0x8D, 0x06, 0x20,       // STA $2006
+                0x85, 0x00,             // STA $00
+                0xA9, 0xA0,             // LDA #$A0
+                0x85, 0x01,             // STA $01
+                0xA2, 0x20,             // LDX #$20
+                //tile_page ($803E)
+                0xA0, 0x00,             // LDY #$00
+                //tile_byte ($8040)
+                0xB1, 0x00,             // LDA ($00),Y
+                0x8D, 0x07, 0x20,       // STA $2007
+                0xC8,                   // INY
+                0xD0, 0xF8,             // BNE tile_byte
+                0xE6, 0x01,             // INC $01
+                0xCA,                   // DEX
+                0xD0, 0xF1,             // BNE tile_page : 8KB of tiles from $A000
+                0xA9, 0x20,             // LDA #$20
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x06, 0x20,       // STA $2006
+                0x85, 0x00,             // STA $00
+                0xA9, 0xC0,             // LDA #$C0
+                0x85, 0x01,             // STA $01
+                0xA2, 0x04,             // LDX #$04
+                //nametable_page ($805F)
+                0xA0, 0x00,             // LDY #$00
+                //nametable_byte ($8061)
+                0xB1, 0x00,             // LDA ($00),Y
+                0x8D, 0x07, 0x20,       // STA $2007
+                0xC8,                   // INY
+                0xD0, 0xF8,             // BNE nametable_byte
+                0xE6, 0x01,             // INC $01
+                0xCA,                   // DEX
+                0xD0, 0xF1,             // BNE nametable_page : 1KB of nametable from $C000
+                0xA2, 0x00,             // LDX #$00
+                //oam ($8070)
+                0xBD, 0x00, 0xD0,       // LDA $D000,X
+                0x9D, 0x00, 0x02,       // STA $0200,X
+                0xE8,                   // INX
+                0xD0, 0xF7,             // BNE oam : the sprites from $D000
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x05, 0x20,       // STA $2005
+                0x8D, 0x05, 0x20,       // STA $2005
+                0xA9, 0x80,             // LDA #$80
+                0x8D, 0x00, 0x20,       // STA $2000 : NMI, background and sprites from $0000
+                0xA9, 0x1E,             // LDA #$1E
+                0x8D, 0x01, 0x20,       // STA $2001 : background and sprites
+                //idle ($808B)
+                0x4C, 0x8B, 0x80        // JMP idle
+        );
+        rom.code(0x8100,
+                0x48,                   // PHA
+                0x8A,                   // TXA
+                0x48,                   // PHA
+                0xA9, 0x02,             // LDA #$02
+                0x8D, 0x14, 0x40,       // STA $4014 : OAM DMA
+                0xAD, 0x02, 0x20,       // LDA $2002 : reset the address latch
+                0xA6, 0x10,             // LDX $10
+                0xBD, 0x00, 0xC0,       // LDA $C000,X
+                0x85, 0x11,             // STA $11 : the tile at position $10 of the nametable
+                0x4A,                   // LSR A
+                0x4A,                   // LSR A
+                0x4A,                   // LSR A
+                0x4A,                   // LSR A
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA5, 0x11,             // LDA $11
+                0x0A,                   // ASL A
+                0x0A,                   // ASL A
+                0x0A,                   // ASL A
+                0x0A,                   // ASL A
+                0x8D, 0x06, 0x20,       // STA $2006
+                0xA2, 0x00,             // LDX #$00
+                //tile_byte ($8124)
+                0x8A,                   // TXA
+                0x65, 0x10,             // ADC $10
+                0x8D, 0x07, 0x20,       // STA $2007
+                0xE8,                   // INX
+                0xE0, 0x10,             // CPX #$10
+                0xD0, 0xF5,             // BNE tile_byte : the 16 bytes of the tile
+                0xA9, 0x00,             // LDA #$00
+                0x8D, 0x05, 0x20,       // STA $2005
+                0x8D, 0x05, 0x20,       // STA $2005
+                0xA9, 0x80,             // LDA #$80
+                0x8D, 0x00, 0x20,       // STA $2000 : the scroll is back to the first nametable
+                0xE6, 0x10,             // INC $10
+                0x68,                   // PLA
+                0xAA,                   // TAX
+                0x68,                   // PLA
+                0x40                    // RTI
+        );
+        rom.vectors(0x8100, 0x8000, 0x8100);
+        return rom;
+    }
+
+    /**
+     * Run the program with and without scanline rendering and compare every frame
+     *
+     * @param seed     the seed of the graphics
+     * @param vertical should the nametables be mirrored vertically
+     * @param indexed  should the frames be produced as palette indices
+     */
+    private static void compareFrames(long seed, boolean vertical, boolean indexed) throws Exception {
+        NES scanlines = goldenProgram(seed, vertical).boot(CoreType.SWITCH);
+        NES dots = goldenProgram(seed, vertical).boot(CoreType.SWITCH);
+        dots.getPpu().enableScanlineRendering(false);
+        scanlines.getPpu().setIndexedOutput(indexed);
+        dots.getPpu().setIndexedOutput(indexed);
+        String program = "Seed " + seed + (vertical ? ", vertical" : ", horizontal") + (indexed ? ", indexed" : "");
+        for (int frame = 0; frame < FRAMES; frame++) {
+            scanlines.runFrame();
+            dots.runFrame();
+            Frame expected = dots.getPpu().getFrameMailbox().acquire();
+            Frame actual = scanlines.getPpu().getFrameMailbox().acquire();
+            String context = program + ", frame " + frame;
+            assertEquals(expected.getNumber(), actual.getNumber(), context + " number");
+            if (indexed) {
+                assertArrayEquals(expected.indices, actual.indices, context + " indices");
+                assertArrayEquals(expected.emphasis, actual.emphasis, context + " emphasis");
+            } else
+                assertArrayEquals(expected.pixels, actual.pixels, context + " pixels");
+            //Matching frames only mean something if the program draws more than the backdrop
+            if (frame == FRAMES - 1 && !indexed)
+                assertTrue(Arrays.stream(actual.pixels).distinct().count() > 8, program + " draws nothing");
+        }
+        //The split happens after the hit, it must be exercised
+        assertTrue(dots.cpuRead(0x0011, true) > 0, program + " never hit the sprite zero");
+        assertEquals(dots.cpuRead(0x0011, true), scanlines.cpuRead(0x0011, true), program + " hits");
+    }
+
+    /**
+     * The tiles rewritten in Character RAM between frames are decoded again by the Tile Cache
+     * the scanlines read the cached rows, the reference reads every row from Character Memory dot by dot
+     */
+    @Test
+    public void chrRamFramesMatchTheUncachedDotPath() throws Exception {
+        for (long seed = 0; seed < 2; seed++) {
+            NES scanlines = chrRamProgram(seed).boot(CoreType.SWITCH);
+            NES dots = chrRamProgram(seed).boot(CoreType.SWITCH);
+            dots.getPpu().enableScanlineRendering(false);
+            dots.getCartridge().enableTileCache(false);
+            int[] previous = new int[0];
+            for (int frame = 0; frame < FRAMES; frame++) {
+                scanlines.runFrame();
+                dots.runFrame();
+                Frame expected = dots.getPpu().getFrameMailbox().acquire();
+                Frame actual = scanlines.getPpu().getFrameMailbox().acquire();
+                String context = "Seed " + seed + ", frame " + frame;
+                assertEquals(expected.getNumber(), actual.getNumber(), context + " number");
+                assertArrayEquals(expected.pixels, actual.pixels, context + " pixels");
+                //Once the tiles are copied and the rendering is on, every frame rewrites a tile on screen
+                //a stale tile would leave the frame unchanged
+                if (frame > 8)
+                    assertFalse(Arrays.equals(previous, actual.pixels), context + " shows no rewritten tile");
+                previous = actual.pixels.clone();
+            }
+        }
+    }
+
+    /**
+     * The frames that aren't composed keep the sprite zero hit at the same dot, on both paths
+     * the main loop polls for the hit, a hit set at another dot changes the cycle count and the RAM
+     */
+    @Test
+    public void skippedFramesKeepTheSpriteZeroHits() throws Exception {
+        for (boolean scanline_rendering : new boolean[]{false, true}) {
+            for (long seed = 0; seed < 2; seed++) {
+                NES composing = goldenProgram(seed, seed == 1).boot(CoreType.SWITCH);
+                NES skipping = goldenProgram(seed, seed == 1).boot(CoreType.SWITCH);
+                composing.getPpu().enableScanlineRendering(scanline_rendering);
+                skipping.getPpu().enableScanlineRendering(scanline_rendering);
+                skipping.setFrameSkip(3);
+                String program = "Seed " + seed + (scanline_rendering ? ", scanlines" : ", dots");
+                for (int frame = 0; frame < FRAMES; frame++) {
+                    composing.runFrame();
+                    skipping.runFrame();
+                    String context = program + ", frame " + frame;
+                    assertEquals(composing.getCpu().getClockCount(), skipping.getCpu().getClockCount(), context + " cycles");
+                    for (int addr = 0x0000; addr < 0x0800; addr++)
+                        assertEquals(composing.cpuRead(addr, true), skipping.cpuRead(addr, true), context + String.format(" RAM $%04X", addr));
+                }
+                assertTrue(skipping.cpuRead(0x0011, true) > 0, program + " never hit the sprite zero");
+            }
+        }
+    }
+
+    /**
+     * Compare the frames of several programs, with both mirrorings and both output formats
+     */
+    @Test
+    public void framesMatchTheDotByDotPath() throws Exception {
+        for (long seed = 0; seed < 4; seed++) {
+            compareFrames(seed, (seed & 1) == 0, false);
+            compareFrames(seed, (seed & 1) == 1, true);
+        }
+    }
+}